@@ -0,0 +1,43 @@
+package rockets.dataaccess;
+
+import java.util.Objects;
+
+/**
+ * One group of an {@link Aggregation}: the value it was grouped by and its aggregated value, both
+ * as stored in the graph (ids as longs, counts as longs, sums and shares as doubles).
+ */
+public final class Aggregate {
+    private final Object key;
+    private final Object value;
+
+    public Aggregate(Object key, Object value) {
+        this.key = key;
+        this.value = value;
+    }
+
+    public Object getKey() {
+        return key;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Aggregate aggregate = (Aggregate) o;
+        return Objects.equals(key, aggregate.key) && Objects.equals(value, aggregate.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(key, value);
+    }
+
+    @Override
+    public String toString() {
+        return key + "=" + value;
+    }
+}
@@ -0,0 +1,188 @@
+package rockets.dataaccess;
+
+import rockets.model.Entity;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notBlank;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * A query that groups the entities of a class, aggregates each group into one value and keeps only
+ * the top groups, so that a DAO can answer it without handing out the entities themselves.
+ * <p>
+ * Entities are grouped by the value of a path: {@code "id"} makes every entity a group of its own,
+ * a field name groups by that field's value, an association groups by the associated entity's id,
+ * and {@code "association.field"} by a field of the associated entity. Entities without the
+ * associated entity are left out. Groups are ordered by their value, highest first, ties broken by
+ * key in ascending order, and groups without a value are left out. Values are compared as the
+ * field's Java type orders them, e.g. dates by time and decimals numerically.
+ */
+public class Aggregation<T extends Entity> {
+    public enum Function {
+        /**
+         * The number of entities in the group.
+         */
+        COUNT,
+        /**
+         * The sum of a numeric field, as a double.
+         */
+        SUM,
+        /**
+         * The highest value of a field.
+         */
+        MAX,
+        /**
+         * The value of a field of the group's entity with the highest id among those where it is
+         * set, i.e. the last value a pass over {@link DAO#stream(Class)} would see.
+         */
+        LAST,
+        /**
+         * The fraction of the group's entities whose field equals a value, as a double; groups with
+         * no such entity are left out.
+         */
+        SHARE
+    }
+
+    private final Class<T> entityClass;
+    private final Function function;
+    private final String field;
+    private final Object shareOf;
+    private final Map<String, Object> filters = new LinkedHashMap<>();
+    private final Map<String, Object[]> ranges = new LinkedHashMap<>();
+    private final Map<String, Long> associations = new LinkedHashMap<>();
+    private String groupBy = "id";
+    private int limit = Integer.MAX_VALUE;
+
+    private Aggregation(Class<T> entityClass, Function function, String field, Object shareOf) {
+        notNull(entityClass, "entity class cannot be null");
+        this.entityClass = entityClass;
+        this.function = function;
+        this.field = field;
+        this.shareOf = shareOf;
+    }
+
+    public static <T extends Entity> Aggregation<T> count(Class<T> clazz) {
+        return new Aggregation<>(clazz, Function.COUNT, null, null);
+    }
+
+    public static <T extends Entity> Aggregation<T> sum(Class<T> clazz, String field) {
+        notBlank(field, "field cannot be null or empty");
+        return new Aggregation<>(clazz, Function.SUM, field, null);
+    }
+
+    public static <T extends Entity> Aggregation<T> max(Class<T> clazz, String field) {
+        notBlank(field, "field cannot be null or empty");
+        return new Aggregation<>(clazz, Function.MAX, field, null);
+    }
+
+    public static <T extends Entity> Aggregation<T> last(Class<T> clazz, String field) {
+        notBlank(field, "field cannot be null or empty");
+        return new Aggregation<>(clazz, Function.LAST, field, null);
+    }
+
+    public static <T extends Entity> Aggregation<T> share(Class<T> clazz, String field, Object value) {
+        notBlank(field, "field cannot be null or empty");
+        notNull(value, "value cannot be null");
+        return new Aggregation<>(clazz, Function.SHARE, field, value);
+    }
+
+    /**
+     * Only aggregates the entities whose field equals the given value.
+     */
+    public Aggregation<T> where(String field, Object value) {
+        notBlank(field, "field cannot be null or empty");
+        filters.put(field, value);
+        return this;
+    }
+
+    /**
+     * Only aggregates the entities whose field lies between the given values, both included.
+     */
+    public Aggregation<T> between(String field, Object from, Object to) {
+        notBlank(field, "field cannot be null or empty");
+        notNull(from, "lower bound cannot be null");
+        notNull(to, "upper bound cannot be null");
+        ranges.put(field, new Object[]{from, to});
+        return this;
+    }
+
+    /**
+     * Only aggregates the entities whose path of single associations leads to the entity with the
+     * given id, e.g. {@code "launchVehicle.manufacturer"} for the launches of a provider's rockets.
+     */
+    public Aggregation<T> whereAssociated(String path, Long id) {
+        notBlank(path, "association path cannot be null or empty");
+        notNull(id, "id cannot be null");
+        isTrue(path.split("\\.").length <= 2, "association path can follow at most two associations");
+        associations.put(path, id);
+        return this;
+    }
+
+    public Aggregation<T> groupBy(String path) {
+        notBlank(path, "group path cannot be null or empty");
+        isTrue(path.split("\\.").length <= 2, "group path can follow at most one association");
+        this.groupBy = path;
+        return this;
+    }
+
+    /**
+     * Keeps only the k groups with the highest values.
+     */
+    public Aggregation<T> top(int k) {
+        isTrue(k >= 0, "k cannot be negative");
+        this.limit = k;
+        return this;
+    }
+
+    public Class<T> getEntityClass() {
+        return entityClass;
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    /**
+     * @return the aggregated field, or null when counting.
+     */
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * @return the value whose share is computed, or null for other functions.
+     */
+    public Object getShareOf() {
+        return shareOf;
+    }
+
+    public Map<String, Object> getFilters() {
+        return Collections.unmodifiableMap(filters);
+    }
+
+    /**
+     * @return field names mapped to their inclusive lower and upper bounds.
+     */
+    public Map<String, Object[]> getRanges() {
+        return Collections.unmodifiableMap(ranges);
+    }
+
+    /**
+     * @return association paths mapped to the ids of the entities they must lead to.
+     */
+    public Map<String, Long> getAssociations() {
+        return Collections.unmodifiableMap(associations);
+    }
+
+    public String getGroupBy() {
+        return groupBy;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
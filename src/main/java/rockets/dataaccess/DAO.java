@@ -1,23 +1,175 @@
 package rockets.dataaccess;
 
+import rockets.dataaccess.event.ChangeEvent;
+import rockets.dataaccess.event.ChangeListener;
 import rockets.model.Entity;
+import rockets.model.Launch;
 import rockets.model.LaunchServiceProvider;
 import rockets.model.User;
 
+import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface DAO {
     <T extends Entity> T load(Class<T> clazz, Long id);
 
     <T extends Entity> T createOrUpdate(T entity);
 
+    /**
+     * Like {@link #createOrUpdate(Entity)}, and also hands an event for every entity of the saved
+     * graph whose stored values changed to the given consumer, as
+     * {@link #createOrUpdateAll(Collection, Consumer)} does. The whole graph is written in one
+     * transaction, however large it is.
+     *
+     * @throws UnsupportedOperationException if this DAO cannot report what it changed.
+     */
+    default <T extends Entity> T createOrUpdate(T entity, Consumer<ChangeEvent> changed) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not report changes");
+    }
+
+    <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities);
+
+    /**
+     * Like {@link #createOrUpdateAll(Collection)}, and also hands a
+     * {@link ChangeEvent.Type#CREATED CREATED} or {@link ChangeEvent.Type#UPDATED UPDATED} event for
+     * every entity of the saved graphs whose stored values changed to the given consumer, once its
+     * write is committed. The old values are read in the same transaction as the write.
+     *
+     * @throws UnsupportedOperationException if this DAO cannot report what it changed.
+     */
+    default <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities,
+                                                             Consumer<ChangeEvent> changed) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not report changes");
+    }
+
     <T extends Entity> Collection<T> loadAll(Class<T> clazz);
 
+    /**
+     * Loads the entities with the given ids in one round trip.
+     *
+     * @return the entities in the order of their ids; ids with no entity of the class are skipped.
+     */
+    <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids);
+
+    /**
+     * Streams all entities of a class, fetching them lazily in batches instead of holding them all
+     * in memory. The stream should be closed once consumed, e.g. with try-with-resources.
+     */
+    <T extends Entity> Stream<T> stream(Class<T> clazz);
+
+    <T extends Entity> Page<T> loadPage(Class<T> clazz, PageRequest request);
+
+    /**
+     * Like {@link #loadPage(Class, PageRequest)}, but only reads the id and the given fields of each
+     * entity instead of hydrating it. The sort property is always included.
+     */
+    <T extends Entity> Page<EntityView> loadPageView(Class<T> clazz, PageRequest request, String... fields);
+
     <T extends Entity> void delete(T entity);
 
+    /**
+     * Like {@link #delete(Entity)}, and also hands a {@link ChangeEvent.Type#DELETED DELETED} event,
+     * with the values the entity was stored with, to the given consumer once the deletion is
+     * committed. The values are read by the same write that deletes the entity.
+     *
+     * @throws UnsupportedOperationException if this DAO cannot report what it deleted.
+     */
+    default <T extends Entity> void delete(T entity, Consumer<ChangeEvent> deleted) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not report deletions");
+    }
+
+    /**
+     * Deletes the entities of a class whose fields equal the given values, without loading them.
+     *
+     * @param filters field names mapped to the values they must equal; empty deletes all entities.
+     * @param cascade whether to also delete the launches of deleted rockets, and the rockets (with
+     *                their launches) of deleted launch service providers.
+     * @return the number of entities deleted, including cascaded ones.
+     */
+    <T extends Entity> long deleteWhere(Class<T> clazz, Map<String, ?> filters, boolean cascade);
+
+    default <T extends Entity> long deleteWhere(Class<T> clazz, Map<String, ?> filters) {
+        return deleteWhere(clazz, filters, false);
+    }
+
+    /**
+     * Like {@link #deleteWhere(Class, Map, boolean)}, and also hands a
+     * {@link ChangeEvent.Type#DELETED DELETED} event for every deleted entity, with the values it was
+     * stored with, to the given consumer once its deletion is committed. The values are read by the
+     * same queries that delete the entities, so nothing is loaded beforehand.
+     *
+     * @throws UnsupportedOperationException if this DAO cannot report what it deleted.
+     */
+    default <T extends Entity> long deleteWhere(Class<T> clazz, Map<String, ?> filters, boolean cascade,
+                                                Consumer<ChangeEvent> deleted) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not report deletions");
+    }
+
+    /**
+     * Counts the entities of a class whose fields equal the given values, without loading them.
+     *
+     * @param filters field names mapped to the values they must equal; empty counts all entities.
+     */
+    <T extends Entity> long count(Class<T> clazz, Map<String, ?> filters);
+
+    /**
+     * @return whether any entity of the class has fields equal to the given values.
+     */
+    <T extends Entity> boolean exists(Class<T> clazz, Map<String, ?> filters);
+
+    /**
+     * Groups and aggregates the entities of a class inside the store, returning only the top
+     * groups instead of the entities.
+     */
+    <T extends Entity> List<Aggregate> aggregate(Aggregation<T> aggregation);
+
+    /**
+     * Loads the launches on the days from {@code from} to {@code to}, both included, with a range
+     * seek on the launch date index instead of a scan of all launches.
+     *
+     * @return the launches in date order, launches on the same day in id order.
+     */
+    List<Launch> findLaunchesBetween(LocalDate from, LocalDate to);
+
+    /**
+     * Loads the k most recent launches by reading the launch date index from its latest end.
+     *
+     * @return the launches latest first, launches on the same day in id order.
+     */
+    List<Launch> latestLaunches(int k);
+
     User getUserByEmail(String email);
 
     LaunchServiceProvider getLSPByName(String name);
 
+    /**
+     * Registers a listener for the changes committed through this DAO.
+     *
+     * @throws UnsupportedOperationException if this DAO does not publish changes.
+     */
+    default void addChangeListener(ChangeListener listener) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not publish changes");
+    }
+
+    default void removeChangeListener(ChangeListener listener) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not publish changes");
+    }
+
+    /**
+     * Starts a unit of work (typically one web request) on the calling thread.
+     */
+    default void openSession() {
+    }
+
+    /**
+     * Ends the unit of work started on the calling thread by {@link #openSession()}.
+     */
+    default void closeSession() {
+    }
+
     void close();
 }
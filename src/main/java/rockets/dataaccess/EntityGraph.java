@@ -0,0 +1,67 @@
+package rockets.dataaccess;
+
+import com.google.common.collect.Sets;
+import rockets.model.Entity;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.util.*;
+
+/**
+ * Walks the associations between entities, for DAOs that save an entity together with everything
+ * reachable from it.
+ */
+public final class EntityGraph {
+    private EntityGraph() {
+    }
+
+    /**
+     * Breadth-first walk over all associations, visiting each object once by identity.
+     *
+     * @return the roots and every entity reachable from them, each exactly once.
+     */
+    public static List<Entity> collect(Collection<? extends Entity> roots) {
+        Set<Entity> visited = Sets.newIdentityHashSet();
+        List<Entity> graph = new ArrayList<>();
+        Deque<Entity> pending = new ArrayDeque<>();
+        roots.stream().filter(Objects::nonNull).forEach(pending::add);
+        while (!pending.isEmpty()) {
+            Entity entity = pending.poll();
+            if (!visited.add(entity)) {
+                continue;
+            }
+            graph.add(entity);
+            for (Entity neighbour : neighbours(entity)) {
+                if (null != neighbour) {
+                    pending.add(neighbour);
+                }
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * @return the entities directly associated with the given one; may contain nulls.
+     */
+    public static Collection<? extends Entity> neighbours(Entity entity) {
+        List<Entity> neighbours = new ArrayList<>();
+        if (entity instanceof Rocket) {
+            Rocket rocket = (Rocket) entity;
+            neighbours.add(rocket.getManufacturer());
+            if (null != rocket.getLaunches()) {
+                neighbours.addAll(rocket.getLaunches());
+            }
+        } else if (entity instanceof LaunchServiceProvider) {
+            LaunchServiceProvider lsp = (LaunchServiceProvider) entity;
+            if (null != lsp.getRockets()) {
+                neighbours.addAll(lsp.getRockets());
+            }
+        } else if (entity instanceof Launch) {
+            Launch launch = (Launch) entity;
+            neighbours.add(launch.getLaunchVehicle());
+            neighbours.add(launch.getLaunchServiceProvider());
+        }
+        return neighbours;
+    }
+}
@@ -0,0 +1,58 @@
+package rockets.dataaccess;
+
+import rockets.model.Entity;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * A read-only projection of an entity: its id and a chosen subset of its simple fields, with
+ * values as stored in the graph (dates as epoch-day longs, decimals and enums as strings, numbers
+ * as long or double).
+ */
+public final class EntityView {
+    private final Class<? extends Entity> type;
+    private final Long id;
+    private final Map<String, Object> values;
+
+    public EntityView(Class<? extends Entity> type, Long id, Map<String, Object> values) {
+        notNull(type, "type cannot be null");
+        notNull(values, "values cannot be null");
+        this.type = type;
+        this.id = id;
+        this.values = Collections.unmodifiableMap(values);
+    }
+
+    public Class<? extends Entity> getType() {
+        return type;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * @return the value of a projected field, which may be null.
+     * @throws IllegalArgumentException if the field was not part of the projection.
+     */
+    public Object get(String field) {
+        isTrue(values.containsKey(field), "%s was not projected", field);
+        return values.get(field);
+    }
+
+    public Map<String, Object> getValues() {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return "EntityView{" +
+                "type=" + type.getSimpleName() +
+                ", id=" + id +
+                ", values=" + values +
+                '}';
+    }
+}
@@ -0,0 +1,48 @@
+package rockets.dataaccess;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * One page of a sorted listing, with opaque cursors for the neighbouring pages.
+ */
+public class Page<T> {
+    private final List<T> items;
+    private final String nextCursor;
+    private final String previousCursor;
+
+    public Page(List<T> items, String nextCursor, String previousCursor) {
+        notNull(items, "items cannot be null");
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+        this.previousCursor = previousCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return the cursor of the following page, or null if this is the last page.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @return the cursor of the preceding page, or null if this is the first page.
+     */
+    public String getPreviousCursor() {
+        return previousCursor;
+    }
+
+    public boolean hasNext() {
+        return null != nextCursor;
+    }
+
+    public boolean hasPrevious() {
+        return null != previousCursor;
+    }
+}
@@ -0,0 +1,88 @@
+package rockets.dataaccess;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * The position a page starts from: the sort value and id of the last entity of the previous page
+ * (or of the first entity of the following page, when paging backwards). Cursors are encoded as
+ * URL-safe strings so they can be handed out in links.
+ */
+public class PageCursor {
+    private final boolean backward;
+    private final Object value;
+    private final long id;
+
+    private PageCursor(boolean backward, Object value, long id) {
+        if (null != value && !(value instanceof String) && !(value instanceof Number)) {
+            throw new IllegalArgumentException("cursor values must be strings or numbers");
+        }
+        this.backward = backward;
+        this.value = value;
+        this.id = id;
+    }
+
+    public static PageCursor after(Object value, long id) {
+        return new PageCursor(false, value, id);
+    }
+
+    public static PageCursor before(Object value, long id) {
+        return new PageCursor(true, value, id);
+    }
+
+    public boolean isBackward() {
+        return backward;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String encode() {
+        String type;
+        if (null == value) {
+            type = "n";
+        } else if (value instanceof String) {
+            type = "s";
+        } else if (value instanceof Double || value instanceof Float) {
+            type = "d";
+        } else {
+            type = "l";
+        }
+        String raw = (backward ? "b" : "a") + ":" + id + ":" + type + ":" + (null == value ? "" : value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", 4);
+            boolean backward = "b".equals(parts[0]);
+            long id = Long.parseLong(parts[1]);
+            Object value;
+            switch (parts[2]) {
+                case "n":
+                    value = null;
+                    break;
+                case "s":
+                    value = parts[3];
+                    break;
+                case "d":
+                    value = Double.parseDouble(parts[3]);
+                    break;
+                case "l":
+                    value = Long.parseLong(parts[3]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown cursor value type");
+            }
+            return new PageCursor(backward, value, id);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("invalid page cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package rockets.dataaccess;
+
+import static org.apache.commons.lang3.Validate.inclusiveBetween;
+import static org.apache.commons.lang3.Validate.notBlank;
+
+/**
+ * A request for one page of entities, ordered by a sort property (ties broken by id).
+ * The cursor is the opaque value of {@link Page#getNextCursor()} or {@link Page#getPreviousCursor()}
+ * of a previous page, or null for the first page.
+ */
+public class PageRequest {
+    public static final int DEFAULT_SIZE = 20;
+    public static final int MAX_SIZE = 100;
+
+    private final String sortProperty;
+    private final int size;
+    private final String cursor;
+
+    public PageRequest(String sortProperty, int size, String cursor) {
+        notBlank(sortProperty, "sort property cannot be null or empty");
+        inclusiveBetween(1, MAX_SIZE, size, "page size must be between 1 and " + MAX_SIZE);
+        this.sortProperty = sortProperty;
+        this.size = size;
+        this.cursor = cursor;
+    }
+
+    public static PageRequest first(String sortProperty, int size) {
+        return new PageRequest(sortProperty, size, null);
+    }
+
+    public String getSortProperty() {
+        return sortProperty;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+}
@@ -0,0 +1,101 @@
+package rockets.dataaccess.async;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import rockets.dataaccess.Aggregate;
+import rockets.dataaccess.Aggregation;
+import rockets.dataaccess.DAO;
+import rockets.model.Entity;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Runs calls to a {@link DAO} on a dedicated, fixed-size thread pool, so that a caller can start
+ * several independent lookups at once and wait only as long as the slowest. Each call runs in a
+ * DAO session of its own, since sessions are bound to threads.
+ */
+public class AsyncDAO implements AutoCloseable {
+    private final DAO dao;
+    private final ExecutorService executor;
+
+    public AsyncDAO(DAO dao, int threads) {
+        notNull(dao, "dao cannot be null");
+        isTrue(threads > 0, "threads must be positive");
+        this.dao = dao;
+        this.executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("async-dao-%d").setDaemon(true).build());
+    }
+
+    public <T extends Entity> CompletableFuture<T> load(Class<T> clazz, Long id) {
+        return supply(() -> dao.load(clazz, id));
+    }
+
+    public <T extends Entity> CompletableFuture<List<T>> loadAll(Class<T> clazz, Collection<Long> ids) {
+        return supply(() -> dao.loadAll(clazz, ids));
+    }
+
+    public <T extends Entity> CompletableFuture<Collection<T>> loadAll(Class<T> clazz) {
+        return supply(() -> dao.loadAll(clazz));
+    }
+
+    public <T extends Entity> CompletableFuture<Long> count(Class<T> clazz, Map<String, ?> filters) {
+        return supply(() -> dao.count(clazz, filters));
+    }
+
+    public <T extends Entity> CompletableFuture<Boolean> exists(Class<T> clazz, Map<String, ?> filters) {
+        return supply(() -> dao.exists(clazz, filters));
+    }
+
+    public <T extends Entity> CompletableFuture<List<Aggregate>> aggregate(Aggregation<T> aggregation) {
+        return supply(() -> dao.aggregate(aggregation));
+    }
+
+    public CompletableFuture<User> getUserByEmail(String email) {
+        return supply(() -> dao.getUserByEmail(email));
+    }
+
+    public CompletableFuture<LaunchServiceProvider> getLSPByName(String name) {
+        return supply(() -> dao.getLSPByName(name));
+    }
+
+    public <T extends Entity> CompletableFuture<T> createOrUpdate(T entity) {
+        return supply(() -> dao.createOrUpdate(entity));
+    }
+
+    public <T extends Entity> CompletableFuture<Void> delete(T entity) {
+        return supply(() -> {
+            dao.delete(entity);
+            return null;
+        });
+    }
+
+    private <R> CompletableFuture<R> supply(Supplier<R> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            dao.openSession();
+            try {
+                return call.get();
+            } finally {
+                dao.closeSession();
+            }
+        }, executor);
+    }
+
+    /**
+     * Stops accepting calls; calls already submitted still complete. The underlying DAO is left
+     * open.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
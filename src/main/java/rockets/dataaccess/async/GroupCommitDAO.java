@@ -0,0 +1,323 @@
+package rockets.dataaccess.async;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rockets.dataaccess.Aggregate;
+import rockets.dataaccess.Aggregation;
+import rockets.dataaccess.DAO;
+import rockets.dataaccess.EntityGraph;
+import rockets.dataaccess.EntityView;
+import rockets.dataaccess.Page;
+import rockets.dataaccess.PageRequest;
+import rockets.dataaccess.event.ChangeEvent;
+import rockets.dataaccess.event.ChangeListener;
+import rockets.model.Entity;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.User;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Write-behind mode for another {@link DAO}: writes submitted by concurrent callers are collected
+ * for up to a time window or a maximum batch size, whichever comes first, and saved together with
+ * {@link DAO#createOrUpdateAll(Collection)}, so that many writes share one commit. Each caller's
+ * future completes once the batch holding its write has been committed.
+ * <p>
+ * If a batch fails, its entities get back the ids they had before it and its writes are retried
+ * one by one, so that only the failing ones fail. A batch is one commit only while its graph fits
+ * in one transaction of the underlying DAO, e.g. {@link rockets.dataaccess.neo4j.Neo4jDAO}'s batch
+ * size; beyond that, its transactions commit separately and retried writes merge into the nodes
+ * they committed. An {@link Error} fails the writes of its batch without retries, and the writer
+ * goes on with the next batch. {@link #createOrUpdate(Entity)} waits for its batch; reads go
+ * straight to the underlying DAO.
+ * <p>
+ * At most a given number of writes wait in the queue; beyond that, submitting blocks until the
+ * writer catches up.
+ */
+public class GroupCommitDAO implements DAO {
+    private static Logger logger = LoggerFactory.getLogger(GroupCommitDAO.class);
+    private static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+    private final DAO dao;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final BlockingQueue<Write<?>> queue;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    public GroupCommitDAO(DAO dao, long window, TimeUnit unit, int maxBatchSize) {
+        this(dao, window, unit, maxBatchSize, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param queueCapacity the most writes waiting for a batch before submitting blocks.
+     */
+    public GroupCommitDAO(DAO dao, long window, TimeUnit unit, int maxBatchSize, int queueCapacity) {
+        notNull(dao, "dao cannot be null");
+        isTrue(window >= 0, "window cannot be negative");
+        isTrue(maxBatchSize > 0, "batch size must be positive");
+        isTrue(queueCapacity > 0, "queue capacity must be positive");
+        this.dao = dao;
+        this.windowNanos = unit.toNanos(window);
+        this.maxBatchSize = maxBatchSize;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.writer = new Thread(this::run, "group-commit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues an entity to be saved with the next batch, waiting while the queue is full.
+     *
+     * @return a future of the saved entity, completed once its batch is committed.
+     */
+    public <T extends Entity> CompletableFuture<T> submit(T entity) {
+        notNull(entity, "entity cannot be null");
+        if (closed) {
+            throw new IllegalStateException("already closed");
+        }
+        Write<T> write = new Write<>(entity);
+        try {
+            queue.put(write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for room in the queue", e);
+        }
+        return write.future;
+    }
+
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity) {
+        try {
+            return submit(entity).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void run() {
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Write<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (null == first) {
+                    continue;
+                }
+                List<Write<?>> batch = new ArrayList<>();
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    Write<?> next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (null == next) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                try {
+                    commit(batch);
+                } catch (Throwable e) {
+                    // e.g. a StackOverflowError on a deep graph; the writer must outlive it
+                    logger.error("batch of " + batch.size() + " writes failed", e);
+                    batch.forEach(write -> write.future.completeExceptionally(e));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void commit(List<Write<?>> batch) {
+        dao.openSession();
+        List<Entity> entities = new ArrayList<>();
+        batch.forEach(write -> entities.add(write.entity));
+        // ids assigned to new entities by the failed batch must not make their retries look like updates
+        Map<Entity, Long> ids = new IdentityHashMap<>();
+        EntityGraph.collect(entities).forEach(entity -> ids.put(entity, entity.getId()));
+        try {
+            dao.createOrUpdateAll(entities);
+            batch.forEach(Write::complete);
+        } catch (RuntimeException e) {
+            logger.warn("batch of " + batch.size() + " writes failed, retrying them one by one", e);
+            ids.forEach(Entity::setId);
+            for (Write<?> write : batch) {
+                try {
+                    dao.createOrUpdate(write.entity);
+                    write.complete();
+                } catch (RuntimeException writeFailure) {
+                    write.future.completeExceptionally(writeFailure);
+                }
+            }
+        } finally {
+            dao.closeSession();
+        }
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities) {
+        return dao.createOrUpdateAll(entities);
+    }
+
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity, Consumer<ChangeEvent> changed) {
+        return dao.createOrUpdate(entity, changed);
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities, Consumer<ChangeEvent> changed) {
+        return dao.createOrUpdateAll(entities, changed);
+    }
+
+    @Override
+    public <T extends Entity> T load(Class<T> clazz, Long id) {
+        return dao.load(clazz, id);
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz) {
+        return dao.loadAll(clazz);
+    }
+
+    @Override
+    public <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids) {
+        return dao.loadAll(clazz, ids);
+    }
+
+    @Override
+    public <T extends Entity> Stream<T> stream(Class<T> clazz) {
+        return dao.stream(clazz);
+    }
+
+    @Override
+    public <T extends Entity> Page<T> loadPage(Class<T> clazz, PageRequest request) {
+        return dao.loadPage(clazz, request);
+    }
+
+    @Override
+    public <T extends Entity> Page<EntityView> loadPageView(Class<T> clazz, PageRequest request, String... fields) {
+        return dao.loadPageView(clazz, request, fields);
+    }
+
+    @Override
+    public <T extends Entity> void delete(T entity) {
+        dao.delete(entity);
+    }
+
+    @Override
+    public <T extends Entity> void delete(T entity, Consumer<ChangeEvent> deleted) {
+        dao.delete(entity, deleted);
+    }
+
+    @Override
+    public <T extends Entity> long deleteWhere(Class<T> clazz, Map<String, ?> filters, boolean cascade) {
+        return dao.deleteWhere(clazz, filters, cascade);
+    }
+
+    @Override
+    public <T extends Entity> long deleteWhere(Class<T> clazz, Map<String, ?> filters, boolean cascade,
+                                               Consumer<ChangeEvent> deleted) {
+        return dao.deleteWhere(clazz, filters, cascade, deleted);
+    }
+
+    @Override
+    public <T extends Entity> long count(Class<T> clazz, Map<String, ?> filters) {
+        return dao.count(clazz, filters);
+    }
+
+    @Override
+    public <T extends Entity> boolean exists(Class<T> clazz, Map<String, ?> filters) {
+        return dao.exists(clazz, filters);
+    }
+
+    @Override
+    public <T extends Entity> List<Aggregate> aggregate(Aggregation<T> aggregation) {
+        return dao.aggregate(aggregation);
+    }
+
+    @Override
+    public List<Launch> findLaunchesBetween(LocalDate from, LocalDate to) {
+        return dao.findLaunchesBetween(from, to);
+    }
+
+    @Override
+    public List<Launch> latestLaunches(int k) {
+        return dao.latestLaunches(k);
+    }
+
+    @Override
+    public User getUserByEmail(String email) {
+        return dao.getUserByEmail(email);
+    }
+
+    @Override
+    public LaunchServiceProvider getLSPByName(String name) {
+        return dao.getLSPByName(name);
+    }
+
+    @Override
+    public void addChangeListener(ChangeListener listener) {
+        dao.addChangeListener(listener);
+    }
+
+    @Override
+    public void removeChangeListener(ChangeListener listener) {
+        dao.removeChangeListener(listener);
+    }
+
+    @Override
+    public void openSession() {
+        dao.openSession();
+    }
+
+    @Override
+    public void closeSession() {
+        dao.closeSession();
+    }
+
+    /**
+     * Commits the writes still queued, then closes the underlying DAO.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // writes that raced with closing
+        for (Write<?> write = queue.poll(); null != write; write = queue.poll()) {
+            write.future.completeExceptionally(new IllegalStateException("already closed"));
+        }
+        dao.close();
+    }
+
+    private static final class Write<T extends Entity> {
+        private final T entity;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Write(T entity) {
+            this.entity = entity;
+        }
+
+        private void complete() {
+            future.complete(entity);
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package rockets.dataaccess.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import rockets.dataaccess.Aggregate;
+import rockets.dataaccess.Aggregation;
+import rockets.dataaccess.DAO;
+import rockets.dataaccess.EntityGraph;
+import rockets.dataaccess.EntityView;
+import rockets.dataaccess.Page;
+import rockets.dataaccess.PageRequest;
+import rockets.dataaccess.event.ChangeEvent;
+import rockets.dataaccess.event.ChangeListener;
+import rockets.model.*;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * A read-through cache in front of another {@link DAO}. Single entities are cached by class and
+ * id, and user emails and launch service provider names are cached as secondary keys to those
+ * ids. Entries are evicted by size (least recently used first) and by age, and writes through
+ * this DAO invalidate the entities they touch, the cached entities that embed them, and their
+ * secondary keys, which are found through reverse indexes rather than a scan of the cache.
+ * <p>
+ * A value loaded while a write invalidated entries may predate the write, so it is only kept if
+ * no invalidation happened between the load and the put.
+ * <p>
+ * Cached entities are shared between callers, so they must be treated as read-only.
+ */
+public class CachingDAO implements DAO {
+    private final DAO dao;
+    private final Cache<EntityKey, Entity> entities;
+    private final Cache<String, Long> userIdsByEmail;
+    private final Cache<String, Long> lspIdsByName;
+
+    // for each entity, the cached entities whose copies embed it as a neighbour
+    private final Map<EntityKey, Set<EntityKey>> embeddedIn = new ConcurrentHashMap<>();
+    // for each user and provider id, its cached secondary keys
+    private final Map<Long, Set<String>> emailsByUserId = new ConcurrentHashMap<>();
+    private final Map<Long, Set<String>> namesByLspId = new ConcurrentHashMap<>();
+    // incremented by every invalidation, to tell loads that raced with a write
+    private final AtomicLong generation = new AtomicLong();
+
+    public CachingDAO(DAO dao, long maximumSize, long timeToLive, TimeUnit unit) {
+        notNull(dao, "dao cannot be null");
+        this.dao = dao;
+        this.entities = newCache(maximumSize, timeToLive, unit,
+                removal -> forgetNeighbours(removal.getKey(), removal.getValue()));
+        this.userIdsByEmail = newCache(maximumSize, timeToLive, unit,
+                removal -> forget(emailsByUserId, removal.getValue(), removal.getKey()));
+        this.lspIdsByName = newCache(maximumSize, timeToLive, unit,
+                removal -> forget(namesByLspId, removal.getValue(), removal.getKey()));
+    }
+
+    private static <K, V> Cache<K, V> newCache(long maximumSize, long timeToLive, TimeUnit unit,
+                                               RemovalListener<K, V> listener) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive, unit)
+                .recordStats()
+                .removalListener(listener)
+                .build();
+    }
+
+    @Override
+    public <T extends Entity> T load(Class<T> clazz, Long id) {
+        EntityKey key = new EntityKey(clazz, id);
+        Entity entity = entities.getIfPresent(key);
+        if (null == entity) {
+            long loadedAt = generation.get();
+            entity = dao.load(clazz, id);
+            if (null != entity) {
+                populate(key, entity, loadedAt);
+            }
+        }
+        return clazz.cast(entity);
+    }
+
+    @Override
+    public User getUserByEmail(String email) {
+        Long id = userIdsByEmail.getIfPresent(email);
+        if (null != id) {
+            User user = load(User.class, id);
+            if (null != user) {
+                return user;
+            }
+        }
+        long loadedAt = generation.get();
+        User user = dao.getUserByEmail(email);
+        if (null != user && populate(new EntityKey(User.class, user.getId()), user, loadedAt)) {
+            populate(userIdsByEmail, emailsByUserId, email, user.getId(), loadedAt);
+        }
+        return user;
+    }
+
+    @Override
+    public LaunchServiceProvider getLSPByName(String name) {
+        Long id = lspIdsByName.getIfPresent(name);
+        if (null != id) {
+            LaunchServiceProvider lsp = load(LaunchServiceProvider.class, id);
+            if (null != lsp) {
+                return lsp;
+            }
+        }
+        long loadedAt = generation.get();
+        LaunchServiceProvider lsp = dao.getLSPByName(name);
+        if (null != lsp && populate(new EntityKey(LaunchServiceProvider.class, lsp.getId()), lsp, loadedAt)) {
+            populate(lspIdsByName, namesByLspId, name, lsp.getId(), loadedAt);
+        }
+        return lsp;
+    }
+
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity) {
+        try {
+            return dao.createOrUpdate(entity);
+        } finally {
+            invalidate(entity);
+        }
+    }
+
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity, Consumer<ChangeEvent> changed) {
+        try {
+            return dao.createOrUpdate(entity, changed);
+        } finally {
+            invalidate(entity);
+        }
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities) {
+        try {
+            return dao.createOrUpdateAll(entities);
+        } finally {
+            entities.forEach(this::invalidate);
+        }
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities, Consumer<ChangeEvent> changed) {
+        try {
+            return dao.createOrUpdateAll(entities, changed);
+        } finally {
+            entities.forEach(this::invalidate);
+        }
+    }
+
+    @Override
+    public <T extends Entity> void delete(T entity) {
+        try {
+            dao.delete(entity);
+        } finally {
+            invalidate(entity);
+        }
+    }
+
+    @Override
+    public <T extends Entity> void delete(T entity, Consumer<ChangeEvent> deleted) {
+        try {
+            dao.delete(entity, deleted);
+        } finally {
+            invalidate(entity);
+        }
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz) {
+        return dao.loadAll(clazz);
+    }
+
+    /**
+     * Serves cached entities directly and loads only the misses from the underlying DAO, in one
+     * call.
+     */
+    @Override
+    public <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids) {
+        Map<Long, T> found = new HashMap<>();
+        Set<Long> misses = new LinkedHashSet<>();
+        for (Long id : ids) {
+            Entity entity = entities.getIfPresent(new EntityKey(clazz, id));
+            if (null != entity) {
+                found.put(id, clazz.cast(entity));
+            } else {
+                misses.add(id);
+            }
+        }
+        if (!misses.isEmpty()) {
+            long loadedAt = generation.get();
+            for (T entity : dao.loadAll(clazz, misses)) {
+                populate(new EntityKey(clazz, entity.getId()), entity, loadedAt);
+                found.put(entity.getId(), entity);
+            }
+        }
+
+        List<T> result = new ArrayList<>();
+        for (Long id : ids) {
+            if (found.containsKey(id)) {
+                result.add(found.get(id));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public <T extends Entity> Stream<T> stream(Class<T> clazz) {
+        return dao.stream(clazz);
+    }
+
+    @Override
+    public <T extends Entity> Page<T> loadPage(Class<T> clazz, PageRequest request) {
+        return dao.loadPage(clazz, request);
+    }
+
+    @Override
+    public <T extends Entity> Page<EntityView> loadPageView(Class<T> clazz, PageRequest request, String... fields) {
+        return dao.loadPageView(clazz, request, fields);
+    }
+
+    /**
+     * Invalidates the entities the underlying DAO reports deleting, cascades included.
+     */
+    @Override
+    public <T extends Entity> long deleteWhere(Class<T> clazz, Map<String, ?> filters, boolean cascade) {
+        return deleteWhere(clazz, filters, cascade, event -> {
+        });
+    }
+
+    @Override
+    public <T extends Entity> long deleteWhere(Class<T> clazz, Map<String, ?> filters, boolean cascade,
+                                               Consumer<ChangeEvent> deleted) {
+        List<EntityKey> keys = new ArrayList<>();
+        try {
+            return dao.deleteWhere(clazz, filters, cascade, event -> {
+                if (ChangeEvent.Type.DELETED == event.getType()) {
+                    keys.add(new EntityKey(event.getEntityClass(), event.getId()));
+                }
+                deleted.accept(event);
+            });
+        } finally {
+            generation.incrementAndGet();
+            keys.forEach(this::invalidate);
+        }
+    }
+
+    @Override
+    public <T extends Entity> long count(Class<T> clazz, Map<String, ?> filters) {
+        return dao.count(clazz, filters);
+    }
+
+    @Override
+    public <T extends Entity> boolean exists(Class<T> clazz, Map<String, ?> filters) {
+        return dao.exists(clazz, filters);
+    }
+
+    @Override
+    public <T extends Entity> List<Aggregate> aggregate(Aggregation<T> aggregation) {
+        return dao.aggregate(aggregation);
+    }
+
+    @Override
+    public List<Launch> findLaunchesBetween(LocalDate from, LocalDate to) {
+        return dao.findLaunchesBetween(from, to);
+    }
+
+    @Override
+    public List<Launch> latestLaunches(int k) {
+        return dao.latestLaunches(k);
+    }
+
+    @Override
+    public void addChangeListener(ChangeListener listener) {
+        dao.addChangeListener(listener);
+    }
+
+    @Override
+    public void removeChangeListener(ChangeListener listener) {
+        dao.removeChangeListener(listener);
+    }
+
+    @Override
+    public void openSession() {
+        dao.openSession();
+    }
+
+    @Override
+    public void closeSession() {
+        dao.closeSession();
+    }
+
+    @Override
+    public void close() {
+        invalidateAll();
+        dao.close();
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entities.invalidateAll();
+        userIdsByEmail.invalidateAll();
+        lspIdsByName.invalidateAll();
+    }
+
+    /**
+     * @return hits, misses and evictions of entity lookups by class and id.
+     */
+    public CacheStats entityStats() {
+        return entities.stats();
+    }
+
+    /**
+     * @return hits, misses and evictions of lookups by user email and launch service provider name.
+     */
+    public CacheStats secondaryKeyStats() {
+        return userIdsByEmail.stats().plus(lspIdsByName.stats());
+    }
+
+    // Caches an entity loaded at the given generation, unless an invalidation has happened since;
+    // checked again after the put, as an invalidation may slip in between
+    private boolean populate(EntityKey key, Entity entity, long loadedAt) {
+        if (generation.get() != loadedAt) {
+            return false;
+        }
+        entities.put(key, entity);
+        for (Entity neighbour : EntityGraph.neighbours(entity)) {
+            if (null != neighbour && null != neighbour.getId()) {
+                remember(embeddedIn, new EntityKey(neighbour.getClass(), neighbour.getId()), key);
+            }
+        }
+        if (generation.get() != loadedAt) {
+            entities.invalidate(key);
+            return false;
+        }
+        return true;
+    }
+
+    private void populate(Cache<String, Long> ids, Map<Long, Set<String>> keysById, String key, Long id,
+                          long loadedAt) {
+        ids.put(key, id);
+        remember(keysById, id, key);
+        if (generation.get() != loadedAt) {
+            ids.invalidate(key);
+        }
+    }
+
+    // Drops the entity, the entities loaded alongside it and the cached entities embedding it
+    private void invalidate(Entity entity) {
+        if (null == entity) {
+            return;
+        }
+        generation.incrementAndGet();
+        List<Entity> touched = new ArrayList<>();
+        touched.add(entity);
+        touched.addAll(EntityGraph.neighbours(entity));
+        for (Entity e : touched) {
+            if (null != e && null != e.getId()) {
+                invalidate(new EntityKey(e.getClass(), e.getId()));
+            }
+        }
+    }
+
+    private void invalidate(EntityKey key) {
+        entities.invalidate(key);
+        Set<EntityKey> embedding = embeddedIn.remove(key);
+        if (null != embedding) {
+            entities.invalidateAll(embedding);
+        }
+        if (User.class.equals(key.clazz)) {
+            invalidateKeys(userIdsByEmail, emailsByUserId, key.id);
+        } else if (LaunchServiceProvider.class.equals(key.clazz)) {
+            invalidateKeys(lspIdsByName, namesByLspId, key.id);
+        }
+    }
+
+    private static void invalidateKeys(Cache<String, Long> ids, Map<Long, Set<String>> keysById, Long id) {
+        Set<String> keys = keysById.remove(id);
+        if (null != keys) {
+            ids.invalidateAll(keys);
+        }
+    }
+
+    // Forgets that a cached entity embeds its neighbours, once it leaves the cache
+    private void forgetNeighbours(EntityKey key, Entity entity) {
+        if (null == key || null == entity) {
+            return;
+        }
+        for (Entity neighbour : EntityGraph.neighbours(entity)) {
+            if (null != neighbour && null != neighbour.getId()) {
+                forget(embeddedIn, new EntityKey(neighbour.getClass(), neighbour.getId()), key);
+            }
+        }
+    }
+
+    private static <K, V> void remember(Map<K, Set<V>> index, K key, V value) {
+        index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(value);
+    }
+
+    private static <K, V> void forget(Map<K, Set<V>> index, K key, V value) {
+        if (null == key || null == value) {
+            return;
+        }
+        index.computeIfPresent(key, (k, values) -> {
+            values.remove(value);
+            return values.isEmpty() ? null : values;
+        });
+    }
+
+    private static final class EntityKey {
+        private final Class<?> clazz;
+        private final Long id;
+
+        private EntityKey(Class<?> clazz, Long id) {
+            this.clazz = clazz;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            EntityKey that = (EntityKey) o;
+            return clazz.equals(that.clazz) && Objects.equals(id, that.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(clazz, id);
+        }
+    }
+}
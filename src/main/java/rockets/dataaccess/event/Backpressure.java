@@ -0,0 +1,19 @@
+package rockets.dataaccess.event;
+
+/**
+ * What a write does when the queue of undelivered change events is full.
+ */
+public enum Backpressure {
+    /**
+     * The writer waits until listeners have caught up, so no event is lost.
+     */
+    BLOCK,
+    /**
+     * The new event is dropped.
+     */
+    DROP_NEWEST,
+    /**
+     * The oldest undelivered event is dropped to make room for the new one.
+     */
+    DROP_OLDEST
+}
@@ -0,0 +1,72 @@
+package rockets.dataaccess.event;
+
+import rockets.model.Entity;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * One committed change to a stored entity. Values are the entity's node properties as the graph
+ * stores them, copied when the event was created, so they do not change with the entity.
+ */
+public final class ChangeEvent {
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    private final Type type;
+    private final Class<? extends Entity> entityClass;
+    private final long id;
+    private final Map<String, Object> oldValues;
+    private final Map<String, Object> newValues;
+
+    public ChangeEvent(Type type, Class<? extends Entity> entityClass, long id,
+                       Map<String, Object> oldValues, Map<String, Object> newValues) {
+        notNull(type, "type cannot be null");
+        notNull(entityClass, "entity class cannot be null");
+        this.type = type;
+        this.entityClass = entityClass;
+        this.id = id;
+        this.oldValues = copy(oldValues);
+        this.newValues = copy(newValues);
+    }
+
+    private static Map<String, Object> copy(Map<String, Object> values) {
+        return null == values ? null : Collections.unmodifiableMap(new HashMap<>(values));
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Class<? extends Entity> getEntityClass() {
+        return entityClass;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return the values before the change; null for a created entity, and for an entity an in-memory
+     * store was handed back as the very instance it stores, which has no other copy of them.
+     */
+    public Map<String, Object> getOldValues() {
+        return oldValues;
+    }
+
+    /**
+     * @return the values after the change; null for a deleted entity.
+     */
+    public Map<String, Object> getNewValues() {
+        return newValues;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + entityClass.getSimpleName() + "#" + id;
+    }
+}
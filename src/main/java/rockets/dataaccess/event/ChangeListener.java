@@ -0,0 +1,10 @@
+package rockets.dataaccess.event;
+
+/**
+ * Receives the changes committed through a DAO. Listeners are called one event at a time, in
+ * commit order, on a thread of their own, never on the thread that made the change.
+ */
+@FunctionalInterface
+public interface ChangeListener {
+    void onChange(ChangeEvent event);
+}
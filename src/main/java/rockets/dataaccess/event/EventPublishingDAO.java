@@ -0,0 +1,307 @@
+package rockets.dataaccess.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rockets.dataaccess.Aggregate;
+import rockets.dataaccess.Aggregation;
+import rockets.dataaccess.DAO;
+import rockets.dataaccess.EntityView;
+import rockets.dataaccess.Page;
+import rockets.dataaccess.PageRequest;
+import rockets.model.Entity;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.User;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Publishes the changes made through another {@link DAO} to {@link ChangeListener}s. Events are
+ * queued once the underlying write has returned, i.e. after it was committed, and delivered by a
+ * single dispatcher thread. The queue is bounded; when listeners fall behind, the
+ * {@link Backpressure} policy decides whether writers wait or events are dropped.
+ * <p>
+ * Saving an entity reports every entity of its graph that was created or whose values changed, as
+ * the underlying DAO reports them from its write transaction, so old values are those the write
+ * replaced. Deletes are reported the same way. The underlying DAO is asked for reports only while
+ * listeners are registered.
+ */
+public class EventPublishingDAO implements DAO {
+    private static Logger logger = LoggerFactory.getLogger(EventPublishingDAO.class);
+
+    private final DAO dao;
+    private final Backpressure backpressure;
+    private final BlockingQueue<ChangeEvent> queue;
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    public EventPublishingDAO(DAO dao, int capacity, Backpressure backpressure) {
+        notNull(dao, "dao cannot be null");
+        notNull(backpressure, "backpressure cannot be null");
+        isTrue(capacity > 0, "capacity must be positive");
+        this.dao = dao;
+        this.backpressure = backpressure;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.dispatcher = new Thread(this::run, "change-event-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    @Override
+    public void addChangeListener(ChangeListener listener) {
+        notNull(listener, "listener cannot be null");
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return the number of events dropped because the queue was full.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * With listeners registered, has the underlying DAO report the changes it makes, with the old
+     * values it read in its write transaction, instead of reading them beforehand.
+     */
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity) {
+        if (listeners.isEmpty()) {
+            return dao.createOrUpdate(entity);
+        }
+        return dao.createOrUpdate(entity, this::publish);
+    }
+
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity, Consumer<ChangeEvent> changed) {
+        notNull(changed, "changed cannot be null");
+        return dao.createOrUpdate(entity, event -> {
+            changed.accept(event);
+            if (!listeners.isEmpty()) {
+                publish(event);
+            }
+        });
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities) {
+        if (listeners.isEmpty()) {
+            return dao.createOrUpdateAll(entities);
+        }
+        return dao.createOrUpdateAll(entities, this::publish);
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities, Consumer<ChangeEvent> changed) {
+        notNull(changed, "changed cannot be null");
+        return dao.createOrUpdateAll(entities, event -> {
+            changed.accept(event);
+            if (!listeners.isEmpty()) {
+                publish(event);
+            }
+        });
+    }
+
+    @Override
+    public <T extends Entity> void delete(T entity) {
+        if (listeners.isEmpty()) {
+            dao.delete(entity);
+        } else {
+            dao.delete(entity, this::publish);
+        }
+    }
+
+    @Override
+    public <T extends Entity> void delete(T entity, Consumer<ChangeEvent> deleted) {
+        notNull(deleted, "deleted cannot be null");
+        dao.delete(entity, event -> {
+            deleted.accept(event);
+            if (!listeners.isEmpty()) {
+                publish(event);
+            }
+        });
+    }
+
+    /**
+     * With listeners registered, has the underlying DAO report the values of the entities it
+     * deletes, chunk by chunk, instead of reading them beforehand.
+     */
+    @Override
+    public <T extends Entity> long deleteWhere(Class<T> clazz, Map<String, ?> filters, boolean cascade) {
+        if (listeners.isEmpty()) {
+            return dao.deleteWhere(clazz, filters, cascade);
+        }
+        return dao.deleteWhere(clazz, filters, cascade, this::publish);
+    }
+
+    @Override
+    public <T extends Entity> long deleteWhere(Class<T> clazz, Map<String, ?> filters, boolean cascade,
+                                               Consumer<ChangeEvent> deleted) {
+        notNull(deleted, "deleted cannot be null");
+        return dao.deleteWhere(clazz, filters, cascade, event -> {
+            deleted.accept(event);
+            if (!listeners.isEmpty()) {
+                publish(event);
+            }
+        });
+    }
+
+    private void publish(ChangeEvent event) {
+        switch (backpressure) {
+            case BLOCK:
+                try {
+                    queue.put(event);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    drop(event);
+                }
+                break;
+            case DROP_NEWEST:
+                if (!queue.offer(event)) {
+                    drop(event);
+                }
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(event)) {
+                    ChangeEvent oldest = queue.poll();
+                    if (null != oldest) {
+                        drop(oldest);
+                    }
+                }
+                break;
+        }
+    }
+
+    private void drop(ChangeEvent event) {
+        dropped.incrementAndGet();
+        logger.warn("change event queue is full, dropped " + event);
+    }
+
+    private void run() {
+        while (!closed || !queue.isEmpty()) {
+            ChangeEvent event;
+            try {
+                event = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (null == event) {
+                continue;
+            }
+            for (ChangeListener listener : listeners) {
+                try {
+                    listener.onChange(event);
+                } catch (RuntimeException e) {
+                    logger.warn("change listener failed on " + event, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public <T extends Entity> T load(Class<T> clazz, Long id) {
+        return dao.load(clazz, id);
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz) {
+        return dao.loadAll(clazz);
+    }
+
+    @Override
+    public <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids) {
+        return dao.loadAll(clazz, ids);
+    }
+
+    @Override
+    public <T extends Entity> Stream<T> stream(Class<T> clazz) {
+        return dao.stream(clazz);
+    }
+
+    @Override
+    public <T extends Entity> Page<T> loadPage(Class<T> clazz, PageRequest request) {
+        return dao.loadPage(clazz, request);
+    }
+
+    @Override
+    public <T extends Entity> Page<EntityView> loadPageView(Class<T> clazz, PageRequest request, String... fields) {
+        return dao.loadPageView(clazz, request, fields);
+    }
+
+    @Override
+    public <T extends Entity> long count(Class<T> clazz, Map<String, ?> filters) {
+        return dao.count(clazz, filters);
+    }
+
+    @Override
+    public <T extends Entity> boolean exists(Class<T> clazz, Map<String, ?> filters) {
+        return dao.exists(clazz, filters);
+    }
+
+    @Override
+    public <T extends Entity> List<Aggregate> aggregate(Aggregation<T> aggregation) {
+        return dao.aggregate(aggregation);
+    }
+
+    @Override
+    public List<Launch> findLaunchesBetween(LocalDate from, LocalDate to) {
+        return dao.findLaunchesBetween(from, to);
+    }
+
+    @Override
+    public List<Launch> latestLaunches(int k) {
+        return dao.latestLaunches(k);
+    }
+
+    @Override
+    public User getUserByEmail(String email) {
+        return dao.getUserByEmail(email);
+    }
+
+    @Override
+    public LaunchServiceProvider getLSPByName(String name) {
+        return dao.getLSPByName(name);
+    }
+
+    @Override
+    public void openSession() {
+        dao.openSession();
+    }
+
+    @Override
+    public void closeSession() {
+        dao.closeSession();
+    }
+
+    /**
+     * Delivers the events still queued, then closes the underlying DAO.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dao.close();
+    }
+}
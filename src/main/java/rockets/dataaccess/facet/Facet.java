@@ -0,0 +1,46 @@
+package rockets.dataaccess.facet;
+
+import rockets.model.Launch;
+
+/**
+ * A property launches are filtered by. Each facet value has a bitmap of the launches that have it
+ * in a {@link LaunchFacetIndex}.
+ */
+public enum Facet {
+    ORBIT, OUTCOME, SITE, YEAR, ROCKET_COUNTRY;
+
+    /**
+     * @return the launch's value of this facet, as {@link #key(Object)} would give it, or null.
+     */
+    Object of(Launch launch) {
+        switch (this) {
+            case ORBIT:
+                return launch.getOrbit();
+            case OUTCOME:
+                return key(launch.getLaunchOutcome());
+            case SITE:
+                return launch.getLaunchSite();
+            case YEAR:
+                return null == launch.getLaunchDate() ? null : launch.getLaunchDate().getYear();
+            case ROCKET_COUNTRY:
+                return null == launch.getLaunchVehicle() ? null : launch.getLaunchVehicle().getCountry();
+            default:
+                throw new IllegalStateException("unknown facet " + this);
+        }
+    }
+
+    /**
+     * Turns a value given in a query into the one launches are indexed by: outcomes are their
+     * names, years integers, and everything else a string, so that values parsed from a request
+     * match as well.
+     */
+    Object key(Object value) {
+        if (null == value) {
+            return null;
+        }
+        if (YEAR == this) {
+            return value instanceof Number ? ((Number) value).intValue() : Integer.valueOf(value.toString());
+        }
+        return value instanceof Enum ? ((Enum<?>) value).name() : value.toString();
+    }
+}
@@ -0,0 +1,227 @@
+package rockets.dataaccess.facet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rockets.dataaccess.Aggregate;
+import rockets.dataaccess.Aggregation;
+import rockets.dataaccess.DAO;
+import rockets.dataaccess.EntityGraph;
+import rockets.dataaccess.EntityView;
+import rockets.dataaccess.Page;
+import rockets.dataaccess.PageRequest;
+import rockets.dataaccess.event.ChangeEvent;
+import rockets.dataaccess.event.ChangeListener;
+import rockets.model.*;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Keeps a {@link LaunchFacetIndex} of the launches of another {@link DAO} up to date with the
+ * writes made through this DAO. The index is built from the underlying DAO when this DAO is
+ * created. Saving re-indexes every launch and rocket saved along. Deletes follow the entities the
+ * underlying DAO reports deleting, cascades included, so the index is never rebuilt for them.
+ * Reads go to the underlying DAO.
+ */
+public class FacetIndexingDAO implements DAO {
+    private static Logger logger = LoggerFactory.getLogger(FacetIndexingDAO.class);
+
+    private final DAO dao;
+    private final LaunchFacetIndex facets = new LaunchFacetIndex();
+
+    public FacetIndexingDAO(DAO dao) {
+        notNull(dao, "dao cannot be null");
+        this.dao = dao;
+        rebuild();
+    }
+
+    /**
+     * @return the index, for faceted queries on the launches.
+     */
+    public LaunchFacetIndex getFacets() {
+        return facets;
+    }
+
+    /**
+     * Indexes all launches of the underlying DAO again, e.g. after it was written to directly.
+     */
+    public void rebuild() {
+        long start = System.nanoTime();
+        try (Stream<Launch> launches = dao.stream(Launch.class)) {
+            facets.reindex(launches);
+        }
+        logger.info("indexed the facets of " + facets.size() + " launches in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    @Override
+    public <T extends Entity> T load(Class<T> clazz, Long id) {
+        return dao.load(clazz, id);
+    }
+
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity) {
+        T saved = dao.createOrUpdate(entity);
+        facets.index(EntityGraph.collect(Collections.singletonList(entity)));
+        return saved;
+    }
+
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity, Consumer<ChangeEvent> changed) {
+        T saved = dao.createOrUpdate(entity, changed);
+        facets.index(EntityGraph.collect(Collections.singletonList(entity)));
+        return saved;
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities) {
+        Collection<T> saved = dao.createOrUpdateAll(entities);
+        facets.index(EntityGraph.collect(entities));
+        return saved;
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities, Consumer<ChangeEvent> changed) {
+        Collection<T> saved = dao.createOrUpdateAll(entities, changed);
+        facets.index(EntityGraph.collect(entities));
+        return saved;
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz) {
+        return dao.loadAll(clazz);
+    }
+
+    @Override
+    public <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids) {
+        return dao.loadAll(clazz, ids);
+    }
+
+    @Override
+    public <T extends Entity> Stream<T> stream(Class<T> clazz) {
+        return dao.stream(clazz);
+    }
+
+    @Override
+    public <T extends Entity> Page<T> loadPage(Class<T> clazz, PageRequest request) {
+        return dao.loadPage(clazz, request);
+    }
+
+    @Override
+    public <T extends Entity> Page<EntityView> loadPageView(Class<T> clazz, PageRequest request, String... fields) {
+        return dao.loadPageView(clazz, request, fields);
+    }
+
+    @Override
+    public <T extends Entity> void delete(T entity) {
+        Long id = entity.getId();
+        dao.delete(entity);
+        if (null != id) {
+            remove(entity.getClass(), id);
+        }
+    }
+
+    @Override
+    public <T extends Entity> void delete(T entity, Consumer<ChangeEvent> deleted) {
+        Long id = entity.getId();
+        dao.delete(entity, deleted);
+        if (null != id) {
+            remove(entity.getClass(), id);
+        }
+    }
+
+    @Override
+    public <T extends Entity> long deleteWhere(Class<T> clazz, Map<String, ?> filters, boolean cascade) {
+        return dao.deleteWhere(clazz, filters, cascade, this::removeDeleted);
+    }
+
+    @Override
+    public <T extends Entity> long deleteWhere(Class<T> clazz, Map<String, ?> filters, boolean cascade,
+                                               Consumer<ChangeEvent> deleted) {
+        return dao.deleteWhere(clazz, filters, cascade, event -> {
+            removeDeleted(event);
+            deleted.accept(event);
+        });
+    }
+
+    private void removeDeleted(ChangeEvent event) {
+        if (ChangeEvent.Type.DELETED == event.getType()) {
+            remove(event.getEntityClass(), event.getId());
+        }
+    }
+
+    // A deleted launch leaves the index; a deleted rocket leaves its remaining launches without a country
+    private void remove(Class<? extends Entity> clazz, Long id) {
+        if (Launch.class.equals(clazz)) {
+            facets.remove(id);
+        } else if (Rocket.class.equals(clazz)) {
+            facets.removeRocket(id);
+        }
+    }
+
+    @Override
+    public <T extends Entity> long count(Class<T> clazz, Map<String, ?> filters) {
+        return dao.count(clazz, filters);
+    }
+
+    @Override
+    public <T extends Entity> boolean exists(Class<T> clazz, Map<String, ?> filters) {
+        return dao.exists(clazz, filters);
+    }
+
+    @Override
+    public <T extends Entity> List<Aggregate> aggregate(Aggregation<T> aggregation) {
+        return dao.aggregate(aggregation);
+    }
+
+    @Override
+    public List<Launch> findLaunchesBetween(LocalDate from, LocalDate to) {
+        return dao.findLaunchesBetween(from, to);
+    }
+
+    @Override
+    public List<Launch> latestLaunches(int k) {
+        return dao.latestLaunches(k);
+    }
+
+    @Override
+    public User getUserByEmail(String email) {
+        return dao.getUserByEmail(email);
+    }
+
+    @Override
+    public LaunchServiceProvider getLSPByName(String name) {
+        return dao.getLSPByName(name);
+    }
+
+    @Override
+    public void addChangeListener(ChangeListener listener) {
+        dao.addChangeListener(listener);
+    }
+
+    @Override
+    public void removeChangeListener(ChangeListener listener) {
+        dao.removeChangeListener(listener);
+    }
+
+    @Override
+    public void openSession() {
+        dao.openSession();
+    }
+
+    @Override
+    public void closeSession() {
+        dao.closeSession();
+    }
+
+    @Override
+    public void close() {
+        facets.clear();
+        dao.close();
+    }
+}
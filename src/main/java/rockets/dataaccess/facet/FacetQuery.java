@@ -0,0 +1,118 @@
+package rockets.dataaccess.facet;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * A filter on launch facets that a {@link LaunchFacetIndex} answers by combining bitmaps: a facet
+ * value matches the launches that have it, {@link #and(FacetQuery)} intersects and
+ * {@link #or(FacetQuery)} unites, e.g.
+ * {@code FacetQuery.anyOf(Facet.ORBIT, "LEO", "SSO").and(FacetQuery.is(Facet.YEAR, 2018))}.
+ * Queries are immutable.
+ */
+public final class FacetQuery {
+    enum Operator {
+        ALL, IS, AND, OR
+    }
+
+    private static final FacetQuery ALL = new FacetQuery(Operator.ALL, null, null, ImmutableList.of());
+
+    private final Operator operator;
+    private final Facet facet;
+    private final Object value;
+    private final List<FacetQuery> operands;
+
+    private FacetQuery(Operator operator, Facet facet, Object value, List<FacetQuery> operands) {
+        this.operator = operator;
+        this.facet = facet;
+        this.value = value;
+        this.operands = operands;
+    }
+
+    /**
+     * @return a query matching every launch.
+     */
+    public static FacetQuery all() {
+        return ALL;
+    }
+
+    /**
+     * @return a query matching the launches whose facet has the value.
+     */
+    public static FacetQuery is(Facet facet, Object value) {
+        notNull(facet, "facet cannot be null");
+        notNull(value, "value cannot be null");
+        return new FacetQuery(Operator.IS, facet, facet.key(value), ImmutableList.of());
+    }
+
+    /**
+     * @return a query matching the launches whose facet has any of the values.
+     */
+    public static FacetQuery anyOf(Facet facet, Object... values) {
+        notEmpty(values, "values cannot be empty");
+        FacetQuery query = is(facet, values[0]);
+        for (Object value : Arrays.asList(values).subList(1, values.length)) {
+            query = query.or(is(facet, value));
+        }
+        return query;
+    }
+
+    public FacetQuery and(FacetQuery other) {
+        return combine(Operator.AND, other);
+    }
+
+    public FacetQuery or(FacetQuery other) {
+        return combine(Operator.OR, other);
+    }
+
+    // operands of the same operator are flattened into one node
+    private FacetQuery combine(Operator combined, FacetQuery other) {
+        notNull(other, "query cannot be null");
+        ImmutableList.Builder<FacetQuery> all = ImmutableList.builder();
+        for (FacetQuery query : Arrays.asList(this, other)) {
+            if (combined == query.operator) {
+                all.addAll(query.operands);
+            } else {
+                all.add(query);
+            }
+        }
+        return new FacetQuery(combined, null, null, all.build());
+    }
+
+    Operator getOperator() {
+        return operator;
+    }
+
+    Facet getFacet() {
+        return facet;
+    }
+
+    Object getValue() {
+        return value;
+    }
+
+    List<FacetQuery> getOperands() {
+        return operands;
+    }
+
+    @Override
+    public String toString() {
+        switch (operator) {
+            case ALL:
+                return "*";
+            case IS:
+                return facet + "=" + value;
+            default:
+                StringBuilder builder = new StringBuilder("(");
+                for (FacetQuery operand : operands) {
+                    builder.append(builder.length() > 1 ? " " + operator + " " : "").append(operand);
+                }
+                return builder.append(")").toString();
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package rockets.dataaccess.facet;
+
+import rockets.model.Entity;
+import rockets.model.Launch;
+import rockets.model.Rocket;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Indexes launches by {@link Facet} in process. Every indexed launch gets a dense ordinal, and
+ * every facet value a bitmap of the ordinals of the launches that have it, so that a
+ * {@link FacetQuery} costs a few bitmap intersections and unions over n bits instead of a scan of
+ * n launches. Ordinals of removed launches are handed out again, which keeps the bitmaps no
+ * longer than the number of launches.
+ * <p>
+ * A launch's rocket country is kept per rocket: when a rocket is indexed with another country,
+ * the bits of all its launches move with it. Queries share a lock that writes take exclusively.
+ */
+public class LaunchFacetIndex {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    private final List<Row> rows = new ArrayList<>();
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+    private final BitSet live = new BitSet();
+    private final Map<Facet, Map<Object, BitSet>> bitmaps = new EnumMap<>(Facet.class);
+    private final Map<Long, BitSet> launchesByRocket = new HashMap<>();
+    private final Map<Long, String> rocketCountries = new HashMap<>();
+
+    public LaunchFacetIndex() {
+        for (Facet facet : Facet.values()) {
+            bitmaps.put(facet, new HashMap<>());
+        }
+    }
+
+    /**
+     * Indexes the launches among the entities, replacing what was indexed for them before, and
+     * the countries of the rockets among them. Entities without an id are skipped.
+     */
+    public void index(Collection<? extends Entity> entities) {
+        notNull(entities);
+        write(() -> {
+            // rockets first, so that launches pick up the countries saved with them
+            for (Entity entity : entities) {
+                if (entity instanceof Rocket) {
+                    indexRocket((Rocket) entity);
+                }
+            }
+            for (Entity entity : entities) {
+                if (entity instanceof Launch) {
+                    indexLaunch((Launch) entity);
+                }
+            }
+        });
+    }
+
+    /**
+     * Replaces everything indexed by the given launches, in one step that queries do not see halfway.
+     */
+    public void reindex(Stream<Launch> launches) {
+        notNull(launches);
+        write(() -> {
+            clearAll();
+            launches.forEach(this::indexLaunch);
+        });
+    }
+
+    /**
+     * Removes the launch with the id, if it is indexed.
+     */
+    public void remove(Long id) {
+        notNull(id, "id cannot be null");
+        write(() -> {
+            Integer ordinal = ordinals.remove(id);
+            if (null != ordinal) {
+                unset(ordinal, rows.get(ordinal));
+                rows.set(ordinal, null);
+                live.clear(ordinal);
+                freeOrdinals.push(ordinal);
+            }
+        });
+    }
+
+    /**
+     * Forgets the rocket with the id, if it is indexed, and the country of the launches that
+     * remain without it.
+     */
+    public void removeRocket(Long id) {
+        notNull(id, "id cannot be null");
+        write(() -> {
+            rocketCountries.remove(id);
+            BitSet launches = launchesByRocket.remove(id);
+            if (null == launches) {
+                return;
+            }
+            for (int ordinal = launches.nextSetBit(0); ordinal >= 0; ordinal = launches.nextSetBit(ordinal + 1)) {
+                Row row = rows.get(ordinal);
+                unset(ordinal, row, Facet.ROCKET_COUNTRY);
+                row.rocket = null;
+            }
+        });
+    }
+
+    public void clear() {
+        write(this::clearAll);
+    }
+
+    /**
+     * @return the number of launches indexed.
+     */
+    public int size() {
+        return read(ordinals::size);
+    }
+
+    /**
+     * @return the number of launches the query matches.
+     */
+    public long count(FacetQuery query) {
+        notNull(query, "query cannot be null");
+        return read(() -> evaluate(query).cardinality());
+    }
+
+    /**
+     * @return the ids of the launches the query matches, in ascending order.
+     */
+    public List<Long> ids(FacetQuery query) {
+        notNull(query, "query cannot be null");
+        long[] ids = read(() -> {
+            BitSet matches = evaluate(query);
+            long[] matching = new long[matches.cardinality()];
+            int count = 0;
+            for (int ordinal = matches.nextSetBit(0); ordinal >= 0; ordinal = matches.nextSetBit(ordinal + 1)) {
+                matching[count++] = rows.get(ordinal).id;
+            }
+            return matching;
+        });
+        Arrays.sort(ids);
+        List<Long> sorted = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            sorted.add(id);
+        }
+        return sorted;
+    }
+
+    /**
+     * Counts the launches the query matches by their value of a facet, e.g. the countries of the
+     * launches to an orbit.
+     *
+     * @return the values with at least one matching launch and their counts, highest count first,
+     * ties broken by value in ascending order.
+     */
+    public Map<Object, Long> counts(Facet facet, FacetQuery query) {
+        notNull(facet, "facet cannot be null");
+        notNull(query, "query cannot be null");
+        List<Map.Entry<Object, Long>> counts = read(() -> {
+            BitSet matches = evaluate(query);
+            List<Map.Entry<Object, Long>> found = new ArrayList<>();
+            for (Map.Entry<Object, BitSet> bitmap : bitmaps.get(facet).entrySet()) {
+                BitSet both = (BitSet) bitmap.getValue().clone();
+                both.and(matches);
+                if (!both.isEmpty()) {
+                    found.add(new AbstractMap.SimpleImmutableEntry<>(bitmap.getKey(), (long) both.cardinality()));
+                }
+            }
+            return found;
+        });
+        counts.sort(Map.Entry.<Object, Long>comparingByValue().reversed()
+                .thenComparing(entry -> entry.getKey().toString()));
+        Map<Object, Long> ordered = new LinkedHashMap<>();
+        counts.forEach(entry -> ordered.put(entry.getKey(), entry.getValue()));
+        return ordered;
+    }
+
+    // Must hold the read lock; the result is a copy that may be modified
+    private BitSet evaluate(FacetQuery query) {
+        switch (query.getOperator()) {
+            case ALL:
+                return (BitSet) live.clone();
+            case IS:
+                BitSet bitmap = bitmaps.get(query.getFacet()).get(query.getValue());
+                return null == bitmap ? new BitSet() : (BitSet) bitmap.clone();
+            case AND:
+                BitSet intersection = null;
+                for (FacetQuery operand : query.getOperands()) {
+                    if (null == intersection) {
+                        intersection = evaluate(operand);
+                    } else {
+                        intersection.and(evaluate(operand));
+                    }
+                    if (intersection.isEmpty()) {
+                        break;
+                    }
+                }
+                return intersection;
+            case OR:
+                BitSet union = new BitSet();
+                for (FacetQuery operand : query.getOperands()) {
+                    union.or(evaluate(operand));
+                }
+                return union;
+            default:
+                throw new IllegalArgumentException("unsupported query " + query);
+        }
+    }
+
+    // Must hold the write lock
+    private void indexLaunch(Launch launch) {
+        if (null == launch.getId()) {
+            return;
+        }
+        Integer ordinal = ordinals.get(launch.getId());
+        Row row;
+        if (null == ordinal) {
+            ordinal = freeOrdinals.isEmpty() ? rows.size() : freeOrdinals.pop();
+            row = new Row(launch.getId());
+            if (ordinal == rows.size()) {
+                rows.add(row);
+            } else {
+                rows.set(ordinal, row);
+            }
+            ordinals.put(launch.getId(), ordinal);
+            live.set(ordinal);
+        } else {
+            row = rows.get(ordinal);
+            unset(ordinal, row);
+        }
+
+        Rocket rocket = launch.getLaunchVehicle();
+        row.rocket = null == rocket ? null : rocket.getId();
+        if (null != row.rocket) {
+            indexRocket(rocket);
+            launchesByRocket.computeIfAbsent(row.rocket, id -> new BitSet()).set(ordinal);
+        }
+        for (Facet facet : Facet.values()) {
+            Object value = Facet.ROCKET_COUNTRY == facet && null != row.rocket
+                    ? rocketCountries.get(row.rocket) : facet.of(launch);
+            set(ordinal, row, facet, value);
+        }
+    }
+
+    // Must hold the write lock; moves the rocket's launches if its country changed
+    private void indexRocket(Rocket rocket) {
+        if (null == rocket.getId()) {
+            return;
+        }
+        String country = rocket.getCountry();
+        String previous = rocketCountries.put(rocket.getId(), country);
+        BitSet launches = launchesByRocket.get(rocket.getId());
+        if (null == launches || Objects.equals(previous, country)) {
+            return;
+        }
+        for (int ordinal = launches.nextSetBit(0); ordinal >= 0; ordinal = launches.nextSetBit(ordinal + 1)) {
+            Row row = rows.get(ordinal);
+            unset(ordinal, row, Facet.ROCKET_COUNTRY);
+            set(ordinal, row, Facet.ROCKET_COUNTRY, country);
+        }
+    }
+
+    private void set(int ordinal, Row row, Facet facet, Object value) {
+        row.values[facet.ordinal()] = value;
+        if (null != value) {
+            bitmaps.get(facet).computeIfAbsent(value, v -> new BitSet()).set(ordinal);
+        }
+    }
+
+    private void unset(int ordinal, Row row) {
+        for (Facet facet : Facet.values()) {
+            unset(ordinal, row, facet);
+        }
+        if (null != row.rocket) {
+            BitSet launches = launchesByRocket.get(row.rocket);
+            launches.clear(ordinal);
+            if (launches.isEmpty()) {
+                launchesByRocket.remove(row.rocket);
+            }
+        }
+    }
+
+    private void unset(int ordinal, Row row, Facet facet) {
+        Object value = row.values[facet.ordinal()];
+        if (null == value) {
+            return;
+        }
+        row.values[facet.ordinal()] = null;
+        Map<Object, BitSet> values = bitmaps.get(facet);
+        BitSet bitmap = values.get(value);
+        bitmap.clear(ordinal);
+        if (bitmap.isEmpty()) {
+            values.remove(value);
+        }
+    }
+
+    private void clearAll() {
+        ordinals.clear();
+        rows.clear();
+        freeOrdinals.clear();
+        live.clear();
+        bitmaps.values().forEach(Map::clear);
+        launchesByRocket.clear();
+        rocketCountries.clear();
+    }
+
+    private <R> R read(Supplier<R> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Runnable writer) {
+        lock.writeLock().lock();
+        try {
+            writer.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // what an ordinal was indexed with, to unset it again
+    private static final class Row {
+        private final long id;
+        private Long rocket;
+        private final Object[] values = new Object[Facet.values().length];
+
+        private Row(long id) {
+            this.id = id;
+        }
+    }
+}
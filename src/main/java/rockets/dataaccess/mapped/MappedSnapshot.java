@@ -0,0 +1,455 @@
+package rockets.dataaccess.mapped;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import rockets.dataaccess.DAO;
+import rockets.model.Entity;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+
+/**
+ * A read-only image of the launch service providers, rockets and launches of a store in a single
+ * file that is memory-mapped and read in place, so that opening it costs a few header reads no
+ * matter how large it is. Users are not part of it.
+ * <p>
+ * The file is big-endian: a header with a magic number, the format version and the length of each
+ * {@link Table}, then every {@link Column} in declaration order, each a fixed-width array with one
+ * value per row. Rows are sorted by id. Strings are stored once, in a sorted dictionary, and
+ * referred to by index; dates are epoch days, prices an unscaled long and a scale, and
+ * associations the row of the associated entity. To-many associations are kept as adjacency
+ * lists: the rows of the rockets of provider {@code p} are {@code LSP_ROCKETS[LSP_ROCKETS_START[p]]}
+ * up to {@code LSP_ROCKETS[LSP_ROCKETS_START[p + 1]]}, exclusive. {@code LAUNCHES_BY_DATE} holds the
+ * launch rows in date order, ties in id order, for range and latest-first queries.
+ */
+public final class MappedSnapshot {
+    static final int MAGIC = 0x524b5453; // "RKTS"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 8 + 4 * Table.values().length;
+
+    /** An absent string, association or launch outcome. */
+    static final int NULL = -1;
+    /** An absent date or price. */
+    static final int NULL_NUMBER = Integer.MIN_VALUE;
+
+    enum Table {
+        STRINGS, STRING_BYTES, LSPS, LSP_ROCKETS, ROCKETS, ROCKET_LAUNCHES, LAUNCHES, PAYLOADS, LAUNCHES_BY_DATE
+    }
+
+    enum Column {
+        STRING_OFFSETS(Table.STRINGS, 4, 1),
+        STRING_BYTES(Table.STRING_BYTES, 1, 0),
+
+        LSP_ID(Table.LSPS, 8),
+        LSP_NAME(Table.LSPS, 4),
+        LSP_YEAR_FOUNDED(Table.LSPS, 4),
+        LSP_COUNTRY(Table.LSPS, 4),
+        LSP_HEADQUARTERS(Table.LSPS, 4),
+        LSP_WIKILINK(Table.LSPS, 4),
+        LSP_ROCKETS_START(Table.LSPS, 4, 1),
+        LSP_ROCKETS(Table.LSP_ROCKETS, 4),
+
+        ROCKET_ID(Table.ROCKETS, 8),
+        ROCKET_NAME(Table.ROCKETS, 4),
+        ROCKET_COUNTRY(Table.ROCKETS, 4),
+        ROCKET_MANUFACTURER(Table.ROCKETS, 4),
+        ROCKET_MASS_TO_LEO(Table.ROCKETS, 4),
+        ROCKET_MASS_TO_GTO(Table.ROCKETS, 4),
+        ROCKET_MASS_TO_OTHER(Table.ROCKETS, 4),
+        ROCKET_FIRST_YEAR_FLIGHT(Table.ROCKETS, 4),
+        ROCKET_LATEST_YEAR_FLIGHT(Table.ROCKETS, 4),
+        ROCKET_WIKILINK(Table.ROCKETS, 4),
+        ROCKET_LAUNCHES_START(Table.ROCKETS, 4, 1),
+        ROCKET_LAUNCHES(Table.ROCKET_LAUNCHES, 4),
+
+        LAUNCH_ID(Table.LAUNCHES, 8),
+        LAUNCH_DATE(Table.LAUNCHES, 4),
+        LAUNCH_VEHICLE(Table.LAUNCHES, 4),
+        LAUNCH_SERVICE_PROVIDER(Table.LAUNCHES, 4),
+        LAUNCH_SITE(Table.LAUNCHES, 4),
+        LAUNCH_ORBIT(Table.LAUNCHES, 4),
+        LAUNCH_FUNCTION(Table.LAUNCHES, 4),
+        LAUNCH_OUTCOME(Table.LAUNCHES, 4),
+        LAUNCH_PRICE_UNSCALED(Table.LAUNCHES, 8),
+        LAUNCH_PRICE_SCALE(Table.LAUNCHES, 4),
+        LAUNCH_WIKILINK(Table.LAUNCHES, 4),
+        LAUNCH_PAYLOAD_START(Table.LAUNCHES, 4, 1),
+        LAUNCH_PAYLOAD(Table.PAYLOADS, 4),
+        LAUNCHES_BY_DATE(Table.LAUNCHES_BY_DATE, 4);
+
+        final Table table;
+        final int width;
+        // start columns of adjacency lists have a row more than their table
+        final int extraRows;
+
+        Column(Table table, int width) {
+            this(table, width, 0);
+        }
+
+        Column(Table table, int width, int extraRows) {
+            this.table = table;
+            this.width = width;
+            this.extraRows = extraRows;
+        }
+
+        int length(int[] tableLengths) {
+            return tableLengths[table.ordinal()] + extraRows;
+        }
+    }
+
+    // fields are set directly, as OGM does, since the setters reject values the store may hold
+    private static final ConcurrentMap<String, Field> FIELDS = new ConcurrentHashMap<>();
+
+    private final ByteBuffer buffer;
+    private final int[] lengths;
+    private final int[] positions = new int[Column.values().length];
+    private final String[] strings;
+
+    private MappedSnapshot(ByteBuffer buffer) {
+        this.buffer = buffer;
+        isTrue(buffer.capacity() >= HEADER_SIZE && MAGIC == buffer.getInt(0), "not a snapshot file");
+        isTrue(VERSION == buffer.getInt(4), "unsupported snapshot version %d", buffer.getInt(4));
+        lengths = new int[Table.values().length];
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = buffer.getInt(8 + 4 * i);
+        }
+        long position = HEADER_SIZE;
+        for (Column column : Column.values()) {
+            positions[column.ordinal()] = (int) position;
+            position += (long) column.width * column.length(lengths);
+        }
+        isTrue(position == buffer.capacity(), "truncated snapshot file");
+        strings = new String[length(Table.STRINGS)];
+    }
+
+    /**
+     * Maps a snapshot file. The mapping stays valid after the file is replaced by a newer snapshot,
+     * and is released once the snapshot is no longer referenced.
+     *
+     * @throws IllegalArgumentException if the file is not a complete snapshot.
+     */
+    public static MappedSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            isTrue(channel.size() <= Integer.MAX_VALUE, "snapshot file too large to map");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedSnapshot(buffer);
+        }
+    }
+
+    /**
+     * Writes the launch service providers, rockets and launches of a DAO to a snapshot file. The
+     * snapshot is written next to the file and then moved over it, so that readers see either the
+     * old or the new snapshot in full.
+     */
+    public static void write(DAO dao, Path file) throws IOException {
+        new MappedSnapshotWriter(dao).write(file);
+    }
+
+    public <T extends Entity> int size(Class<T> clazz) {
+        return length(table(clazz));
+    }
+
+    long id(Class<? extends Entity> clazz, int row) {
+        return getLong(idColumn(clazz), row);
+    }
+
+    /**
+     * @return the row of the entity with the id, or {@link #NULL} if there is none.
+     */
+    int row(Class<? extends Entity> clazz, long id) {
+        Column ids = idColumn(clazz);
+        int low = 0;
+        int high = length(ids.table) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleId = getLong(ids, middle);
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return NULL;
+    }
+
+    /**
+     * @return the rows whose string column holds the value, in row order.
+     */
+    int[] rowsWhere(Column column, String value) {
+        int index = stringIndex(value);
+        if (NULL == index) {
+            return new int[0];
+        }
+        int rows = length(column.table);
+        int[] matches = new int[rows];
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            if (getInt(column, row) == index) {
+                matches[count++] = row;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * @return the rows of the launches dated from one epoch day to another, inclusive, in date order.
+     */
+    int[] launchRowsBetween(long from, long to) {
+        int start = firstLaunchOnOrAfter(from);
+        int end = firstLaunchOnOrAfter(to + 1);
+        int[] rows = new int[Math.max(0, end - start)];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = getInt(Column.LAUNCHES_BY_DATE, start + i);
+        }
+        return rows;
+    }
+
+    /**
+     * @return the rows of the k latest launches, latest first, launches on the same day in id order.
+     */
+    int[] latestLaunchRows(int k) {
+        int[] rows = new int[Math.min(k, length(Table.LAUNCHES_BY_DATE))];
+        int count = 0;
+        int end = length(Table.LAUNCHES_BY_DATE);
+        // whole days from the latest end backwards, each of them read forwards to keep its id order
+        while (count < rows.length) {
+            int date = launchDate(end - 1);
+            if (NULL_NUMBER == date) {
+                break;
+            }
+            int start = firstLaunchOnOrAfter(date);
+            for (int i = start; i < end && count < rows.length; i++) {
+                rows[count++] = getInt(Column.LAUNCHES_BY_DATE, i);
+            }
+            end = start;
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    // binary search in the launches by date for the first one dated on or after the epoch day
+    private int firstLaunchOnOrAfter(long day) {
+        int low = 0;
+        int high = length(Table.LAUNCHES_BY_DATE);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int date = launchDate(middle);
+            if (NULL_NUMBER == date || date < day) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int launchDate(int index) {
+        return getInt(Column.LAUNCH_DATE, getInt(Column.LAUNCHES_BY_DATE, index));
+    }
+
+    String string(int index) {
+        if (NULL == index) {
+            return null;
+        }
+        String string = strings[index];
+        if (null == string) {
+            int start = getInt(Column.STRING_OFFSETS, index);
+            byte[] bytes = new byte[getInt(Column.STRING_OFFSETS, index + 1) - start];
+            ByteBuffer view = buffer.duplicate();
+            view.position(positions[Column.STRING_BYTES.ordinal()] + start);
+            view.get(bytes);
+            string = new String(bytes, StandardCharsets.UTF_8);
+            strings[index] = string;
+        }
+        return string;
+    }
+
+    // binary search in the sorted dictionary
+    private int stringIndex(String value) {
+        int low = 0;
+        int high = length(Table.STRINGS) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = string(middle).compareTo(value);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return NULL;
+    }
+
+    private int getInt(Column column, int row) {
+        return buffer.getInt(positions[column.ordinal()] + 4 * row);
+    }
+
+    private long getLong(Column column, int row) {
+        return buffer.getLong(positions[column.ordinal()] + 8 * row);
+    }
+
+    private int length(Table table) {
+        return lengths[table.ordinal()];
+    }
+
+    private static Table table(Class<? extends Entity> clazz) {
+        return idColumn(clazz).table;
+    }
+
+    private static Column idColumn(Class<? extends Entity> clazz) {
+        if (LaunchServiceProvider.class.equals(clazz)) {
+            return Column.LSP_ID;
+        } else if (Rocket.class.equals(clazz)) {
+            return Column.ROCKET_ID;
+        } else if (Launch.class.equals(clazz)) {
+            return Column.LAUNCH_ID;
+        }
+        throw new IllegalArgumentException("a snapshot holds no " + clazz.getSimpleName());
+    }
+
+    static boolean holds(Class<? extends Entity> clazz) {
+        return LaunchServiceProvider.class.equals(clazz) || Rocket.class.equals(clazz)
+                || Launch.class.equals(clazz);
+    }
+
+    /**
+     * Turns rows into entities, like an OGM session loading at depth one: an entity asked for comes
+     * with its to-many associations, and every entity with the entities it refers to. Each row
+     * becomes one instance per hydrator, which is not thread-safe.
+     */
+    Hydrator hydrator() {
+        return new Hydrator();
+    }
+
+    final class Hydrator {
+        private final Map<Integer, LaunchServiceProvider> lsps = new HashMap<>();
+        private final Map<Integer, Rocket> rockets = new HashMap<>();
+        private final Map<Integer, Launch> launches = new HashMap<>();
+        private final Set<Entity> expanded = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        <T extends Entity> T load(Class<T> clazz, int row) {
+            Entity entity;
+            if (LaunchServiceProvider.class.equals(clazz)) {
+                LaunchServiceProvider lsp = lsp(row);
+                if (expanded.add(lsp)) {
+                    for (int rocket : adjacent(Column.LSP_ROCKETS_START, Column.LSP_ROCKETS, row)) {
+                        lsp.getRockets().add(rocket(rocket));
+                    }
+                }
+                entity = lsp;
+            } else if (Rocket.class.equals(clazz)) {
+                Rocket rocket = rocket(row);
+                if (expanded.add(rocket)) {
+                    for (int launch : adjacent(Column.ROCKET_LAUNCHES_START, Column.ROCKET_LAUNCHES, row)) {
+                        rocket.getLaunches().add(launch(launch));
+                    }
+                }
+                entity = rocket;
+            } else {
+                entity = launch(row);
+            }
+            return clazz.cast(entity);
+        }
+
+        private LaunchServiceProvider lsp(int row) {
+            LaunchServiceProvider lsp = lsps.get(row);
+            if (null == lsp) {
+                lsp = new LaunchServiceProvider();
+                set(lsp, "id", getLong(Column.LSP_ID, row));
+                set(lsp, "name", string(getInt(Column.LSP_NAME, row)));
+                set(lsp, "yearFounded", getInt(Column.LSP_YEAR_FOUNDED, row));
+                set(lsp, "country", string(getInt(Column.LSP_COUNTRY, row)));
+                set(lsp, "headquarters", string(getInt(Column.LSP_HEADQUARTERS, row)));
+                set(lsp, "wikilink", string(getInt(Column.LSP_WIKILINK, row)));
+                lsps.put(row, lsp);
+            }
+            return lsp;
+        }
+
+        private Rocket rocket(int row) {
+            Rocket rocket = rockets.get(row);
+            if (null == rocket) {
+                rocket = new Rocket();
+                set(rocket, "id", getLong(Column.ROCKET_ID, row));
+                set(rocket, "name", string(getInt(Column.ROCKET_NAME, row)));
+                set(rocket, "country", string(getInt(Column.ROCKET_COUNTRY, row)));
+                int manufacturer = getInt(Column.ROCKET_MANUFACTURER, row);
+                set(rocket, "manufacturer", NULL == manufacturer ? null : lsp(manufacturer));
+                set(rocket, "massToLEO", string(getInt(Column.ROCKET_MASS_TO_LEO, row)));
+                set(rocket, "massToGTO", string(getInt(Column.ROCKET_MASS_TO_GTO, row)));
+                set(rocket, "massToOther", string(getInt(Column.ROCKET_MASS_TO_OTHER, row)));
+                set(rocket, "firstYearFlight", getInt(Column.ROCKET_FIRST_YEAR_FLIGHT, row));
+                set(rocket, "latestYearFlight", getInt(Column.ROCKET_LATEST_YEAR_FLIGHT, row));
+                set(rocket, "wikilink", string(getInt(Column.ROCKET_WIKILINK, row)));
+                rockets.put(row, rocket);
+            }
+            return rocket;
+        }
+
+        private Launch launch(int row) {
+            Launch launch = launches.get(row);
+            if (null == launch) {
+                launch = new Launch();
+                set(launch, "id", getLong(Column.LAUNCH_ID, row));
+                int day = getInt(Column.LAUNCH_DATE, row);
+                set(launch, "launchDate", NULL_NUMBER == day ? null : LocalDate.ofEpochDay(day));
+                int vehicle = getInt(Column.LAUNCH_VEHICLE, row);
+                set(launch, "launchVehicle", NULL == vehicle ? null : rocket(vehicle));
+                int provider = getInt(Column.LAUNCH_SERVICE_PROVIDER, row);
+                set(launch, "launchServiceProvider", NULL == provider ? null : lsp(provider));
+                set(launch, "launchSite", string(getInt(Column.LAUNCH_SITE, row)));
+                set(launch, "orbit", string(getInt(Column.LAUNCH_ORBIT, row)));
+                set(launch, "function", string(getInt(Column.LAUNCH_FUNCTION, row)));
+                int outcome = getInt(Column.LAUNCH_OUTCOME, row);
+                set(launch, "launchOutcome", NULL == outcome ? null : Launch.LaunchOutcome.values()[outcome]);
+                int scale = getInt(Column.LAUNCH_PRICE_SCALE, row);
+                set(launch, "price", NULL_NUMBER == scale ? null
+                        : new BigDecimal(BigInteger.valueOf(getLong(Column.LAUNCH_PRICE_UNSCALED, row)), scale));
+                for (int payload : adjacent(Column.LAUNCH_PAYLOAD_START, Column.LAUNCH_PAYLOAD, row)) {
+                    launch.getPayload().add(string(payload));
+                }
+                set(launch, "wikilink", string(getInt(Column.LAUNCH_WIKILINK, row)));
+                launches.put(row, launch);
+            }
+            return launch;
+        }
+
+        private int[] adjacent(Column starts, Column values, int row) {
+            int start = getInt(starts, row);
+            int[] adjacent = new int[getInt(starts, row + 1) - start];
+            for (int i = 0; i < adjacent.length; i++) {
+                adjacent[i] = getInt(values, start + i);
+            }
+            return adjacent;
+        }
+    }
+
+    private static void set(Entity entity, String name, Object value) {
+        Field field = FIELDS.computeIfAbsent(entity.getClass().getName() + "." + name,
+                key -> FieldUtils.getField(entity.getClass(), name, true));
+        try {
+            field.set(entity, value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package rockets.dataaccess.mapped;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.AbstractIterator;
+import rockets.dataaccess.Aggregate;
+import rockets.dataaccess.Aggregation;
+import rockets.dataaccess.DAO;
+import rockets.dataaccess.EntityView;
+import rockets.dataaccess.Page;
+import rockets.dataaccess.PageRequest;
+import rockets.dataaccess.event.ChangeEvent;
+import rockets.dataaccess.memory.InMemoryDAO;
+import rockets.model.Entity;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+import rockets.model.User;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Serves reads from a {@link MappedSnapshot}, for read-only nodes and mining jobs that should not
+ * wait for a database to start. Loads and streams hydrate only the rows they return, so opening a
+ * snapshot costs the same however large it is; paging, filtered counts and aggregations copy the
+ * whole snapshot into an {@link InMemoryDAO} the first time one of them is asked for. Users are not
+ * part of a snapshot, and writes fail with an {@link UnsupportedOperationException}.
+ */
+public class MappedSnapshotDAO implements DAO {
+    // rows hydrated by a stream before it starts over with new instances, like Neo4jDAO's fetch size
+    private static final int BATCH_SIZE = 1000;
+
+    private final MappedSnapshot snapshot;
+    private final Supplier<InMemoryDAO> materialized = Suppliers.memoize(this::materialize);
+    private final InMemoryDAO empty = new InMemoryDAO();
+
+    public MappedSnapshotDAO(MappedSnapshot snapshot) {
+        notNull(snapshot);
+        this.snapshot = snapshot;
+    }
+
+    public MappedSnapshotDAO(Path file) {
+        this(open(file));
+    }
+
+    private static MappedSnapshot open(Path file) {
+        notNull(file);
+        try {
+            return MappedSnapshot.open(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot open snapshot " + file, e);
+        }
+    }
+
+    @Override
+    public <T extends Entity> T load(Class<T> clazz, Long id) {
+        notNull(id, "id cannot be null");
+        if (!MappedSnapshot.holds(clazz)) {
+            return empty.load(clazz, id);
+        }
+        int row = snapshot.row(clazz, id);
+        return MappedSnapshot.NULL == row ? null : snapshot.hydrator().load(clazz, row);
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz) {
+        if (!MappedSnapshot.holds(clazz)) {
+            return empty.loadAll(clazz);
+        }
+        MappedSnapshot.Hydrator hydrator = snapshot.hydrator();
+        List<T> entities = new ArrayList<>(snapshot.size(clazz));
+        for (int row = 0; row < snapshot.size(clazz); row++) {
+            entities.add(hydrator.load(clazz, row));
+        }
+        return entities;
+    }
+
+    @Override
+    public <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids) {
+        notNull(ids);
+        if (!MappedSnapshot.holds(clazz)) {
+            return empty.loadAll(clazz, ids);
+        }
+        MappedSnapshot.Hydrator hydrator = snapshot.hydrator();
+        List<T> entities = new ArrayList<>();
+        for (Long id : ids) {
+            int row = snapshot.row(clazz, id);
+            if (MappedSnapshot.NULL != row) {
+                entities.add(hydrator.load(clazz, row));
+            }
+        }
+        return entities;
+    }
+
+    /**
+     * Streams the entities in id order, hydrating them in batches that share no instances, so that
+     * the batches already consumed can be collected.
+     */
+    @Override
+    public <T extends Entity> Stream<T> stream(Class<T> clazz) {
+        if (!MappedSnapshot.holds(clazz)) {
+            return empty.stream(clazz);
+        }
+        int size = snapshot.size(clazz);
+        Iterator<T> iterator = new AbstractIterator<T>() {
+            private MappedSnapshot.Hydrator hydrator;
+            private int row;
+
+            @Override
+            protected T computeNext() {
+                if (row == size) {
+                    return endOfData();
+                }
+                if (0 == row % BATCH_SIZE) {
+                    hydrator = snapshot.hydrator();
+                }
+                return hydrator.load(clazz, row++);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliterator(iterator, size, Spliterator.ORDERED
+                | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public <T extends Entity> Page<T> loadPage(Class<T> clazz, PageRequest request) {
+        return reader(clazz).loadPage(clazz, request);
+    }
+
+    @Override
+    public <T extends Entity> Page<EntityView> loadPageView(Class<T> clazz, PageRequest request, String... fields) {
+        return reader(clazz).loadPageView(clazz, request, fields);
+    }
+
+    @Override
+    public <T extends Entity> long count(Class<T> clazz, Map<String, ?> filters) {
+        notNull(filters);
+        if (filters.isEmpty() && MappedSnapshot.holds(clazz)) {
+            return snapshot.size(clazz);
+        }
+        return reader(clazz).count(clazz, filters);
+    }
+
+    @Override
+    public <T extends Entity> boolean exists(Class<T> clazz, Map<String, ?> filters) {
+        return reader(clazz).exists(clazz, filters);
+    }
+
+    @Override
+    public <T extends Entity> List<Aggregate> aggregate(Aggregation<T> aggregation) {
+        return reader(aggregation.getEntityClass()).aggregate(aggregation);
+    }
+
+    @Override
+    public List<Launch> findLaunchesBetween(LocalDate from, LocalDate to) {
+        notNull(from);
+        notNull(to);
+        return launches(snapshot.launchRowsBetween(from.toEpochDay(), to.toEpochDay()));
+    }
+
+    @Override
+    public List<Launch> latestLaunches(int k) {
+        isTrue(k >= 0, "k must not be negative");
+        return launches(snapshot.latestLaunchRows(k));
+    }
+
+    private List<Launch> launches(int[] rows) {
+        MappedSnapshot.Hydrator hydrator = snapshot.hydrator();
+        List<Launch> launches = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            launches.add(hydrator.load(Launch.class, row));
+        }
+        return launches;
+    }
+
+    @Override
+    public User getUserByEmail(String email) {
+        return null;
+    }
+
+    @Override
+    public LaunchServiceProvider getLSPByName(String name) {
+        notNull(name);
+        int[] rows = snapshot.rowsWhere(MappedSnapshot.Column.LSP_NAME, name);
+        return 0 == rows.length ? null : snapshot.hydrator().load(LaunchServiceProvider.class, rows[0]);
+    }
+
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity) {
+        throw readOnly();
+    }
+
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity, Consumer<ChangeEvent> changed) {
+        throw readOnly();
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities) {
+        throw readOnly();
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities, Consumer<ChangeEvent> changed) {
+        throw readOnly();
+    }
+
+    @Override
+    public <T extends Entity> void delete(T entity) {
+        throw readOnly();
+    }
+
+    @Override
+    public <T extends Entity> void delete(T entity, Consumer<ChangeEvent> deleted) {
+        throw readOnly();
+    }
+
+    @Override
+    public <T extends Entity> long deleteWhere(Class<T> clazz, Map<String, ?> filters, boolean cascade) {
+        throw readOnly();
+    }
+
+    @Override
+    public <T extends Entity> long deleteWhere(Class<T> clazz, Map<String, ?> filters, boolean cascade,
+                                               Consumer<ChangeEvent> deleted) {
+        throw readOnly();
+    }
+
+    /**
+     * Drops nothing but the copy made for queries; the mapping is released once this DAO and the
+     * snapshot are no longer referenced.
+     */
+    @Override
+    public void close() {
+    }
+
+    private DAO reader(Class<? extends Entity> clazz) {
+        return MappedSnapshot.holds(clazz) ? materialized.get() : empty;
+    }
+
+    // every entity, hydrated with one set of instances so that they link to each other
+    private InMemoryDAO materialize() {
+        MappedSnapshot.Hydrator hydrator = snapshot.hydrator();
+        List<Entity> entities = new ArrayList<>();
+        for (Class<? extends Entity> clazz : Arrays.asList(LaunchServiceProvider.class, Rocket.class, Launch.class)) {
+            for (int row = 0; row < snapshot.size(clazz); row++) {
+                entities.add(hydrator.load(clazz, row));
+            }
+        }
+        InMemoryDAO dao = new InMemoryDAO();
+        dao.createOrUpdateAll(entities);
+        return dao;
+    }
+
+    private UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException(getClass().getSimpleName() + " is read-only");
+    }
+}
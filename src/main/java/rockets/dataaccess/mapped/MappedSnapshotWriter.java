@@ -0,0 +1,365 @@
+package rockets.dataaccess.mapped;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.ImmutableIntArray;
+import com.google.common.primitives.ImmutableLongArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rockets.dataaccess.DAO;
+import rockets.dataaccess.mapped.MappedSnapshot.Column;
+import rockets.dataaccess.mapped.MappedSnapshot.Table;
+import rockets.model.Entity;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+import static rockets.dataaccess.mapped.MappedSnapshot.NULL;
+import static rockets.dataaccess.mapped.MappedSnapshot.NULL_NUMBER;
+
+/**
+ * Streams the entities of a DAO into growing columns, so that only their values are held and not
+ * the entities, and writes the columns out as a {@link MappedSnapshot}. Strings are numbered as
+ * they are met and associations kept as ids until everything has been read; then the rows are
+ * sorted by id, and the strings and ids replaced by dictionary indexes and rows.
+ */
+class MappedSnapshotWriter {
+    private static Logger logger = LoggerFactory.getLogger(MappedSnapshotWriter.class);
+
+    private static final Set<Column> STRINGS = Sets.immutableEnumSet(
+            Column.LSP_NAME, Column.LSP_COUNTRY, Column.LSP_HEADQUARTERS, Column.LSP_WIKILINK,
+            Column.ROCKET_NAME, Column.ROCKET_COUNTRY, Column.ROCKET_MASS_TO_LEO, Column.ROCKET_MASS_TO_GTO,
+            Column.ROCKET_MASS_TO_OTHER, Column.ROCKET_WIKILINK,
+            Column.LAUNCH_SITE, Column.LAUNCH_ORBIT, Column.LAUNCH_FUNCTION, Column.LAUNCH_WIKILINK);
+    private static final Map<Column, Table> REFERENCES = ImmutableMap.of(
+            Column.ROCKET_MANUFACTURER, Table.LSPS,
+            Column.LAUNCH_VEHICLE, Table.ROCKETS,
+            Column.LAUNCH_SERVICE_PROVIDER, Table.LSPS);
+    private static final Map<Table, Column> IDS = ImmutableMap.of(
+            Table.LSPS, Column.LSP_ID,
+            Table.ROCKETS, Column.ROCKET_ID,
+            Table.LAUNCHES, Column.LAUNCH_ID);
+    private static final long NULL_ID = -1;
+
+    private final DAO dao;
+
+    // as read: strings by the order they were met in, rows in the order they were streamed
+    private final Map<String, Integer> stringNumbers = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private final Map<Column, ImmutableIntArray.Builder> intsRead = new EnumMap<>(Column.class);
+    private final Map<Column, ImmutableLongArray.Builder> longsRead = new EnumMap<>(Column.class);
+    private final List<int[]> payloadsRead = new ArrayList<>();
+
+    // as written
+    private final int[] lengths = new int[Table.values().length];
+    private final Map<Column, int[]> ints = new EnumMap<>(Column.class);
+    private final Map<Column, long[]> longs = new EnumMap<>(Column.class);
+    private byte[] stringBytes;
+
+    MappedSnapshotWriter(DAO dao) {
+        notNull(dao);
+        this.dao = dao;
+    }
+
+    void write(Path file) throws IOException {
+        long start = System.currentTimeMillis();
+        read(LaunchServiceProvider.class, lsp -> {
+            add(Column.LSP_ID, lsp.getId());
+            add(Column.LSP_NAME, lsp.getName());
+            add(Column.LSP_YEAR_FOUNDED, lsp.getYearFounded());
+            add(Column.LSP_COUNTRY, lsp.getCountry());
+            add(Column.LSP_HEADQUARTERS, lsp.getHeadquarters());
+            add(Column.LSP_WIKILINK, lsp.getWikilink());
+        });
+        read(Rocket.class, rocket -> {
+            add(Column.ROCKET_ID, rocket.getId());
+            add(Column.ROCKET_NAME, rocket.getName());
+            add(Column.ROCKET_COUNTRY, rocket.getCountry());
+            add(Column.ROCKET_MANUFACTURER, rocket.getManufacturer());
+            add(Column.ROCKET_MASS_TO_LEO, rocket.getMassToLEO());
+            add(Column.ROCKET_MASS_TO_GTO, rocket.getMassToGTO());
+            add(Column.ROCKET_MASS_TO_OTHER, rocket.getMassToOther());
+            add(Column.ROCKET_FIRST_YEAR_FLIGHT, rocket.getFirstYearFlight());
+            add(Column.ROCKET_LATEST_YEAR_FLIGHT, rocket.getLatestYearFlight());
+            add(Column.ROCKET_WIKILINK, rocket.getWikilink());
+        });
+        read(Launch.class, launch -> {
+            add(Column.LAUNCH_ID, launch.getId());
+            add(Column.LAUNCH_DATE, null == launch.getLaunchDate() ? NULL_NUMBER
+                    : Math.toIntExact(launch.getLaunchDate().toEpochDay()));
+            add(Column.LAUNCH_VEHICLE, launch.getLaunchVehicle());
+            add(Column.LAUNCH_SERVICE_PROVIDER, launch.getLaunchServiceProvider());
+            add(Column.LAUNCH_SITE, launch.getLaunchSite());
+            add(Column.LAUNCH_ORBIT, launch.getOrbit());
+            add(Column.LAUNCH_FUNCTION, launch.getFunction());
+            add(Column.LAUNCH_OUTCOME, null == launch.getLaunchOutcome() ? NULL : launch.getLaunchOutcome().ordinal());
+            BigDecimal price = launch.getPrice();
+            isTrue(null == price || price.unscaledValue().bitLength() < Long.SIZE,
+                    "price %s of launch %s has too many digits", price, launch.getId());
+            add(Column.LAUNCH_PRICE_UNSCALED, null == price ? 0 : price.unscaledValue().longValue());
+            add(Column.LAUNCH_PRICE_SCALE, null == price ? NULL_NUMBER : price.scale());
+            add(Column.LAUNCH_WIKILINK, launch.getWikilink());
+            payloadsRead.add(null == launch.getPayload() ? new int[0]
+                    : launch.getPayload().stream().mapToInt(this::number).toArray());
+        });
+
+        dictionary();
+        for (Table table : IDS.keySet()) {
+            sort(table);
+        }
+        for (Map.Entry<Column, Table> reference : REFERENCES.entrySet()) {
+            resolve(reference.getKey(), reference.getValue());
+        }
+        adjacency(Column.LSP_ROCKETS_START, Column.LSP_ROCKETS, Table.LSP_ROCKETS, Table.LSPS,
+                ints.get(Column.ROCKET_MANUFACTURER));
+        adjacency(Column.ROCKET_LAUNCHES_START, Column.ROCKET_LAUNCHES, Table.ROCKET_LAUNCHES, Table.ROCKETS,
+                ints.get(Column.LAUNCH_VEHICLE));
+        dateOrder();
+
+        Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            long size = writeColumns(temporary);
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            logger.info("wrote a snapshot of " + lengths[Table.LSPS.ordinal()] + " launch service providers, "
+                    + lengths[Table.ROCKETS.ordinal()] + " rockets and " + lengths[Table.LAUNCHES.ordinal()]
+                    + " launches to " + file + ": " + size + " bytes in " + (System.currentTimeMillis() - start) + " ms");
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private <T extends Entity> void read(Class<T> clazz, Consumer<T> row) {
+        try (Stream<T> entities = dao.stream(clazz)) {
+            entities.forEach(row);
+        }
+    }
+
+    private void add(Column column, int value) {
+        intsRead.computeIfAbsent(column, c -> ImmutableIntArray.builder()).add(value);
+    }
+
+    private void add(Column column, long value) {
+        longsRead.computeIfAbsent(column, c -> ImmutableLongArray.builder()).add(value);
+    }
+
+    private void add(Column column, String value) {
+        add(column, number(value));
+    }
+
+    private void add(Column column, Entity reference) {
+        add(column, null == reference || null == reference.getId() ? NULL_ID : reference.getId());
+    }
+
+    private int[] intsRead(Column column) {
+        ImmutableIntArray.Builder values = intsRead.get(column);
+        return null == values ? new int[0] : values.build().toArray();
+    }
+
+    private long[] longsRead(Column column) {
+        ImmutableLongArray.Builder values = longsRead.get(column);
+        return null == values ? new long[0] : values.build().toArray();
+    }
+
+    private int number(String string) {
+        if (null == string) {
+            return NULL;
+        }
+        return stringNumbers.computeIfAbsent(string, s -> {
+            strings.add(s);
+            return strings.size() - 1;
+        });
+    }
+
+    // Sorts the strings, and renumbers the string columns and payloads by their place among them
+    private void dictionary() {
+        Integer[] order = new Integer[strings.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(strings::get));
+        int[] renumbered = new int[order.length];
+        int[] offsets = new int[order.length + 1];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int i = 0; i < order.length; i++) {
+            renumbered[order[i]] = i;
+            byte[] string = strings.get(order[i]).getBytes(StandardCharsets.UTF_8);
+            bytes.write(string, 0, string.length);
+            offsets[i + 1] = bytes.size();
+        }
+        lengths[Table.STRINGS.ordinal()] = order.length;
+        lengths[Table.STRING_BYTES.ordinal()] = bytes.size();
+        ints.put(Column.STRING_OFFSETS, offsets);
+        stringBytes = bytes.toByteArray();
+
+        for (Column column : STRINGS) {
+            int[] values = intsRead(column);
+            for (int i = 0; i < values.length; i++) {
+                values[i] = NULL == values[i] ? NULL : renumbered[values[i]];
+            }
+            intsRead.put(column, ImmutableIntArray.builder().addAll(values));
+        }
+        for (int[] payload : payloadsRead) {
+            for (int i = 0; i < payload.length; i++) {
+                payload[i] = renumbered[payload[i]];
+            }
+        }
+    }
+
+    // Puts the rows of a table in id order, the order the snapshot looks them up in
+    private void sort(Table table) {
+        long[] ids = longsRead(IDS.get(table));
+        Integer[] order = new Integer[ids.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> ids[i]));
+        lengths[table.ordinal()] = ids.length;
+
+        for (Column column : Column.values()) {
+            if (column.table != table || 0 != column.extraRows) {
+                continue;
+            }
+            if (8 == column.width) {
+                long[] read = longsRead(column);
+                long[] sorted = new long[read.length];
+                for (int i = 0; i < sorted.length; i++) {
+                    sorted[i] = read[order[i]];
+                }
+                longs.put(column, sorted);
+            } else if (REFERENCES.containsKey(column)) {
+                // ids until they are resolved to rows
+                long[] read = longsRead(column);
+                long[] sorted = new long[read.length];
+                for (int i = 0; i < sorted.length; i++) {
+                    sorted[i] = read[order[i]];
+                }
+                longsRead.put(column, ImmutableLongArray.builder().addAll(sorted));
+            } else {
+                int[] read = intsRead(column);
+                int[] sorted = new int[read.length];
+                for (int i = 0; i < sorted.length; i++) {
+                    sorted[i] = read[order[i]];
+                }
+                ints.put(column, sorted);
+            }
+        }
+        if (Table.LAUNCHES == table) {
+            List<int[]> payloads = new ArrayList<>(order.length);
+            for (Integer row : order) {
+                payloads.add(payloadsRead.get(row));
+            }
+            int[] starts = new int[order.length + 1];
+            for (int i = 0; i < payloads.size(); i++) {
+                starts[i + 1] = starts[i] + payloads.get(i).length;
+            }
+            int[] values = new int[starts[order.length]];
+            for (int i = 0; i < payloads.size(); i++) {
+                System.arraycopy(payloads.get(i), 0, values, starts[i], payloads.get(i).length);
+            }
+            lengths[Table.PAYLOADS.ordinal()] = values.length;
+            ints.put(Column.LAUNCH_PAYLOAD_START, starts);
+            ints.put(Column.LAUNCH_PAYLOAD, values);
+        }
+    }
+
+    // Replaces the ids in a reference column by the rows of the entities in the target table
+    private void resolve(Column column, Table target) {
+        long[] ids = longs.get(IDS.get(target));
+        long[] references = longsRead(column);
+        int[] rows = new int[references.length];
+        for (int i = 0; i < rows.length; i++) {
+            int row = NULL_ID == references[i] ? -1 : Arrays.binarySearch(ids, references[i]);
+            rows[i] = row < 0 ? NULL : row;
+        }
+        ints.put(column, rows);
+    }
+
+    // The inverse of a reference column: for each target row, the rows referring to it
+    private void adjacency(Column starts, Column values, Table adjacent, Table target, int[] references) {
+        int[] counts = new int[lengths[target.ordinal()] + 1];
+        for (int reference : references) {
+            if (NULL != reference) {
+                counts[reference + 1]++;
+            }
+        }
+        for (int i = 1; i < counts.length; i++) {
+            counts[i] += counts[i - 1];
+        }
+        int[] next = Arrays.copyOf(counts, counts.length - 1);
+        int[] rows = new int[counts[counts.length - 1]];
+        for (int row = 0; row < references.length; row++) {
+            if (NULL != references[row]) {
+                rows[next[references[row]]++] = row;
+            }
+        }
+        lengths[adjacent.ordinal()] = rows.length;
+        ints.put(starts, counts);
+        ints.put(values, rows);
+    }
+
+    // The launch rows ordered by date; the sort is stable and the rows are in id order, so ties stay so
+    private void dateOrder() {
+        int[] dates = ints.get(Column.LAUNCH_DATE);
+        Integer[] order = new Integer[dates.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> dates[i]));
+        lengths[Table.LAUNCHES_BY_DATE.ordinal()] = order.length;
+        ints.put(Column.LAUNCHES_BY_DATE, Arrays.stream(order).mapToInt(Integer::intValue).toArray());
+    }
+
+    private long writeColumns(Path file) throws IOException {
+        long size = MappedSnapshot.HEADER_SIZE;
+        for (Column column : Column.values()) {
+            size += (long) column.width * column.length(lengths);
+        }
+        isTrue(size <= Integer.MAX_VALUE, "snapshot of %d bytes is too large to map", size);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel),
+                    64 * 1024));
+            out.writeInt(MappedSnapshot.MAGIC);
+            out.writeInt(MappedSnapshot.VERSION);
+            for (int length : lengths) {
+                out.writeInt(length);
+            }
+            for (Column column : Column.values()) {
+                if (Column.STRING_BYTES == column) {
+                    out.write(stringBytes);
+                } else if (8 == column.width) {
+                    for (long value : longs.get(column)) {
+                        out.writeLong(value);
+                    }
+                } else {
+                    int[] values = ints.get(column);
+                    isTrue(values.length == column.length(lengths), "column %s has %d values", column, values.length);
+                    for (int value : values) {
+                        out.writeInt(value);
+                    }
+                }
+            }
+            out.flush();
+            channel.force(true);
+        }
+        return size;
+    }
+}
@@ -0,0 +1,669 @@
+package rockets.dataaccess.memory;
+
+import com.google.common.collect.Sets;
+import rockets.dataaccess.Aggregate;
+import rockets.dataaccess.Aggregation;
+import rockets.dataaccess.DAO;
+import rockets.dataaccess.EntityGraph;
+import rockets.dataaccess.EntityView;
+import rockets.dataaccess.Page;
+import rockets.dataaccess.PageCursor;
+import rockets.dataaccess.PageRequest;
+import rockets.dataaccess.event.ChangeEvent;
+import rockets.dataaccess.neo4j.GraphProperties;
+import rockets.model.*;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Keeps all entities in memory, indexed by id and by natural key in concurrent hash maps. It
+ * follows the contract of {@link rockets.dataaccess.neo4j.Neo4jDAO}: saving an entity saves
+ * everything reachable from it, new entities equal to stored ones take over their ids, and
+ * filters, sorting and paging compare the values the graph would store. Launches are also indexed
+ * by date in a skip list, for range and latest-first queries.
+ * <p>
+ * Like the graph's {@code MERGE}, saving a copy of a stored entity, e.g. a new entity equal to it,
+ * copies its properties onto the stored instance and adds its associations to the stored ones
+ * instead of replacing it. Reads never lock. Writes are serialised, so that an upsert of a whole
+ * graph is atomic. Entities are stored and returned as they are, not copied, so callers share them
+ * with each other.
+ */
+public class InMemoryDAO implements DAO {
+    private final AtomicLong nextId = new AtomicLong();
+    private final Object writeLock = new Object();
+
+    private final ConcurrentMap<Long, Entity> entitiesById = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, ConcurrentMap<String, Long>> idsByNaturalKey = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> userIdsByEmail = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> lspIdsByName = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<LocalDate, ConcurrentSkipListSet<Long>> launchIdsByDate =
+            new ConcurrentSkipListMap<>();
+    // what each entity was indexed under, which it may no longer have
+    private final ConcurrentMap<Long, String> indexedNaturalKeys = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, String> indexedEmails = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, String> indexedLSPNames = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, LocalDate> indexedLaunchDates = new ConcurrentHashMap<>();
+
+    public InMemoryDAO() {
+    }
+
+    /**
+     * Creates a DAO holding the same entity instances as another, with indexes of its own, so that
+     * entities removed or replaced in one are not in the other. Saving a stored instance, or a copy
+     * of one, changes it in both; a caller sharing instances this way replaces them instead.
+     */
+    InMemoryDAO(InMemoryDAO source) {
+        synchronized (source.writeLock) {
+            nextId.set(source.nextId.get());
+            entitiesById.putAll(source.entitiesById);
+            source.idsByNaturalKey.forEach((clazz, ids) -> idsByNaturalKey.put(clazz, new ConcurrentHashMap<>(ids)));
+            userIdsByEmail.putAll(source.userIdsByEmail);
+            lspIdsByName.putAll(source.lspIdsByName);
+            source.launchIdsByDate.forEach((date, ids) -> launchIdsByDate.put(date, new ConcurrentSkipListSet<>(ids)));
+            indexedNaturalKeys.putAll(source.indexedNaturalKeys);
+            indexedEmails.putAll(source.indexedEmails);
+            indexedLSPNames.putAll(source.indexedLSPNames);
+            indexedLaunchDates.putAll(source.indexedLaunchDates);
+        }
+    }
+
+    @Override
+    public <T extends Entity> T load(Class<T> clazz, Long id) {
+        notNull(id, "id cannot be null");
+        Entity entity = entitiesById.get(id);
+        return clazz.isInstance(entity) ? clazz.cast(entity) : null;
+    }
+
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity) {
+        createOrUpdateAll(Collections.singletonList(entity));
+        return entity;
+    }
+
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity, Consumer<ChangeEvent> changed) {
+        createOrUpdateAll(Collections.singletonList(entity), changed);
+        return entity;
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities) {
+        save(entities, null);
+        return entities;
+    }
+
+    /**
+     * Saves like {@link #createOrUpdateAll(Collection)} and reports the changes. An entity saved as
+     * the very instance that is stored has no other copy of its old values, so it is reported as
+     * updated without them.
+     */
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities, Consumer<ChangeEvent> changed) {
+        notNull(changed, "changed cannot be null");
+        Map<Entity, Map<String, Object>> before = new IdentityHashMap<>();
+        List<Entity> written = save(entities, before);
+        // handed over outside the write lock, as the consumer may block
+        for (Entity entity : written) {
+            Map<String, Object> newValues = GraphProperties.properties(entity);
+            if (!before.containsKey(entity)) {
+                changed.accept(new ChangeEvent(ChangeEvent.Type.CREATED, entity.getClass(), entity.getId(),
+                        null, newValues));
+            } else if (!newValues.equals(before.get(entity))) {
+                changed.accept(new ChangeEvent(ChangeEvent.Type.UPDATED, entity.getClass(), entity.getId(),
+                        before.get(entity), newValues));
+            }
+        }
+        return entities;
+    }
+
+    // Returns the stored instances written, each once; if given a map, puts the values each stored
+    // instance had before into it, null if it was saved as itself, and nothing for new ones
+    private List<Entity> save(Collection<? extends Entity> entities, Map<Entity, Map<String, Object>> before) {
+        synchronized (writeLock) {
+            List<Entity> graph = EntityGraph.collect(entities);
+            Map<Entity, Entity> stored = new IdentityHashMap<>();
+            for (Entity entity : graph) {
+                stored.put(entity, store(entity, before));
+            }
+            for (Entity entity : graph) {
+                link(entity, stored);
+            }
+            Set<Entity> reindexed = Sets.newIdentityHashSet();
+            Set<Entity> seen = Sets.newIdentityHashSet();
+            List<Entity> written = new ArrayList<>();
+            for (Entity entity : graph) {
+                reindex(stored.get(entity), reindexed);
+                if (seen.add(stored.get(entity))) {
+                    written.add(stored.get(entity));
+                }
+            }
+            return written;
+        }
+    }
+
+    // Must hold the write lock; assigns the entity an id, upserting on its natural key if it has
+    // none, and returns the instance stored under it, onto which a copy's properties are copied
+    private Entity store(Entity entity, Map<Entity, Map<String, Object>> before) {
+        if (null == entity.getId()) {
+            Long existing = naturalKeys(entity.getClass()).get(entity.getNaturalKey());
+            entity.setId(null != existing ? existing : nextId.getAndIncrement());
+        } else {
+            // ids assigned elsewhere must not be handed out again
+            nextId.accumulateAndGet(entity.getId() + 1, Math::max);
+        }
+        Entity stored = entitiesById.get(entity.getId());
+        if (null != before && null != stored && !before.containsKey(stored)) {
+            before.put(stored, stored == entity ? null : GraphProperties.properties(stored));
+        }
+        if (null != stored && stored != entity && stored.getClass().equals(entity.getClass())) {
+            GraphProperties.copyProperties(entity, stored);
+            return stored;
+        }
+        if (null != stored && stored != entity) {
+            unindex(stored);
+        }
+        entitiesById.put(entity.getId(), entity);
+        if (null == stored) {
+            // so that equal entities later in the same graph merge into this one
+            String key = entity.getNaturalKey();
+            naturalKeys(entity.getClass()).putIfAbsent(key, entity.getId());
+            indexedNaturalKeys.put(entity.getId(), key);
+        }
+        return entity;
+    }
+
+    // Adds the associations of a saved entity to its stored instance, as saving a node adds its
+    // relationships; associated entities are replaced by their stored instances
+    private static void link(Entity entity, Map<Entity, Entity> stored) {
+        Entity target = stored.get(entity);
+        if (entity instanceof Rocket) {
+            Rocket rocket = (Rocket) entity;
+            if (null != rocket.getManufacturer()) {
+                ((Rocket) target).setManufacturer(storedInstance(rocket.getManufacturer(), stored));
+            }
+            ((Rocket) target).setLaunches(union(((Rocket) target).getLaunches(), rocket.getLaunches(), stored));
+        } else if (entity instanceof LaunchServiceProvider) {
+            LaunchServiceProvider lsp = (LaunchServiceProvider) entity;
+            ((LaunchServiceProvider) target).setRockets(
+                    union(((LaunchServiceProvider) target).getRockets(), lsp.getRockets(), stored));
+        } else if (entity instanceof Launch) {
+            Launch launch = (Launch) entity;
+            if (null != launch.getLaunchVehicle()) {
+                ((Launch) target).setLaunchVehicle(storedInstance(launch.getLaunchVehicle(), stored));
+            }
+            if (null != launch.getLaunchServiceProvider()) {
+                ((Launch) target).setLaunchServiceProvider(storedInstance(launch.getLaunchServiceProvider(), stored));
+            }
+        }
+    }
+
+    // the stored entities and the saved ones, in that order, as a new set of stored instances, so
+    // that readers iterating the old set are not disturbed
+    private static <E extends Entity> Set<E> union(Set<E> storedEntities, Set<E> savedEntities,
+                                                   Map<Entity, Entity> stored) {
+        Set<E> union = new LinkedHashSet<>();
+        for (Set<E> entities : Arrays.asList(storedEntities, savedEntities)) {
+            if (null != entities) {
+                entities.forEach(entity -> union.add(storedInstance(entity, stored)));
+            }
+        }
+        return union;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Entity> E storedInstance(E entity, Map<Entity, Entity> stored) {
+        return (E) stored.getOrDefault(entity, entity);
+    }
+
+    // Must hold the write lock; indexes a stored entity under its current keys, and its rockets and
+    // launches too if its natural key changed, as theirs embed it
+    private void reindex(Entity entity, Set<Entity> reindexed) {
+        if (!reindexed.add(entity)) {
+            return;
+        }
+        String previousKey = indexedNaturalKeys.get(entity.getId());
+        unindex(entity);
+        String key = entity.getNaturalKey();
+        naturalKeys(entity.getClass()).put(key, entity.getId());
+        indexedNaturalKeys.put(entity.getId(), key);
+        if (entity instanceof User) {
+            String email = ((User) entity).getEmail();
+            userIdsByEmail.put(email, entity.getId());
+            indexedEmails.put(entity.getId(), email);
+        } else if (entity instanceof LaunchServiceProvider) {
+            String name = ((LaunchServiceProvider) entity).getName();
+            if (null == lspIdsByName.putIfAbsent(name, entity.getId())) {
+                indexedLSPNames.put(entity.getId(), name);
+            }
+        } else if (entity instanceof Launch && null != ((Launch) entity).getLaunchDate()) {
+            LocalDate date = ((Launch) entity).getLaunchDate();
+            launchIdsByDate.computeIfAbsent(date, d -> new ConcurrentSkipListSet<>()).add(entity.getId());
+            indexedLaunchDates.put(entity.getId(), date);
+        }
+        if (null != previousKey && !previousKey.equals(key)) {
+            dependents(entity).forEach(dependent -> reindex(dependent, reindexed));
+        }
+    }
+
+    private void unindex(Entity entity) {
+        Long id = entity.getId();
+        // the keys may have changed since they were indexed, so look them up by id
+        String key = indexedNaturalKeys.remove(id);
+        if (null != key) {
+            naturalKeys(entity.getClass()).remove(key, id);
+        }
+        String email = indexedEmails.remove(id);
+        if (null != email) {
+            userIdsByEmail.remove(email, id);
+        }
+        String name = indexedLSPNames.remove(id);
+        if (null != name) {
+            lspIdsByName.remove(name, id);
+        }
+        LocalDate date = indexedLaunchDates.remove(id);
+        if (null != date) {
+            Set<Long> ids = launchIdsByDate.get(date);
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                launchIdsByDate.remove(date);
+            }
+        }
+    }
+
+    private ConcurrentMap<String, Long> naturalKeys(Class<?> clazz) {
+        return idsByNaturalKey.computeIfAbsent(clazz, c -> new ConcurrentHashMap<>());
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz) {
+        return all(clazz).collect(Collectors.toList());
+    }
+
+    @Override
+    public <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids) {
+        List<T> loaded = new ArrayList<>();
+        for (Long id : ids) {
+            T entity = load(clazz, id);
+            if (null != entity) {
+                loaded.add(entity);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Streams a snapshot of the entities taken when the stream is created, in id order.
+     */
+    @Override
+    public <T extends Entity> Stream<T> stream(Class<T> clazz) {
+        List<T> snapshot = all(clazz).sorted(Comparator.comparing(Entity::getId)).collect(Collectors.toList());
+        return snapshot.stream();
+    }
+
+    private <T extends Entity> Stream<T> all(Class<T> clazz) {
+        return entitiesById.values().stream().filter(clazz::isInstance).map(clazz::cast);
+    }
+
+    @Override
+    public <T extends Entity> Page<T> loadPage(Class<T> clazz, PageRequest request) {
+        return loadKeysetPage(clazz, request, Function.identity());
+    }
+
+    @Override
+    public <T extends Entity> Page<EntityView> loadPageView(Class<T> clazz, PageRequest request, String... fields) {
+        Set<String> projected = new LinkedHashSet<>(Arrays.asList(fields));
+        projected.add(request.getSortProperty());
+        projected.remove("id");
+        return loadKeysetPage(clazz, request, entity -> {
+            Map<String, Object> values = new LinkedHashMap<>();
+            projected.forEach(field -> values.put(field, GraphProperties.value(entity, field)));
+            return new EntityView(clazz, entity.getId(), values);
+        });
+    }
+
+    // Sorts by the stored value of the sort property, nulls last, then by id, like the keyset query
+    private <T extends Entity, R> Page<R> loadKeysetPage(Class<T> clazz, PageRequest request, Function<T, R> view) {
+        String property = request.getSortProperty();
+        PageCursor cursor = null == request.getCursor() ? null : PageCursor.decode(request.getCursor());
+        boolean backward = null != cursor && cursor.isBackward();
+
+        Comparator<T> order = Comparator.<T, Object>comparing(entity -> GraphProperties.value(entity, property),
+                Comparator.nullsLast(InMemoryDAO::compareValues)).thenComparing(Entity::getId);
+        Stream<T> candidates = all(clazz);
+        if (null != cursor) {
+            candidates = candidates.filter(entity -> {
+                int position = compareToCursor(GraphProperties.value(entity, property), entity.getId(), cursor);
+                return backward ? position < 0 : position > 0;
+            });
+        }
+        List<T> entities = candidates.sorted(backward ? order.reversed() : order)
+                .limit(request.getSize() + 1L)
+                .collect(Collectors.toList());
+
+        boolean more = entities.size() > request.getSize();
+        if (more) {
+            entities = new ArrayList<>(entities.subList(0, request.getSize()));
+        }
+        if (backward) {
+            Collections.reverse(entities);
+        }
+
+        String next = null;
+        String previous = null;
+        if (!entities.isEmpty()) {
+            T first = entities.get(0);
+            T last = entities.get(entities.size() - 1);
+            if (backward || more) {
+                next = PageCursor.after(GraphProperties.value(last, property), last.getId()).encode();
+            }
+            if (backward ? more : null != cursor) {
+                previous = PageCursor.before(GraphProperties.value(first, property), first.getId()).encode();
+            }
+        }
+        return new Page<>(entities.stream().map(view).collect(Collectors.toList()), next, previous);
+    }
+
+    private static int compareToCursor(Object value, long id, PageCursor cursor) {
+        int byValue = Comparator.nullsLast(InMemoryDAO::compareValues).compare(value, cursor.getValue());
+        return 0 != byValue ? byValue : Long.compare(id, cursor.getId());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+    /**
+     * Removes the entity and takes it out of the collections of the stored entities associated with
+     * it, as deleting a node also deletes its relationships.
+     */
+    @Override
+    public <T extends Entity> void delete(T entity) {
+        if (null == entity.getId()) {
+            return;
+        }
+        synchronized (writeLock) {
+            remove(entity.getId());
+        }
+    }
+
+    @Override
+    public <T extends Entity> void delete(T entity, Consumer<ChangeEvent> deleted) {
+        notNull(deleted, "deleted cannot be null");
+        if (null == entity.getId()) {
+            return;
+        }
+        Entity stored;
+        Map<String, Object> values;
+        synchronized (writeLock) {
+            stored = entitiesById.get(entity.getId());
+            if (null == stored) {
+                return;
+            }
+            values = GraphProperties.properties(stored);
+            remove(stored.getId());
+        }
+        // handed over outside the write lock, as the consumer may block
+        deleted.accept(new ChangeEvent(ChangeEvent.Type.DELETED, stored.getClass(), stored.getId(), values, null));
+    }
+
+    @Override
+    public <T extends Entity> long deleteWhere(Class<T> clazz, Map<String, ?> filters, boolean cascade) {
+        return delete(clazz, filters, cascade).size();
+    }
+
+    @Override
+    public <T extends Entity> long deleteWhere(Class<T> clazz, Map<String, ?> filters, boolean cascade,
+                                               Consumer<ChangeEvent> deleted) {
+        notNull(deleted, "deleted cannot be null");
+        List<Entity> entities = delete(clazz, filters, cascade);
+        // handed over outside the write lock, as the consumer may block
+        for (Entity entity : entities) {
+            deleted.accept(new ChangeEvent(ChangeEvent.Type.DELETED, entity.getClass(), entity.getId(),
+                    GraphProperties.properties(entity), null));
+        }
+        return entities.size();
+    }
+
+    // the entities removed, cascaded ones first
+    private <T extends Entity> List<Entity> delete(Class<T> clazz, Map<String, ?> filters, boolean cascade) {
+        synchronized (writeLock) {
+            List<Entity> deleted = new ArrayList<>();
+            for (T entity : all(clazz).filter(entity -> GraphProperties.matches(entity, filters)).collect(Collectors.toList())) {
+                if (cascade) {
+                    deleted.addAll(dependents(entity));
+                }
+                deleted.add(entity);
+            }
+            return deleted.stream().filter(entity -> remove(entity.getId())).collect(Collectors.toList());
+        }
+    }
+
+    // the launches of a rocket, or the launches and rockets of a launch service provider
+    private static List<Entity> dependents(Entity entity) {
+        List<Entity> dependents = new ArrayList<>();
+        if (entity instanceof Rocket && null != ((Rocket) entity).getLaunches()) {
+            dependents.addAll(((Rocket) entity).getLaunches());
+        } else if (entity instanceof LaunchServiceProvider && null != ((LaunchServiceProvider) entity).getRockets()) {
+            for (Rocket rocket : ((LaunchServiceProvider) entity).getRockets()) {
+                dependents.addAll(dependents(rocket));
+                dependents.add(rocket);
+            }
+        }
+        return dependents;
+    }
+
+    /**
+     * Removes the entities with the removed ids and stores the given ones as they are, in place of
+     * those stored under their ids, without walking or changing any entity; their references must
+     * already point at stored instances. For callers sharing instances with another DAO, which
+     * replace entities rather than save over them.
+     */
+    void replace(Collection<Long> removed, Collection<? extends Entity> entities) {
+        synchronized (writeLock) {
+            for (Long id : removed) {
+                Entity stored = entitiesById.remove(id);
+                if (null != stored) {
+                    unindex(stored);
+                }
+            }
+            for (Entity entity : entities) {
+                nextId.accumulateAndGet(entity.getId() + 1, Math::max);
+                Entity stored = entitiesById.put(entity.getId(), entity);
+                if (null != stored) {
+                    unindex(stored);
+                }
+            }
+            Set<Entity> reindexed = Sets.newIdentityHashSet();
+            entities.forEach(entity -> reindex(entity, reindexed));
+        }
+    }
+
+    // Must hold the write lock; returns whether an entity was removed
+    private boolean remove(Long id) {
+        Entity stored = null == id ? null : entitiesById.remove(id);
+        if (null == stored) {
+            return false;
+        }
+        unindex(stored);
+        for (Entity neighbour : EntityGraph.neighbours(stored)) {
+            if (neighbour instanceof Rocket && null != ((Rocket) neighbour).getLaunches()) {
+                ((Rocket) neighbour).getLaunches().removeIf(launch -> id.equals(launch.getId()));
+            } else if (neighbour instanceof LaunchServiceProvider
+                    && null != ((LaunchServiceProvider) neighbour).getRockets()) {
+                ((LaunchServiceProvider) neighbour).getRockets().removeIf(rocket -> id.equals(rocket.getId()));
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public <T extends Entity> long count(Class<T> clazz, Map<String, ?> filters) {
+        return all(clazz).filter(entity -> GraphProperties.matches(entity, filters)).count();
+    }
+
+    @Override
+    public <T extends Entity> boolean exists(Class<T> clazz, Map<String, ?> filters) {
+        return all(clazz).anyMatch(entity -> GraphProperties.matches(entity, filters));
+    }
+
+    /**
+     * Aggregates by scanning the entities of the class in id order.
+     */
+    @Override
+    public <T extends Entity> List<Aggregate> aggregate(Aggregation<T> aggregation) {
+        Class<T> clazz = aggregation.getEntityClass();
+        String[] path = aggregation.getGroupBy().split("\\.");
+        boolean byAssociation = GraphProperties.isAssociation(clazz, path[0]);
+        isTrue(byAssociation || 1 == path.length, path[0] + " is not a single association of " + clazz.getSimpleName());
+
+        // a hash map, as entities may be grouped by a null value
+        Map<Object, List<T>> groups = new HashMap<>();
+        try (Stream<T> entities = stream(clazz)) {
+            entities.filter(entity -> GraphProperties.matches(entity, aggregation.getFilters())
+                    && inRanges(entity, aggregation.getRanges())
+                    && reaches(entity, aggregation.getAssociations()))
+                    .forEach(entity -> {
+                        Object key;
+                        if (byAssociation) {
+                            Entity associated = GraphProperties.associated(entity, path[0]);
+                            if (null == associated) {
+                                return;
+                            }
+                            key = 1 == path.length ? associated.getId() : GraphProperties.value(associated, path[1]);
+                        } else {
+                            key = GraphProperties.value(entity, path[0]);
+                        }
+                        groups.computeIfAbsent(key, k -> new ArrayList<>()).add(entity);
+                    });
+        }
+
+        List<Aggregate> aggregates = new ArrayList<>();
+        for (Map.Entry<Object, List<T>> group : groups.entrySet()) {
+            Object value = aggregateValue(aggregation, group.getValue());
+            if (null != value) {
+                aggregates.add(new Aggregate(group.getKey(), value));
+            }
+        }
+        aggregates.sort(Comparator.comparing(Aggregate::getValue, InMemoryDAO::compareValues).reversed()
+                .thenComparing(Aggregate::getKey, Comparator.nullsLast(InMemoryDAO::compareValues)));
+        return new ArrayList<>(aggregates.subList(0, Math.min(aggregation.getLimit(), aggregates.size())));
+    }
+
+    private static boolean inRanges(Entity entity, Map<String, Object[]> ranges) {
+        for (Map.Entry<String, Object[]> range : ranges.entrySet()) {
+            Object value = GraphProperties.sortValue(entity, range.getKey());
+            Object from = GraphProperties.sortValue(entity.getClass(), range.getKey(), range.getValue()[0]);
+            Object to = GraphProperties.sortValue(entity.getClass(), range.getKey(), range.getValue()[1]);
+            if (null == value || compareValues(value, from) < 0 || compareValues(value, to) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean reaches(Entity entity, Map<String, Long> associations) {
+        for (Map.Entry<String, Long> association : associations.entrySet()) {
+            Entity associated = entity;
+            for (String field : association.getKey().split("\\.")) {
+                associated = null == associated ? null : GraphProperties.associated(associated, field);
+            }
+            if (null == associated || !association.getValue().equals(associated.getId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The group's value as the Cypher aggregation computes it, or null if it has none
+    private static Object aggregateValue(Aggregation<?> aggregation, List<? extends Entity> group) {
+        String field = aggregation.getField();
+        switch (aggregation.getFunction()) {
+            case COUNT:
+                return (long) group.size();
+            case SUM:
+                return group.stream().map(entity -> GraphProperties.value(entity, field)).filter(Objects::nonNull)
+                        .mapToDouble(value -> value instanceof Number
+                                ? ((Number) value).doubleValue() : Double.parseDouble(value.toString()))
+                        .sum();
+            case MAX:
+                return group.stream().map(entity -> GraphProperties.sortValue(entity, field)).filter(Objects::nonNull)
+                        .max(InMemoryDAO::compareValues).orElse(null);
+            case LAST:
+                Object last = null;
+                for (Entity entity : group) {
+                    Object value = GraphProperties.sortValue(entity, field);
+                    last = null != value ? value : last;
+                }
+                return last;
+            case SHARE:
+                Object shareOf = GraphProperties.toGraphValue(aggregation.getShareOf());
+                long matching = group.stream()
+                        .filter(entity -> shareOf.equals(GraphProperties.value(entity, field))).count();
+                return 0 == matching ? null : (double) matching / group.size();
+            default:
+                throw new IllegalArgumentException("unsupported aggregation " + aggregation.getFunction());
+        }
+    }
+
+    @Override
+    public List<Launch> findLaunchesBetween(LocalDate from, LocalDate to) {
+        notNull(from);
+        notNull(to);
+        if (from.isAfter(to)) {
+            return new ArrayList<>();
+        }
+        return loadAll(Launch.class, launchIdsByDate.subMap(from, true, to, true).values().stream()
+                .flatMap(Set::stream).collect(Collectors.toList()));
+    }
+
+    @Override
+    public List<Launch> latestLaunches(int k) {
+        isTrue(k >= 0, "k must not be negative");
+        return loadAll(Launch.class, launchIdsByDate.descendingMap().values().stream()
+                .flatMap(Set::stream).limit(k).collect(Collectors.toList()));
+    }
+
+    @Override
+    public User getUserByEmail(String email) {
+        Long id = userIdsByEmail.get(email);
+        return null == id ? null : load(User.class, id);
+    }
+
+    @Override
+    public LaunchServiceProvider getLSPByName(String name) {
+        Long id = lspIdsByName.get(name);
+        return null == id ? null : load(LaunchServiceProvider.class, id);
+    }
+
+    @Override
+    public void close() {
+        synchronized (writeLock) {
+            entitiesById.clear();
+            idsByNaturalKey.clear();
+            userIdsByEmail.clear();
+            lspIdsByName.clear();
+            launchIdsByDate.clear();
+            indexedNaturalKeys.clear();
+            indexedEmails.clear();
+            indexedLSPNames.clear();
+            indexedLaunchDates.clear();
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package rockets.dataaccess.memory;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rockets.dataaccess.Aggregate;
+import rockets.dataaccess.Aggregation;
+import rockets.dataaccess.DAO;
+import rockets.dataaccess.EntityGraph;
+import rockets.dataaccess.EntityView;
+import rockets.dataaccess.Page;
+import rockets.dataaccess.PageRequest;
+import rockets.dataaccess.event.ChangeEvent;
+import rockets.dataaccess.event.ChangeListener;
+import rockets.model.*;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Serves reads of rockets, launch service providers and launches from an in-memory snapshot of
+ * another {@link DAO}, so that readers neither wait for writers nor touch the underlying store. The
+ * snapshot is built once from the underlying DAO and then kept up to date by applying the writes
+ * made through this DAO: every write marks the ids it touched, and applying them reloads just those
+ * entities by id, removing the ones that are gone, so it costs in proportion to the write rather
+ * than to the database.
+ * <p>
+ * With a maximum staleness of zero, the writer applies its changes before returning, so reads
+ * always see the writes made through this DAO. Otherwise a background thread applies them every
+ * {@code maxStaleness}. Changes are applied to a new version of the snapshot, which copies only the
+ * entities that changed and is then published in place of the old one, so readers never lock and
+ * each read sees one version throughout. Entities are handed out as copies with their associations one level
+ * deep, like a load of depth one, so callers may modify them and saving one does not drag the
+ * rest of the snapshot along. Users are not part of the snapshot and are read from the underlying
+ * DAO.
+ */
+public class SnapshotDAO implements DAO {
+    private static Logger logger = LoggerFactory.getLogger(SnapshotDAO.class);
+
+    private static final Set<Class<? extends Entity>> SNAPSHOT_CLASSES = ImmutableSet.of(
+            Rocket.class, LaunchServiceProvider.class, Launch.class);
+
+    private final DAO dao;
+    private final long maxStalenessMillis;
+    // the published version, replaced as a whole by every change
+    private volatile SnapshotEntities snapshot;
+    // ids written since they were last applied, with their classes
+    private final Map<Long, Class<? extends Entity>> touched = new ConcurrentHashMap<>();
+    private final Object applyLock = new Object();
+    private final ScheduledExecutorService refresher;
+
+    public SnapshotDAO(DAO dao, long maxStaleness, TimeUnit unit) {
+        notNull(dao, "dao cannot be null");
+        isTrue(maxStaleness >= 0, "maximum staleness cannot be negative");
+        this.dao = dao;
+        this.maxStalenessMillis = unit.toMillis(maxStaleness);
+        rebuild();
+        if (maxStalenessMillis > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("snapshot-refresher").setDaemon(true).build());
+            refresher.scheduleWithFixedDelay(this::refreshIfStale, maxStalenessMillis, maxStalenessMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            refresher = null;
+        }
+    }
+
+    /**
+     * Builds the snapshot from all entities of the underlying DAO again, e.g. after it was written
+     * to directly, and publishes it.
+     */
+    public void rebuild() {
+        synchronized (applyLock) {
+            // writes made while building may be missed, so they are applied again afterwards
+            touched.clear();
+            long start = System.nanoTime();
+            List<Entity> loaded = new ArrayList<>();
+            for (Class<? extends Entity> clazz : SNAPSHOT_CLASSES) {
+                try (Stream<? extends Entity> entities = dao.stream(clazz)) {
+                    entities.forEach(loaded::add);
+                }
+            }
+            snapshot = new SnapshotEntities().patched(Collections.emptySet(), loaded);
+            logger.debug("built snapshot in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        }
+    }
+
+    /**
+     * Applies the writes made through this DAO since they were last applied to the snapshot.
+     */
+    public void refresh() {
+        synchronized (applyLock) {
+            Map<Class<? extends Entity>, List<Long>> ids = new HashMap<>();
+            for (Long id : new ArrayList<>(touched.keySet())) {
+                Class<? extends Entity> clazz = touched.remove(id);
+                if (null != clazz) {
+                    ids.computeIfAbsent(clazz, c -> new ArrayList<>()).add(id);
+                }
+            }
+            if (ids.isEmpty()) {
+                return;
+            }
+            List<Entity> loaded = new ArrayList<>();
+            Set<Long> gone = new HashSet<>();
+            for (Map.Entry<Class<? extends Entity>, List<Long>> entry : ids.entrySet()) {
+                gone.addAll(entry.getValue());
+                for (Entity entity : dao.loadAll(entry.getKey(), entry.getValue())) {
+                    gone.remove(entity.getId());
+                    loaded.add(entity);
+                }
+            }
+            snapshot = snapshot.patched(gone, loaded);
+            logger.debug("applied " + loaded.size() + " saved and " + gone.size() + " deleted entities to the snapshot");
+        }
+    }
+
+    private void refreshIfStale() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            logger.warn("could not apply writes to the snapshot", e);
+        }
+    }
+
+    /**
+     * @return whether writes were made that the snapshot does not show yet.
+     */
+    public boolean isStale() {
+        return !touched.isEmpty();
+    }
+
+    // Called after every write to the underlying DAO with the entities it touched
+    private void written(Collection<? extends Entity> entities) {
+        for (Entity entity : EntityGraph.collect(entities)) {
+            touched(entity.getClass(), entity.getId());
+        }
+        applyIfRequired();
+    }
+
+    private void touched(Class<? extends Entity> clazz, Long id) {
+        if (null != id && inSnapshot(clazz)) {
+            touched.put(id, clazz);
+        }
+    }
+
+    private void applyIfRequired() {
+        if (0 == maxStalenessMillis) {
+            refresh();
+        }
+    }
+
+    // Reads from the version published when called, which no change alters
+    private <R> R read(Function<SnapshotEntities, R> reader) {
+        return reader.apply(snapshot);
+    }
+
+    private static boolean inSnapshot(Class<?> clazz) {
+        return SNAPSHOT_CLASSES.contains(clazz);
+    }
+
+    private static <T extends Entity> List<T> views(SnapshotEntities snapshot, Collection<T> entities) {
+        return entities.stream().map(snapshot::view).collect(Collectors.toList());
+    }
+
+    @Override
+    public <T extends Entity> T load(Class<T> clazz, Long id) {
+        if (!inSnapshot(clazz)) {
+            return dao.load(clazz, id);
+        }
+        notNull(id, "id cannot be null");
+        return read(snapshot -> snapshot.view(clazz, id));
+    }
+
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity) {
+        T saved = dao.createOrUpdate(entity);
+        written(Collections.singletonList(entity));
+        return saved;
+    }
+
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity, Consumer<ChangeEvent> changed) {
+        T saved = dao.createOrUpdate(entity, changed);
+        written(Collections.singletonList(entity));
+        return saved;
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities) {
+        Collection<T> saved = dao.createOrUpdateAll(entities);
+        written(entities);
+        return saved;
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities, Consumer<ChangeEvent> changed) {
+        Collection<T> saved = dao.createOrUpdateAll(entities, changed);
+        written(entities);
+        return saved;
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz) {
+        if (!inSnapshot(clazz)) {
+            return dao.loadAll(clazz);
+        }
+        return read(snapshot -> views(snapshot, snapshot.getEntities().loadAll(clazz)));
+    }
+
+    @Override
+    public <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids) {
+        if (!inSnapshot(clazz)) {
+            return dao.loadAll(clazz, ids);
+        }
+        return read(snapshot -> views(snapshot, snapshot.getEntities().loadAll(clazz, ids)));
+    }
+
+    /**
+     * Copies each entity as the stream reaches it; entities deleted meanwhile are skipped.
+     */
+    @Override
+    public <T extends Entity> Stream<T> stream(Class<T> clazz) {
+        if (!inSnapshot(clazz)) {
+            return dao.stream(clazz);
+        }
+        List<Long> ids = read(snapshot -> snapshot.getEntities().loadAll(clazz).stream().map(Entity::getId)
+                .collect(Collectors.toList()));
+        return ids.stream().map(id -> read(snapshot -> snapshot.view(clazz, id))).filter(Objects::nonNull);
+    }
+
+    @Override
+    public <T extends Entity> Page<T> loadPage(Class<T> clazz, PageRequest request) {
+        if (!inSnapshot(clazz)) {
+            return dao.loadPage(clazz, request);
+        }
+        return read(snapshot -> {
+            Page<T> page = snapshot.getEntities().loadPage(clazz, request);
+            return new Page<>(views(snapshot, page.getItems()), page.getNextCursor(), page.getPreviousCursor());
+        });
+    }
+
+    @Override
+    public <T extends Entity> Page<EntityView> loadPageView(Class<T> clazz, PageRequest request, String... fields) {
+        if (!inSnapshot(clazz)) {
+            return dao.loadPageView(clazz, request, fields);
+        }
+        return read(snapshot -> snapshot.getEntities().loadPageView(clazz, request, fields));
+    }
+
+    @Override
+    public <T extends Entity> void delete(T entity) {
+        dao.delete(entity);
+        touched(entity.getClass(), entity.getId());
+        applyIfRequired();
+    }
+
+    @Override
+    public <T extends Entity> void delete(T entity, Consumer<ChangeEvent> deleted) {
+        dao.delete(entity, deleted);
+        touched(entity.getClass(), entity.getId());
+        applyIfRequired();
+    }
+
+    @Override
+    public <T extends Entity> long deleteWhere(Class<T> clazz, Map<String, ?> filters, boolean cascade) {
+        long deleted = dao.deleteWhere(clazz, filters, cascade, this::deleted);
+        applyIfRequired();
+        return deleted;
+    }
+
+    @Override
+    public <T extends Entity> long deleteWhere(Class<T> clazz, Map<String, ?> filters, boolean cascade,
+                                               Consumer<ChangeEvent> deleted) {
+        notNull(deleted, "deleted cannot be null");
+        long count = dao.deleteWhere(clazz, filters, cascade, event -> {
+            deleted(event);
+            deleted.accept(event);
+        });
+        applyIfRequired();
+        return count;
+    }
+
+    private void deleted(ChangeEvent event) {
+        touched(event.getEntityClass(), event.getId());
+    }
+
+    @Override
+    public <T extends Entity> long count(Class<T> clazz, Map<String, ?> filters) {
+        if (!inSnapshot(clazz)) {
+            return dao.count(clazz, filters);
+        }
+        return read(snapshot -> snapshot.getEntities().count(clazz, filters));
+    }
+
+    @Override
+    public <T extends Entity> boolean exists(Class<T> clazz, Map<String, ?> filters) {
+        if (!inSnapshot(clazz)) {
+            return dao.exists(clazz, filters);
+        }
+        return read(snapshot -> snapshot.getEntities().exists(clazz, filters));
+    }
+
+    @Override
+    public <T extends Entity> List<Aggregate> aggregate(Aggregation<T> aggregation) {
+        if (!inSnapshot(aggregation.getEntityClass())) {
+            return dao.aggregate(aggregation);
+        }
+        return read(snapshot -> snapshot.getEntities().aggregate(aggregation));
+    }
+
+    @Override
+    public List<Launch> findLaunchesBetween(LocalDate from, LocalDate to) {
+        return read(snapshot -> views(snapshot, snapshot.getEntities().findLaunchesBetween(from, to)));
+    }
+
+    @Override
+    public List<Launch> latestLaunches(int k) {
+        return read(snapshot -> views(snapshot, snapshot.getEntities().latestLaunches(k)));
+    }
+
+    @Override
+    public User getUserByEmail(String email) {
+        return dao.getUserByEmail(email);
+    }
+
+    @Override
+    public LaunchServiceProvider getLSPByName(String name) {
+        return read(snapshot -> {
+            LaunchServiceProvider lsp = snapshot.getEntities().getLSPByName(name);
+            return null == lsp ? null : snapshot.view(lsp);
+        });
+    }
+
+    @Override
+    public void addChangeListener(ChangeListener listener) {
+        dao.addChangeListener(listener);
+    }
+
+    @Override
+    public void removeChangeListener(ChangeListener listener) {
+        dao.removeChangeListener(listener);
+    }
+
+    @Override
+    public void openSession() {
+        dao.openSession();
+    }
+
+    @Override
+    public void closeSession() {
+        dao.closeSession();
+    }
+
+    @Override
+    public void close() {
+        if (null != refresher) {
+            refresher.shutdownNow();
+        }
+        dao.close();
+    }
+}
@@ -0,0 +1,248 @@
+package rockets.dataaccess.memory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import rockets.dataaccess.neo4j.GraphProperties;
+import rockets.model.Entity;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.util.*;
+
+/**
+ * A version of a {@link SnapshotDAO} snapshot: copies of rockets, launch service providers and
+ * launches, kept in an {@link InMemoryDAO} with their to-one references only, and for every entity
+ * the ids of the entities referring to it. A rocket's launches and a provider's rockets are looked
+ * up by those ids when the entity is handed out, so no stored set ever has to change.
+ * <p>
+ * A version is never modified once built, so any number of readers may use it without locking.
+ * Changes are applied by {@link #patched(Collection, Collection)}, which builds a new version
+ * sharing the unchanged entities with this one and copying only those that changed, along with the
+ * entities referring to them, so that their references point at the new copies.
+ */
+final class SnapshotEntities {
+    // the to-one associations of each class, the only ones stored
+    private static final Map<Class<?>, List<String>> REFERENCE_FIELDS = ImmutableMap.of(
+            Rocket.class, ImmutableList.of("manufacturer"),
+            Launch.class, ImmutableList.of("launchVehicle", "launchServiceProvider"));
+
+    private final InMemoryDAO entities;
+    // a new version copies the sets it changes, as those of this one may be in use
+    private final Map<Long, Set<Long>> referrers;
+
+    /**
+     * Creates an empty version.
+     */
+    SnapshotEntities() {
+        this(new InMemoryDAO(), new HashMap<>());
+    }
+
+    private SnapshotEntities(InMemoryDAO entities, Map<Long, Set<Long>> referrers) {
+        this.entities = entities;
+        this.referrers = referrers;
+    }
+
+    /**
+     * @return the stored entities, for queries; they must not be handed out or modified.
+     */
+    InMemoryDAO getEntities() {
+        return entities;
+    }
+
+    /**
+     * Builds a new version without the entities with the removed ids, whose referrers lose those
+     * references, and with copies of the loaded entities in place of those stored under their ids.
+     * Entities the loaded ones refer to that are neither loaded nor stored are copied along; loaded
+     * entities with the values and references of the stored ones are not copied at all.
+     *
+     * @return the new version; this one stays as it is.
+     */
+    SnapshotEntities patched(Collection<Long> removed, Collection<? extends Entity> loaded) {
+        SnapshotEntities patched = new SnapshotEntities(new InMemoryDAO(entities), new HashMap<>(referrers));
+        patched.apply(new HashSet<>(removed), loaded);
+        return patched;
+    }
+
+    // Only called on a version that is not handed out yet
+    private void apply(Set<Long> removed, Collection<? extends Entity> loaded) {
+        // what each copy is made from, by id
+        Map<Long, Entity> sources = new LinkedHashMap<>();
+        for (Entity entity : loaded) {
+            if (!unchanged(entity)) {
+                sources.putIfAbsent(entity.getId(), entity);
+            }
+        }
+        // sources grows while referenced entities are copied along
+        List<Entity> pending = new ArrayList<>(sources.values());
+        for (int i = 0; i < pending.size(); i++) {
+            for (Entity reference : references(pending.get(i))) {
+                Long id = reference.getId();
+                if (null != id && !sources.containsKey(id) && (null == stored(id) || removed.contains(id))) {
+                    sources.put(id, reference);
+                    pending.add(reference);
+                }
+            }
+        }
+        // the stored entities referring to a replaced or removed one, directly or not, are copied
+        // too, so that they refer to its copy or lose the reference
+        Deque<Long> replaced = new ArrayDeque<>(removed);
+        replaced.addAll(sources.keySet());
+        while (!replaced.isEmpty()) {
+            for (Long referrer : referrers.getOrDefault(replaced.poll(), Collections.emptySet())) {
+                Entity stored = stored(referrer);
+                if (null != stored && !sources.containsKey(referrer) && !removed.contains(referrer)) {
+                    sources.put(referrer, stored);
+                    replaced.add(referrer);
+                }
+            }
+        }
+
+        Map<Long, Entity> copies = new LinkedHashMap<>();
+        sources.forEach((id, source) -> copies.put(id, GraphProperties.copyOf(source)));
+        for (Entity source : sources.values()) {
+            link(source, copies.get(source.getId()), copies, removed);
+        }
+
+        Set<Long> owned = new HashSet<>();
+        for (Long id : Iterables.concat(removed, copies.keySet())) {
+            Entity stored = stored(id);
+            if (null != stored) {
+                forget(stored, owned);
+            }
+        }
+        for (Long id : removed) {
+            referrers.remove(id);
+        }
+        copies.values().forEach(copy -> remember(copy, owned));
+        owned.forEach(id -> referrers.remove(id, Collections.emptySet()));
+        entities.replace(removed, copies.values());
+    }
+
+    /**
+     * @return a copy of the stored entity with the id, with copies of its associations one level
+     * deep, as a load of depth one gives it, or null if there is none.
+     */
+    <T extends Entity> T view(Class<T> clazz, Long id) {
+        T stored = entities.load(clazz, id);
+        return null == stored ? null : view(stored);
+    }
+
+    /**
+     * @return a copy of a stored entity, as {@link #view(Class, Long)} gives it.
+     */
+    <T extends Entity> T view(T stored) {
+        Map<Long, Entity> copies = new HashMap<>();
+        T view = copy(stored, copies);
+        for (Long referrer : referrers.getOrDefault(stored.getId(), Collections.emptySet())) {
+            Entity entity = stored(referrer);
+            if (view instanceof Rocket && entity instanceof Launch
+                    && isReference(((Launch) entity).getLaunchVehicle(), stored.getId())) {
+                ((Rocket) view).getLaunches().add(copy((Launch) entity, copies));
+            } else if (view instanceof LaunchServiceProvider && entity instanceof Rocket
+                    && isReference(((Rocket) entity).getManufacturer(), stored.getId())) {
+                ((LaunchServiceProvider) view).getRockets().add(copy((Rocket) entity, copies));
+            }
+        }
+        return view;
+    }
+
+    // a copy with copies of its to-one references, and of theirs, which equality needs
+    @SuppressWarnings("unchecked")
+    private <T extends Entity> T copy(T entity, Map<Long, Entity> copies) {
+        Entity existing = copies.get(entity.getId());
+        if (null != existing) {
+            return (T) existing;
+        }
+        T copy = GraphProperties.copyOf(entity);
+        copies.put(copy.getId(), copy);
+        for (String field : referenceFields(entity)) {
+            Entity reference = GraphProperties.associated(entity, field);
+            if (null != reference) {
+                GraphProperties.setAssociated(copy, field, copy(reference, copies));
+            }
+        }
+        return copy;
+    }
+
+    private Entity stored(Long id) {
+        return entities.load(Entity.class, id);
+    }
+
+    // whether the entity has the values and references of the one stored under its id
+    private boolean unchanged(Entity entity) {
+        Entity stored = stored(entity.getId());
+        if (null == stored || !stored.getClass().equals(entity.getClass())
+                || !GraphProperties.properties(stored).equals(GraphProperties.properties(entity))) {
+            return false;
+        }
+        for (String field : referenceFields(entity)) {
+            if (!Objects.equals(id(GraphProperties.associated(stored, field)),
+                    id(GraphProperties.associated(entity, field)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Long id(Entity entity) {
+        return null == entity ? null : entity.getId();
+    }
+
+    private static List<String> referenceFields(Entity entity) {
+        return REFERENCE_FIELDS.getOrDefault(entity.getClass(), Collections.emptyList());
+    }
+
+    // the non-null to-one references of an entity
+    private static List<Entity> references(Entity entity) {
+        List<Entity> references = new ArrayList<>();
+        for (String field : referenceFields(entity)) {
+            Entity reference = GraphProperties.associated(entity, field);
+            if (null != reference) {
+                references.add(reference);
+            }
+        }
+        return references;
+    }
+
+    // points the copy's to-one references at the copies or stored entities with the source's ones'
+    // ids, or at nothing if those are removed
+    private void link(Entity source, Entity copy, Map<Long, Entity> copies, Set<Long> removed) {
+        for (String field : referenceFields(source)) {
+            Entity reference = GraphProperties.associated(source, field);
+            Entity resolved = null;
+            if (null != reference && null != reference.getId() && !removed.contains(reference.getId())) {
+                resolved = copies.get(reference.getId());
+                resolved = null != resolved ? resolved : stored(reference.getId());
+            }
+            GraphProperties.setAssociated(copy, field, resolved);
+        }
+    }
+
+    private static boolean isReference(Entity reference, Long id) {
+        return null != reference && id.equals(reference.getId());
+    }
+
+    private void remember(Entity entity, Set<Long> owned) {
+        for (Entity reference : references(entity)) {
+            referring(reference.getId(), owned).add(entity.getId());
+        }
+    }
+
+    private void forget(Entity entity, Set<Long> owned) {
+        for (Entity reference : references(entity)) {
+            referring(reference.getId(), owned).remove(entity.getId());
+        }
+    }
+
+    // the ids referring to the entity with the id, as a set of this version's own, which it may change
+    private Set<Long> referring(Long id, Set<Long> owned) {
+        Set<Long> referring = referrers.get(id);
+        if (owned.add(id)) {
+            referring = null == referring ? new TreeSet<>() : new TreeSet<>(referring);
+            referrers.put(id, referring);
+        }
+        return referring;
+    }
+}
@@ -0,0 +1,324 @@
+package rockets.dataaccess.neo4j;
+
+import org.neo4j.ogm.annotation.Id;
+import org.neo4j.ogm.annotation.Property;
+import org.neo4j.ogm.annotation.Relationship;
+import org.neo4j.ogm.utils.RelationshipUtils;
+import rockets.model.Entity;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+
+/**
+ * Maps entity fields to the node properties OGM stores them in, so that hand-written Cypher can
+ * filter and sort on them. Field names are validated here before they are ever put into a query.
+ * Other DAOs use the same values to filter and sort exactly like the graph does.
+ */
+public final class GraphProperties {
+    private GraphProperties() {
+    }
+
+    /**
+     * @return the Cypher expression reading the given field from node {@code n}.
+     */
+    static String expression(Class<? extends Entity> clazz, String fieldName) {
+        return expression(clazz, fieldName, "n");
+    }
+
+    /**
+     * @return the Cypher expression reading the given field from the given node variable.
+     */
+    static String expression(Class<? extends Entity> clazz, String fieldName, String node) {
+        Field field = field(clazz, fieldName);
+        if (field.isAnnotationPresent(Id.class)) {
+            return "id(" + node + ")";
+        }
+        return node + ".`" + name(field) + "`";
+    }
+
+    /**
+     * @return the Cypher expression reading the given field from the given node variable as a value
+     * that orders like the field's Java type; decimals are stored as strings and read as floats.
+     */
+    static String sortExpression(Class<? extends Entity> clazz, String fieldName, String node) {
+        String expression = expression(clazz, fieldName, node);
+        return isDecimal(field(clazz, fieldName)) ? "toFloat(" + expression + ")" : expression;
+    }
+
+    /**
+     * @return the relationship pattern from a node of the class to the nodes of the given
+     * association, e.g. {@code <-[:`PROVIDES`]-}.
+     */
+    static String relationship(Class<? extends Entity> clazz, String fieldName) {
+        Field field = association(clazz, fieldName);
+        Relationship relationship = field.getAnnotation(Relationship.class);
+        String type = null == relationship ? "" : relationship.type();
+        if (type.isEmpty()) {
+            type = null == relationship || relationship.value().isEmpty()
+                    ? RelationshipUtils.inferRelationshipType(fieldName) : relationship.value();
+        }
+        String direction = null == relationship ? Relationship.OUTGOING : relationship.direction();
+        String edge = "[:`" + type + "`]";
+        switch (direction) {
+            case Relationship.INCOMING:
+                return "<-" + edge + "-";
+            case Relationship.UNDIRECTED:
+                return "-" + edge + "-";
+            default:
+                return "-" + edge + "->";
+        }
+    }
+
+    /**
+     * @return the name of the node property the given field is stored in.
+     */
+    static String name(Class<? extends Entity> clazz, String fieldName) {
+        return name(field(clazz, fieldName));
+    }
+
+    private static String name(Field field) {
+        Property property = field.getAnnotation(Property.class);
+        String name = null == property ? "" : property.name();
+        return name.isEmpty() ? field.getName() : name;
+    }
+
+    /**
+     * @return the value of the given field as stored in the graph.
+     */
+    public static Object value(Entity entity, String fieldName) {
+        return toGraphValue(fieldValue(entity, field(entity.getClass(), fieldName)));
+    }
+
+    private static Object fieldValue(Entity entity, Field field) {
+        try {
+            return field.get(entity);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the value of the given field as stored in the graph, converted to one that orders like
+     * the field's Java type, as {@link #sortExpression(Class, String, String)} reads it.
+     */
+    public static Object sortValue(Entity entity, String fieldName) {
+        return sortValue(entity.getClass(), fieldName, fieldValue(entity, field(entity.getClass(), fieldName)));
+    }
+
+    /**
+     * @return the given value of a field of the class, converted as {@link #sortValue(Entity, String)}.
+     */
+    public static Object sortValue(Class<? extends Entity> clazz, String fieldName, Object value) {
+        Object graphValue = toGraphValue(value);
+        if (null != graphValue && isDecimal(field(clazz, fieldName))) {
+            return Double.valueOf(graphValue.toString());
+        }
+        return graphValue;
+    }
+
+    /**
+     * @return whether the given field is a single association to another entity.
+     */
+    public static boolean isAssociation(Class<? extends Entity> clazz, String fieldName) {
+        Field field = declaredField(clazz, fieldName);
+        return Entity.class.isAssignableFrom(field.getType());
+    }
+
+    /**
+     * @return the entity the given single association of the entity refers to, or null.
+     */
+    public static Entity associated(Entity entity, String fieldName) {
+        return (Entity) fieldValue(entity, association(entity.getClass(), fieldName));
+    }
+
+    /**
+     * Points the given single association of the entity at another entity, or at none, which the
+     * entities' own setters do not allow.
+     */
+    public static void setAssociated(Entity entity, String fieldName, Entity associated) {
+        try {
+            association(entity.getClass(), fieldName).set(entity, associated);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the class of the entities the given single association refers to.
+     */
+    @SuppressWarnings("unchecked")
+    public static Class<? extends Entity> associationType(Class<? extends Entity> clazz, String fieldName) {
+        return (Class<? extends Entity>) association(clazz, fieldName).getType();
+    }
+
+    /**
+     * @return whether the stored values of the entity's fields equal the given values, as a
+     * {@code WHERE} clause on them would decide.
+     */
+    public static boolean matches(Entity entity, Map<String, ?> filters) {
+        for (Map.Entry<String, ?> filter : filters.entrySet()) {
+            if (!Objects.equals(toGraphValue(filter.getValue()), value(entity, filter.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the values of all fields stored as node properties, keyed by property name.
+     */
+    public static Map<String, Object> properties(Entity entity) {
+        Map<String, Object> properties = new HashMap<>();
+        for (Field field : propertyFields(entity.getClass())) {
+            properties.put(name(field), toGraphValue(fieldValue(entity, field)));
+        }
+        return properties;
+    }
+
+    /**
+     * Copies the values of all fields stored as node properties from one entity to another of the
+     * same class, as {@code SET n += properties} updates a node; ids and associations are kept.
+     */
+    public static void copyProperties(Entity from, Entity to) {
+        isTrue(from.getClass().equals(to.getClass()), "cannot copy a " + from.getClass().getSimpleName()
+                + " onto a " + to.getClass().getSimpleName());
+        for (Field field : propertyFields(from.getClass())) {
+            try {
+                field.set(to, field.get(from));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * @return a new instance of the entity's class with its id and the values of all fields stored as
+     * node properties, but none of its associations; collection values are copied, so that the two
+     * entities share nothing that can be modified.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Entity> T copyOf(T entity) {
+        T copy;
+        try {
+            Constructor<? extends Entity> constructor = entity.getClass().getDeclaredConstructor();
+            constructor.setAccessible(true);
+            copy = (T) constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("cannot copy a " + entity.getClass().getSimpleName(), e);
+        }
+        for (Field field : propertyFields(entity.getClass())) {
+            try {
+                Object value = field.get(entity);
+                if (value instanceof Set) {
+                    value = new LinkedHashSet<>((Set<?>) value);
+                } else if (value instanceof Collection) {
+                    value = new ArrayList<>((Collection<?>) value);
+                }
+                field.set(copy, value);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        copy.setId(entity.getId());
+        return copy;
+    }
+
+    private static List<Field> propertyFields(Class<?> clazz) {
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> c = clazz; null != c; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())
+                        || field.isAnnotationPresent(Id.class) || isAssociation(field)) {
+                    continue;
+                }
+                field.setAccessible(true);
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Converts a Java value the way OGM's converters store it; dates are stored with
+     * {@link rockets.model.EpochDayConverter}.
+     */
+    public static Object toGraphValue(Object value) {
+        if (value instanceof LocalDate) {
+            return ((LocalDate) value).toEpochDay();
+        } else if (value instanceof BigDecimal) {
+            return value.toString();
+        } else if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        } else if (value instanceof Float) {
+            return ((Float) value).doubleValue();
+        } else if (value instanceof Collection) {
+            return ((Collection<?>) value).stream().map(GraphProperties::toGraphValue).collect(Collectors.toList());
+        }
+        return value;
+    }
+
+    private static Field field(Class<?> clazz, String fieldName) {
+        Field field = declaredField(clazz, fieldName);
+        if (isAssociation(field) || Collection.class.isAssignableFrom(field.getType())) {
+            throw new IllegalArgumentException(fieldName + " is not a simple property of "
+                    + clazz.getSimpleName());
+        }
+        return field;
+    }
+
+    private static Field association(Class<?> clazz, String fieldName) {
+        Field field = declaredField(clazz, fieldName);
+        if (!Entity.class.isAssignableFrom(field.getType())) {
+            throw new IllegalArgumentException(fieldName + " is not a single association of "
+                    + clazz.getSimpleName());
+        }
+        return field;
+    }
+
+    private static Field declaredField(Class<?> clazz, String fieldName) {
+        for (Class<?> c = clazz; null != c; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException ignored) {
+                // keep looking in the superclass
+            }
+        }
+        throw new IllegalArgumentException(clazz.getSimpleName() + " has no property " + fieldName);
+    }
+
+    private static boolean isDecimal(Field field) {
+        return BigDecimal.class.equals(field.getType());
+    }
+
+    private static boolean isAssociation(Field field) {
+        if (field.isAnnotationPresent(Relationship.class) || Entity.class.isAssignableFrom(field.getType())) {
+            return true;
+        }
+        Type type = field.getGenericType();
+        return type instanceof ParameterizedType
+                && Collection.class.isAssignableFrom(field.getType())
+                && Arrays.stream(((ParameterizedType) type).getActualTypeArguments())
+                .anyMatch(t -> t instanceof Class && Entity.class.isAssignableFrom((Class<?>) t));
+    }
+}
@@ -0,0 +1,231 @@
+package rockets.dataaccess.neo4j;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Ordering;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Result;
+import org.neo4j.kernel.api.exceptions.KernelException;
+import org.neo4j.kernel.impl.proc.Procedures;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.procedure.Context;
+import org.neo4j.procedure.Description;
+import org.neo4j.procedure.Mode;
+import org.neo4j.procedure.Name;
+import org.neo4j.procedure.Procedure;
+import org.neo4j.procedure.UserFunction;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * The {@link rockets.mining.RocketMiner} queries as procedures and functions of the embedded
+ * database, which walk launch nodes with the core API instead of mapping them to entities, and
+ * seek the launch date index where a question is about a range of dates. Each
+ * procedure streams the top k rows, highest value first, ties broken by ascending id, and ranks
+ * like {@link rockets.mining.AggregatingRocketMiner}, e.g.
+ * {@code CALL rockets.topLaunched(3) YIELD id, value}.
+ */
+public class MiningProcedures {
+    private static final Label LAUNCH = Label.label("Launch");
+    private static final RelationshipType PROVIDES = RelationshipType.withName("PROVIDES");
+    private static final RelationshipType LAUNCH_SERVICE_PROVIDER = RelationshipType.withName("LAUNCH_SERVICE_PROVIDER");
+    private static final String SUCCESSFUL = "SUCCESSFUL";
+
+    @Context
+    public GraphDatabaseService db;
+
+    /**
+     * Registers the procedures and functions with an embedded database.
+     */
+    public static void register(GraphDatabaseService db) {
+        Procedures procedures = ((GraphDatabaseAPI) db).getDependencyResolver().resolveDependency(Procedures.class);
+        try {
+            procedures.registerProcedure(MiningProcedures.class);
+            procedures.registerFunction(MiningProcedures.class);
+        } catch (KernelException e) {
+            throw new IllegalStateException("could not register the mining procedures", e);
+        }
+    }
+
+    @Procedure(name = "rockets.topLaunched", mode = Mode.READ)
+    @Description("rockets.topLaunched(k) - the k rockets with the most launches")
+    public Stream<Ranking> topLaunched(@Name("k") long k) {
+        Map<Long, Long> launches = new HashMap<>();
+        forEachLaunch(launch -> {
+            Node rocket = neighbour(launch, PROVIDES, Direction.INCOMING);
+            if (null != rocket) {
+                launches.merge(rocket.getId(), 1L, Long::sum);
+            }
+        });
+        return top(launches, k);
+    }
+
+    @Procedure(name = "rockets.reliability", mode = Mode.READ)
+    @Description("rockets.reliability(k) - the k launch service providers with the highest share of "
+            + "successful launches, among those with any")
+    public Stream<Ranking> reliability(@Name("k") long k) {
+        Map<Long, long[]> outcomes = new HashMap<>();
+        forEachLaunch(launch -> {
+            Node provider = neighbour(launch, LAUNCH_SERVICE_PROVIDER, Direction.OUTGOING);
+            if (null != provider) {
+                long[] counts = outcomes.computeIfAbsent(provider.getId(), id -> new long[2]);
+                counts[0] += SUCCESSFUL.equals(launch.getProperty("launchOutcome", null)) ? 1 : 0;
+                counts[1]++;
+            }
+        });
+        Map<Long, Double> shares = new HashMap<>();
+        outcomes.forEach((id, counts) -> {
+            if (counts[0] > 0) {
+                shares.put(id, (double) counts[0] / counts[1]);
+            }
+        });
+        return top(shares, k);
+    }
+
+    /**
+     * Takes the revenue of a provider to be the price of its last launch of the year in id order,
+     * as {@link rockets.mining.RocketMiner} does. Only the year's launches are read, by a seek of
+     * the launch date index.
+     */
+    @Procedure(name = "rockets.revenue", mode = Mode.READ)
+    @Description("rockets.revenue(year, k) - the k launch service providers with the highest revenue in a year")
+    public Stream<Ranking> revenue(@Name("year") long year, @Name("k") long k) {
+        long from = LocalDate.of((int) year, 1, 1).toEpochDay();
+        long to = LocalDate.of((int) year, 12, 31).toEpochDay();
+        Map<Long, Long> lastLaunches = new HashMap<>();
+        Map<Long, Double> revenues = new HashMap<>();
+        String cypher = "MATCH (n:Launch) WHERE n.launchDate >= $from AND n.launchDate <= $to RETURN n";
+        try (ResourceIterator<Node> launches = db.execute(cypher, ImmutableMap.of("from", from, "to", to))
+                .columnAs("n")) {
+            launches.forEachRemaining(launch -> {
+                BigDecimal price = price(launch);
+                Node provider = neighbour(launch, LAUNCH_SERVICE_PROVIDER, Direction.OUTGOING);
+                if (null != price && null != provider
+                        && launch.getId() > lastLaunches.getOrDefault(provider.getId(), -1L)) {
+                    lastLaunches.put(provider.getId(), launch.getId());
+                    revenues.put(provider.getId(), price.doubleValue());
+                }
+            });
+        }
+        return top(revenues, k);
+    }
+
+    /**
+     * Seeks the launch date index like {@link Neo4jDAO#latestLaunches(int)}: from a window of the
+     * last year onwards, doubling it until it holds k launches or reaches back to the earliest
+     * date, so that only the window is read and sorted.
+     */
+    @Procedure(name = "rockets.recentLaunches", mode = Mode.READ)
+    @Description("rockets.recentLaunches(k) - the k most recent launches")
+    public Stream<Ranking> recentLaunches(@Name("k") long k) {
+        List<Ranking> recent = new ArrayList<>();
+        if (k <= 0) {
+            return recent.stream();
+        }
+        Object earliest;
+        try (ResourceIterator<Object> min = db.execute("MATCH (n:Launch) WHERE exists(n.launchDate)"
+                + " RETURN min(n.launchDate) AS earliest").columnAs("earliest")) {
+            earliest = min.next();
+        }
+        if (null == earliest) {
+            return recent.stream();
+        }
+        String cypher = "MATCH (n:Launch) WHERE n.launchDate >= $from"
+                + " RETURN id(n) AS id, n.launchDate AS day ORDER BY n.launchDate DESC, id(n) LIMIT $k";
+        long today = LocalDate.now().toEpochDay();
+        for (long window = Neo4jDAO.LATEST_WINDOW_DAYS; ; window *= 2) {
+            long from = today - window;
+            recent.clear();
+            try (Result rows = db.execute(cypher, ImmutableMap.of("from", from, "k", k))) {
+                rows.forEachRemaining(row -> recent.add(new Ranking((Long) row.get("id"), row.get("day"))));
+            }
+            if (recent.size() >= k || from <= ((Number) earliest).longValue()) {
+                return recent.stream();
+            }
+        }
+    }
+
+    @Procedure(name = "rockets.expensiveLaunches", mode = Mode.READ)
+    @Description("rockets.expensiveLaunches(k) - the k most expensive launches")
+    public Stream<Ranking> expensiveLaunches(@Name("k") long k) {
+        Map<Long, Double> prices = new HashMap<>();
+        forEachLaunch(launch -> {
+            BigDecimal price = price(launch);
+            if (null != price) {
+                prices.put(launch.getId(), price.doubleValue());
+            }
+        });
+        return top(prices, k);
+    }
+
+    @UserFunction(name = "rockets.dominantCountry")
+    @Description("rockets.dominantCountry(orbit) - the country of the rockets with the most successful "
+            + "launches to an orbit, or null if there are none")
+    public String dominantCountry(@Name("orbit") String orbit) {
+        Map<String, Long> launches = new HashMap<>();
+        forEachLaunch(launch -> {
+            Node rocket = neighbour(launch, PROVIDES, Direction.INCOMING);
+            if (null != rocket && orbit.equals(launch.getProperty("orbit", null))
+                    && SUCCESSFUL.equals(launch.getProperty("launchOutcome", null))) {
+                launches.merge((String) rocket.getProperty("country", null), 1L, Long::sum);
+            }
+        });
+        return launches.entrySet().stream()
+                .min(Map.Entry.<String, Long>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey(Comparator.nullsLast(Comparator.naturalOrder()))))
+                .map(Map.Entry::getKey)
+                .orElse(null);
+    }
+
+    private void forEachLaunch(Consumer<Node> action) {
+        try (ResourceIterator<Node> launches = db.findNodes(LAUNCH)) {
+            launches.forEachRemaining(action);
+        }
+    }
+
+    private static Node neighbour(Node node, RelationshipType type, Direction direction) {
+        Relationship relationship = node.getSingleRelationship(type, direction);
+        return null == relationship ? null : relationship.getOtherNode(node);
+    }
+
+    // decimals are stored as strings
+    private static BigDecimal price(Node launch) {
+        Object price = launch.getProperty("price", null);
+        return null == price ? null : new BigDecimal(price.toString());
+    }
+
+    // The k entries with the highest values, ties broken by id, selected without sorting them all
+    private static <V extends Comparable<? super V>> Stream<Ranking> top(Map<Long, V> values, long k) {
+        Ordering<Map.Entry<Long, V>> order = Ordering.from(Map.Entry.<Long, V>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+        int limit = (int) Math.max(0, Math.min(k, Integer.MAX_VALUE));
+        return order.leastOf(values.entrySet(), limit).stream()
+                .map(entry -> new Ranking(entry.getKey(), entry.getValue()));
+    }
+
+    /**
+     * A row of a procedure's result: the id of a node and the value it was ranked by.
+     */
+    public static class Ranking {
+        public final long id;
+        public final Object value;
+
+        public Ranking(long id, Object value) {
+            this.id = id;
+            this.value = value;
+        }
+    }
+}
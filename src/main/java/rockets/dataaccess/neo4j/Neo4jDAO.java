@@ -1,129 +1,1014 @@
 package rockets.dataaccess.neo4j;
 
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
-import org.neo4j.ogm.config.Configuration;
+import org.neo4j.driver.v1.AuthToken;
+import org.neo4j.driver.v1.AuthTokens;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
 import org.neo4j.ogm.cypher.Filter;
-import org.neo4j.ogm.cypher.Filters;
+import org.neo4j.ogm.drivers.bolt.driver.BoltDriver;
 import org.neo4j.ogm.drivers.embedded.driver.EmbeddedDriver;
 import org.neo4j.ogm.session.Session;
 import org.neo4j.ogm.session.SessionFactory;
 import org.neo4j.ogm.transaction.Transaction;
+import rockets.dataaccess.Aggregate;
+import rockets.dataaccess.Aggregation;
 import rockets.dataaccess.DAO;
+import rockets.dataaccess.EntityGraph;
+import rockets.dataaccess.EntityView;
+import rockets.dataaccess.Page;
+import rockets.dataaccess.PageCursor;
+import rockets.dataaccess.PageRequest;
+import rockets.dataaccess.event.ChangeEvent;
 import rockets.model.*;
 
 import java.io.File;
-import java.util.Collection;
+import java.lang.reflect.Array;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notBlank;
+import static org.apache.commons.lang3.Validate.notNull;
 import static org.neo4j.ogm.cypher.ComparisonOperator.EQUALS;
+import static org.neo4j.ogm.cypher.ComparisonOperator.IS_NULL;
 
 public class Neo4jDAO implements DAO {
     private static final int DEPTH_ENTITY = 1;
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final int DEFAULT_FETCH_SIZE = 1000;
+    // days covered by the first window latestLaunches seeks, doubled until it holds enough launches
+    static final int LATEST_WINDOW_DAYS = 366;
 
-    private Session session;
+    private static final List<Class<? extends Entity>> ENTITY_CLASSES = ImmutableList.of(
+            Rocket.class, User.class, Launch.class, LaunchServiceProvider.class);
+
+    // paths from a deleted node to the dependents deleted with it, deepest first, and their classes
+    private static final Map<Class<? extends Entity>, Map<String, Class<? extends Entity>>> CASCADES =
+            ImmutableMap.of(
+                    Rocket.class, ImmutableMap.of("-[:PROVIDES]->(m:Launch)", Launch.class),
+                    LaunchServiceProvider.class, ImmutableMap.of(
+                            "-[:MANUFACTURES]->(:Rocket)-[:PROVIDES]->(m:Launch)", Launch.class,
+                            "-[:MANUFACTURES]->(m:Rocket)", Rocket.class));
+
+    // OGM sessions are not thread-safe, so each thread works with its own
+    private final ThreadLocal<Session> boundSession = new ThreadLocal<>();
     private SessionFactory sessionFactory;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+    private final SchemaReport schemaReport;
+    private final boolean miningProcedures;
 
     public Neo4jDAO(SessionFactory sessionFactory) {
         this.sessionFactory = sessionFactory;
-        if (null == session) {
-            session = sessionFactory.openSession();
-        }
+        this.schemaReport = bootstrap();
+        this.miningProcedures = false;
     }
 
     public Neo4jDAO(String dbAddress) {
-        File file = new File(dbAddress);
-        Configuration configuration = new Configuration.Builder()
-                //.uri(neoServer.boltURI().toString()) // For Bolt
-                //.uri(neoServer.httpURI().toString()) // For HTTP
-                .uri(file.toURI().toString()) // For Embedded
-                .build();
-        EmbeddedDriver driver = new EmbeddedDriver();
-        driver.configure(configuration);
+        this(dbAddress, Collections.emptyMap());
+    }
+
+    /**
+     * Opens an embedded database in the given directory, with the {@link MiningProcedures} registered.
+     *
+     * @param settings Neo4j settings to start the database with, e.g. {@code dbms.memory.pagecache.size}
+     *                 or {@code dbms.tx_log.rotation.size}; invalid values fail the start.
+     */
+    public Neo4jDAO(String dbAddress, Map<String, String> settings) {
+        notBlank(dbAddress, "database directory cannot be null or empty");
+        notNull(settings, "settings cannot be null");
+        GraphDatabaseService db = new GraphDatabaseFactory()
+                .newEmbeddedDatabaseBuilder(new File(dbAddress))
+                .setConfig(settings)
+                .newGraphDatabase();
+        MiningProcedures.register(db);
+        // the driver shuts the database down when it is closed
+        EmbeddedDriver driver = new EmbeddedDriver(db);
 
         sessionFactory = new SessionFactory(driver, User.class.getPackage().getName());
-        session = sessionFactory.openSession();
+        schemaReport = bootstrap();
+        miningProcedures = true;
+    }
+
+    /**
+     * Connects to a remote server over Bolt, so that web processes need not share the store's JVM.
+     *
+     * @param boltUri                     the server address, e.g. {@code bolt://localhost:7687}
+     * @param username                    the user to authenticate as, or null if auth is disabled
+     * @param maxPoolSize                 the most connections held open to the server
+     * @param acquisitionTimeoutMillis    how long to wait for a free connection before failing
+     * @param maxConnectionLifetimeMillis how long a connection is reused before it is replaced
+     */
+    public Neo4jDAO(String boltUri, String username, String password, int maxPoolSize,
+                    long acquisitionTimeoutMillis, long maxConnectionLifetimeMillis) {
+        notBlank(boltUri, "Bolt URI cannot be null or empty");
+        isTrue(maxPoolSize > 0, "pool size must be positive");
+        isTrue(acquisitionTimeoutMillis > 0, "acquisition timeout must be positive");
+        isTrue(maxConnectionLifetimeMillis > 0, "connection lifetime must be positive");
+        Config config = Config.build()
+                .withMaxConnectionPoolSize(maxPoolSize)
+                .withConnectionAcquisitionTimeout(acquisitionTimeoutMillis, TimeUnit.MILLISECONDS)
+                .withMaxConnectionLifetime(maxConnectionLifetimeMillis, TimeUnit.MILLISECONDS)
+                .toConfig();
+        AuthToken auth = null == username ? AuthTokens.none() : AuthTokens.basic(username, password);
+        BoltDriver driver = new BoltDriver(GraphDatabase.driver(boltUri, auth, config));
+
+        sessionFactory = new SessionFactory(driver, User.class.getPackage().getName());
+        schemaReport = bootstrap();
+        miningProcedures = false;
+    }
+
+    private SchemaReport bootstrap() {
+        Session session = sessionFactory.openSession();
+        migrateLaunchDates(session);
+        backfillNaturalKeys(session);
+        return SchemaBootstrap.run(session, ENTITY_CLASSES);
+    }
+
+    // Launch dates used to be stored as ISO strings; they must be epoch days before OGM reads them back
+    private void migrateLaunchDates(Session session) {
+        String cypher = "MATCH (n:Launch) WHERE n.launchDate = toString(n.launchDate)"
+                + " RETURN id(n) AS id, n.launchDate AS date";
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Map<String, Object> row : session.query(cypher, Collections.emptyMap()).queryResults()) {
+            long day = LocalDate.parse(row.get("date").toString()).toEpochDay();
+            rows.add(ImmutableMap.of("id", row.get("id"), "day", day));
+        }
+        for (List<Map<String, Object>> batch : Lists.partition(rows, batchSize)) {
+            session.query("UNWIND $rows AS row MATCH (n) WHERE id(n) = row.id SET n.launchDate = row.day",
+                    ImmutableMap.of("rows", batch));
+        }
+    }
+
+    // Nodes stored before natural keys were introduced get theirs before the unique index is built
+    private void backfillNaturalKeys(Session session) {
+        for (Class<? extends Entity> clazz : ENTITY_CLASSES) {
+            // launches need their rocket's manufacturer, two hops away
+            Collection<? extends Entity> entities = session.loadAll(clazz, new Filter("naturalKey", IS_NULL), 2);
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (Entity entity : entities) {
+                rows.add(ImmutableMap.of("id", entity.getId(), "key", entity.getNaturalKey()));
+            }
+            if (!rows.isEmpty()) {
+                session.query("UNWIND $rows AS row MATCH (n) WHERE id(n) = row.id SET n.naturalKey = row.key",
+                        ImmutableMap.of("rows", rows));
+            }
+        }
+        session.clear();
+    }
+
+    /**
+     * @return the indexes and constraints found or created on the lookup properties at startup.
+     */
+    public SchemaReport getSchemaReport() {
+        return schemaReport;
+    }
+
+    /**
+     * @return whether the database runs in process with the {@link MiningProcedures} registered.
+     */
+    public boolean hasMiningProcedures() {
+        return miningProcedures;
+    }
+
+    /**
+     * Runs a read-only Cypher query, e.g. a call of the {@link MiningProcedures}.
+     *
+     * @return the rows of the result, column name to value.
+     */
+    public List<Map<String, Object>> query(String cypher, Map<String, ?> params) {
+        notBlank(cypher, "cypher cannot be null or empty");
+        notNull(params, "params cannot be null");
+        List<Map<String, Object>> rows = new ArrayList<>();
+        session().query(cypher, params, true).queryResults().forEach(rows::add);
+        return rows;
+    }
+
+    /**
+     * Binds a session to the calling thread, so that all DAO calls made by the thread until
+     * {@link #closeSession()} share one mapping context. Without a bound session, every DAO call
+     * works with its own short-lived session.
+     */
+    @Override
+    public void openSession() {
+        boundSession.set(sessionFactory.openSession());
+    }
+
+    /**
+     * Releases the session bound to the calling thread by {@link #openSession()}, if any.
+     */
+    @Override
+    public void closeSession() {
+        Session session = boundSession.get();
+        boundSession.remove();
+        if (null != session) {
+            session.clear();
+        }
+    }
+
+    private Session session() {
+        Session session = boundSession.get();
+        return null != session ? session : sessionFactory.openSession();
     }
 
     @Override
     public <T extends Entity> T load(Class<T> clazz, Long id) {
-        return session.load(clazz, id, DEPTH_ENTITY);
+        return session().load(clazz, id, DEPTH_ENTITY);
     }
 
+    /**
+     * Saves an entity and everything reachable from it in one transaction. The graph is walked once,
+     * visiting shared objects once; its new entities are merged on their natural keys with one query
+     * per entity class before the whole graph is written. If the transaction fails, the entities get
+     * back the ids and stored natural keys they had before.
+     */
     @Override
     public <T extends Entity> T createOrUpdate(T entity) {
-        Class clazz = entity.getClass();
-
-        T existingEntity = findExistingEntity(entity, clazz);
-        if (null != existingEntity) {
-            entity.setId(existingEntity.getId());
+        Session session = session();
+        List<Entity> graph = EntityGraph.collect(Collections.singletonList(entity));
+        List<Runnable> undo = new ArrayList<>();
+        try (Transaction tx = session.beginTransaction()) {
+            List<Entity> rekeyed = refreshNaturalKeys(graph, undo);
+            mergeAll(session, graph, undo, null);
+            session.save(entity);
+            rekeyDependents(session, rekeyed, undo);
+            tx.commit();
+        } catch (RuntimeException e) {
+            rollBack(session, undo);
+            throw e;
         }
-        Transaction tx = session.beginTransaction();
-        saveOutgoingEntities(entity, clazz);
-        session.save(entity);
-        tx.commit();
         return entity;
     }
 
-    // Makes sure we save associated entities correctly (only once)
-    private <T extends Entity> void saveOutgoingEntities(T entity, Class clazz) {
-        if (clazz.equals(Rocket.class)) {
-            Rocket rocket = (Rocket) entity;
-            for (Launch launch : rocket.getLaunches()) {
-                createOrUpdate(launch);
-            }
-        } else if (clazz.equals(LaunchServiceProvider.class)) {
-            LaunchServiceProvider lsp = (LaunchServiceProvider) entity;
-            if (lsp.getRockets().size() > 0) {
-                for (Rocket rocket : lsp.getRockets())
-                    createOrUpdate(rocket);
-            }
-        }
-    }
-
-    private <T extends Entity> T findExistingEntity(Entity entity, Class clazz) {
-        Entity existingEntity = null;
-        Filters filters = new Filters();
-        Collection<? extends Entity> collection = Sets.newLinkedHashSet();
-        if (clazz.equals(Rocket.class)) {
-            Rocket rocket = (Rocket) entity;
-            filters.add(new Filter("name", EQUALS, rocket.getName()))
-                    .and(new Filter("country", EQUALS, rocket.getCountry()));
-            collection = session.loadAll(Rocket.class, filters);
-        } else if (clazz.equals(User.class)) {
-            User user = (User) entity;
-            filters.add(new Filter("email", EQUALS, user.getEmail()));
-            collection = session.loadAll(User.class, filters);
-        } else if (clazz.equals(Launch.class)) {
-            Launch launch = (Launch) entity;
-            filters.add(new Filter("launchDate", EQUALS, launch.getLaunchDate()))
-                    .and(new Filter("launchVehicle", EQUALS, launch.getLaunchVehicle()))
-                    .and(new Filter("launchSite", EQUALS, launch.getLaunchSite()))
-                    .and(new Filter("launchOutcome", EQUALS, launch.getLaunchOutcome()));
-            collection = session.loadAll(Launch.class, filters);
-        } else if (clazz.equals(LaunchServiceProvider.class)) {
-            LaunchServiceProvider lsp = (LaunchServiceProvider) entity;
-            filters.add(new Filter("name", EQUALS, lsp.getName()))
-                    .and(new Filter("yearFounded", EQUALS, lsp.getYearFounded()))
-                    .and(new Filter("country", EQUALS, lsp.getCountry()));
-            collection = session.loadAll(LaunchServiceProvider.class, filters);
-        }
-        if (!collection.isEmpty()) {
-            existingEntity = collection.iterator().next();
-        }
-        return (T) existingEntity;
+    /**
+     * Saves a collection of entities and everything reachable from them, in transactions of at most
+     * {@link #setBatchSize(int) batchSize} entities; a graph within the batch size is committed in
+     * one transaction. Within each transaction, the batch's new entities and their new neighbours
+     * are first merged on their natural keys with one query per entity class. If a transaction
+     * fails, the batches committed before it stay saved, and the entities of the failed one get back
+     * the ids and stored natural keys they had before.
+     *
+     * @param entities the entities to be saved.
+     * @return the same entities, with their ids assigned.
+     */
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities) {
+        return save(entities, null, batchSize);
+    }
+
+    /**
+     * Saves like {@link #createOrUpdateAll(Collection)}, and reads the stored values of the nodes each
+     * transaction writes inside it, before writing: one query for the nodes of the batch, and the
+     * merge queries also return what they matched. The events of a batch are handed over once it is
+     * committed.
+     */
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities, Consumer<ChangeEvent> changed) {
+        notNull(changed, "changed cannot be null");
+        return save(entities, changed, batchSize);
+    }
+
+    /**
+     * Saves like {@link #createOrUpdateAll(Collection, Consumer)}, but in one transaction whatever the
+     * size of the entity's graph, as {@link #createOrUpdate(Entity)} does.
+     */
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity, Consumer<ChangeEvent> changed) {
+        notNull(changed, "changed cannot be null");
+        save(Collections.singletonList(entity), changed, Integer.MAX_VALUE);
+        return entity;
+    }
+
+    private <T extends Entity> Collection<T> save(Collection<T> entities, Consumer<ChangeEvent> changed,
+                                                  int size) {
+        Session session = session();
+        List<Entity> graph = EntityGraph.collect(entities);
+        Set<Long> reported = new HashSet<>();
+
+        for (List<Entity> batch : Lists.partition(graph, size)) {
+            List<Runnable> undo = new ArrayList<>();
+            // the values of the nodes written, as stored before; null for the nodes created
+            Map<Long, Map<String, Object>> before = null == changed ? null : new HashMap<>();
+            Set<Entity> touched = Sets.newIdentityHashSet();
+            try (Transaction tx = session.beginTransaction()) {
+                // saving at depth 1 also writes the relationships to the neighbours, which need ids
+                touched.addAll(batch);
+                batch.forEach(entity -> EntityGraph.neighbours(entity).forEach(touched::add));
+                touched.remove(null);
+                List<Entity> rekeyed = refreshNaturalKeys(batch, undo);
+                if (null != before) {
+                    readStoredValues(session, batch, reported, before);
+                }
+                mergeAll(session, touched, undo, before);
+
+                for (Entity entity : batch) {
+                    session.save(entity, DEPTH_ENTITY);
+                }
+                rekeyDependents(session, rekeyed, undo);
+                tx.commit();
+            } catch (RuntimeException e) {
+                rollBack(session, undo);
+                throw e;
+            }
+            if (null != before) {
+                report(touched, before, reported, changed);
+            }
+        }
+        return entities;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        isTrue(batchSize > 0, "batch size must be positive");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Merges the nodes of all entities without an id on their natural keys, within the caller's
+     * transaction, and copies the node ids over. Equal entities end up sharing one node; the unique
+     * index on the key makes concurrent merges of the same entity wait for each other instead of
+     * both inserting. If given a map, the values of the matched nodes are put into it as they were
+     * before the merge, or null for the nodes created.
+     */
+    private void mergeAll(Session session, Collection<Entity> entities, List<Runnable> undo,
+                          Map<Long, Map<String, Object>> before) {
+        Map<Class<?>, List<Entity>> newEntities = new LinkedHashMap<>();
+        for (Entity entity : entities) {
+            if (null == entity.getId()) {
+                newEntities.computeIfAbsent(entity.getClass(), c -> new ArrayList<>()).add(entity);
+            }
+        }
+
+        for (Map.Entry<Class<?>, List<Entity>> entry : newEntities.entrySet()) {
+            String label = entry.getKey().getSimpleName();
+            String cypher = null == before
+                    ? "UNWIND $rows AS row MERGE (n:" + label + " {naturalKey: row.key}) SET n += row.properties"
+                    + " RETURN row.index AS index, id(n) AS id"
+                    : "UNWIND $rows AS row OPTIONAL MATCH (o:" + label + " {naturalKey: row.key})"
+                    + " WITH row, properties(o) AS old MERGE (n:" + label + " {naturalKey: row.key})"
+                    + " SET n += row.properties RETURN row.index AS index, id(n) AS id, old";
+            for (List<Entity> batch : Lists.partition(entry.getValue(), batchSize)) {
+                List<Map<String, Object>> rows = new ArrayList<>();
+                for (Entity entity : batch) {
+                    String key = entity.getNaturalKey();
+                    Map<String, Object> properties = GraphProperties.properties(entity);
+                    properties.put("naturalKey", key);
+                    rows.add(ImmutableMap.of("index", rows.size(), "key", key, "properties", properties));
+                }
+                Map<String, Object> params = ImmutableMap.of("rows", rows);
+                for (Map<String, Object> row : session.query(cypher, params).queryResults()) {
+                    Entity entity = batch.get(((Number) row.get("index")).intValue());
+                    String storedKey = entity.getStoredNaturalKey();
+                    undo.add(() -> {
+                        entity.setId(null);
+                        entity.setStoredNaturalKey(storedKey);
+                    });
+                    entity.setId(((Number) row.get("id")).longValue());
+                    entity.setStoredNaturalKey(entity.getNaturalKey());
+                    if (null != before && null == before.get(entity.getId())) {
+                        @SuppressWarnings("unchecked")
+                        Map<String, Object> old = (Map<String, Object>) row.get("old");
+                        before.put(entity.getId(), old);
+                    }
+                }
+            }
+        }
+    }
+
+    // The values of the stored entities about to be saved, in one query, unless already reported
+    private static void readStoredValues(Session session, Collection<Entity> entities, Set<Long> reported,
+                                         Map<Long, Map<String, Object>> before) {
+        List<Long> ids = new ArrayList<>();
+        for (Entity entity : entities) {
+            if (null != entity.getId() && !reported.contains(entity.getId())) {
+                ids.add(entity.getId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        String cypher = "MATCH (n) WHERE id(n) IN $ids RETURN id(n) AS id, properties(n) AS properties";
+        for (Map<String, Object> row : session.query(cypher, ImmutableMap.of("ids", ids)).queryResults()) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> properties = (Map<String, Object>) row.get("properties");
+            before.put(((Number) row.get("id")).longValue(), properties);
+        }
+    }
+
+    // Hands over an event for every written node whose values changed, once per node and save
+    private static void report(Collection<Entity> written, Map<Long, Map<String, Object>> before,
+                               Set<Long> reported, Consumer<ChangeEvent> changed) {
+        for (Entity entity : written) {
+            Long id = entity.getId();
+            if (null == id || !before.containsKey(id) || !reported.add(id)) {
+                continue;
+            }
+            Map<String, Object> newValues = storedValues(GraphProperties.properties(entity));
+            Map<String, Object> oldValues = before.get(id);
+            if (null == oldValues) {
+                changed.accept(new ChangeEvent(ChangeEvent.Type.CREATED, entity.getClass(), id, null, newValues));
+            } else if (!storedValues(oldValues).equals(newValues)) {
+                changed.accept(new ChangeEvent(ChangeEvent.Type.UPDATED, entity.getClass(), id,
+                        storedValues(oldValues), newValues));
+            }
+        }
+    }
+
+    // node properties as the graph returns them: without nulls, and with arrays and collections as lists
+    private static Map<String, Object> storedValues(Map<String, Object> values) {
+        Map<String, Object> stored = new HashMap<>();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            Object value = entry.getValue();
+            if (null != value && value.getClass().isArray()) {
+                List<Object> list = new ArrayList<>();
+                for (int i = 0; i < Array.getLength(value); i++) {
+                    list.add(Array.get(value, i));
+                }
+                value = list;
+            } else if (value instanceof Collection) {
+                value = new ArrayList<>((Collection<?>) value);
+            }
+            if (null != value) {
+                stored.put(entry.getKey(), value);
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Brings the stored natural keys of the entities about to be saved up to date with their fields.
+     *
+     * @return the stored entities among them whose key changed.
+     */
+    private static List<Entity> refreshNaturalKeys(Collection<Entity> entities, List<Runnable> undo) {
+        List<Entity> rekeyed = new ArrayList<>();
+        for (Entity entity : entities) {
+            String storedKey = entity.getStoredNaturalKey();
+            String key = entity.getNaturalKey();
+            if (!key.equals(storedKey)) {
+                undo.add(() -> entity.setStoredNaturalKey(storedKey));
+                entity.setStoredNaturalKey(key);
+                if (null != entity.getId()) {
+                    rekeyed.add(entity);
+                }
+            }
+        }
+        return rekeyed;
+    }
+
+    /**
+     * Rockets embed the natural key of their manufacturer and launches that of their rocket, so
+     * after a launch service provider or rocket was saved with a new key, the stored keys of its
+     * rockets and launches are brought up to date too, within the caller's transaction. The rockets
+     * are loaded with their launches and manufacturer, which is all their keys and their launches'
+     * keys depend on.
+     */
+    private void rekeyDependents(Session session, List<Entity> rekeyed, List<Runnable> undo) {
+        Set<Long> rocketIds = new LinkedHashSet<>();
+        List<Long> lspIds = new ArrayList<>();
+        for (Entity entity : rekeyed) {
+            if (entity instanceof Rocket) {
+                rocketIds.add(entity.getId());
+            } else if (entity instanceof LaunchServiceProvider) {
+                lspIds.add(entity.getId());
+            }
+        }
+        if (!lspIds.isEmpty()) {
+            String cypher = "MATCH (p:LaunchServiceProvider)-[:MANUFACTURES]->(r:Rocket) WHERE id(p) IN $ids"
+                    + " RETURN id(r) AS id";
+            for (Map<String, Object> row : session.query(cypher, ImmutableMap.of("ids", lspIds)).queryResults()) {
+                rocketIds.add(((Number) row.get("id")).longValue());
+            }
+        }
+        if (rocketIds.isEmpty()) {
+            return;
+        }
+
+        List<Entity> dependents = new ArrayList<>();
+        for (Rocket rocket : session.loadAll(Rocket.class, rocketIds, DEPTH_ENTITY)) {
+            dependents.add(rocket);
+            dependents.addAll(rocket.getLaunches());
+        }
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Entity entity : refreshNaturalKeys(dependents, undo)) {
+            rows.add(ImmutableMap.of("id", entity.getId(), "key", entity.getStoredNaturalKey()));
+        }
+        for (List<Map<String, Object>> batch : Lists.partition(rows, batchSize)) {
+            session.query("UNWIND $rows AS row MATCH (n) WHERE id(n) = row.id SET n.naturalKey = row.key",
+                    ImmutableMap.of("rows", batch));
+        }
+    }
+
+    // After a rollback, nothing the transaction assigned to the entities may outlive it
+    private static void rollBack(Session session, List<Runnable> undo) {
+        Lists.reverse(undo).forEach(Runnable::run);
+        session.clear();
     }
 
     @Override
     public <T extends Entity> Collection<T> loadAll(Class<T> clazz) {
-        return session.loadAll(clazz);
+        return session().loadAll(clazz);
+    }
+
+    @Override
+    public <T extends Entity> List<T> loadAll(Class<T> clazz, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, T> loaded = new HashMap<>();
+        for (T entity : session().loadAll(clazz, new LinkedHashSet<>(ids), DEPTH_ENTITY)) {
+            loaded.put(entity.getId(), entity);
+        }
+        return inOrder(ids, loaded);
+    }
+
+    /**
+     * Streams entities in id order, {@link #setFetchSize(int) fetchSize} at a time: each batch is
+     * one id query followed by one multi-get, run in a session of its own that is cleared before the
+     * next batch, so memory use does not grow with the number of entities. Nothing stays open
+     * between batches, and closing the stream releases the last batch. Entities written while the
+     * stream is consumed may or may not be seen.
+     */
+    @Override
+    public <T extends Entity> Stream<T> stream(Class<T> clazz) {
+        Session session = sessionFactory.openSession();
+        String cypher = "MATCH (n:" + clazz.getSimpleName() + ") WHERE id(n) > $after"
+                + " RETURN id(n) AS id ORDER BY id(n) LIMIT $limit";
+        Iterator<T> iterator = new AbstractIterator<T>() {
+            private Iterator<T> batch = Collections.emptyIterator();
+            private long after = -1;
+            private boolean exhausted;
+
+            @Override
+            protected T computeNext() {
+                while (!batch.hasNext()) {
+                    if (exhausted) {
+                        return endOfData();
+                    }
+                    session.clear();
+                    List<Long> ids = new ArrayList<>();
+                    Map<String, Object> params = ImmutableMap.of("after", after, "limit", fetchSize);
+                    for (Map<String, Object> row : session.query(cypher, params).queryResults()) {
+                        ids.add(((Number) row.get("id")).longValue());
+                    }
+                    exhausted = ids.size() < fetchSize;
+                    if (!ids.isEmpty()) {
+                        after = ids.get(ids.size() - 1);
+                        Map<Long, T> loaded = new HashMap<>();
+                        for (T entity : session.loadAll(clazz, ids, DEPTH_ENTITY)) {
+                            loaded.put(entity.getId(), entity);
+                        }
+                        batch = inOrder(ids, loaded).iterator();
+                    }
+                }
+                return batch.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED
+                | Spliterator.NONNULL), false).onClose(session::clear);
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        isTrue(fetchSize > 0, "fetch size must be positive");
+        this.fetchSize = fetchSize;
+    }
+
+    private static <T> List<T> inOrder(Collection<Long> ids, Map<Long, T> entities) {
+        List<T> ordered = new ArrayList<>();
+        for (Long id : ids) {
+            T entity = entities.get(id);
+            if (null != entity) {
+                ordered.add(entity);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Loads one page of entities with a keyset query: the cursor's sort value and id become
+     * predicates on the sort property, so the cost of a page does not grow with its position.
+     * Entities are loaded without their associations.
+     */
+    @Override
+    public <T extends Entity> Page<T> loadPage(Class<T> clazz, PageRequest request) {
+        Session session = session();
+        return loadKeysetPage(clazz, request, "n",
+                (cypher, params) -> Lists.newArrayList(session.query(clazz, cypher, params)),
+                entity -> GraphProperties.value(entity, request.getSortProperty()),
+                Entity::getId);
+    }
+
+    /**
+     * Loads one page of views with the same keyset query as {@link #loadPage(Class, PageRequest)},
+     * returning only the id and the requested properties of each node.
+     */
+    @Override
+    public <T extends Entity> Page<EntityView> loadPageView(Class<T> clazz, PageRequest request, String... fields) {
+        Set<String> projected = new LinkedHashSet<>(Arrays.asList(fields));
+        projected.add(request.getSortProperty());
+        projected.remove("id");
+        StringBuilder returns = new StringBuilder("id(n) AS id");
+        for (String field : projected) {
+            returns.append(", ").append(GraphProperties.expression(clazz, field))
+                    .append(" AS `").append(field).append("`");
+        }
+
+        Session session = session();
+        return loadKeysetPage(clazz, request, returns.toString(),
+                (cypher, params) -> {
+                    List<EntityView> views = new ArrayList<>();
+                    for (Map<String, Object> row : session.query(cypher, params).queryResults()) {
+                        Map<String, Object> values = new LinkedHashMap<>();
+                        projected.forEach(field -> values.put(field, row.get(field)));
+                        views.add(new EntityView(clazz, ((Number) row.get("id")).longValue(), values));
+                    }
+                    return views;
+                },
+                view -> "id".equals(request.getSortProperty()) ? view.getId() : view.get(request.getSortProperty()),
+                EntityView::getId);
+    }
+
+    private <R> Page<R> loadKeysetPage(Class<? extends Entity> clazz, PageRequest request, String returns,
+                                       BiFunction<String, Map<String, Object>, List<R>> query,
+                                       Function<R, Object> sortValue, Function<R, Long> id) {
+        String property = GraphProperties.expression(clazz, request.getSortProperty());
+        PageCursor cursor = null == request.getCursor() ? null : PageCursor.decode(request.getCursor());
+        boolean backward = null != cursor && cursor.isBackward();
+
+        StringBuilder cypher = new StringBuilder("MATCH (n:").append(clazz.getSimpleName()).append(")");
+        Map<String, Object> params = new HashMap<>();
+        if (null != cursor) {
+            cypher.append(" WHERE ").append(keysetPredicate(property, cursor));
+            params.put("value", cursor.getValue());
+            params.put("id", cursor.getId());
+        }
+        String direction = backward ? " DESC" : "";
+        cypher.append(" RETURN ").append(returns)
+                .append(" ORDER BY ").append(property).append(direction)
+                .append(", id(n)").append(direction)
+                .append(" LIMIT ").append(request.getSize() + 1);
+
+        List<R> items = query.apply(cypher.toString(), params);
+        boolean more = items.size() > request.getSize();
+        if (more) {
+            items = new ArrayList<>(items.subList(0, request.getSize()));
+        }
+        if (backward) {
+            Collections.reverse(items);
+        }
+
+        String next = null;
+        String previous = null;
+        if (!items.isEmpty()) {
+            R first = items.get(0);
+            R last = items.get(items.size() - 1);
+            if (backward || more) {
+                next = PageCursor.after(sortValue.apply(last), id.apply(last)).encode();
+            }
+            if (backward ? more : null != cursor) {
+                previous = PageCursor.before(sortValue.apply(first), id.apply(first)).encode();
+            }
+        }
+        return new Page<>(items, next, previous);
+    }
+
+    // Ascending order puts nulls last, so they come after every value and before nothing
+    private static String keysetPredicate(String property, PageCursor cursor) {
+        if (cursor.isBackward()) {
+            return null == cursor.getValue()
+                    ? "(" + property + " IS NOT NULL OR id(n) < $id)"
+                    : "(" + property + " < $value OR (" + property + " = $value AND id(n) < $id))";
+        }
+        return null == cursor.getValue()
+                ? "(" + property + " IS NULL AND id(n) > $id)"
+                : "(" + property + " > $value OR (" + property + " = $value AND id(n) > $id) OR "
+                + property + " IS NULL)";
     }
 
     public <T extends Entity> void delete(T entity) {
-        session.delete(entity);
+        session().delete(entity);
+    }
+
+    /**
+     * Deletes the entity's node with one {@code DETACH DELETE} query that also returns its
+     * properties, and detaches the entity from the session.
+     */
+    @Override
+    public <T extends Entity> void delete(T entity, Consumer<ChangeEvent> deleted) {
+        notNull(deleted, "deleted cannot be null");
+        if (null == entity.getId()) {
+            return;
+        }
+        Session session = session();
+        String cypher = "MATCH (n:" + entity.getClass().getSimpleName() + ") WHERE id(n) = $id"
+                + " WITH n, properties(n) AS properties DETACH DELETE n RETURN properties";
+        Map<String, Object> properties = null;
+        try (Transaction tx = session.beginTransaction()) {
+            for (Map<String, Object> row : session.query(cypher, ImmutableMap.of("id", entity.getId())).queryResults()) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> stored = (Map<String, Object>) row.get("properties");
+                properties = stored;
+            }
+            tx.commit();
+        }
+        session.detachNodeEntity(entity.getId());
+        if (null != properties) {
+            deleted.accept(new ChangeEvent(ChangeEvent.Type.DELETED, entity.getClass(), entity.getId(), properties, null));
+        }
+    }
+
+    /**
+     * Deletes with {@code DETACH DELETE} queries of at most {@link #setBatchSize(int) batchSize} nodes,
+     * each committed on its own, so the transaction state stays small however many nodes match.
+     * Cascaded launches and rockets are deleted first, so that a failure part way leaves no
+     * matching entity without its dependents. Entities cached by the session are discarded.
+     */
+    @Override
+    public <T extends Entity> long deleteWhere(Class<T> clazz, Map<String, ?> filters, boolean cascade) {
+        return delete(clazz, filters, cascade, null);
+    }
+
+    /**
+     * Deletes like {@link #deleteWhere(Class, Map, boolean)}, with each chunk's query also returning
+     * the ids and properties of the nodes it deletes; their events are handed over once the chunk is
+     * committed.
+     */
+    @Override
+    public <T extends Entity> long deleteWhere(Class<T> clazz, Map<String, ?> filters, boolean cascade,
+                                               Consumer<ChangeEvent> deleted) {
+        notNull(deleted, "deleted cannot be null");
+        return delete(clazz, filters, cascade, deleted);
+    }
+
+    private <T extends Entity> long delete(Class<T> clazz, Map<String, ?> filters, boolean cascade,
+                                           Consumer<ChangeEvent> deleted) {
+        Map<String, Object> params = new HashMap<>();
+        String match = "MATCH (n:" + clazz.getSimpleName() + ")" + where(clazz, filters, params);
+        params.put("limit", batchSize);
+        String returned = null == deleted ? " DETACH DELETE m RETURN count(*) AS deleted"
+                : " WITH m, id(m) AS id, properties(m) AS properties DETACH DELETE m RETURN id, properties";
+
+        Map<String, Class<? extends Entity>> statements = new LinkedHashMap<>();
+        if (cascade) {
+            for (Map.Entry<String, Class<? extends Entity>> path
+                    : CASCADES.getOrDefault(clazz, Collections.emptyMap()).entrySet()) {
+                statements.put(match + " MATCH (n)" + path.getKey() + " WITH DISTINCT m LIMIT $limit" + returned,
+                        path.getValue());
+            }
+        }
+        statements.put(match + " WITH n AS m LIMIT $limit" + returned, clazz);
+
+        Session session = session();
+        long total = 0;
+        for (Map.Entry<String, Class<? extends Entity>> statement : statements.entrySet()) {
+            int chunk;
+            do {
+                List<ChangeEvent> events = new ArrayList<>();
+                try (Transaction tx = session.beginTransaction()) {
+                    Iterable<Map<String, Object>> rows = session.query(statement.getKey(), params).queryResults();
+                    if (null == deleted) {
+                        chunk = ((Number) rows.iterator().next().get("deleted")).intValue();
+                    } else {
+                        for (Map<String, Object> row : rows) {
+                            @SuppressWarnings("unchecked")
+                            Map<String, Object> properties = (Map<String, Object>) row.get("properties");
+                            events.add(new ChangeEvent(ChangeEvent.Type.DELETED, statement.getValue(),
+                                    ((Number) row.get("id")).longValue(), properties, null));
+                        }
+                        chunk = events.size();
+                    }
+                    tx.commit();
+                }
+                if (null != deleted) {
+                    events.forEach(deleted);
+                }
+                total += chunk;
+            } while (chunk == batchSize);
+        }
+        session.clear();
+        return total;
+    }
+
+    /**
+     * Counts with a {@code RETURN count(n)} query; without filters this is answered from the
+     * database's count store rather than by scanning nodes.
+     */
+    @Override
+    public <T extends Entity> long count(Class<T> clazz, Map<String, ?> filters) {
+        Map<String, Object> params = new HashMap<>();
+        String cypher = "MATCH (n:" + clazz.getSimpleName() + ")" + where(clazz, filters, params)
+                + " RETURN count(n) AS count";
+        Map<String, Object> row = session().query(cypher, params).queryResults().iterator().next();
+        return ((Number) row.get("count")).longValue();
+    }
+
+    @Override
+    public <T extends Entity> boolean exists(Class<T> clazz, Map<String, ?> filters) {
+        Map<String, Object> params = new HashMap<>();
+        String cypher = "MATCH (n:" + clazz.getSimpleName() + ")" + where(clazz, filters, params)
+                + " RETURN id(n) LIMIT 1";
+        return session().query(cypher, params).queryResults().iterator().hasNext();
+    }
+
+    /**
+     * Aggregates with one Cypher query that groups, orders and limits inside the database, so only
+     * the top groups are transferred, whatever the number of matching nodes.
+     */
+    @Override
+    public <T extends Entity> List<Aggregate> aggregate(Aggregation<T> aggregation) {
+        Class<T> clazz = aggregation.getEntityClass();
+        Map<String, Object> params = new HashMap<>();
+        StringBuilder cypher = new StringBuilder("MATCH (n:").append(clazz.getSimpleName()).append(")");
+
+        String[] path = aggregation.getGroupBy().split("\\.");
+        boolean byAssociation = GraphProperties.isAssociation(clazz, path[0]);
+        String key;
+        if (byAssociation) {
+            Class<? extends Entity> associated = GraphProperties.associationType(clazz, path[0]);
+            cypher.append(GraphProperties.relationship(clazz, path[0]))
+                    .append("(g:").append(associated.getSimpleName()).append(")");
+            key = 1 == path.length ? "id(g)" : GraphProperties.expression(associated, path[1], "g");
+        } else {
+            isTrue(1 == path.length, path[0] + " is not a single association of " + clazz.getSimpleName());
+            key = GraphProperties.expression(clazz, path[0]);
+        }
+
+        List<String> predicates = predicates(clazz, aggregation.getFilters(), params);
+        for (Map.Entry<String, Object[]> range : aggregation.getRanges().entrySet()) {
+            String property = GraphProperties.sortExpression(clazz, range.getKey(), "n");
+            String from = "p" + params.size();
+            params.put(from, GraphProperties.sortValue(clazz, range.getKey(), range.getValue()[0]));
+            String to = "p" + params.size();
+            params.put(to, GraphProperties.sortValue(clazz, range.getKey(), range.getValue()[1]));
+            predicates.add(property + " >= $" + from + " AND " + property + " <= $" + to);
+        }
+        // each association path is matched as a chain of nodes, starting at the group if it is the first
+        int hops = 0;
+        for (Map.Entry<String, Long> association : aggregation.getAssociations().entrySet()) {
+            String[] fields = association.getKey().split("\\.");
+            Class<? extends Entity> from = clazz;
+            String node = "n";
+            for (int i = 0; i < fields.length; i++) {
+                Class<? extends Entity> to = GraphProperties.associationType(from, fields[i]);
+                if (0 == i && byAssociation && fields[0].equals(path[0])) {
+                    node = "g";
+                } else {
+                    String next = "a" + hops++;
+                    cypher.append(", (").append(node).append(")").append(GraphProperties.relationship(from, fields[i]))
+                            .append("(").append(next).append(":").append(to.getSimpleName()).append(")");
+                    node = next;
+                }
+                from = to;
+            }
+            String param = "p" + params.size();
+            predicates.add("id(" + node + ") = $" + param);
+            params.put(param, association.getValue());
+        }
+        if (!predicates.isEmpty()) {
+            cypher.append(" WHERE ").append(String.join(" AND ", predicates));
+        }
+
+        String field = aggregation.getField();
+        String value;
+        switch (aggregation.getFunction()) {
+            case COUNT:
+                value = "count(n)";
+                break;
+            case SUM:
+                value = "sum(toFloat(" + GraphProperties.expression(clazz, field) + "))";
+                break;
+            case MAX:
+                value = "max(" + GraphProperties.sortExpression(clazz, field, "n") + ")";
+                break;
+            case LAST:
+                // collect keeps the order of its input
+                cypher.append(" WITH n").append(byAssociation ? ", g" : "").append(" ORDER BY id(n)");
+                value = "last(collect(" + GraphProperties.sortExpression(clazz, field, "n") + "))";
+                break;
+            case SHARE:
+                value = "toFloat(count(CASE WHEN " + GraphProperties.expression(clazz, field)
+                        + " = $share THEN 1 END)) / count(n)";
+                params.put("share", GraphProperties.toGraphValue(aggregation.getShareOf()));
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported aggregation " + aggregation.getFunction());
+        }
+        cypher.append(" WITH ").append(key).append(" AS key, ").append(value).append(" AS value")
+                .append(" WHERE value IS NOT NULL")
+                .append(Aggregation.Function.SHARE == aggregation.getFunction() ? " AND value > 0" : "")
+                .append(" RETURN key, value ORDER BY value DESC, key");
+        if (Integer.MAX_VALUE != aggregation.getLimit()) {
+            // the top-n operator allocates room for all of them up front
+            cypher.append(" LIMIT $limit");
+            params.put("limit", aggregation.getLimit());
+        }
+
+        List<Aggregate> aggregates = new ArrayList<>();
+        for (Map<String, Object> row : session().query(cypher.toString(), params).queryResults()) {
+            aggregates.add(new Aggregate(row.get("key"), row.get("value")));
+        }
+        return aggregates;
+    }
+
+    // WHERE clause matching the given field values, which are added to params
+    private static String where(Class<? extends Entity> clazz, Map<String, ?> filters, Map<String, Object> params) {
+        List<String> predicates = predicates(clazz, filters, params);
+        return predicates.isEmpty() ? "" : " WHERE " + String.join(" AND ", predicates);
+    }
+
+    private static List<String> predicates(Class<? extends Entity> clazz, Map<String, ?> filters,
+                                           Map<String, Object> params) {
+        List<String> predicates = new ArrayList<>();
+        for (Map.Entry<String, ?> filter : filters.entrySet()) {
+            String property = GraphProperties.expression(clazz, filter.getKey());
+            if (null == filter.getValue()) {
+                predicates.add(property + " IS NULL");
+            } else {
+                String param = "p" + params.size();
+                predicates.add(property + " = $" + param);
+                params.put(param, GraphProperties.toGraphValue(filter.getValue()));
+            }
+        }
+        return predicates;
+    }
+
+    /**
+     * Finds the launches with a range seek on the launch date index, then loads them in one multi-get.
+     */
+    @Override
+    public List<Launch> findLaunchesBetween(LocalDate from, LocalDate to) {
+        notNull(from);
+        notNull(to);
+        String cypher = "MATCH (n:Launch) WHERE n.launchDate >= $from AND n.launchDate <= $to"
+                + " RETURN id(n) AS id ORDER BY n.launchDate, id(n)";
+        return loadAll(Launch.class, ids(session().query(cypher,
+                ImmutableMap.of("from", from.toEpochDay(), "to", to.toEpochDay())).queryResults()));
+    }
+
+    /**
+     * Neo4j 3.3 cannot read an index in order, so this seeks the launch date index from a window of
+     * the last year onwards, doubling the window until it holds k launches or reaches back to the
+     * earliest launch date, and sorts only what the window holds.
+     */
+    @Override
+    public List<Launch> latestLaunches(int k) {
+        isTrue(k >= 0, "k must not be negative");
+        if (0 == k) {
+            return new ArrayList<>();
+        }
+        Session session = session();
+        // launches without a date are never in a window, so the widening stops at the earliest date
+        Object earliest = session.query("MATCH (n:Launch) WHERE exists(n.launchDate)"
+                + " RETURN min(n.launchDate) AS earliest", Collections.emptyMap()).queryResults()
+                .iterator().next().get("earliest");
+        if (null == earliest) {
+            return new ArrayList<>();
+        }
+        String cypher = "MATCH (n:Launch) WHERE n.launchDate >= $from"
+                + " RETURN id(n) AS id ORDER BY n.launchDate DESC, id(n) LIMIT $k";
+        long today = LocalDate.now().toEpochDay();
+        List<Long> ids;
+        for (long window = LATEST_WINDOW_DAYS; ; window *= 2) {
+            long from = today - window;
+            ids = ids(session.query(cypher, ImmutableMap.of("from", from, "k", k)).queryResults());
+            if (ids.size() >= k || from <= ((Number) earliest).longValue()) {
+                break;
+            }
+        }
+        return loadAll(Launch.class, ids);
+    }
+
+    private static List<Long> ids(Iterable<Map<String, Object>> rows) {
+        List<Long> ids = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            ids.add(((Number) row.get("id")).longValue());
+        }
+        return ids;
     }
 
     @Override
     public User getUserByEmail(String email) {
-        Collection<User> users = session.loadAll(User.class, new Filter("email", EQUALS, email));
+        Collection<User> users = session().loadAll(User.class, new Filter("email", EQUALS, email));
 
         if (null == users || users.isEmpty()) {
             return null;
@@ -134,7 +1019,7 @@ public class Neo4jDAO implements DAO {
 
     @Override
     public LaunchServiceProvider getLSPByName(String name) {
-        Collection<LaunchServiceProvider> lsps = session.loadAll(LaunchServiceProvider.class,
+        Collection<LaunchServiceProvider> lsps = session().loadAll(LaunchServiceProvider.class,
                 new Filter("name", EQUALS, name));
 
         if (null == lsps || lsps.isEmpty()) {
@@ -0,0 +1,155 @@
+package rockets.dataaccess.neo4j;
+
+import com.google.common.base.Joiner;
+import org.neo4j.ogm.annotation.CompositeIndex;
+import org.neo4j.ogm.annotation.Index;
+import org.neo4j.ogm.session.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rockets.model.Entity;
+
+import java.lang.reflect.Field;
+import java.util.*;
+
+/**
+ * Creates the indexes and uniqueness constraints declared with {@link Index} and
+ * {@link CompositeIndex} on the entity classes, skipping those that already exist, and checks that
+ * they all come online.
+ * <p>
+ * Composite uniqueness needs node key constraints, which Community Edition lacks, so unique
+ * composite indexes are created as plain indexes. Duplicates are still kept out by
+ * the unique index on each entity's natural key, which covers the same fields.
+ */
+final class SchemaBootstrap {
+    private static final Logger logger = LoggerFactory.getLogger(SchemaBootstrap.class);
+    private static final long ONLINE_TIMEOUT_SECONDS = 60;
+
+    private SchemaBootstrap() {
+    }
+
+    static SchemaReport run(Session session, Collection<Class<? extends Entity>> classes) {
+        SchemaReport report = new SchemaReport();
+        Map<String, Boolean> online = readIndexes(session);
+        List<SchemaIndex> created = new ArrayList<>();
+        for (SchemaIndex index : declaredIndexes(classes)) {
+            if (online.containsKey(index.key())) {
+                report.existing(index.statement());
+                continue;
+            }
+            try {
+                session.query(index.statement(), Collections.emptyMap());
+                created.add(index);
+            } catch (RuntimeException e) {
+                report.failed(index.statement(), e.getMessage());
+            }
+        }
+
+        if (!created.isEmpty()) {
+            try {
+                session.query("CALL db.awaitIndexes(" + ONLINE_TIMEOUT_SECONDS + ")", Collections.emptyMap());
+            } catch (RuntimeException e) {
+                logger.warn("indexes did not come online: {}", e.getMessage());
+            }
+            online = readIndexes(session);
+            for (SchemaIndex index : created) {
+                if (online.getOrDefault(index.key(), false)) {
+                    report.created(index.statement());
+                } else {
+                    report.failed(index.statement(), "not online");
+                }
+            }
+        }
+
+        logger.info("schema: {}", report);
+        return report;
+    }
+
+    private static List<SchemaIndex> declaredIndexes(Collection<Class<? extends Entity>> classes) {
+        List<SchemaIndex> indexes = new ArrayList<>();
+        for (Class<? extends Entity> clazz : classes) {
+            String label = clazz.getSimpleName();
+            for (Class<?> c = clazz; null != c; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    Index index = field.getAnnotation(Index.class);
+                    if (null != index) {
+                        String property = GraphProperties.name(clazz, field.getName());
+                        indexes.add(new SchemaIndex(label, Collections.singletonList(property), index.unique()));
+                    }
+                }
+            }
+
+            CompositeIndex composite = clazz.getAnnotation(CompositeIndex.class);
+            if (null != composite) {
+                List<String> properties = new ArrayList<>();
+                for (String fieldName : composite.properties()) {
+                    try {
+                        properties.add(GraphProperties.name(clazz, fieldName));
+                    } catch (IllegalArgumentException e) {
+                        // associations are relationships, not node properties, so they cannot be indexed
+                    }
+                }
+                SchemaIndex index = new SchemaIndex(label, properties, false);
+                if (!properties.isEmpty() && !indexes.contains(index)) {
+                    indexes.add(index);
+                }
+            }
+        }
+        return indexes;
+    }
+
+    // Keys of all indexes in the database, mapped to whether they are online
+    private static Map<String, Boolean> readIndexes(Session session) {
+        Map<String, Boolean> indexes = new HashMap<>();
+        String cypher = "CALL db.indexes() YIELD label, properties, type, state RETURN label, properties, type, state";
+        for (Map<String, Object> row : session.query(cypher, Collections.emptyMap()).queryResults()) {
+            List<String> properties = new ArrayList<>();
+            for (Object property : asIterable(row.get("properties"))) {
+                properties.add(property.toString());
+            }
+            boolean unique = String.valueOf(row.get("type")).contains("unique");
+            SchemaIndex index = new SchemaIndex(String.valueOf(row.get("label")), properties, unique);
+            indexes.put(index.key(), "ONLINE".equals(row.get("state")));
+        }
+        return indexes;
+    }
+
+    private static Iterable<?> asIterable(Object value) {
+        if (value instanceof Object[]) {
+            return Arrays.asList((Object[]) value);
+        }
+        return (Iterable<?>) value;
+    }
+
+    private static final class SchemaIndex {
+        private final String label;
+        private final List<String> properties;
+        private final boolean unique;
+
+        private SchemaIndex(String label, List<String> properties, boolean unique) {
+            this.label = label;
+            this.properties = properties;
+            this.unique = unique;
+        }
+
+        private String key() {
+            return label + ":" + properties + (unique ? ":unique" : "");
+        }
+
+        private String statement() {
+            if (unique) {
+                return "CREATE CONSTRAINT ON (n:" + label + ") ASSERT n.`" + properties.get(0) + "` IS UNIQUE";
+            }
+            return "CREATE INDEX ON :" + label + "(`" + Joiner.on("`, `").join(properties) + "`)";
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SchemaIndex && key().equals(((SchemaIndex) o).key());
+        }
+
+        @Override
+        public int hashCode() {
+            return key().hashCode();
+        }
+    }
+}
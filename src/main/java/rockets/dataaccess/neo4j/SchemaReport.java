@@ -0,0 +1,48 @@
+package rockets.dataaccess.neo4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of making sure the indexes and uniqueness constraints declared on the entity classes
+ * exist. Each entry is the Cypher schema statement for one index or constraint.
+ */
+public class SchemaReport {
+    private final List<String> created = new ArrayList<>();
+    private final List<String> existing = new ArrayList<>();
+    private final List<String> failed = new ArrayList<>();
+
+    void created(String statement) {
+        created.add(statement);
+    }
+
+    void existing(String statement) {
+        existing.add(statement);
+    }
+
+    void failed(String statement, String reason) {
+        failed.add(statement + " (" + reason + ")");
+    }
+
+    public List<String> getCreated() {
+        return Collections.unmodifiableList(created);
+    }
+
+    public List<String> getExisting() {
+        return Collections.unmodifiableList(existing);
+    }
+
+    public List<String> getFailed() {
+        return Collections.unmodifiableList(failed);
+    }
+
+    @Override
+    public String toString() {
+        return "SchemaReport{" +
+                "created=" + created +
+                ", existing=" + existing +
+                ", failed=" + failed +
+                '}';
+    }
+}
@@ -0,0 +1,165 @@
+package rockets.export;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * How {@link Exporter} writes records.
+ */
+public enum ExportFormat {
+    /**
+     * One JSON object per line, with the entity class in a "type" field, so that any mix of
+     * classes can follow each other.
+     */
+    NDJSON("application/x-ndjson", "ndjson", true) {
+        @Override
+        RecordWriter writer(Writer out) throws IOException {
+            return new JsonRecordWriter(out);
+        }
+    },
+    /**
+     * RFC 4180 CSV with a header row, so a file holds a single entity class. Collections are joined
+     * with ';'.
+     */
+    CSV("text/csv", "csv", false) {
+        @Override
+        RecordWriter writer(Writer out) {
+            return new CsvRecordWriter(out);
+        }
+    };
+
+    private static final JsonFactory JSON = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private final String contentType;
+    private final String extension;
+    private final boolean mixed;
+
+    ExportFormat(String contentType, String extension, boolean mixed) {
+        this.contentType = contentType;
+        this.extension = extension;
+        this.mixed = mixed;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @return whether records of several entity classes can go into one export.
+     */
+    public boolean isMixed() {
+        return mixed;
+    }
+
+    abstract RecordWriter writer(Writer out) throws IOException;
+
+    /**
+     * Writes the records of one entity class after another, each as the values of the class's
+     * columns, and buffers no more than the underlying writer does.
+     */
+    interface RecordWriter {
+        void begin(String type, List<String> columns) throws IOException;
+
+        void write(Object[] values) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    private static class JsonRecordWriter implements RecordWriter {
+        private final JsonGenerator generator;
+        private String type;
+        private List<String> columns;
+
+        JsonRecordWriter(Writer out) throws IOException {
+            generator = JSON.createGenerator(out);
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void begin(String type, List<String> columns) {
+            this.type = type;
+            this.columns = columns;
+        }
+
+        @Override
+        public void write(Object[] values) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("type", type);
+            for (int i = 0; i < values.length; i++) {
+                generator.writeFieldName(columns.get(i));
+                writeValue(values[i]);
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (null == value) {
+                generator.writeNull();
+            } else if (value instanceof BigDecimal) {
+                generator.writeNumber((BigDecimal) value);
+            } else if (value instanceof Number) {
+                generator.writeNumber(((Number) value).longValue());
+            } else if (value instanceof Collection) {
+                generator.writeStartArray();
+                for (Object element : (Collection<?>) value) {
+                    generator.writeString(element.toString());
+                }
+                generator.writeEndArray();
+            } else {
+                generator.writeString(value.toString());
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+    }
+
+    private static class CsvRecordWriter implements RecordWriter {
+        private final Writer out;
+        private CSVPrinter printer;
+
+        CsvRecordWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void begin(String type, List<String> columns) throws IOException {
+            if (null != printer) {
+                throw new IllegalStateException("a CSV export holds a single entity class");
+            }
+            printer = CSVFormat.DEFAULT.withHeader(columns.toArray(new String[0])).print(out);
+        }
+
+        @Override
+        public void write(Object[] values) throws IOException {
+            for (Object value : values) {
+                printer.print(value instanceof Collection
+                        ? ((Collection<?>) value).stream().map(Object::toString).collect(Collectors.joining(";"))
+                        : value);
+            }
+            printer.println();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+}
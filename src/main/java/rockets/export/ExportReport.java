@@ -0,0 +1,68 @@
+package rockets.export;
+
+import rockets.model.Entity;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * What an export wrote, and how fast.
+ */
+public final class ExportReport {
+    private final Map<Class<? extends Entity>, Long> records;
+    private final long bytes;
+    private final long nanos;
+
+    ExportReport(Map<Class<? extends Entity>, Long> records, long bytes, long nanos) {
+        this.records = Collections.unmodifiableMap(new LinkedHashMap<>(records));
+        this.bytes = bytes;
+        this.nanos = nanos;
+    }
+
+    /**
+     * @return the number of records written per entity class, in the order they were written.
+     */
+    public Map<Class<? extends Entity>, Long> getRecords() {
+        return records;
+    }
+
+    public long getRecordCount() {
+        return records.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * @return the number of bytes written to the output stream, after compression.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    public double getRecordsPerSecond() {
+        return perSecond(getRecordCount());
+    }
+
+    public double getBytesPerSecond() {
+        return perSecond(bytes);
+    }
+
+    private double perSecond(long amount) {
+        return 0 == nanos ? 0 : amount * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    @Override
+    public String toString() {
+        String counts = records.entrySet().stream()
+                .map(entry -> entry.getKey().getSimpleName() + " " + entry.getValue())
+                .collect(Collectors.joining(", "));
+        return String.format("exported %d records (%s), %d bytes in %d ms: %.0f records/s, %.2f MB/s",
+                getRecordCount(), counts, bytes, getMillis(), getRecordsPerSecond(),
+                getBytesPerSecond() / (1024 * 1024));
+    }
+}
@@ -0,0 +1,172 @@
+package rockets.export;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.CountingOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rockets.dataaccess.DAO;
+import rockets.model.Entity;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Writes launch service providers, rockets and launches to an output stream as they come off a
+ * {@link DAO#stream(Class)} cursor, so that memory use does not grow with the size of the graph.
+ * Associations are written as the id of the associated entity, and users are never exported.
+ */
+public class Exporter {
+    private static Logger logger = LoggerFactory.getLogger(Exporter.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // the names the export is asked for by, with the entities referred to before those referring to them
+    private static final Map<String, Class<? extends Entity>> TYPES = ImmutableMap.of(
+            "lsps", LaunchServiceProvider.class,
+            "rockets", Rocket.class,
+            "launches", Launch.class);
+
+    private static final Map<Class<? extends Entity>, Map<String, ? extends Function<?, Object>>> COLUMNS =
+            ImmutableMap.of(
+                    LaunchServiceProvider.class, ImmutableMap.<String, Function<LaunchServiceProvider, Object>>builder()
+                            .put("id", Entity::getId)
+                            .put("name", LaunchServiceProvider::getName)
+                            .put("yearFounded", LaunchServiceProvider::getYearFounded)
+                            .put("country", LaunchServiceProvider::getCountry)
+                            .put("headquarters", LaunchServiceProvider::getHeadquarters)
+                            .put("wikilink", Entity::getWikilink)
+                            .build(),
+                    Rocket.class, ImmutableMap.<String, Function<Rocket, Object>>builder()
+                            .put("id", Entity::getId)
+                            .put("name", Rocket::getName)
+                            .put("country", Rocket::getCountry)
+                            .put("manufacturer", rocket -> id(rocket.getManufacturer()))
+                            .put("massToLEO", Rocket::getMassToLEO)
+                            .put("massToGTO", Rocket::getMassToGTO)
+                            .put("massToOther", Rocket::getMassToOther)
+                            .put("firstYearFlight", Rocket::getFirstYearFlight)
+                            .put("latestYearFlight", Rocket::getLatestYearFlight)
+                            .put("wikilink", Entity::getWikilink)
+                            .build(),
+                    Launch.class, ImmutableMap.<String, Function<Launch, Object>>builder()
+                            .put("id", Entity::getId)
+                            .put("launchDate", Launch::getLaunchDate)
+                            .put("launchVehicle", launch -> id(launch.getLaunchVehicle()))
+                            .put("launchServiceProvider", launch -> id(launch.getLaunchServiceProvider()))
+                            .put("launchSite", Launch::getLaunchSite)
+                            .put("orbit", Launch::getOrbit)
+                            .put("function", Launch::getFunction)
+                            .put("launchOutcome", Launch::getLaunchOutcome)
+                            .put("price", Launch::getPrice)
+                            .put("payload", Launch::getPayload)
+                            .put("wikilink", Entity::getWikilink)
+                            .build());
+
+    private final DAO dao;
+
+    public Exporter(DAO dao) {
+        notNull(dao);
+        this.dao = dao;
+    }
+
+    /**
+     * @param type "lsps", "rockets" or "launches", or null for all three.
+     * @return the classes to export for the type.
+     */
+    public static List<Class<? extends Entity>> classes(String type) {
+        if (null == type) {
+            return ImmutableList.copyOf(TYPES.values());
+        }
+        isTrue(TYPES.containsKey(type), "Unknown export type: %s", type);
+        return ImmutableList.of(TYPES.get(type));
+    }
+
+    /**
+     * Writes every entity of each class in turn, in id order. The output stream is flushed but not
+     * closed.
+     *
+     * @param gzip whether to compress the records, in which case a complete gzip stream is written.
+     * @return the number of records and bytes written, and how long it took.
+     */
+    public ExportReport export(List<Class<? extends Entity>> classes, ExportFormat format, boolean gzip,
+                               OutputStream out) throws IOException {
+        notEmpty(classes);
+        notNull(format);
+        notNull(out);
+        isTrue(format.isMixed() || classes.size() == 1, "a %s export holds a single entity class", format);
+        for (Class<? extends Entity> clazz : classes) {
+            isTrue(COLUMNS.containsKey(clazz), "cannot export %s", clazz.getSimpleName());
+        }
+
+        long start = System.nanoTime();
+        CountingOutputStream counted = new CountingOutputStream(out);
+        GZIPOutputStream gzipped = gzip ? new GZIPOutputStream(counted, BUFFER_SIZE) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzip ? gzipped : counted,
+                StandardCharsets.UTF_8), BUFFER_SIZE);
+        ExportFormat.RecordWriter records = format.writer(writer);
+
+        Map<Class<? extends Entity>, Long> counts = new LinkedHashMap<>();
+        for (Class<? extends Entity> clazz : classes) {
+            counts.put(clazz, write(clazz, records));
+        }
+        records.flush();
+        writer.flush();
+        if (gzip) {
+            gzipped.finish();
+        }
+        counted.flush();
+
+        ExportReport report = new ExportReport(counts, counted.getCount(), System.nanoTime() - start);
+        logger.info(report.toString());
+        return report;
+    }
+
+    private <T extends Entity> long write(Class<T> clazz, ExportFormat.RecordWriter records) throws IOException {
+        Map<String, Function<T, Object>> columns = columns(clazz);
+        records.begin(clazz.getSimpleName(), new ArrayList<>(columns.keySet()));
+        Object[] values = new Object[columns.size()];
+        long count = 0;
+        try (Stream<T> entities = dao.stream(clazz)) {
+            Iterator<T> iterator = entities.iterator();
+            while (iterator.hasNext()) {
+                T entity = iterator.next();
+                int i = 0;
+                for (Function<T, Object> column : columns.values()) {
+                    values[i++] = column.apply(entity);
+                }
+                records.write(values);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Entity> Map<String, Function<T, Object>> columns(Class<T> clazz) {
+        return (Map<String, Function<T, Object>>) COLUMNS.get(clazz);
+    }
+
+    private static Long id(Entity entity) {
+        return null == entity ? null : entity.getId();
+    }
+}
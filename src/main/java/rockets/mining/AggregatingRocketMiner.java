@@ -0,0 +1,92 @@
+package rockets.mining;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rockets.dataaccess.Aggregate;
+import rockets.dataaccess.Aggregation;
+import rockets.dataaccess.DAO;
+import rockets.model.Entity;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static rockets.model.Launch.LaunchOutcome.SUCCESSFUL;
+
+/**
+ * Answers the same questions as {@link RocketMiner}, but lets the DAO count, sum and rank inside
+ * the store with {@link DAO#aggregate(Aggregation)}, so that only the top k groups and then their k
+ * entities are transferred instead of every launch. For a positive k the results are those of
+ * {@link RocketMiner}, except that ties are broken by ascending id (or country) where it leaves
+ * them in hash order. The most recent launches already come from the DAO's launch date index.
+ */
+public class AggregatingRocketMiner extends RocketMiner {
+    private static Logger logger = LoggerFactory.getLogger(AggregatingRocketMiner.class);
+
+    private final DAO dao;
+
+    public AggregatingRocketMiner(DAO dao) {
+        super(dao);
+        this.dao = dao;
+    }
+
+    @Override
+    public List<Rocket> mostLaunchedRockets(int k) {
+        logger.info("find most active " + k + " rockets");
+        return top(Rocket.class, Aggregation.count(Launch.class).groupBy("launchVehicle").top(k));
+    }
+
+    /**
+     * Ranks providers with at least one successful launch by their share of successful launches.
+     * {@link RocketMiner} divides integers, which only separates providers without failures from
+     * the others; this ranking agrees with it, except that it also orders the providers with
+     * failures by their share, and still answers when no launch ever failed.
+     */
+    @Override
+    public List<LaunchServiceProvider> mostReliableLaunchServiceProviders(int k) {
+        logger.info("find most reliable " + k + " launch service providers");
+        return top(LaunchServiceProvider.class, Aggregation.share(Launch.class, "launchOutcome", SUCCESSFUL)
+                .groupBy("launchServiceProvider").top(k));
+    }
+
+    @Override
+    public String dominantCountry(String orbit) {
+        logger.info("find most dominant country in an orbit");
+        Aggregation<Launch> countries = Aggregation.count(Launch.class)
+                .where("launchOutcome", SUCCESSFUL)
+                .where("orbit", orbit)
+                .groupBy("launchVehicle.country")
+                .top(1);
+        List<Aggregate> dominant = dao.aggregate(countries);
+        return dominant.isEmpty() ? null : (String) dominant.get(0).getKey();
+    }
+
+    @Override
+    public List<Launch> mostExpensiveLaunches(int k) {
+        logger.info("find most expensive" + k + "launches");
+        return top(Launch.class, Aggregation.max(Launch.class, "price").top(k));
+    }
+
+    /**
+     * Like {@link RocketMiner}, takes the revenue of a provider to be the price of its last launch
+     * of the year in id order.
+     */
+    @Override
+    public List<LaunchServiceProvider> highestRevenueLaunchServiceProviders(int k, int year) {
+        logger.info("find highest sales revenue" + k + "launch service provider in" + year);
+        return top(LaunchServiceProvider.class, Aggregation.last(Launch.class, "price")
+                .between("launchDate", LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31))
+                .groupBy("launchServiceProvider").top(k));
+    }
+
+    // Loads the entities whose ids the aggregation's groups are keyed by, in the groups' order
+    private <T extends Entity> List<T> top(Class<T> clazz, Aggregation<?> aggregation) {
+        List<Long> ids = dao.aggregate(aggregation).stream()
+                .map(aggregate -> ((Number) aggregate.getKey()).longValue())
+                .collect(Collectors.toList());
+        return dao.loadAll(clazz, ids);
+    }
+}
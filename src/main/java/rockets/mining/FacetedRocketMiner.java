@@ -0,0 +1,78 @@
+package rockets.mining;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rockets.dataaccess.DAO;
+import rockets.dataaccess.facet.Facet;
+import rockets.dataaccess.facet.FacetQuery;
+import rockets.dataaccess.facet.LaunchFacetIndex;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.commons.lang3.Validate.notNull;
+import static rockets.model.Launch.LaunchOutcome.SUCCESSFUL;
+
+/**
+ * Answers {@link #dominantCountry(String)} by intersecting the bitmaps of a {@link LaunchFacetIndex}
+ * instead of scanning every launch, and the other questions with another miner, e.g. one calling
+ * stored procedures. Ties are broken by country in ascending order, and an orbit without
+ * successful launches has no dominant country.
+ */
+public class FacetedRocketMiner extends RocketMiner {
+    private static Logger logger = LoggerFactory.getLogger(FacetedRocketMiner.class);
+
+    private final RocketMiner miner;
+    private final LaunchFacetIndex facets;
+
+    public FacetedRocketMiner(DAO dao, LaunchFacetIndex facets) {
+        this(dao, new RocketMiner(dao), facets);
+    }
+
+    /**
+     * @param miner the miner answering every question but {@link #dominantCountry(String)}.
+     */
+    public FacetedRocketMiner(DAO dao, RocketMiner miner, LaunchFacetIndex facets) {
+        super(dao);
+        notNull(miner, "miner cannot be null");
+        notNull(facets, "facets cannot be null");
+        this.miner = miner;
+        this.facets = facets;
+    }
+
+    @Override
+    public List<Rocket> mostLaunchedRockets(int k) {
+        return miner.mostLaunchedRockets(k);
+    }
+
+    @Override
+    public List<LaunchServiceProvider> mostReliableLaunchServiceProviders(int k) {
+        return miner.mostReliableLaunchServiceProviders(k);
+    }
+
+    @Override
+    public List<Launch> mostRecentLaunches(int k) {
+        return miner.mostRecentLaunches(k);
+    }
+
+    @Override
+    public List<Launch> mostExpensiveLaunches(int k) {
+        return miner.mostExpensiveLaunches(k);
+    }
+
+    @Override
+    public List<LaunchServiceProvider> highestRevenueLaunchServiceProviders(int k, int year) {
+        return miner.highestRevenueLaunchServiceProviders(k, year);
+    }
+
+    @Override
+    public String dominantCountry(String orbit) {
+        logger.info("find most dominant country in an orbit");
+        Map<Object, Long> countries = facets.counts(Facet.ROCKET_COUNTRY,
+                FacetQuery.is(Facet.ORBIT, orbit).and(FacetQuery.is(Facet.OUTCOME, SUCCESSFUL)));
+        return countries.isEmpty() ? null : (String) countries.keySet().iterator().next();
+    }
+}
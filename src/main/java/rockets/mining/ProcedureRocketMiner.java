@@ -0,0 +1,85 @@
+package rockets.mining;
+
+import com.google.common.collect.ImmutableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rockets.dataaccess.DAO;
+import rockets.dataaccess.neo4j.MiningProcedures;
+import rockets.dataaccess.neo4j.Neo4jDAO;
+import rockets.model.Entity;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Answers the same questions as {@link AggregatingRocketMiner} by calling the
+ * {@link MiningProcedures} of an embedded store, so that launches are walked inside the database
+ * and only the ids of the top k rows come back. The entities are then loaded through the DAO,
+ * which may be a decorator of the store, in the procedures' order.
+ */
+public class ProcedureRocketMiner extends RocketMiner {
+    private static Logger logger = LoggerFactory.getLogger(ProcedureRocketMiner.class);
+
+    private final DAO dao;
+    private final Neo4jDAO store;
+
+    public ProcedureRocketMiner(DAO dao, Neo4jDAO store) {
+        super(dao);
+        notNull(store, "store cannot be null");
+        this.dao = dao;
+        this.store = store;
+    }
+
+    @Override
+    public List<Rocket> mostLaunchedRockets(int k) {
+        logger.info("find most active " + k + " rockets");
+        return call(Rocket.class, "rockets.topLaunched($k)", ImmutableMap.of("k", k));
+    }
+
+    @Override
+    public List<LaunchServiceProvider> mostReliableLaunchServiceProviders(int k) {
+        logger.info("find most reliable " + k + " launch service providers");
+        return call(LaunchServiceProvider.class, "rockets.reliability($k)", ImmutableMap.of("k", k));
+    }
+
+    @Override
+    public List<Launch> mostRecentLaunches(int k) {
+        logger.info("find most recent " + k + " launches");
+        return call(Launch.class, "rockets.recentLaunches($k)", ImmutableMap.of("k", k));
+    }
+
+    @Override
+    public String dominantCountry(String orbit) {
+        logger.info("find most dominant country in an orbit");
+        notNull(orbit, "orbit cannot be null");
+        List<Map<String, Object>> rows = store.query("RETURN rockets.dominantCountry($orbit) AS value",
+                ImmutableMap.of("orbit", orbit));
+        return (String) rows.get(0).get("value");
+    }
+
+    @Override
+    public List<Launch> mostExpensiveLaunches(int k) {
+        logger.info("find most expensive " + k + " launches");
+        return call(Launch.class, "rockets.expensiveLaunches($k)", ImmutableMap.of("k", k));
+    }
+
+    @Override
+    public List<LaunchServiceProvider> highestRevenueLaunchServiceProviders(int k, int year) {
+        logger.info("find highest sales revenue " + k + " launch service providers in " + year);
+        return call(LaunchServiceProvider.class, "rockets.revenue($year, $k)", ImmutableMap.of("year", year, "k", k));
+    }
+
+    // Loads the entities whose ids the procedure yields, in its order
+    private <T extends Entity> List<T> call(Class<T> clazz, String procedure, Map<String, ?> params) {
+        List<Long> ids = store.query("CALL " + procedure + " YIELD id RETURN id", params).stream()
+                .map(row -> ((Number) row.get("id")).longValue())
+                .collect(Collectors.toList());
+        return dao.loadAll(clazz, ids);
+    }
+}
@@ -8,8 +8,9 @@ import rockets.model.LaunchServiceProvider;
 import rockets.model.Rocket;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class RocketMiner {
     private static Logger logger = LoggerFactory.getLogger(RocketMiner.class);
@@ -30,17 +31,9 @@ public class RocketMiner {
     public List<Rocket> mostLaunchedRockets(int k) {
 
         logger.info("find most active " + k + " rockets");
-        Collection<Launch> launches = dao.loadAll(Launch.class);
-        Collection<Rocket> rockets = new ArrayList<>();
-        for (Launch l : launches) {
-            rockets.add(l.getLaunchVehicle());
-        }
-
-
         Map<Rocket, Integer> freqMap = new HashMap<>();
-        for (Rocket r : rockets) {
-            Integer count = freqMap.get(r);
-            freqMap.put(r, (count == null) ? 1 : count + 1);
+        try (Stream<Launch> launches = dao.stream(Launch.class)) {
+            launches.map(Launch::getLaunchVehicle).forEach(r -> freqMap.merge(r, 1, Integer::sum));
         }
 
         List<Map.Entry<Rocket, Integer>> list = new ArrayList<>(freqMap.entrySet());
@@ -69,25 +62,16 @@ public class RocketMiner {
      */
     public List<LaunchServiceProvider> mostReliableLaunchServiceProviders(int k) {
         logger.info("find most reliable " + k + " launch service providers");
-        Collection<Launch> launches = dao.loadAll(Launch.class);
-        Collection<LaunchServiceProvider> success = new ArrayList<>();
-        Collection<LaunchServiceProvider> failed = new ArrayList<>();
-        for (Launch l : launches) {
-            if (l.getLaunchOutcome().name().equals("SUCCESSFUL")) {
-                success.add(l.getLaunchServiceProvider());
-            } else {
-                failed.add(l.getLaunchServiceProvider());
-            }
-        }
         Map<LaunchServiceProvider, Integer> successMap = new HashMap<>();
-        for (LaunchServiceProvider l : success) {
-            Integer count = successMap.get(l);
-            successMap.put(l, (count == null) ? 1 : count + 1);
-        }
         Map<LaunchServiceProvider, Integer> failMap = new HashMap<>();
-        for (LaunchServiceProvider l : failed) {
-            Integer count = failMap.get(l);
-            failMap.put(l, (count == null) ? 1 : count + 1);
+        try (Stream<Launch> launches = dao.stream(Launch.class)) {
+            launches.forEach(l -> {
+                if (l.getLaunchOutcome().name().equals("SUCCESSFUL")) {
+                    successMap.merge(l.getLaunchServiceProvider(), 1, Integer::sum);
+                } else {
+                    failMap.merge(l.getLaunchServiceProvider(), 1, Integer::sum);
+                }
+            });
         }
         Map<LaunchServiceProvider, Integer> finishMap = new HashMap<>();
         for (Map.Entry<LaunchServiceProvider, Integer> entry : successMap.entrySet()) {
@@ -122,16 +106,15 @@ public class RocketMiner {
     }
 
     /**
-     * Returns the top-k most recent launches.
+     * Returns the top-k most recent launches, read from the latest end of the DAO's launch date
+     * index.
      *
      * @param k the number of launches to be returned.
      * @return the list of k most recent launches.
      */
     public List<Launch> mostRecentLaunches(int k) {
         logger.info("find most recent " + k + " launches");
-        Collection<Launch> launches = dao.loadAll(Launch.class);
-        Comparator<Launch> launchDateComparator = (a, b) -> -a.getLaunchDate().compareTo(b.getLaunchDate());
-        return launches.stream().sorted(launchDateComparator).limit(k).collect(Collectors.toList());
+        return dao.latestLaunches(Math.max(k, 0));
     }
 
     /**
@@ -139,30 +122,22 @@ public class RocketMiner {
      * Returns the dominant country who has the most launched rockets in an orbit.
      *
      * @param orbit the orbit
-     * @return the country who sends the most payload to the orbit
+     * @return the country who sends the most payload to the orbit, or null if no launch to the
+     * orbit succeeded
      */
     public String dominantCountry(String orbit) {
         logger.info("find most dominant country in an orbit");
-        Collection<Launch> launches = dao.loadAll(Launch.class);
-        Collection<Rocket> roc = new ArrayList<>();
-        for (Launch l : launches) {
-            if (l.getLaunchOutcome().name().equals("SUCCESSFUL") && l.getOrbit().equals(orbit)) {
-                roc.add(l.getLaunchVehicle());
-            }
-
-        }
-        ArrayList<String> country = new ArrayList<>();
-        for (Rocket r : roc) {
-            country.add(r.getCountry());
-        }
         Map<String, Integer> countryMap = new HashMap<>();
-        for (String c : country) {
-            Integer count = countryMap.get(c);
-            countryMap.put(c, (count == null) ? 1 : count + 1);
+        try (Stream<Launch> launches = dao.stream(Launch.class)) {
+            launches.filter(l -> l.getLaunchOutcome().name().equals("SUCCESSFUL") && l.getOrbit().equals(orbit))
+                    .forEach(l -> countryMap.merge(l.getLaunchVehicle().getCountry(), 1, Integer::sum));
         }
         List<Map.Entry<String, Integer>> list = new ArrayList<>(countryMap.entrySet());
         Comparator<Map.Entry<String, Integer>> compare = Comparator.comparing(Map.Entry<String, Integer>::getValue);
         Collections.sort(list, compare.reversed());
+        if (list.isEmpty()) {
+            return null;
+        }
         String coun = list.get(0).getKey();
         return coun;
 
@@ -176,30 +151,16 @@ public class RocketMiner {
      */
     public List<Launch> mostExpensiveLaunches(int k) {
         logger.info("find most expensive" + k + "launches");
-        Collection<Launch> launches = dao.loadAll(Launch.class);
-        Map<Launch, BigDecimal> launchMap = new HashMap<>();
-        for (Launch l : launches) {
-            launchMap.put(l, l.getPrice());
+        Comparator<Launch> priceComparator = (a, b) -> -a.getPrice().compareTo(b.getPrice());
+        try (Stream<Launch> launches = dao.stream(Launch.class)) {
+            return top(launches, k, priceComparator);
         }
-        List<Map.Entry<Launch, BigDecimal>> list = new ArrayList<>(launchMap.entrySet());
-        Comparator<Map.Entry<Launch, BigDecimal>> compare = Comparator.comparing(Map.Entry<Launch, BigDecimal>::getValue);
-        Collections.sort(list, compare.reversed());
-        int count = 0;
-        List<Launch> launch = new ArrayList<>();
-        for (Map.Entry<Launch, BigDecimal> entry : list) {
-            launch.add(entry.getKey());
-            ++count;
-            if (count >= k) {
-                break;
-            }
-        }
-        return launch;
-
     }
 
     /**
      * Returns a list of launch service provider that has the top-k highest
-     * sales revenue in a year.
+     * sales revenue in a year. Only the launches of the year are read, with a range query on the
+     * DAO's launch date index.
      *
      * @param k    the number of launch service provider.
      * @param year the year in request
@@ -207,12 +168,11 @@ public class RocketMiner {
      */
     public List<LaunchServiceProvider> highestRevenueLaunchServiceProviders(int k, int year) {
         logger.info("find highest sales revenue" + k + "launch service provider in" + year);
-        Collection<Launch> launches = dao.loadAll(Launch.class);
         Map<LaunchServiceProvider, BigDecimal> LSPMap = new HashMap<>();
-        for (Launch l : launches) {
-            if (l.getLaunchDate().getYear() == year)
-                LSPMap.put(l.getLaunchServiceProvider(), l.getPrice());
-        }
+        List<Launch> launches = dao.findLaunchesBetween(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31));
+        // the price kept for a provider is that of its last launch in id order
+        launches.sort(Comparator.comparing(Launch::getId));
+        launches.forEach(l -> LSPMap.put(l.getLaunchServiceProvider(), l.getPrice()));
         Map<LaunchServiceProvider, BigDecimal> priceMap = new HashMap<>();
         for (Map.Entry<LaunchServiceProvider, BigDecimal> entry : LSPMap.entrySet()) {
             BigDecimal count = priceMap.get(entry.getKey());
@@ -232,4 +192,26 @@ public class RocketMiner {
         }
         return launchServiceProviders;
     }
+
+    // The first k elements in the given order, ties kept in encounter order, holding at most k
+    // elements at a time
+    private static <T> List<T> top(Stream<T> stream, int k, Comparator<T> comparator) {
+        List<T> top = new ArrayList<>();
+        if (k <= 0) {
+            return top;
+        }
+        Comparator<Map.Entry<T, Long>> order = Comparator
+                .<Map.Entry<T, Long>, T>comparing(Map.Entry::getKey, comparator)
+                .thenComparing(Map.Entry::getValue);
+        PriorityQueue<Map.Entry<T, Long>> queue = new PriorityQueue<>(order.reversed());
+        long[] index = {0};
+        stream.forEach(t -> {
+            queue.add(new AbstractMap.SimpleImmutableEntry<>(t, index[0]++));
+            if (queue.size() > k) {
+                queue.poll();
+            }
+        });
+        queue.stream().sorted(order).forEach(entry -> top.add(entry.getKey()));
+        return top;
+    }
 }
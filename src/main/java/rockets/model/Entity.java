@@ -2,8 +2,12 @@ package rockets.model;
 
 import org.neo4j.ogm.annotation.GeneratedValue;
 import org.neo4j.ogm.annotation.Id;
+import org.neo4j.ogm.annotation.Index;
 import org.neo4j.ogm.annotation.Property;
 
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
 public abstract class Entity {
     @Id
     @GeneratedValue
@@ -12,6 +16,11 @@ public abstract class Entity {
     @Property(name = "wikilink")
     private String wikilink;
 
+    // the natural key as last stored in the graph, which edits to the entity may have made stale
+    @Index(unique = true)
+    @Property(name = "naturalKey")
+    private String naturalKey;
+
     public Entity() {
     }
 
@@ -31,4 +40,42 @@ public abstract class Entity {
     public void setId(Long id) {
         this.id = id;
     }
+
+    /**
+     * Identifies this entity in the domain by the same fields that {@code equals} compares, so that
+     * two entities have the same natural key exactly when they are equal. Associated entities
+     * contribute their own natural key.
+     *
+     * @return the fields compared by {@code equals}, escaped and joined with '|'.
+     */
+    public String getNaturalKey() {
+        return Arrays.stream(naturalKeyFields())
+                .map(Entity::naturalKeyPart)
+                .collect(Collectors.joining("|"));
+    }
+
+    /**
+     * @return the natural key this entity was last stored with, or null if it never was; it differs
+     * from {@link #getNaturalKey()} once a field compared by {@code equals} is changed.
+     */
+    public String getStoredNaturalKey() {
+        return naturalKey;
+    }
+
+    public void setStoredNaturalKey(String naturalKey) {
+        this.naturalKey = naturalKey;
+    }
+
+    /**
+     * @return the values compared by {@code equals}, in a fixed order.
+     */
+    protected abstract Object[] naturalKeyFields();
+
+    private static String naturalKeyPart(Object value) {
+        if (null == value) {
+            return "\\0";
+        }
+        String part = value instanceof Entity ? ((Entity) value).getNaturalKey() : value.toString();
+        return part.replace("\\", "\\\\").replace("|", "\\|");
+    }
 }
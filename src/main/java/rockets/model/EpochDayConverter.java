@@ -0,0 +1,21 @@
+package rockets.model;
+
+import org.neo4j.ogm.typeconversion.AttributeConverter;
+
+import java.time.LocalDate;
+
+/**
+ * Stores dates as the number of days since 1970-01-01, so that they compare, sort and range-seek
+ * in an index as numbers.
+ */
+public class EpochDayConverter implements AttributeConverter<LocalDate, Long> {
+    @Override
+    public Long toGraphProperty(LocalDate value) {
+        return null == value ? null : value.toEpochDay();
+    }
+
+    @Override
+    public LocalDate toEntityAttribute(Long value) {
+        return null == value ? null : LocalDate.ofEpochDay(value);
+    }
+}
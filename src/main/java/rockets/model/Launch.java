@@ -2,9 +2,11 @@ package rockets.model;
 
 import com.google.common.collect.Sets;
 import org.neo4j.ogm.annotation.CompositeIndex;
+import org.neo4j.ogm.annotation.Index;
 import org.neo4j.ogm.annotation.NodeEntity;
 import org.neo4j.ogm.annotation.Property;
 import org.neo4j.ogm.annotation.Relationship;
+import org.neo4j.ogm.annotation.typeconversion.Convert;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -22,7 +24,9 @@ public class Launch extends Entity {
         FAILED, SUCCESSFUL
     }
 
+    @Index
     @Property(name = "launchDate")
+    @Convert(EpochDayConverter.class)
     private LocalDate launchDate;
 
     @Relationship(type = "PROVIDES", direction = INCOMING)
@@ -161,4 +165,9 @@ public class Launch extends Entity {
     public int hashCode() {
         return Objects.hash(launchDate, launchVehicle, orbit);
     }
+
+    @Override
+    protected Object[] naturalKeyFields() {
+        return new Object[]{launchDate, launchVehicle, orbit};
+    }
 }
@@ -3,6 +3,7 @@ package rockets.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.google.common.collect.Sets;
 import org.neo4j.ogm.annotation.CompositeIndex;
+import org.neo4j.ogm.annotation.Index;
 import org.neo4j.ogm.annotation.NodeEntity;
 import org.neo4j.ogm.annotation.Property;
 import org.neo4j.ogm.annotation.Relationship;
@@ -17,6 +18,7 @@ import static org.neo4j.ogm.annotation.Relationship.OUTGOING;
 @NodeEntity
 @CompositeIndex(properties = {"name", "yearFounded", "country"}, unique = true)
 public class LaunchServiceProvider extends Entity {
+    @Index
     @Property(name = "name")
     private String name;
 
@@ -132,4 +134,9 @@ public class LaunchServiceProvider extends Entity {
     public int hashCode() {
         return Objects.hash(name, yearFounded, country);
     }
+
+    @Override
+    protected Object[] naturalKeyFields() {
+        return new Object[]{name, yearFounded, country};
+    }
 }
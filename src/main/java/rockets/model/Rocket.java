@@ -3,6 +3,7 @@ package rockets.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.google.common.collect.Sets;
 import org.neo4j.ogm.annotation.CompositeIndex;
+import org.neo4j.ogm.annotation.Index;
 import org.neo4j.ogm.annotation.NodeEntity;
 import org.neo4j.ogm.annotation.Property;
 import org.neo4j.ogm.annotation.Relationship;
@@ -20,6 +21,7 @@ import static org.neo4j.ogm.annotation.Relationship.OUTGOING;
 @NodeEntity
 @CompositeIndex(properties = {"name", "country", "manufacturer"}, unique = true)
 public class Rocket extends Entity {
+    @Index
     @Property(name = "name")
     private String name;
 
@@ -167,6 +169,11 @@ public class Rocket extends Entity {
         return Objects.hash(name, country, manufacturer);
     }
 
+    @Override
+    protected Object[] naturalKeyFields() {
+        return new Object[]{name, country, manufacturer};
+    }
+
     @Override
     public String toString() {
         return "Rocket{" +
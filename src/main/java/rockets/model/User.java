@@ -1,5 +1,6 @@
 package rockets.model;
 
+import org.neo4j.ogm.annotation.Index;
 import org.neo4j.ogm.annotation.NodeEntity;
 
 import java.util.Objects;
@@ -15,6 +16,7 @@ public class User extends Entity {
 
     private String lastName;
 
+    @Index(unique = true)
     private String email;
 
     private String password;
@@ -146,6 +148,11 @@ public class User extends Entity {
         return Objects.hash(email);
     }
 
+    @Override
+    protected Object[] naturalKeyFields() {
+        return new Object[]{email};
+    }
+
     @Override
     public String toString() {
         return "User{" +
@@ -1,9 +1,33 @@
 package rockets.web;
 
+import com.google.common.collect.ImmutableMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import rockets.dataaccess.Aggregation;
 import rockets.dataaccess.DAO;
+import rockets.dataaccess.EntityView;
+import rockets.dataaccess.Page;
+import rockets.dataaccess.PageRequest;
+import rockets.dataaccess.async.AsyncDAO;
+import rockets.dataaccess.async.GroupCommitDAO;
+import rockets.dataaccess.cache.CachingDAO;
+import rockets.dataaccess.event.Backpressure;
+import rockets.dataaccess.event.EventPublishingDAO;
+import rockets.dataaccess.facet.Facet;
+import rockets.dataaccess.facet.FacetIndexingDAO;
+import rockets.dataaccess.facet.FacetQuery;
+import rockets.dataaccess.facet.LaunchFacetIndex;
+import rockets.dataaccess.mapped.MappedSnapshotDAO;
+import rockets.dataaccess.memory.InMemoryDAO;
+import rockets.dataaccess.memory.SnapshotDAO;
 import rockets.dataaccess.neo4j.Neo4jDAO;
+import rockets.export.ExportFormat;
+import rockets.export.Exporter;
+import rockets.mining.FacetedRocketMiner;
+import rockets.mining.ProcedureRocketMiner;
+import rockets.mining.RocketMiner;
+import rockets.model.Entity;
+import rockets.model.Launch;
 import rockets.model.LaunchServiceProvider;
 import rockets.model.Rocket;
 import rockets.model.User;
@@ -16,11 +40,14 @@ import spark.template.freemarker.FreeMarkerEngine;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Paths;
 import java.sql.SQLException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Properties;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+import static org.apache.commons.lang3.Validate.isTrue;
 import static org.apache.logging.log4j.core.util.Closer.closeSilently;
 import static spark.Spark.*;
 
@@ -30,6 +57,17 @@ public class App {
 
     private static DAO dao;
 
+    private static AsyncDAO asyncDao;
+
+    private static LaunchFacetIndex facets;
+
+    private static RocketMiner miner;
+
+    // query parameters of "/launches/count" and the facets they filter by
+    private static final Map<String, Facet> FACET_PARAMETERS = ImmutableMap.of(
+            "orbit", Facet.ORBIT, "outcome", Facet.OUTCOME, "site", Facet.SITE, "year", Facet.YEAR,
+            "country", Facet.ROCKET_COUNTRY);
+
     public static void setDao(DAO dao) {
         App.dao = dao;
     }
@@ -37,13 +75,57 @@ public class App {
     public static void main(String[] args) throws IOException {
         Properties properties = loadProperties();
 
+        if (null == dao) {
+            DAO store = createStore(properties);
+            dao = store;
+            int eventQueueCapacity = Integer.parseInt(properties.getProperty("dao.events.queueCapacity", "0"));
+            if (eventQueueCapacity > 0) {
+                Backpressure backpressure = Backpressure.valueOf(properties.getProperty("dao.events.backpressure"));
+                dao = new EventPublishingDAO(dao, eventQueueCapacity, backpressure);
+            }
+            if (Boolean.parseBoolean(properties.getProperty("dao.facets.enabled", "false"))) {
+                FacetIndexingDAO indexing = new FacetIndexingDAO(dao);
+                facets = indexing.getFacets();
+                dao = indexing;
+            }
+            long maxStaleness = Long.parseLong(properties.getProperty("dao.snapshot.maxStalenessMillis", "-1"));
+            if (maxStaleness >= 0) {
+                dao = new SnapshotDAO(dao, maxStaleness, TimeUnit.MILLISECONDS);
+            }
+            long window = Long.parseLong(properties.getProperty("dao.groupCommit.windowMillis", "0"));
+            if (window > 0) {
+                int maxBatchSize = Integer.parseInt(properties.getProperty("dao.groupCommit.maxBatchSize"));
+                int queueCapacity = Integer.parseInt(properties.getProperty("dao.groupCommit.queueCapacity", "10000"));
+                dao = new GroupCommitDAO(dao, window, TimeUnit.MILLISECONDS, maxBatchSize, queueCapacity);
+            }
+            long cacheSize = Long.parseLong(properties.getProperty("dao.cache.maximumSize", "0"));
+            if (cacheSize > 0) {
+                long ttl = Long.parseLong(properties.getProperty("dao.cache.ttlSeconds"));
+                dao = new CachingDAO(dao, cacheSize, ttl, TimeUnit.SECONDS);
+            }
+            // an embedded store answers the mining queries inside the database
+            if (store instanceof Neo4jDAO && ((Neo4jDAO) store).hasMiningProcedures()) {
+                miner = new ProcedureRocketMiner(dao, (Neo4jDAO) store);
+            }
+        }
+        if (null == miner) {
+            miner = new RocketMiner(dao);
+        }
+        if (null != facets) {
+            miner = new FacetedRocketMiner(dao, miner, facets);
+        }
+        asyncDao = new AsyncDAO(dao, Integer.parseInt(properties.getProperty("dao.async.threads", "8")));
+
+        if (Boolean.parseBoolean(properties.getProperty("warmup.enabled", "false"))) {
+            Warmup.run(dao, miner, Integer.parseInt(properties.getProperty("warmup.sampleSize", "1000")));
+        }
+
         int port = Integer.parseInt(properties.getProperty("spark.port"));
         port(port);
 
-        String dbAddress = properties.getProperty("neo4j.dir");
-        if (null == dao) {
-            dao = new Neo4jDAO(dbAddress);
-        }
+        // one DAO session per request, so that worker threads never share one
+        before((req, res) -> dao.openSession());
+        afterAfter((req, res) -> dao.closeSession());
 
         // "/"
         handleGetIndex();
@@ -99,17 +181,31 @@ public class App {
         // "/lsps"
         handleGetLSPs();
 
+        // "/export"
+        handleGetExport();
+
+        // "/launches/count"
+        if (null != facets) {
+            handleGetLaunchCount();
+        }
+
     }
 
     public static void stop() {
         Spark.stop();
+        if (null != asyncDao) {
+            asyncDao.close();
+        }
     }
 
     private static void handleGetUsers() {
         get("/users", (req, res) -> {
             Map<String, Object> attributes = new HashMap<>();
             try {
-                attributes.put("users", dao.loadAll(User.class));
+                Page<EntityView> page = dao.loadPageView(User.class, pageRequest(req, "email"),
+                        "firstName", "lastName");
+                attributes.put("users", page.getItems());
+                attributes.put("page", page);
                 return new ModelAndView(attributes, "users.html.ftl");
             } catch (Exception e) {
                 return handleException(res, attributes, e, "users.html.ftl");
@@ -123,11 +219,22 @@ public class App {
             Map<String, Object> attributes = new HashMap<>();
             User user = getLoggedInUser(req);
             attributes.put("user", user);
+            attributes.put("stats", stats());
             return new ModelAndView(attributes, "base_page.html.ftl");
             //return handleBaseHelloView(req, res, attributes);
         }, new FreeMarkerEngine());
     }
 
+    // entity totals for the index page, counted by the database without loading anything
+    private static Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("rockets", dao.count(Rocket.class, Collections.emptyMap()));
+        stats.put("launches", dao.count(Launch.class, Collections.emptyMap()));
+        stats.put("lsps", dao.count(LaunchServiceProvider.class, Collections.emptyMap()));
+        stats.put("users", dao.count(User.class, Collections.emptyMap()));
+        return stats;
+    }
+
     private static void handleGetRegister() {
         get("/register", (req, res) -> {
             Map<String, Object> attributes = new HashMap<>();
@@ -152,7 +259,7 @@ public class App {
             attributes.put("password", password);
             attributes.put("firstName", firstName);
             attributes.put("lastName", lastName);
-            if (dao.getUserByEmail(email) != null)
+            if (dao.exists(User.class, Collections.singletonMap("email", email)))
                 return handleException(res, attributes, new IllegalArgumentException("email is already exist"),
                         "register.html.ftl");
 
@@ -350,7 +457,9 @@ public class App {
         get("/rockets", (req, res) -> {
             Map<String, Object> attributes = new HashMap<>();
             try {
-                attributes.put("rockets", dao.loadAll(Rocket.class));
+                Page<EntityView> page = dao.loadPageView(Rocket.class, pageRequest(req, "name"), "name");
+                attributes.put("rockets", page.getItems());
+                attributes.put("page", page);
                 return new ModelAndView(attributes, "rockets.html.ftl");
             } catch (Exception e) {
                 return handleException(res, attributes, e, "rockets.html.ftl");
@@ -358,7 +467,50 @@ public class App {
         }, new FreeMarkerEngine());
     }
 
-    private static Properties loadProperties() throws IOException {
+    // reads the "cursor" and "size" query parameters of a listing page
+    private static PageRequest pageRequest(Request req, String sortProperty) {
+        String size = req.queryParams("size");
+        return new PageRequest(sortProperty,
+                null == size ? PageRequest.DEFAULT_SIZE : Integer.parseInt(size),
+                req.queryParams("cursor"));
+    }
+
+    // "neo4j.mode" picks an embedded store in "neo4j.dir", a remote server at "neo4j.bolt.uri", a
+    // read-only snapshot file at "snapshot.file", or an in-memory store that is lost on exit
+    static DAO createStore(Properties properties) {
+        String mode = properties.getProperty("neo4j.mode", "embedded");
+        switch (mode) {
+            case "embedded":
+                return new Neo4jDAO(properties.getProperty("neo4j.dir"), neo4jSettings(properties));
+            case "bolt":
+                return new Neo4jDAO(properties.getProperty("neo4j.bolt.uri"),
+                        properties.getProperty("neo4j.bolt.username"),
+                        properties.getProperty("neo4j.bolt.password"),
+                        Integer.parseInt(properties.getProperty("neo4j.bolt.pool.maxSize", "50")),
+                        Long.parseLong(properties.getProperty("neo4j.bolt.pool.acquisitionTimeoutMillis", "60000")),
+                        Long.parseLong(properties.getProperty("neo4j.bolt.pool.maxLifetimeMillis", "3600000")));
+            case "mapped":
+                return new MappedSnapshotDAO(Paths.get(properties.getProperty("snapshot.file")));
+            case "memory":
+                return new InMemoryDAO();
+            default:
+                throw new IllegalArgumentException("Unknown neo4j.mode: " + mode);
+        }
+    }
+
+    // the neo4j.config.* keys, without that prefix
+    private static Map<String, String> neo4jSettings(Properties properties) {
+        String prefix = "neo4j.config.";
+        Map<String, String> settings = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                settings.put(key.substring(prefix.length()), properties.getProperty(key));
+            }
+        }
+        return settings;
+    }
+
+    static Properties loadProperties() throws IOException {
         ClassPathResource resource = new ClassPathResource("app.properties");
         Properties properties = new Properties();
         InputStream stream = null;
@@ -391,7 +543,7 @@ public class App {
                 lsp.setName(lspName);
                 lsp.setYearFounded(yearFounded);
                 lsp.setCountry(country);
-                if (dao.getLSPByName(lspName) != null)
+                if (dao.exists(LaunchServiceProvider.class, Collections.singletonMap("name", lspName)))
                     throw new IllegalArgumentException("lsp is already exist");
 
                 dao.createOrUpdate(lsp);
@@ -423,9 +575,12 @@ public class App {
             Map<String, Object> attributes = new HashMap<>();
             try {
                 String id = req.params(":id");
-                LaunchServiceProvider lsp = dao.load(LaunchServiceProvider.class, Long.parseLong(id));
+                // the launches of the provider's rockets are counted while the provider is looked up
+                CompletableFuture<Map<Long, Long>> launchCounts = launchCountsByRocket(Long.parseLong(id));
+                LaunchServiceProvider lsp = asyncDao.load(LaunchServiceProvider.class, Long.parseLong(id)).join();
                 if (null != lsp) {
                     attributes.put("lsp", lsp);
+                    attributes.put("rockets", rocketsWithLaunchCounts(lsp, launchCounts.join()));
                 } else {
                     attributes.put("errorMsg", "No launch service provider with the ID " + id + ".");
                 }
@@ -436,15 +591,89 @@ public class App {
         }, new FreeMarkerEngine());
     }
 
+    // one grouped count of the launches of the provider's rockets, keyed by rocket id
+    private static CompletableFuture<Map<Long, Long>> launchCountsByRocket(Long lspId) {
+        Aggregation<Launch> counts = Aggregation.count(Launch.class)
+                .whereAssociated("launchVehicle.manufacturer", lspId)
+                .groupBy("launchVehicle");
+        return asyncDao.aggregate(counts).thenApply(aggregates -> aggregates.stream().collect(Collectors.toMap(
+                aggregate -> ((Number) aggregate.getKey()).longValue(),
+                aggregate -> ((Number) aggregate.getValue()).longValue())));
+    }
+
+    // the provider's rockets, as loaded with it, by name
+    private static List<Map<String, Object>> rocketsWithLaunchCounts(LaunchServiceProvider lsp,
+                                                                     Map<Long, Long> launchCounts) {
+        List<Map<String, Object>> rockets = new ArrayList<>();
+        lsp.getRockets().stream()
+                .sorted(Comparator.comparing(Rocket::getName))
+                .forEach(rocket -> {
+                    Map<String, Object> row = new HashMap<>();
+                    row.put("id", rocket.getId());
+                    row.put("name", rocket.getName());
+                    row.put("launches", launchCounts.getOrDefault(rocket.getId(), 0L));
+                    rockets.add(row);
+                });
+        return rockets;
+    }
+
     private static void handleGetLSPs() {
         get("/lsps", (req, res) -> {
             Map<String, Object> attributes = new HashMap<>();
             try {
-                attributes.put("lsps", dao.loadAll(LaunchServiceProvider.class));
+                Page<EntityView> page = dao.loadPageView(LaunchServiceProvider.class, pageRequest(req, "name"), "name");
+                attributes.put("lsps", page.getItems());
+                attributes.put("page", page);
                 return new ModelAndView(attributes, "lsps.html.ftl");
             } catch (Exception e) {
                 return handleException(res, attributes, e, "lsps.html.ftl");
             }
         }, new FreeMarkerEngine());
     }
+
+    // streams the records as a download: "format" is ndjson (default) or csv, "type" one of lsps,
+    // rockets or launches (default all, for ndjson only), and "gzip" compresses the file
+    private static void handleGetExport() {
+        get("/export", (req, res) -> {
+            ExportFormat format;
+            List<Class<? extends Entity>> classes;
+            try {
+                format = ExportFormat.valueOf(Optional.ofNullable(req.queryParams("format")).orElse("ndjson")
+                        .toUpperCase(Locale.ROOT));
+                classes = Exporter.classes(req.queryParams("type"));
+                isTrue(format.isMixed() || classes.size() == 1, "a %s export holds a single entity class", format);
+            } catch (IllegalArgumentException e) {
+                res.status(400);
+                return e.getMessage();
+            }
+            boolean gzip = Boolean.parseBoolean(req.queryParams("gzip"));
+            String fileName = Optional.ofNullable(req.queryParams("type")).orElse("rockets") + "."
+                    + format.getExtension() + (gzip ? ".gz" : "");
+            res.type(gzip ? "application/gzip" : format.getContentType() + "; charset=utf-8");
+            res.header("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+            new Exporter(dao).export(classes, format, gzip, res.raw().getOutputStream());
+            return "";
+        });
+    }
+
+    // counts the launches with the facet values in the query: a parameter repeated matches any of
+    // its values, and all parameters given must match
+    private static void handleGetLaunchCount() {
+        get("/launches/count", (req, res) -> {
+            FacetQuery query = FacetQuery.all();
+            try {
+                for (Map.Entry<String, Facet> parameter : FACET_PARAMETERS.entrySet()) {
+                    String[] values = req.queryParamsValues(parameter.getKey());
+                    if (null != values) {
+                        query = query.and(FacetQuery.anyOf(parameter.getValue(), (Object[]) values));
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                res.status(400);
+                return e.getMessage();
+            }
+            res.type("text/plain");
+            return String.valueOf(facets.count(query));
+        });
+    }
 }
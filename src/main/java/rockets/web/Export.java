@@ -0,0 +1,55 @@
+package rockets.web;
+
+import rockets.dataaccess.DAO;
+import rockets.export.ExportFormat;
+import rockets.export.ExportReport;
+import rockets.export.Exporter;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * Exports the store configured in app.properties to a file, without starting the server:
+ * {@code Export [--format=ndjson|csv] [--type=lsps|rockets|launches] [--gzip] <file>}. The
+ * throughput report goes to standard error; standard output is left to the log.
+ */
+public final class Export {
+    private static final String USAGE =
+            "usage: Export [--format=ndjson|csv] [--type=lsps|rockets|launches] [--gzip] <file>";
+
+    private Export() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        ExportFormat format = ExportFormat.NDJSON;
+        String type = null;
+        boolean gzip = false;
+        String file = null;
+        for (String arg : args) {
+            if (arg.startsWith("--format=")) {
+                format = ExportFormat.valueOf(arg.substring("--format=".length()).toUpperCase(Locale.ROOT));
+            } else if (arg.startsWith("--type=")) {
+                type = arg.substring("--type=".length());
+            } else if ("--gzip".equals(arg)) {
+                gzip = true;
+            } else if (!arg.startsWith("--") && null == file) {
+                file = arg;
+            } else {
+                throw new IllegalArgumentException(USAGE);
+            }
+        }
+        if (null == file) {
+            throw new IllegalArgumentException(USAGE);
+        }
+
+        DAO dao = App.createStore(App.loadProperties());
+        try (OutputStream out = new FileOutputStream(file)) {
+            ExportReport report = new Exporter(dao).export(Exporter.classes(type), format, gzip, out);
+            System.err.println(report);
+        } finally {
+            dao.close();
+        }
+    }
+}
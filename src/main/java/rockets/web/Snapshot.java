@@ -0,0 +1,29 @@
+package rockets.web;
+
+import rockets.dataaccess.DAO;
+import rockets.dataaccess.mapped.MappedSnapshot;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Writes the launch service providers, rockets and launches of the store configured in
+ * app.properties to a snapshot file that read-only nodes can serve with {@code neo4j.mode=mapped}:
+ * {@code Snapshot [<file>]}, by default to {@code snapshot.file}.
+ */
+public final class Snapshot {
+    private Snapshot() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Properties properties = App.loadProperties();
+        String file = args.length > 0 ? args[0] : properties.getProperty("snapshot.file");
+        DAO dao = App.createStore(properties);
+        try {
+            MappedSnapshot.write(dao, Paths.get(file));
+        } finally {
+            dao.close();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package rockets.web;
+
+import com.google.common.collect.ImmutableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rockets.dataaccess.DAO;
+import rockets.dataaccess.Page;
+import rockets.dataaccess.PageRequest;
+import rockets.mining.RocketMiner;
+import rockets.model.Entity;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+import rockets.model.User;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Runs the reads behind every route and every {@link RocketMiner} query once before the server
+ * accepts requests, so that the first requests after a start neither fault the pages they need
+ * into the page cache nor run in the interpreter. Each store is sampled with at most a given
+ * number of entities, read page by page, so that the warmup takes about as long on a large
+ * database as on a small one. A failed step is logged and does not stop the start.
+ */
+public final class Warmup {
+    private static Logger logger = LoggerFactory.getLogger(Warmup.class);
+
+    // each class with the property its listing is sorted by
+    private static final Map<Class<? extends Entity>, String> ENTITY_CLASSES = ImmutableMap.of(
+            User.class, "email", LaunchServiceProvider.class, "name", Rocket.class, "name",
+            Launch.class, "launchDate");
+    private static final int K = 10;
+
+    private Warmup() {
+    }
+
+    /**
+     * Warms up with a {@link RocketMiner} reading through the DAO.
+     *
+     * @param sampleSize the most entities to read of each class.
+     * @return how long the warmup took, in milliseconds.
+     */
+    public static long run(DAO dao, int sampleSize) {
+        return run(dao, new RocketMiner(dao), sampleSize);
+    }
+
+    /**
+     * @param miner      the miner that will answer the mining queries, e.g. one calling stored procedures.
+     * @param sampleSize the most entities to read of each class.
+     * @return how long the warmup took, in milliseconds.
+     */
+    public static long run(DAO dao, RocketMiner miner, int sampleSize) {
+        notNull(miner, "miner cannot be null");
+        isTrue(sampleSize > 0, "sample size must be positive");
+        long start = System.nanoTime();
+        dao.openSession();
+        try {
+            long entities = 0;
+            for (Map.Entry<Class<? extends Entity>, String> entry : ENTITY_CLASSES.entrySet()) {
+                entities += touch(dao, entry.getKey(), entry.getValue(), sampleSize);
+            }
+            step("routes", () -> routes(dao));
+            step("mining", () -> mining(miner));
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            logger.info("warmed up on " + entities + " entities in " + millis + " ms");
+            return millis;
+        } finally {
+            dao.closeSession();
+        }
+    }
+
+    // Loads up to sampleSize entities of the class with their associations, a page at a time, and
+    // one of them by id
+    private static long touch(DAO dao, Class<? extends Entity> clazz, String sortProperty, int sampleSize) {
+        long[] count = {0};
+        step(clazz.getSimpleName() + " store", () -> {
+            Long id = null;
+            String cursor = null;
+            do {
+                int size = (int) Math.min(PageRequest.MAX_SIZE, sampleSize - count[0]);
+                Page<? extends Entity> page = dao.loadPage(clazz, new PageRequest(sortProperty, size, cursor));
+                for (Entity entity : page.getItems()) {
+                    id = null == id ? entity.getId() : id;
+                    count[0]++;
+                }
+                cursor = page.getNextCursor();
+            } while (null != cursor && count[0] < sampleSize);
+            if (null != id) {
+                dao.load(clazz, id);
+            }
+        });
+        return count[0];
+    }
+
+    private static void routes(DAO dao) {
+        for (Class<? extends Entity> clazz : ENTITY_CLASSES.keySet()) {
+            dao.count(clazz, Collections.emptyMap());
+        }
+        dao.loadPageView(User.class, PageRequest.first("email", PageRequest.DEFAULT_SIZE), "firstName", "lastName");
+        dao.loadPageView(Rocket.class, PageRequest.first("name", PageRequest.DEFAULT_SIZE), "name");
+        dao.loadPageView(LaunchServiceProvider.class, PageRequest.first("name", PageRequest.DEFAULT_SIZE), "name");
+        dao.exists(User.class, Collections.singletonMap("email", ""));
+        dao.exists(LaunchServiceProvider.class, Collections.singletonMap("name", ""));
+        dao.getUserByEmail("");
+        dao.getLSPByName("");
+    }
+
+    private static void mining(RocketMiner miner) {
+        miner.mostLaunchedRockets(K);
+        miner.mostReliableLaunchServiceProviders(K);
+        miner.mostRecentLaunches(K);
+        miner.mostExpensiveLaunches(K);
+        List<Launch> launches = miner.mostRecentLaunches(1);
+        if (!launches.isEmpty()) {
+            miner.dominantCountry(launches.get(0).getOrbit());
+            miner.highestRevenueLaunchServiceProviders(K, launches.get(0).getLaunchDate().getYear());
+        }
+    }
+
+    private static void step(String name, Runnable step) {
+        try {
+            step.run();
+        } catch (RuntimeException e) {
+            logger.warn("warmup of " + name + " failed", e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 <#-- @ftlvariable name="message" type="java.lang.String" -->
 <#-- @ftlvariable name="user" type="rockets.model.User" -->
+<#-- @ftlvariable name="stats" type="java.util.Map<java.lang.String, java.lang.Long>" -->
 
 <!doctype html public "-//W3C//DTD HTML 4.01 Transitional//EN" "http://www.w3.org/TR/html4/loose.dtd">
 <html>
@@ -33,6 +34,13 @@
 		<li>See the list of <a href="/rockets">rockets</a>.</li>
         <li>See the list of <a href="/lsps">launch service providers</a>.</li>
 	</ul>
+
+    <#if stats??>
+    <div id="stats">
+        <p>In the repository: ${stats.rockets} rockets, ${stats.launches} launches,
+            ${stats.lsps} launch service providers and ${stats.users} users.</p>
+    </div>
+    </#if>
 </div>
 
 </body>
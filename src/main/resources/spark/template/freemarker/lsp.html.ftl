@@ -1,6 +1,6 @@
 <#-- @ftlvariable name="errorMsg" type="java.lang.String" -->
-<#-- @ftlvariable name="rocket" type="rockets.model.Rocket" -->
-<#-- @ftlvariable name="participants" type="java.util.Set<flymetomars.model.Person>" -->
+<#-- @ftlvariable name="lsp" type="rockets.model.LaunchServiceProvider" -->
+<#-- @ftlvariable name="rockets" type="java.util.List<java.util.Map<java.lang.String, java.lang.Object>>" -->
 
 <!doctype html public "-//W3C//DTD HTML 4.01 Transitional//EN" "http://www.w3.org/TR/html4/loose.dtd">
 <html>
@@ -27,6 +27,14 @@
         <li>Year Founded: ${lsp.yearFounded}</li>
         <li>Country: ${lsp.country}</li>
     </ul>
+    <#if rockets?? && rockets?has_content>
+        <p>Rockets:</p>
+        <ul id="rockets">
+            <#list rockets as rocket>
+                <li><a href="/rocket/${rocket.id}">${rocket.name}</a>: ${rocket.launches} launches</li>
+            </#list>
+        </ul>
+    </#if>
 </#if>
 
 </div>
@@ -1,5 +1,6 @@
 <#-- @ftlvariable name="errorMsg" type="java.lang.String" -->
-<#-- @ftlvariable name="rockets" type="java.util.Collection<rockets.model.Rocket>" -->
+<#-- @ftlvariable name="page" type="rockets.dataaccess.Page" -->
+<#-- @ftlvariable name="lsps" type="java.util.List<rockets.dataaccess.EntityView>" -->
 
 <!doctype html public "-//W3C//DTD HTML 4.01 Transitional//EN" "http://www.w3.org/TR/html4/loose.dtd">
 <html>
@@ -26,6 +27,10 @@
         </#list>
 
     </ul>
+    <p>
+        <#if page.previousCursor??><a href="/lsps?cursor=${page.previousCursor}">Previous</a></#if>
+        <#if page.nextCursor??><a href="/lsps?cursor=${page.nextCursor}">Next</a></#if>
+    </p>
 <#else>
     <p>No launch service provider yet in the system. <a href="/lsp/create">Create one</a> now!</p>
 </#if>
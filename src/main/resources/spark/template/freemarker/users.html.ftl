@@ -1,5 +1,6 @@
 <#-- @ftlvariable name="errorMsg" type="java.lang.String" -->
-<#-- @ftlvariable name="users" type="java.util.List<rockets.model.User>" -->
+<#-- @ftlvariable name="page" type="rockets.dataaccess.Page" -->
+<#-- @ftlvariable name="users" type="java.util.List<rockets.dataaccess.EntityView>" -->
 
 <!doctype html public "-//W3C//DTD HTML 4.01 Transitional//EN" "http://www.w3.org/TR/html4/loose.dtd">
 <html>
@@ -26,6 +27,10 @@
         </#list>
 
     </ul>
+    <p>
+        <#if page.previousCursor??><a href="/users?cursor=${page.previousCursor}">Previous</a></#if>
+        <#if page.nextCursor??><a href="/users?cursor=${page.nextCursor}">Next</a></#if>
+    </p>
 <#else>
     <p>Nobody in the system. <a href="/register">Register</a> now!</p>
 </#if>
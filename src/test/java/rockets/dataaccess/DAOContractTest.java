@@ -0,0 +1,561 @@
+package rockets.dataaccess;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rockets.dataaccess.event.ChangeEvent;
+import rockets.model.Entity;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+import rockets.model.User;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The behaviour every {@link DAO} implementation must share. Subclasses supply the DAO, which must
+ * be empty at the start of each test.
+ */
+public abstract class DAOContractTest {
+    protected DAO dao;
+
+    private LaunchServiceProvider spacex;
+
+    protected abstract DAO createDAO();
+
+    // removes everything the test stored
+    protected abstract void clear();
+
+    @BeforeEach
+    public void setUpContract() {
+        dao = createDAO();
+        spacex = new LaunchServiceProvider("SpaceX", 2002, "USA");
+    }
+
+    @AfterEach
+    public void tearDownContract() {
+        clear();
+    }
+
+    @Test
+    public void shouldLoadWhatWasSaved() {
+        dao.createOrUpdate(spacex);
+
+        assertNotNull(spacex.getId());
+        LaunchServiceProvider loaded = dao.load(LaunchServiceProvider.class, spacex.getId());
+        assertEquals(spacex, loaded);
+        assertEquals(spacex.getId(), loaded.getId());
+    }
+
+    @Test
+    public void shouldSaveAssociatedEntities() {
+        Rocket rocket = new Rocket("F9", "USA", spacex);
+        Launch launch = new Launch(LocalDate.of(2018, 2, 6), rocket, "KSC", "LEO", Launch.LaunchOutcome.SUCCESSFUL);
+        launch.setLaunchServiceProvider(spacex);
+
+        dao.createOrUpdate(launch);
+
+        assertNotNull(rocket.getId());
+        assertNotNull(spacex.getId());
+        assertEquals(spacex, dao.getLSPByName("SpaceX"));
+        assertEquals(rocket.getId(), dao.load(Launch.class, launch.getId()).getLaunchVehicle().getId());
+        assertEquals(1, dao.count(Rocket.class, Collections.emptyMap()));
+    }
+
+    @Test
+    public void shouldMergeEqualNewEntitiesIntoOne() {
+        LaunchServiceProvider twin = new LaunchServiceProvider("SpaceX", 2002, "USA");
+
+        dao.createOrUpdate(spacex);
+        dao.createOrUpdate(twin);
+
+        assertEquals(spacex.getId(), twin.getId());
+        assertEquals(1, dao.count(LaunchServiceProvider.class, Collections.emptyMap()));
+    }
+
+    @Test
+    public void shouldKeepTheAssociationsOfAStoredEntityAnEqualOneIsMergedInto() {
+        Rocket f9 = new Rocket("F9", "USA", spacex);
+        spacex.getRockets().add(f9);
+        dao.createOrUpdate(spacex);
+
+        LaunchServiceProvider twin = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        twin.setHeadquarters("Hawthorne");
+        Rocket heavy = new Rocket("Falcon Heavy", "USA", twin);
+        twin.getRockets().add(heavy);
+        dao.createOrUpdate(twin);
+
+        LaunchServiceProvider loaded = dao.load(LaunchServiceProvider.class, spacex.getId());
+        assertEquals("Hawthorne", loaded.getHeadquarters());
+        assertEquals(Sets.newHashSet(f9.getId(), heavy.getId()),
+                loaded.getRockets().stream().map(Entity::getId).collect(Collectors.toSet()));
+        assertEquals(spacex.getId(), dao.load(Rocket.class, heavy.getId()).getManufacturer().getId());
+        assertEquals(1, dao.count(LaunchServiceProvider.class, Collections.emptyMap()));
+    }
+
+    @Test
+    public void shouldUpdateASavedEntity() {
+        User user = new User("Jane", "Doe", "Abc12345678", "jane@example.com");
+        dao.createOrUpdate(user);
+
+        user.setFirstName("Janet");
+        dao.createOrUpdate(user);
+
+        assertEquals("Janet", dao.getUserByEmail("jane@example.com").getFirstName());
+        assertEquals(1, dao.count(User.class, Collections.emptyMap()));
+    }
+
+    @Test
+    public void shouldNotMergeANewEntityIntoOneWhoseKeyFieldWasChanged() {
+        User user = new User("Jane", "Doe", "Abc12345678", "jane@example.com");
+        dao.createOrUpdate(user);
+        User changed = dao.getUserByEmail("jane@example.com");
+        changed.setEmail("janet@example.com");
+        dao.createOrUpdate(changed);
+
+        User newcomer = new User("Jane", "Roe", "Xyz12345678", "jane@example.com");
+        dao.createOrUpdate(newcomer);
+
+        assertNotEquals(user.getId(), newcomer.getId());
+        assertEquals("Doe", dao.getUserByEmail("janet@example.com").getLastName());
+        assertEquals("Roe", dao.getUserByEmail("jane@example.com").getLastName());
+    }
+
+    @Test
+    public void shouldMergeIntoDependentsOfAnEntityWhoseKeyFieldWasChanged() {
+        Rocket rocket = new Rocket("F9", "USA", spacex);
+        Launch launch = new Launch(LocalDate.of(2018, 2, 6), rocket, "KSC", "LEO", Launch.LaunchOutcome.SUCCESSFUL);
+        spacex.getRockets().add(rocket);
+        rocket.getLaunches().add(launch);
+        dao.createOrUpdate(spacex);
+        LaunchServiceProvider renamed = dao.getLSPByName("SpaceX");
+        renamed.setName("Space Exploration");
+        dao.createOrUpdate(renamed);
+
+        Rocket sameRocket = new Rocket("F9", "USA", new LaunchServiceProvider("Space Exploration", 2002, "USA"));
+        Launch sameLaunch = new Launch(LocalDate.of(2018, 2, 6), sameRocket, "KSC", "LEO",
+                Launch.LaunchOutcome.SUCCESSFUL);
+        dao.createOrUpdate(sameLaunch);
+
+        assertEquals(spacex.getId(), sameRocket.getManufacturer().getId());
+        assertEquals(rocket.getId(), sameRocket.getId());
+        assertEquals(launch.getId(), sameLaunch.getId());
+        assertEquals(1, dao.count(LaunchServiceProvider.class, Collections.emptyMap()));
+        assertEquals(1, dao.count(Rocket.class, Collections.emptyMap()));
+        assertEquals(1, dao.count(Launch.class, Collections.emptyMap()));
+    }
+
+    @Test
+    public void shouldReturnNullForUnknownKeys() {
+        assertNull(dao.getUserByEmail("nobody@example.com"));
+        assertNull(dao.getLSPByName("nobody"));
+    }
+
+    @Test
+    public void shouldLoadAllByIdsInOrderSkippingUnknownOnes() {
+        List<Rocket> rockets = rockets(3);
+        dao.createOrUpdateAll(rockets);
+        long unknown = rockets.stream().mapToLong(Rocket::getId).max().getAsLong() + 1000;
+
+        List<Rocket> loaded = dao.loadAll(Rocket.class,
+                Arrays.asList(rockets.get(2).getId(), unknown, rockets.get(0).getId()));
+
+        assertEquals(ids(Arrays.asList(rockets.get(2), rockets.get(0))), ids(loaded));
+        assertEquals(3, dao.loadAll(Rocket.class).size());
+    }
+
+    @Test
+    public void shouldStreamAllEntitiesInIdOrder() {
+        List<Rocket> rockets = rockets(5);
+        dao.createOrUpdateAll(rockets);
+        rockets.sort(Comparator.comparing(Rocket::getId));
+
+        try (Stream<Rocket> stream = dao.stream(Rocket.class)) {
+            assertEquals(ids(rockets), ids(stream.collect(Collectors.toList())));
+        }
+    }
+
+    @Test
+    public void shouldPageForwardAndBackward() {
+        List<Rocket> rockets = rockets(5);
+        dao.createOrUpdateAll(rockets);
+
+        Page<Rocket> first = dao.loadPage(Rocket.class, PageRequest.first("name", 2));
+        Page<Rocket> second = dao.loadPage(Rocket.class, new PageRequest("name", 2, first.getNextCursor()));
+        Page<Rocket> last = dao.loadPage(Rocket.class, new PageRequest("name", 2, second.getNextCursor()));
+        Page<Rocket> back = dao.loadPage(Rocket.class, new PageRequest("name", 2, last.getPreviousCursor()));
+
+        assertEquals(ids(rockets.subList(0, 2)), ids(first.getItems()));
+        assertNull(first.getPreviousCursor());
+        assertEquals(ids(rockets.subList(2, 4)), ids(second.getItems()));
+        assertEquals(ids(rockets.subList(4, 5)), ids(last.getItems()));
+        assertNull(last.getNextCursor());
+        assertEquals(ids(second.getItems()), ids(back.getItems()));
+    }
+
+    @Test
+    public void shouldProjectTheRequestedFields() {
+        dao.createOrUpdateAll(rockets(3));
+
+        Page<EntityView> page = dao.loadPageView(Rocket.class, PageRequest.first("name", 2), "country");
+
+        assertEquals(2, page.getItems().size());
+        EntityView view = page.getItems().get(0);
+        assertEquals("rocket_0", view.get("name"));
+        assertEquals("USA", view.get("country"));
+        assertThrows(IllegalArgumentException.class, () -> view.get("massToLEO"));
+    }
+
+    @Test
+    public void shouldCountAndFindByFieldValues() {
+        dao.createOrUpdateAll(rockets(3));
+        Map<String, Object> unlinked = new HashMap<>();
+        unlinked.put("wikilink", null);
+
+        assertEquals(3, dao.count(Rocket.class, Collections.emptyMap()));
+        assertEquals(1, dao.count(Rocket.class, ImmutableMap.of("name", "rocket_1", "country", "USA")));
+        assertEquals(3, dao.count(Rocket.class, unlinked));
+        assertTrue(dao.exists(Rocket.class, ImmutableMap.of("name", "rocket_2")));
+        assertFalse(dao.exists(Rocket.class, ImmutableMap.of("name", "rocket_3")));
+        assertTrue(dao.exists(LaunchServiceProvider.class, ImmutableMap.of("yearFounded", 2002)));
+        assertThrows(IllegalArgumentException.class,
+                () -> dao.count(Rocket.class, ImmutableMap.of("manufacturer", spacex)));
+    }
+
+    @Test
+    public void shouldDeleteAnEntity() {
+        Rocket rocket = new Rocket("F9", "USA", spacex);
+        dao.createOrUpdate(rocket);
+
+        dao.delete(rocket);
+
+        assertNull(dao.load(Rocket.class, rocket.getId()));
+        assertFalse(dao.exists(Rocket.class, ImmutableMap.of("name", "F9")));
+        assertTrue(dao.getLSPByName("SpaceX").getRockets().isEmpty());
+    }
+
+    @Test
+    public void shouldDeleteMatchingEntitiesOnly() {
+        dao.createOrUpdateAll(rockets(3));
+
+        assertEquals(1, dao.deleteWhere(Rocket.class, ImmutableMap.of("name", "rocket_1")));
+
+        assertEquals(2, dao.count(Rocket.class, Collections.emptyMap()));
+        assertFalse(dao.exists(Rocket.class, ImmutableMap.of("name", "rocket_1")));
+        assertEquals(1, dao.count(LaunchServiceProvider.class, Collections.emptyMap()));
+        assertEquals(0, dao.deleteWhere(Rocket.class, ImmutableMap.of("name", "rocket_1")));
+    }
+
+    @Test
+    public void shouldCascadeDeletesToRocketsAndLaunches() {
+        LaunchServiceProvider esa = new LaunchServiceProvider("ESA", 1975, "Europe");
+        for (LaunchServiceProvider lsp : Arrays.asList(spacex, esa)) {
+            for (int i = 0; i < 2; i++) {
+                Rocket rocket = new Rocket(lsp.getName() + "_" + i, lsp.getCountry(), lsp);
+                lsp.getRockets().add(rocket);
+                for (int day = 1; day <= 3; day++) {
+                    Launch launch = new Launch(LocalDate.of(2019, 1, day), rocket, "site", "LEO",
+                            Launch.LaunchOutcome.SUCCESSFUL);
+                    launch.setLaunchServiceProvider(lsp);
+                    rocket.getLaunches().add(launch);
+                }
+            }
+        }
+        dao.createOrUpdateAll(Arrays.asList(spacex, esa));
+
+        assertEquals(1 + 2 + 6, dao.deleteWhere(LaunchServiceProvider.class, ImmutableMap.of("name", "SpaceX"), true));
+
+        assertNull(dao.getLSPByName("SpaceX"));
+        assertEquals(2, dao.count(Rocket.class, Collections.emptyMap()));
+        assertEquals(6, dao.count(Launch.class, Collections.emptyMap()));
+        assertFalse(dao.exists(Rocket.class, ImmutableMap.of("country", "USA")));
+
+        assertEquals(1 + 3, dao.deleteWhere(Rocket.class, ImmutableMap.of("name", "ESA_0"), true));
+        assertEquals(3, dao.count(Launch.class, Collections.emptyMap()));
+        assertEquals(1, dao.getLSPByName("ESA").getRockets().size());
+    }
+
+    @Test
+    public void shouldReportTheValuesOfEveryEntityItDeletes() {
+        Rocket rocket = new Rocket("F9", "USA", spacex);
+        spacex.getRockets().add(rocket);
+        for (int day = 1; day <= 2; day++) {
+            Launch launch = new Launch(LocalDate.of(2019, 1, day), rocket, "KSC", "LEO",
+                    Launch.LaunchOutcome.SUCCESSFUL);
+            launch.setLaunchServiceProvider(spacex);
+            rocket.getLaunches().add(launch);
+        }
+        dao.createOrUpdate(spacex);
+        List<ChangeEvent> events = new ArrayList<>();
+
+        assertEquals(1 + 1 + 2, dao.deleteWhere(LaunchServiceProvider.class, ImmutableMap.of("name", "SpaceX"),
+                true, events::add));
+
+        assertEquals(4, events.size());
+        assertTrue(events.stream().allMatch(event -> ChangeEvent.Type.DELETED == event.getType()));
+        Map<Class<?>, Long> deletedPerClass = events.stream()
+                .collect(Collectors.groupingBy(ChangeEvent::getEntityClass, Collectors.counting()));
+        assertEquals(ImmutableMap.of(LaunchServiceProvider.class, 1L, Rocket.class, 1L, Launch.class, 2L),
+                deletedPerClass);
+        ChangeEvent deletedRocket = events.stream().filter(event -> Rocket.class == event.getEntityClass())
+                .findFirst().get();
+        assertEquals(rocket.getId().longValue(), deletedRocket.getId());
+        assertEquals("F9", deletedRocket.getOldValues().get("name"));
+        assertEquals(ChangeEvent.Type.DELETED, events.get(events.size() - 1).getType());
+        assertEquals(LaunchServiceProvider.class, events.get(events.size() - 1).getEntityClass());
+    }
+
+    @Test
+    public void shouldReportTheStoredValuesOfADeletedEntity() {
+        spacex.setHeadquarters("Hawthorne");
+        dao.createOrUpdate(spacex);
+        LaunchServiceProvider copy = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        copy.setId(spacex.getId());
+        List<ChangeEvent> events = new ArrayList<>();
+
+        dao.delete(copy, events::add);
+
+        assertEquals(1, events.size());
+        assertEquals(ChangeEvent.Type.DELETED, events.get(0).getType());
+        assertEquals(spacex.getId().longValue(), events.get(0).getId());
+        assertEquals("Hawthorne", events.get(0).getOldValues().get("headquarters"));
+        assertNull(events.get(0).getNewValues());
+        assertNull(dao.load(LaunchServiceProvider.class, spacex.getId()));
+
+        events.clear();
+        dao.delete(copy, events::add);
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void shouldReportWhatSavingOneEntityCreated() {
+        Rocket rocket = new Rocket("F9", "USA", spacex);
+        List<ChangeEvent> events = new ArrayList<>();
+
+        assertSame(rocket, dao.createOrUpdate(rocket, events::add));
+
+        assertEquals(2, events.size());
+        assertTrue(events.stream().allMatch(event -> ChangeEvent.Type.CREATED == event.getType()));
+        assertEquals(Sets.newHashSet(rocket.getId(), spacex.getId()),
+                events.stream().map(ChangeEvent::getId).collect(Collectors.toSet()));
+    }
+
+    @Test
+    public void shouldReportWhatASaveCreatedAndChangedWithTheOldValues() {
+        dao.createOrUpdate(spacex);
+        LaunchServiceProvider copy = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        copy.setHeadquarters("Hawthorne");
+        Rocket rocket = new Rocket("F9", "USA", copy);
+        List<ChangeEvent> events = new ArrayList<>();
+
+        dao.createOrUpdateAll(Collections.singletonList(rocket), events::add);
+
+        assertEquals(2, events.size());
+        ChangeEvent created = events.stream().filter(event -> Rocket.class == event.getEntityClass())
+                .findFirst().get();
+        assertEquals(ChangeEvent.Type.CREATED, created.getType());
+        assertEquals(rocket.getId().longValue(), created.getId());
+        assertNull(created.getOldValues());
+        assertEquals("F9", created.getNewValues().get("name"));
+        ChangeEvent merged = events.stream().filter(event -> LaunchServiceProvider.class == event.getEntityClass())
+                .findFirst().get();
+        assertEquals(ChangeEvent.Type.UPDATED, merged.getType());
+        assertEquals(spacex.getId().longValue(), merged.getId());
+        assertNull(merged.getOldValues().get("headquarters"));
+        assertEquals("Hawthorne", merged.getNewValues().get("headquarters"));
+
+        events.clear();
+        LaunchServiceProvider unchanged = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        unchanged.setHeadquarters("Hawthorne");
+        dao.createOrUpdateAll(Collections.singletonList(new Rocket("F9", "USA", unchanged)), events::add);
+
+        assertEquals(Collections.emptyList(), events);
+    }
+
+    @Test
+    public void shouldCountPerAssociatedEntityHighestFirstTiesByKey() {
+        List<Rocket> rockets = rockets(3);
+        List<Launch> launches = new ArrayList<>();
+        int[] rocketIndex = {0, 0, 0, 1, 2};
+        for (int i = 0; i < rocketIndex.length; i++) {
+            launches.add(launch(rockets.get(rocketIndex[i]), LocalDate.of(2019, 1, i + 1), "LEO",
+                    Launch.LaunchOutcome.SUCCESSFUL, 1000));
+        }
+        dao.createOrUpdateAll(launches);
+        long first = Math.min(rockets.get(1).getId(), rockets.get(2).getId());
+        long second = Math.max(rockets.get(1).getId(), rockets.get(2).getId());
+
+        Aggregation<Launch> perRocket = Aggregation.count(Launch.class).groupBy("launchVehicle");
+
+        assertEquals(Arrays.asList(new Aggregate(rockets.get(0).getId(), 3L), new Aggregate(first, 1L),
+                new Aggregate(second, 1L)), dao.aggregate(perRocket));
+        assertEquals(Collections.singletonList(new Aggregate(rockets.get(0).getId(), 3L)),
+                dao.aggregate(perRocket.top(1)));
+    }
+
+    @Test
+    public void shouldAggregateByAFieldOfTheAssociatedEntityWhereFieldsMatch() {
+        Rocket falcon = new Rocket("F9", "USA", spacex);
+        Rocket ariane = new Rocket("Ariane 5", "Europe", new LaunchServiceProvider("ESA", 1975, "Europe"));
+        dao.createOrUpdateAll(Arrays.asList(
+                launch(falcon, LocalDate.of(2019, 1, 1), "LEO", Launch.LaunchOutcome.SUCCESSFUL, 1000),
+                launch(falcon, LocalDate.of(2019, 1, 2), "LEO", Launch.LaunchOutcome.SUCCESSFUL, 1000),
+                launch(falcon, LocalDate.of(2019, 1, 3), "LEO", Launch.LaunchOutcome.FAILED, 1000),
+                launch(ariane, LocalDate.of(2019, 1, 4), "LEO", Launch.LaunchOutcome.SUCCESSFUL, 1000),
+                launch(ariane, LocalDate.of(2019, 1, 5), "GTO", Launch.LaunchOutcome.SUCCESSFUL, 1000),
+                launch(ariane, LocalDate.of(2019, 1, 6), "GTO", Launch.LaunchOutcome.SUCCESSFUL, 1000)));
+
+        List<Aggregate> countries = dao.aggregate(Aggregation.count(Launch.class)
+                .where("launchOutcome", Launch.LaunchOutcome.SUCCESSFUL)
+                .where("orbit", "LEO")
+                .groupBy("launchVehicle.country"));
+
+        assertEquals(Arrays.asList(new Aggregate("USA", 2L), new Aggregate("Europe", 1L)), countries);
+        assertThrows(IllegalArgumentException.class,
+                () -> dao.aggregate(Aggregation.count(Launch.class).groupBy("orbit.name")));
+    }
+
+    @Test
+    public void shouldAggregateOnlyWhatAnAssociationPathLeadsTo() {
+        LaunchServiceProvider esa = new LaunchServiceProvider("ESA", 1975, "Europe");
+        Rocket falcon = new Rocket("F9", "USA", spacex);
+        Rocket heavy = new Rocket("Falcon Heavy", "USA", spacex);
+        Rocket ariane = new Rocket("Ariane 5", "Europe", esa);
+        dao.createOrUpdateAll(Arrays.asList(
+                launch(falcon, LocalDate.of(2019, 1, 1), "LEO", Launch.LaunchOutcome.SUCCESSFUL, 1000),
+                launch(falcon, LocalDate.of(2019, 1, 2), "GTO", Launch.LaunchOutcome.SUCCESSFUL, 1000),
+                launch(heavy, LocalDate.of(2019, 1, 3), "GTO", Launch.LaunchOutcome.SUCCESSFUL, 1000),
+                launch(ariane, LocalDate.of(2019, 1, 4), "LEO", Launch.LaunchOutcome.SUCCESSFUL, 1000)));
+
+        assertEquals(Arrays.asList(new Aggregate(falcon.getId(), 2L), new Aggregate(heavy.getId(), 1L)),
+                dao.aggregate(Aggregation.count(Launch.class)
+                        .whereAssociated("launchVehicle.manufacturer", spacex.getId())
+                        .groupBy("launchVehicle")));
+        assertEquals(Collections.singletonList(new Aggregate("LEO", 1L)),
+                dao.aggregate(Aggregation.count(Launch.class)
+                        .whereAssociated("launchVehicle.manufacturer", esa.getId())
+                        .groupBy("orbit")));
+        assertEquals(Collections.emptyList(), dao.aggregate(Aggregation.count(Launch.class)
+                .whereAssociated("launchVehicle", esa.getId())));
+    }
+
+    @Test
+    public void shouldRankByShareLastAndMaxValuesInTheirJavaOrder() {
+        LaunchServiceProvider esa = new LaunchServiceProvider("ESA", 1975, "Europe");
+        LaunchServiceProvider ula = new LaunchServiceProvider("ULA", 2006, "USA");
+        Rocket falcon = new Rocket("F9", "USA", spacex);
+        Rocket ariane = new Rocket("Ariane 5", "Europe", esa);
+        Rocket atlas = new Rocket("Atlas V", "USA", ula);
+        List<Launch> launches = Arrays.asList(
+                launch(falcon, LocalDate.of(2019, 1, 1), "LEO", Launch.LaunchOutcome.SUCCESSFUL, 9000),
+                launch(falcon, LocalDate.of(2019, 2, 1), "LEO", Launch.LaunchOutcome.FAILED, 20000),
+                launch(ariane, LocalDate.of(2019, 3, 1), "GTO", Launch.LaunchOutcome.SUCCESSFUL, 5000),
+                launch(ariane, LocalDate.of(2020, 1, 1), "GTO", Launch.LaunchOutcome.SUCCESSFUL, 50000),
+                launch(atlas, LocalDate.of(2019, 4, 1), "LEO", Launch.LaunchOutcome.FAILED, 30000));
+        dao.createOrUpdateAll(launches);
+        Launch lastOfSpacex = launches.get(0).getId() > launches.get(1).getId() ? launches.get(0) : launches.get(1);
+
+        assertEquals(Arrays.asList(new Aggregate(esa.getId(), 1.0), new Aggregate(spacex.getId(), 0.5)),
+                dao.aggregate(Aggregation.share(Launch.class, "launchOutcome", Launch.LaunchOutcome.SUCCESSFUL)
+                        .groupBy("launchServiceProvider")));
+        assertEquals(Arrays.asList(new Aggregate(ula.getId(), 30000.0),
+                new Aggregate(spacex.getId(), lastOfSpacex.getPrice().doubleValue()),
+                new Aggregate(esa.getId(), 5000.0)),
+                dao.aggregate(Aggregation.last(Launch.class, "price")
+                        .between("launchDate", LocalDate.of(2019, 1, 1), LocalDate.of(2019, 12, 31))
+                        .groupBy("launchServiceProvider")));
+        // decimals are stored as strings, but must not be ranked as such
+        assertEquals(Arrays.asList(new Aggregate(launches.get(3).getId(), 50000.0),
+                new Aggregate(launches.get(4).getId(), 30000.0)),
+                dao.aggregate(Aggregation.max(Launch.class, "price").top(2)));
+        // dates are stored as epoch days
+        assertEquals(Collections.singletonList(new Aggregate(launches.get(3).getId(),
+                LocalDate.of(2020, 1, 1).toEpochDay())),
+                dao.aggregate(Aggregation.max(Launch.class, "launchDate").top(1)));
+        assertEquals(Collections.singletonList(new Aggregate("LEO", 59000.0)),
+                dao.aggregate(Aggregation.sum(Launch.class, "price").groupBy("orbit").top(1)));
+    }
+
+    @Test
+    public void shouldFindLaunchesByDateInDateOrder() {
+        Rocket falcon = new Rocket("F9", "USA", spacex);
+        LocalDate future = LocalDate.now().plusYears(1);
+        List<Launch> launches = Arrays.asList(
+                launch(falcon, LocalDate.of(2019, 3, 1), "LEO", Launch.LaunchOutcome.SUCCESSFUL, 1),
+                launch(falcon, LocalDate.of(1957, 10, 4), "LEO", Launch.LaunchOutcome.SUCCESSFUL, 2),
+                launch(falcon, LocalDate.of(2019, 3, 1), "GTO", Launch.LaunchOutcome.SUCCESSFUL, 3),
+                launch(falcon, future, "LEO", Launch.LaunchOutcome.SUCCESSFUL, 4),
+                launch(falcon, LocalDate.of(2019, 12, 31), "LEO", Launch.LaunchOutcome.FAILED, 5),
+                launch(falcon, LocalDate.of(2020, 1, 1), "LEO", Launch.LaunchOutcome.SUCCESSFUL, 6));
+        dao.createOrUpdateAll(launches);
+        List<Launch> sameDay = launches.get(0).getId() < launches.get(2).getId()
+                ? Arrays.asList(launches.get(0), launches.get(2)) : Arrays.asList(launches.get(2), launches.get(0));
+
+        List<Launch> in2019 = new ArrayList<>(sameDay);
+        in2019.add(launches.get(4));
+        assertEquals(ids(in2019), ids(dao.findLaunchesBetween(LocalDate.of(2019, 1, 1), LocalDate.of(2019, 12, 31))));
+        assertEquals(ids(Collections.singletonList(launches.get(4))),
+                ids(dao.findLaunchesBetween(LocalDate.of(2019, 12, 31), LocalDate.of(2019, 12, 31))));
+        assertTrue(dao.findLaunchesBetween(LocalDate.of(2020, 1, 1), LocalDate.of(2019, 1, 1)).isEmpty());
+
+        List<Launch> latest = new ArrayList<>(Arrays.asList(launches.get(3), launches.get(5), launches.get(4)));
+        latest.addAll(sameDay);
+        latest.add(launches.get(1));
+        assertEquals(ids(latest.subList(0, 4)), ids(dao.latestLaunches(4)));
+        assertEquals(ids(latest), ids(dao.latestLaunches(10)));
+        assertTrue(dao.latestLaunches(0).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> dao.latestLaunches(-1));
+    }
+
+    @Test
+    public void shouldFindALaunchByItsNewDateOnceItIsSaved() {
+        Rocket falcon = new Rocket("F9", "USA", spacex);
+        Launch launch = launch(falcon, LocalDate.of(2019, 3, 1), "LEO", Launch.LaunchOutcome.SUCCESSFUL, 1);
+        dao.createOrUpdate(launch);
+
+        launch.setLaunchDate(LocalDate.of(2018, 3, 1));
+        dao.createOrUpdate(launch);
+
+        assertTrue(dao.findLaunchesBetween(LocalDate.of(2019, 1, 1), LocalDate.of(2019, 12, 31)).isEmpty());
+        assertEquals(ids(Collections.singletonList(launch)),
+                ids(dao.findLaunchesBetween(LocalDate.of(2018, 1, 1), LocalDate.of(2018, 12, 31))));
+        assertEquals(LocalDate.of(2018, 3, 1), dao.latestLaunches(1).get(0).getLaunchDate());
+
+        dao.delete(launch);
+        assertTrue(dao.latestLaunches(1).isEmpty());
+    }
+
+    private static Launch launch(Rocket rocket, LocalDate date, String orbit, Launch.LaunchOutcome outcome,
+                                 long price) {
+        Launch launch = new Launch(date, rocket, "site", orbit, outcome);
+        launch.setLaunchServiceProvider(rocket.getManufacturer());
+        launch.setPrice(BigDecimal.valueOf(price));
+        // both sides of the associations, as saving a side that lacks one removes it
+        rocket.getLaunches().add(launch);
+        rocket.getManufacturer().getRockets().add(rocket);
+        return launch;
+    }
+
+    // entities loaded by different DAOs are hydrated to different depths, so compare their ids
+    private static List<Long> ids(List<? extends Entity> entities) {
+        return entities.stream().map(Entity::getId).collect(Collectors.toList());
+    }
+
+    // rockets named rocket_0, rocket_1, ... of one manufacturer, in name order
+    private List<Rocket> rockets(int count) {
+        List<Rocket> rockets = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            rockets.add(new Rocket("rocket_" + i, "USA", spacex));
+        }
+        return rockets;
+    }
+}
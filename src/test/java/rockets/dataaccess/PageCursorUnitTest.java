@@ -0,0 +1,34 @@
+package rockets.dataaccess;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PageCursorUnitTest {
+    @Test
+    public void shouldDecodeWhatItEncodes() {
+        PageCursor cursor = PageCursor.decode(PageCursor.after("Falcon: 9", 42L).encode());
+        assertFalse(cursor.isBackward());
+        assertEquals("Falcon: 9", cursor.getValue());
+        assertEquals(42L, cursor.getId());
+
+        cursor = PageCursor.decode(PageCursor.before(1990L, 7L).encode());
+        assertTrue(cursor.isBackward());
+        assertEquals(1990L, cursor.getValue());
+
+        cursor = PageCursor.decode(PageCursor.after(null, 3L).encode());
+        assertNull(cursor.getValue());
+    }
+
+    @Test
+    public void shouldRejectMalformedCursors() {
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("not a cursor"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(""));
+    }
+
+    @Test
+    public void pageSizeMustBeBounded() {
+        assertThrows(IllegalArgumentException.class, () -> PageRequest.first("name", 0));
+        assertThrows(IllegalArgumentException.class, () -> PageRequest.first("name", PageRequest.MAX_SIZE + 1));
+    }
+}
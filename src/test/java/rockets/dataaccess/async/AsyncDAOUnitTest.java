@@ -0,0 +1,87 @@
+package rockets.dataaccess.async;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rockets.dataaccess.DAO;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class AsyncDAOUnitTest {
+    private DAO dao;
+    private AsyncDAO asyncDao;
+    private Rocket rocket;
+
+    @BeforeEach
+    public void setUp() {
+        dao = mock(DAO.class);
+        asyncDao = new AsyncDAO(dao, 2);
+        rocket = new Rocket("F9", "USA", new LaunchServiceProvider("SpaceX", 2002, "USA"));
+        rocket.setId(1L);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        asyncDao.close();
+    }
+
+    @Test
+    public void shouldRunCallsOnTheDedicatedExecutorInTheirOwnSession() throws Exception {
+        String[] threadName = new String[1];
+        when(dao.load(Rocket.class, 1L)).thenAnswer(invocation -> {
+            threadName[0] = Thread.currentThread().getName();
+            return rocket;
+        });
+
+        assertSame(rocket, asyncDao.load(Rocket.class, 1L).get(10, TimeUnit.SECONDS));
+        assertTrue(threadName[0].startsWith("async-dao-"));
+        verify(dao).openSession();
+        verify(dao).closeSession();
+    }
+
+    @Test
+    public void shouldRunIndependentCallsInParallel() throws Exception {
+        // each call waits for the other to start, which only completes if both run at once
+        CountDownLatch started = new CountDownLatch(2);
+        when(dao.count(eq(Rocket.class), anyMap())).thenAnswer(invocation -> {
+            started.countDown();
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            return 3L;
+        });
+        when(dao.getLSPByName("SpaceX")).thenAnswer(invocation -> {
+            started.countDown();
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            return rocket.getManufacturer();
+        });
+
+        CompletableFuture<Long> count = asyncDao.count(Rocket.class, Collections.emptyMap());
+        CompletableFuture<LaunchServiceProvider> lsp = asyncDao.getLSPByName("SpaceX");
+
+        assertEquals(3L, (long) count.get(10, TimeUnit.SECONDS));
+        assertEquals(rocket.getManufacturer(), lsp.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shouldCompleteExceptionallyAndStillCloseTheSession() {
+        when(dao.load(Rocket.class, 2L)).thenThrow(new IllegalStateException("boom"));
+
+        CompletableFuture<Rocket> future = asyncDao.load(Rocket.class, 2L);
+
+        Exception e = assertThrows(Exception.class, future::join);
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        verify(dao, timeout(10000)).closeSession();
+    }
+
+    @Test
+    public void shouldRejectNonPositiveThreadCounts() {
+        assertThrows(IllegalArgumentException.class, () -> new AsyncDAO(dao, 0));
+    }
+}
@@ -0,0 +1,67 @@
+package rockets.dataaccess.async;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.neo4j.ogm.config.Configuration;
+import org.neo4j.ogm.drivers.embedded.driver.EmbeddedDriver;
+import org.neo4j.ogm.session.SessionFactory;
+import rockets.dataaccess.neo4j.Neo4jDAO;
+import rockets.model.User;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GroupCommitDAOIntegrationTest {
+    private static final String TEST_DB = "target/test-data/group-commit-db";
+
+    private Neo4jDAO dao;
+    private GroupCommitDAO groupCommitDao;
+
+    @BeforeEach
+    public void setUp() {
+        Configuration configuration = new Configuration.Builder()
+                .uri(new File(TEST_DB).toURI().toString())
+                .build();
+        EmbeddedDriver driver = new EmbeddedDriver();
+        driver.configure(configuration);
+        SessionFactory sessionFactory = new SessionFactory(driver, User.class.getPackage().getName());
+        sessionFactory.openSession().purgeDatabase();
+        dao = new Neo4jDAO(sessionFactory);
+        groupCommitDao = new GroupCommitDAO(dao, 500, TimeUnit.MILLISECONDS, 100);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        // also closes the Neo4j DAO
+        groupCommitDao.close();
+    }
+
+    @Test
+    public void shouldPersistTheOtherWritesOfABatchThatViolatesAUniqueKey() throws Exception {
+        User jane = new User("Jane", "Doe", "Abc12345678", "jane@example.com");
+        User john = new User("John", "Doe", "Abc12345678", "john@example.com");
+        dao.createOrUpdateAll(Arrays.asList(jane, john));
+        // taking another user's email violates the unique natural key
+        john.setEmail("jane@example.com");
+        User joan = new User("Joan", "Doe", "Abc12345678", "joan@example.com");
+        User jim = new User("Jim", "Doe", "Abc12345678", "jim@example.com");
+
+        CompletableFuture<User> first = groupCommitDao.submit(joan);
+        CompletableFuture<User> conflicting = groupCommitDao.submit(john);
+        CompletableFuture<User> last = groupCommitDao.submit(jim);
+
+        assertSame(joan, first.get(10, TimeUnit.SECONDS));
+        assertSame(jim, last.get(10, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class, () -> conflicting.get(10, TimeUnit.SECONDS));
+        assertEquals(joan.getId(), dao.getUserByEmail("joan@example.com").getId());
+        assertEquals(jim.getId(), dao.getUserByEmail("jim@example.com").getId());
+        assertEquals(jane.getId(), dao.getUserByEmail("jane@example.com").getId());
+        assertEquals(john.getId(), dao.getUserByEmail("john@example.com").getId());
+    }
+}
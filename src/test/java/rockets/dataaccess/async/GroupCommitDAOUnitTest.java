@@ -0,0 +1,165 @@
+package rockets.dataaccess.async;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rockets.dataaccess.DAO;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class GroupCommitDAOUnitTest {
+    private DAO dao;
+    private GroupCommitDAO groupCommitDao;
+    private LaunchServiceProvider spacex;
+    private List<Integer> batchSizes;
+
+    @BeforeEach
+    public void setUp() {
+        dao = mock(DAO.class);
+        spacex = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        batchSizes = new CopyOnWriteArrayList<>();
+        when(dao.createOrUpdateAll(anyCollection())).thenAnswer(invocation -> {
+            Collection<?> entities = (Collection<?>) invocation.getArguments()[0];
+            batchSizes.add(entities.size());
+            return entities;
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (null != groupCommitDao) {
+            groupCommitDao.close();
+        }
+    }
+
+    @Test
+    public void shouldCommitConcurrentWritesInOneBatch() throws Exception {
+        groupCommitDao = new GroupCommitDAO(dao, 500, TimeUnit.MILLISECONDS, 100);
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        List<Future<Rocket>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Rocket rocket = new Rocket("rocket_" + i, "USA", spacex);
+            futures.add(executor.submit(() -> groupCommitDao.createOrUpdate(rocket)));
+        }
+        executor.shutdown();
+        for (int i = 0; i < 10; i++) {
+            assertEquals("rocket_" + i, futures.get(i).get(10, TimeUnit.SECONDS).getName());
+        }
+
+        assertEquals(10, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batchSizes.size() < 10, "writes were not grouped: " + batchSizes);
+        verify(dao, never()).createOrUpdate(any(Rocket.class));
+    }
+
+    @Test
+    public void shouldNotExceedTheMaximumBatchSize() throws Exception {
+        groupCommitDao = new GroupCommitDAO(dao, 1, TimeUnit.SECONDS, 3);
+        List<CompletableFuture<Rocket>> futures = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            futures.add(groupCommitDao.submit(new Rocket("rocket_" + i, "USA", spacex)));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        assertEquals(7, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 3), batchSizes.toString());
+    }
+
+    @Test
+    public void shouldCompleteFuturesOnlyAfterTheBatchIsCommitted() throws Exception {
+        CountDownLatch committing = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        when(dao.createOrUpdateAll(anyCollection())).thenAnswer(invocation -> {
+            committing.countDown();
+            proceed.await(10, TimeUnit.SECONDS);
+            return invocation.getArguments()[0];
+        });
+        groupCommitDao = new GroupCommitDAO(dao, 0, TimeUnit.MILLISECONDS, 100);
+
+        CompletableFuture<Rocket> future = groupCommitDao.submit(new Rocket("F9", "USA", spacex));
+        assertTrue(committing.await(10, TimeUnit.SECONDS));
+        assertFalse(future.isDone());
+        proceed.countDown();
+        assertEquals("F9", future.get(10, TimeUnit.SECONDS).getName());
+    }
+
+    @Test
+    public void shouldRetryAFailedBatchOneWriteAtATime() throws Exception {
+        Rocket good = new Rocket("F9", "USA", spacex);
+        Rocket bad = new Rocket("FH", "USA", spacex);
+        when(dao.createOrUpdateAll(anyCollection())).thenThrow(new IllegalStateException("constraint"));
+        when(dao.createOrUpdate(good)).thenReturn(good);
+        when(dao.createOrUpdate(bad)).thenThrow(new IllegalStateException("constraint"));
+        groupCommitDao = new GroupCommitDAO(dao, 200, TimeUnit.MILLISECONDS, 100);
+
+        CompletableFuture<Rocket> goodFuture = groupCommitDao.submit(good);
+        CompletableFuture<Rocket> badFuture = groupCommitDao.submit(bad);
+
+        assertSame(good, goodFuture.get(10, TimeUnit.SECONDS));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> badFuture.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertThrows(IllegalStateException.class, () -> groupCommitDao.createOrUpdate(bad));
+    }
+
+    @Test
+    public void shouldFailTheBatchAndKeepWritingAfterAnError() throws Exception {
+        Rocket deep = new Rocket("F9", "USA", spacex);
+        when(dao.createOrUpdateAll(anyCollection())).thenThrow(new StackOverflowError()).thenAnswer(
+                invocation -> invocation.getArguments()[0]);
+        groupCommitDao = new GroupCommitDAO(dao, 0, TimeUnit.MILLISECONDS, 100);
+
+        CompletableFuture<Rocket> failed = groupCommitDao.submit(deep);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof StackOverflowError);
+        verify(dao, never()).createOrUpdate(deep);
+
+        assertEquals("FH", groupCommitDao.submit(new Rocket("FH", "USA", spacex)).get(10, TimeUnit.SECONDS)
+                .getName());
+    }
+
+    @Test
+    public void shouldBlockSubmittersWhileTheQueueIsFull() throws Exception {
+        CountDownLatch committing = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        when(dao.createOrUpdateAll(anyCollection())).thenAnswer(invocation -> {
+            committing.countDown();
+            proceed.await(10, TimeUnit.SECONDS);
+            return invocation.getArguments()[0];
+        });
+        groupCommitDao = new GroupCommitDAO(dao, 0, TimeUnit.MILLISECONDS, 1, 1);
+
+        groupCommitDao.submit(new Rocket("rocket_0", "USA", spacex));
+        assertTrue(committing.await(10, TimeUnit.SECONDS));
+        // the writer is busy, so this one fills the queue and the next has to wait
+        groupCommitDao.submit(new Rocket("rocket_1", "USA", spacex));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<CompletableFuture<Rocket>> blocked = executor.submit(
+                () -> groupCommitDao.submit(new Rocket("rocket_2", "USA", spacex)));
+        executor.shutdown();
+        assertThrows(TimeoutException.class, () -> blocked.get(200, TimeUnit.MILLISECONDS));
+
+        proceed.countDown();
+        assertEquals("rocket_2", blocked.get(10, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS).getName());
+    }
+
+    @Test
+    public void shouldCommitQueuedWritesOnClose() throws Exception {
+        groupCommitDao = new GroupCommitDAO(dao, 1, TimeUnit.SECONDS, 100);
+        CompletableFuture<Rocket> future = groupCommitDao.submit(new Rocket("F9", "USA", spacex));
+
+        groupCommitDao.close();
+
+        assertTrue(future.isDone());
+        assertEquals("F9", future.get().getName());
+        verify(dao).close();
+        assertThrows(IllegalStateException.class, () -> groupCommitDao.submit(new Rocket("FH", "USA", spacex)));
+        groupCommitDao = null;
+    }
+}
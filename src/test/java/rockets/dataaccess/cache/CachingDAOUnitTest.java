@@ -0,0 +1,207 @@
+package rockets.dataaccess.cache;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rockets.dataaccess.DAO;
+import rockets.dataaccess.event.ChangeEvent;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+import rockets.model.User;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class CachingDAOUnitTest {
+    private DAO delegate;
+    private CachingDAO dao;
+    private LaunchServiceProvider esa;
+    private Rocket rocket;
+    private User user;
+
+    @BeforeEach
+    public void setUp() {
+        delegate = mock(DAO.class);
+        dao = new CachingDAO(delegate, 2, 1, TimeUnit.HOURS);
+
+        esa = new LaunchServiceProvider("ESA", 1970, "Europe");
+        esa.setId(1L);
+        rocket = new Rocket("Ariane4", "France", esa);
+        rocket.setId(2L);
+        user = new User("Jane", "Doe", "Abc12345678", "jane@example.com");
+        user.setId(3L);
+    }
+
+    @Test
+    public void shouldServeRepeatedLoadsFromCache() {
+        when(delegate.load(Rocket.class, 2L)).thenReturn(rocket);
+
+        assertSame(rocket, dao.load(Rocket.class, 2L));
+        assertSame(rocket, dao.load(Rocket.class, 2L));
+
+        verify(delegate, times(1)).load(Rocket.class, 2L);
+        assertEquals(1, dao.entityStats().hitCount());
+        assertEquals(1, dao.entityStats().missCount());
+    }
+
+    @Test
+    public void shouldInvalidateWhatADeleteByFilterReports() {
+        Launch launch = new Launch(LocalDate.of(2018, 1, 1), rocket, "Kourou", "LEO", Launch.LaunchOutcome.SUCCESSFUL);
+        launch.setId(4L);
+        rocket.getLaunches().add(launch);
+        when(delegate.load(Rocket.class, 2L)).thenReturn(rocket);
+        when(delegate.getUserByEmail("jane@example.com")).thenReturn(user);
+        doAnswer(invocation -> {
+            Consumer<ChangeEvent> deleted = (Consumer<ChangeEvent>) invocation.getArguments()[3];
+            deleted.accept(new ChangeEvent(ChangeEvent.Type.DELETED, Launch.class, 4L, null, null));
+            return 1L;
+        }).when(delegate).deleteWhere(eq(Launch.class), eq(ImmutableMap.of("orbit", "LEO")), eq(false),
+                any(Consumer.class));
+        dao.load(Rocket.class, 2L);
+        dao.getUserByEmail("jane@example.com");
+
+        assertEquals(1, dao.deleteWhere(Launch.class, ImmutableMap.of("orbit", "LEO"), false));
+        dao.load(Rocket.class, 2L);
+        dao.getUserByEmail("jane@example.com");
+
+        // the rocket's cached copy lists the deleted launch, the user is unrelated
+        verify(delegate, times(2)).load(Rocket.class, 2L);
+        verify(delegate, times(1)).getUserByEmail("jane@example.com");
+    }
+
+    @Test
+    public void shouldInvalidateCachedEntitiesThatEmbedAWrittenOne() {
+        Launch launch = new Launch(LocalDate.of(2018, 1, 1), rocket, "Kourou", "LEO", Launch.LaunchOutcome.SUCCESSFUL);
+        launch.setId(4L);
+        rocket.getLaunches().add(launch);
+        when(delegate.load(Rocket.class, 2L)).thenReturn(rocket);
+        dao.load(Rocket.class, 2L);
+
+        // the launch as the caller has it no longer refers to the cached rocket
+        Rocket other = new Rocket("Ariane5", "France", esa);
+        other.setId(5L);
+        Launch moved = new Launch(LocalDate.of(2018, 1, 1), other, "Kourou", "LEO", Launch.LaunchOutcome.SUCCESSFUL);
+        moved.setId(4L);
+        dao.createOrUpdate(moved);
+        dao.load(Rocket.class, 2L);
+
+        verify(delegate, times(2)).load(Rocket.class, 2L);
+    }
+
+    @Test
+    public void shouldNotCacheWhatWasLoadedWhileAWriteInvalidatedIt() {
+        AtomicBoolean writing = new AtomicBoolean(true);
+        when(delegate.load(Rocket.class, 2L)).thenAnswer(invocation -> {
+            // another caller saves the rocket after it was read, before it is cached
+            if (writing.getAndSet(false)) {
+                dao.createOrUpdate(rocket);
+            }
+            return rocket;
+        });
+
+        dao.load(Rocket.class, 2L);
+        dao.load(Rocket.class, 2L);
+        dao.load(Rocket.class, 2L);
+
+        verify(delegate, times(2)).load(Rocket.class, 2L);
+    }
+
+    @Test
+    public void shouldNotCacheMissingEntities() {
+        assertNull(dao.load(Rocket.class, 2L));
+        assertNull(dao.load(Rocket.class, 2L));
+
+        verify(delegate, times(2)).load(Rocket.class, 2L);
+    }
+
+    @Test
+    public void shouldLoadOnlyMissesWhenLoadingByIds() {
+        Rocket other = new Rocket("Ariane5", "France", esa);
+        other.setId(5L);
+        when(delegate.load(Rocket.class, 2L)).thenReturn(rocket);
+        when(delegate.loadAll(Rocket.class, Sets.newLinkedHashSet(Arrays.asList(5L, 6L))))
+                .thenReturn(Lists.newArrayList(other));
+        dao.load(Rocket.class, 2L);
+
+        assertEquals(Arrays.asList(other, rocket), dao.loadAll(Rocket.class, Arrays.asList(5L, 2L, 6L)));
+        assertEquals(Arrays.asList(other), dao.loadAll(Rocket.class, Arrays.asList(5L)));
+
+        verify(delegate, times(1)).loadAll(eq(Rocket.class), anyCollection());
+    }
+
+    @Test
+    public void shouldServeLookupsBySecondaryKeysFromCache() {
+        when(delegate.getUserByEmail("jane@example.com")).thenReturn(user);
+        when(delegate.getLSPByName("ESA")).thenReturn(esa);
+
+        assertSame(user, dao.getUserByEmail("jane@example.com"));
+        assertSame(user, dao.getUserByEmail("jane@example.com"));
+        assertSame(user, dao.load(User.class, 3L));
+        assertSame(esa, dao.getLSPByName("ESA"));
+        assertSame(esa, dao.getLSPByName("ESA"));
+
+        verify(delegate, times(1)).getUserByEmail("jane@example.com");
+        verify(delegate, times(1)).getLSPByName("ESA");
+        verify(delegate, never()).load(User.class, 3L);
+        assertEquals(2, dao.secondaryKeyStats().hitCount());
+    }
+
+    @Test
+    public void shouldInvalidateEntityAndItsNeighboursOnWrite() {
+        when(delegate.load(Rocket.class, 2L)).thenReturn(rocket);
+        when(delegate.getLSPByName("ESA")).thenReturn(esa);
+        dao.load(Rocket.class, 2L);
+        dao.getLSPByName("ESA");
+
+        dao.createOrUpdate(rocket);
+        dao.load(Rocket.class, 2L);
+        dao.getLSPByName("ESA");
+
+        verify(delegate).createOrUpdate(rocket);
+        verify(delegate, times(2)).load(Rocket.class, 2L);
+        verify(delegate, times(2)).getLSPByName("ESA");
+    }
+
+    @Test
+    public void shouldInvalidateOnDelete() {
+        when(delegate.getUserByEmail("jane@example.com")).thenReturn(user, (User) null);
+        dao.getUserByEmail("jane@example.com");
+
+        dao.delete(user);
+
+        assertNull(dao.getUserByEmail("jane@example.com"));
+        verify(delegate).delete(user);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedEntriesBeyondMaximumSize() {
+        for (long id = 10; id < 15; id++) {
+            Rocket r = new Rocket("rocket_" + id, "USA", esa);
+            r.setId(id);
+            when(delegate.load(Rocket.class, id)).thenReturn(r);
+            dao.load(Rocket.class, id);
+        }
+
+        assertEquals(3, dao.entityStats().evictionCount());
+    }
+
+    @Test
+    public void shouldDelegateSessionsAndClose() {
+        dao.openSession();
+        dao.closeSession();
+        dao.close();
+
+        verify(delegate).openSession();
+        verify(delegate).closeSession();
+        verify(delegate).close();
+    }
+}
@@ -0,0 +1,227 @@
+package rockets.dataaccess.event;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rockets.dataaccess.DAO;
+import rockets.model.Entity;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+import rockets.model.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+public class EventPublishingDAOUnitTest {
+    private DAO dao;
+    private EventPublishingDAO eventDao;
+    private BlockingQueue<ChangeEvent> received;
+
+    @BeforeEach
+    public void setUp() {
+        dao = mock(DAO.class);
+        received = new LinkedBlockingQueue<>();
+        eventDao = new EventPublishingDAO(dao, 100, Backpressure.BLOCK);
+        eventDao.addChangeListener(received::add);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        eventDao.close();
+    }
+
+    @Test
+    public void shouldPublishCreatedEntities() throws Exception {
+        LaunchServiceProvider spacex = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        Rocket rocket = new Rocket("F9", "USA", spacex);
+        reportOnSave(rocket, new ChangeEvent(ChangeEvent.Type.CREATED, Rocket.class, 1L, null,
+                ImmutableMap.of("name", "F9")));
+
+        eventDao.createOrUpdate(rocket);
+
+        ChangeEvent created = received.poll(5, TimeUnit.SECONDS);
+        assertEquals(ChangeEvent.Type.CREATED, created.getType());
+        assertEquals(Rocket.class, created.getEntityClass());
+        assertEquals(1L, created.getId());
+        assertNull(created.getOldValues());
+        assertEquals("F9", created.getNewValues().get("name"));
+    }
+
+    @Test
+    public void shouldPublishOldAndNewValuesOfUpdatedEntities() throws Exception {
+        User user = new User("Janet", "Doe", "Abc12345678", "jane@example.com");
+        user.setId(7L);
+        reportOnSave(user, new ChangeEvent(ChangeEvent.Type.UPDATED, User.class, 7L,
+                ImmutableMap.of("firstName", "Jane"), ImmutableMap.of("firstName", "Janet")));
+
+        eventDao.createOrUpdate(user);
+
+        ChangeEvent updated = received.poll(5, TimeUnit.SECONDS);
+        assertEquals(ChangeEvent.Type.UPDATED, updated.getType());
+        assertEquals("Jane", updated.getOldValues().get("firstName"));
+        assertEquals("Janet", updated.getNewValues().get("firstName"));
+        verify(dao, never()).loadAll(any(Class.class), anyCollection());
+        verify(dao, never()).exists(any(Class.class), anyMap());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldHandTheReportsToTheCallerAndTheListeners() throws Exception {
+        User user = createdUser(1L);
+        List<ChangeEvent> reported = new ArrayList<>();
+
+        eventDao.createOrUpdateAll(Collections.singletonList(user), reported::add);
+
+        assertEquals(1, reported.size());
+        assertSame(reported.get(0), received.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldPublishWhatTheUnderlyingDAOReportsDeletingAnEntity() throws Exception {
+        User user = new User("Jane", "Doe", "Abc12345678", "jane@example.com");
+        user.setId(7L);
+        doAnswer(invocation -> {
+            ((Consumer<ChangeEvent>) invocation.getArguments()[1]).accept(new ChangeEvent(ChangeEvent.Type.DELETED,
+                    User.class, 7L, ImmutableMap.of("email", "jane@example.com"), null));
+            return null;
+        }).when(dao).delete(eq(user), any(Consumer.class));
+
+        eventDao.delete(user);
+
+        ChangeEvent deleted = received.poll(5, TimeUnit.SECONDS);
+        assertEquals(ChangeEvent.Type.DELETED, deleted.getType());
+        assertEquals("jane@example.com", deleted.getOldValues().get("email"));
+        assertNull(deleted.getNewValues());
+        verify(dao, never()).load(any(Class.class), anyLong());
+        verify(dao, never()).delete(user);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldPublishWhatTheUnderlyingDAOReportsDeletingWithoutReadingFirst() throws Exception {
+        Map<String, Object> values = ImmutableMap.of("name", "F9");
+        when(dao.deleteWhere(eq(Rocket.class), anyMap(), eq(true), any(Consumer.class))).thenAnswer(invocation -> {
+            Consumer<ChangeEvent> deleted = (Consumer<ChangeEvent>) invocation.getArguments()[3];
+            deleted.accept(new ChangeEvent(ChangeEvent.Type.DELETED, Rocket.class, 3L, values, null));
+            return 1L;
+        });
+
+        assertEquals(1, eventDao.deleteWhere(Rocket.class, ImmutableMap.of("name", "F9"), true));
+
+        ChangeEvent deleted = received.poll(5, TimeUnit.SECONDS);
+        assertEquals(3L, deleted.getId());
+        assertEquals(values, deleted.getOldValues());
+        verify(dao, never()).stream(any(Class.class));
+        verify(dao, never()).loadAll(any(Class.class), anyCollection());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldNotReadBeforeWritingWithoutListeners() {
+        EventPublishingDAO silent = new EventPublishingDAO(dao, 1, Backpressure.BLOCK);
+        User user = new User("Jane", "Doe", "Abc12345678", "jane@example.com");
+        user.setId(7L);
+
+        silent.createOrUpdate(user);
+        silent.delete(user);
+        silent.close();
+
+        verify(dao).createOrUpdate(user);
+        verify(dao).delete(user);
+        verify(dao, never()).createOrUpdate(any(Entity.class), any(Consumer.class));
+        verify(dao, never()).createOrUpdateAll(anyCollection(), any(Consumer.class));
+        verify(dao, never()).delete(any(Entity.class), any(Consumer.class));
+        verify(dao, never()).loadAll(any(Class.class), anyCollection());
+        verify(dao, never()).load(any(Class.class), anyLong());
+        verify(dao, never()).exists(any(Class.class), anyMap());
+    }
+
+    @Test
+    public void shouldKeepDeliveringWhenAListenerFails() throws Exception {
+        eventDao.close();
+        eventDao = new EventPublishingDAO(dao, 10, Backpressure.BLOCK);
+        eventDao.addChangeListener(event -> {
+            throw new IllegalStateException("listener bug");
+        });
+        eventDao.addChangeListener(received::add);
+
+        eventDao.createOrUpdate(createdUser(1L));
+        eventDao.createOrUpdate(createdUser(2L));
+
+        assertEquals(1L, received.poll(5, TimeUnit.SECONDS).getId());
+        assertEquals(2L, received.poll(5, TimeUnit.SECONDS).getId());
+    }
+
+    @Test
+    public void shouldDropEventsWhenTheQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch delivering = new CountDownLatch(1);
+        eventDao.close();
+        eventDao = new EventPublishingDAO(dao, 1, Backpressure.DROP_NEWEST);
+        eventDao.addChangeListener(event -> {
+            delivering.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            received.add(event);
+        });
+
+        eventDao.createOrUpdate(createdUser(1L));
+        assertTrue(delivering.await(5, TimeUnit.SECONDS));
+        eventDao.createOrUpdate(createdUser(2L));
+        eventDao.createOrUpdate(createdUser(3L));
+        release.countDown();
+        eventDao.close();
+
+        assertEquals(1, eventDao.getDroppedCount());
+        List<Long> ids = new ArrayList<>();
+        received.forEach(event -> ids.add(event.getId()));
+        assertEquals(Arrays.asList(1L, 2L), ids);
+    }
+
+    @Test
+    public void shouldDeliverQueuedEventsOnClose() {
+        eventDao.createOrUpdate(createdUser(1L));
+        eventDao.close();
+
+        assertEquals(1, received.size());
+        verify(dao).close();
+    }
+
+    // a new user that the mocked DAO reports as created when saving it
+    private User createdUser(long id) {
+        User user = new User("Jane", "Doe", "Abc12345678", "jane" + id + "@example.com");
+        reportOnSave(user, new ChangeEvent(ChangeEvent.Type.CREATED, User.class, id, null,
+                ImmutableMap.of("email", user.getEmail())));
+        return user;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void reportOnSave(Entity entity, ChangeEvent event) {
+        when(dao.createOrUpdate(eq(entity), any(Consumer.class))).thenAnswer(invocation -> {
+            entity.setId(event.getId());
+            ((Consumer<ChangeEvent>) invocation.getArguments()[1]).accept(event);
+            return invocation.getArguments()[0];
+        });
+        when(dao.createOrUpdateAll(eq(Collections.singletonList(entity)), any(Consumer.class))).thenAnswer(invocation -> {
+            entity.setId(event.getId());
+            ((Consumer<ChangeEvent>) invocation.getArguments()[1]).accept(event);
+            return invocation.getArguments()[0];
+        });
+    }
+}
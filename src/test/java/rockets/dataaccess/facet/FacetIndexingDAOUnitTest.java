@@ -0,0 +1,148 @@
+package rockets.dataaccess.facet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rockets.dataaccess.memory.InMemoryDAO;
+import rockets.mining.AggregatingRocketMiner;
+import rockets.mining.FacetedRocketMiner;
+import rockets.mining.RocketMiner;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static rockets.dataaccess.facet.FacetQuery.anyOf;
+import static rockets.dataaccess.facet.FacetQuery.is;
+import static rockets.model.Launch.LaunchOutcome.FAILED;
+import static rockets.model.Launch.LaunchOutcome.SUCCESSFUL;
+
+public class FacetIndexingDAOUnitTest {
+    private InMemoryDAO store;
+    private List<Rocket> rockets;
+    private List<Launch> launches;
+
+    @BeforeEach
+    public void setUp() {
+        LaunchServiceProvider ula = new LaunchServiceProvider("ULA", 2006, "USA");
+        LaunchServiceProvider roscosmos = new LaunchServiceProvider("Roscosmos", 1992, "Russia");
+        LaunchServiceProvider arianespace = new LaunchServiceProvider("Arianespace", 1980, "France");
+        rockets = Arrays.asList(
+                new Rocket("Atlas V", "USA", ula),
+                new Rocket("Soyuz", "Russia", roscosmos),
+                new Rocket("Ariane 5", "Europe", arianespace));
+        int[] rocketIndex = {0, 0, 1, 1, 1, 2, 2, 0};
+        String[] orbits = {"LEO", "GTO", "LEO", "LEO", "SSO", "GTO", "LEO", "SSO"};
+        String[] sites = {"CCAFS", "VAFB", "Baikonur", "Baikonur", "Plesetsk", "Kourou", "Kourou", "VAFB"};
+        Launch.LaunchOutcome[] outcomes = {SUCCESSFUL, SUCCESSFUL, SUCCESSFUL, SUCCESSFUL, SUCCESSFUL, FAILED,
+                FAILED, SUCCESSFUL};
+        launches = new ArrayList<>();
+        for (int i = 0; i < rocketIndex.length; i++) {
+            Rocket rocket = rockets.get(rocketIndex[i]);
+            Launch launch = new Launch(LocalDate.of(2016 + i % 3, 1 + i, 1), rocket, sites[i], orbits[i],
+                    outcomes[i]);
+            launch.setLaunchServiceProvider(rocket.getManufacturer());
+            rocket.getLaunches().add(launch);
+            rocket.getManufacturer().getRockets().add(rocket);
+            launches.add(launch);
+        }
+        store = new InMemoryDAO();
+        store.createOrUpdateAll(launches);
+    }
+
+    @Test
+    public void shouldAnswerFacetCombinationsLikeAScan() {
+        LaunchFacetIndex facets = new FacetIndexingDAO(store).getFacets();
+
+        assertMatches(facets, FacetQuery.all(), launch -> true);
+        assertMatches(facets, is(Facet.ORBIT, "LEO"), launch -> "LEO".equals(launch.getOrbit()));
+        assertMatches(facets, is(Facet.ORBIT, "LEO").and(is(Facet.OUTCOME, SUCCESSFUL)),
+                launch -> "LEO".equals(launch.getOrbit()) && SUCCESSFUL == launch.getLaunchOutcome());
+        assertMatches(facets, anyOf(Facet.SITE, "VAFB", "Kourou").and(is(Facet.YEAR, 2017)),
+                launch -> ("VAFB".equals(launch.getLaunchSite()) || "Kourou".equals(launch.getLaunchSite()))
+                        && 2017 == launch.getLaunchDate().getYear());
+        assertMatches(facets, is(Facet.ROCKET_COUNTRY, "Russia").or(is(Facet.OUTCOME, "FAILED")),
+                launch -> "Russia".equals(launch.getLaunchVehicle().getCountry())
+                        || FAILED == launch.getLaunchOutcome());
+        assertMatches(facets, is(Facet.ORBIT, "GEO").and(is(Facet.YEAR, "2016")), launch -> false);
+
+        Map<Object, Long> countries = new LinkedHashMap<>();
+        countries.put("Russia", 2L);
+        countries.put("Europe", 1L);
+        countries.put("USA", 1L);
+        assertEquals(countries, facets.counts(Facet.ROCKET_COUNTRY, is(Facet.ORBIT, "LEO")));
+    }
+
+    @Test
+    public void shouldFollowWritesMadeThroughIt() {
+        FacetIndexingDAO dao = new FacetIndexingDAO(store);
+        LaunchFacetIndex facets = dao.getFacets();
+
+        Launch moved = launches.get(0);
+        moved.setOrbit("GEO");
+        dao.createOrUpdate(moved);
+        assertEquals(Collections.singletonList(moved.getId()), facets.ids(is(Facet.ORBIT, "GEO")));
+        assertEquals(3, facets.count(is(Facet.ORBIT, "LEO")));
+
+        Rocket ariane = rockets.get(2);
+        ariane.setCountry("France");
+        dao.createOrUpdate(ariane);
+        assertEquals(2, facets.count(is(Facet.ROCKET_COUNTRY, "France")));
+        assertEquals(0, facets.count(is(Facet.ROCKET_COUNTRY, "Europe")));
+
+        dao.delete(launches.get(2));
+        assertEquals(1, facets.count(is(Facet.SITE, "Baikonur")));
+        Launch added = new Launch(LocalDate.of(2019, 4, 1), rockets.get(1), "Baikonur", "LEO", SUCCESSFUL);
+        added.setLaunchServiceProvider(rockets.get(1).getManufacturer());
+        rockets.get(1).getLaunches().add(added);
+        dao.createOrUpdate(added);
+        assertEquals(8, facets.size());
+        assertEquals(Collections.singletonList(added.getId()), facets.ids(is(Facet.YEAR, 2019)));
+
+        dao.deleteWhere(Rocket.class, Collections.singletonMap("name", "Soyuz"), true);
+        assertEquals(0, facets.count(is(Facet.ROCKET_COUNTRY, "Russia")));
+        assertEquals(store.count(Launch.class, Collections.emptyMap()), facets.count(FacetQuery.all()));
+    }
+
+    @Test
+    public void shouldFindTheDominantCountryLikeTheScanningMiner() {
+        FacetIndexingDAO dao = new FacetIndexingDAO(store);
+        RocketMiner expected = new RocketMiner(dao);
+        RocketMiner miner = new FacetedRocketMiner(dao, dao.getFacets());
+
+        // orbits whose successful launches have no tie between countries
+        for (String orbit : Arrays.asList("GTO", "LEO")) {
+            assertEquals(expected.dominantCountry(orbit), miner.dominantCountry(orbit));
+        }
+        assertNull(miner.dominantCountry("GEO"));
+    }
+
+    @Test
+    public void shouldLeaveTheOtherQuestionsToTheGivenMiner() {
+        FacetIndexingDAO dao = new FacetIndexingDAO(store);
+        RocketMiner aggregating = new AggregatingRocketMiner(dao);
+        RocketMiner miner = new FacetedRocketMiner(dao, aggregating, dao.getFacets());
+
+        assertEquals(aggregating.mostLaunchedRockets(2), miner.mostLaunchedRockets(2));
+        assertEquals(aggregating.mostRecentLaunches(3), miner.mostRecentLaunches(3));
+        assertEquals(new RocketMiner(dao).dominantCountry("LEO"), miner.dominantCountry("LEO"));
+    }
+
+    @Test
+    public void shouldRejectValuesAFacetCannotHave() {
+        assertThrows(IllegalArgumentException.class, () -> is(Facet.YEAR, "last year"));
+        assertThrows(NullPointerException.class, () -> is(Facet.ORBIT, null));
+        assertThrows(IllegalArgumentException.class, () -> anyOf(Facet.ORBIT));
+    }
+
+    private void assertMatches(LaunchFacetIndex facets, FacetQuery query, Predicate<Launch> filter) {
+        List<Long> expected = launches.stream().filter(filter).map(Launch::getId).sorted()
+                .collect(Collectors.toList());
+        assertEquals(expected, facets.ids(query), query.toString());
+        assertEquals(expected.size(), facets.count(query), query.toString());
+    }
+}
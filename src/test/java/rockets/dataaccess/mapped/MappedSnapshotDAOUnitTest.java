@@ -0,0 +1,226 @@
+package rockets.dataaccess.mapped;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rockets.dataaccess.DAO;
+import rockets.dataaccess.PageRequest;
+import rockets.dataaccess.memory.InMemoryDAO;
+import rockets.mining.RocketMiner;
+import rockets.model.Entity;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+import rockets.model.User;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static rockets.model.Launch.LaunchOutcome.FAILED;
+import static rockets.model.Launch.LaunchOutcome.SUCCESSFUL;
+
+public class MappedSnapshotDAOUnitTest {
+    private static final Path DIR = Paths.get("target/test-data/snapshots");
+
+    private Path file;
+    private InMemoryDAO source;
+    private List<LaunchServiceProvider> lsps;
+    private List<Rocket> rockets;
+    private List<Launch> launches;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        FileUtils.deleteDirectory(DIR.toFile());
+        Files.createDirectories(DIR);
+        file = DIR.resolve("rockets.snapshot");
+
+        lsps = Arrays.asList(
+                new LaunchServiceProvider("ULA", 2006, "USA"),
+                new LaunchServiceProvider("Roscosmos", 1992, "Russia"),
+                new LaunchServiceProvider("Arianespace", 1980, "France"));
+        lsps.get(0).setHeadquarters("Centennial, Colorado");
+        lsps.get(2).setWikilink("https://en.wikipedia.org/wiki/Arianespace");
+        rockets = Arrays.asList(
+                new Rocket("Atlas V", "USA", lsps.get(0)),
+                new Rocket("Soyuz", "Russia", lsps.get(1)),
+                new Rocket("Ariane 5", "Europe", lsps.get(2)),
+                new Rocket("Vega", "Europe", lsps.get(2)));
+        rockets.get(0).setMassToLEO("18850");
+        rockets.get(0).setFirstYearFlight(2002);
+        int[] rocketIndex = {0, 0, 1, 1, 1, 2, 3};
+        String[] orbits = {"LEO", "GTO", "LEO", "LEO", "GTO", "GTO", "SSO"};
+        Launch.LaunchOutcome[] outcomes = {SUCCESSFUL, SUCCESSFUL, SUCCESSFUL, FAILED, SUCCESSFUL, SUCCESSFUL, FAILED};
+        String[] prices = {"109000000", "153000000.50", "48500000", "48500000.25", "52000000", "178000000", "37000000"};
+        launches = new ArrayList<>();
+        for (int i = 0; i < rocketIndex.length; i++) {
+            Rocket rocket = rockets.get(rocketIndex[i]);
+            Launch launch = new Launch(LocalDate.of(2016 + i % 3, 1 + i, 10 + i), rocket, "site " + i % 2, orbits[i],
+                    outcomes[i]);
+            launch.setLaunchServiceProvider(rocket.getManufacturer());
+            launch.setPrice(new BigDecimal(prices[i]));
+            rocket.getLaunches().add(launch);
+            rocket.getManufacturer().getRockets().add(rocket);
+            launches.add(launch);
+        }
+        launches.get(0).setFunction("Communications");
+        launches.get(0).setPayload(new LinkedHashSet<>(Arrays.asList("WGS-8", "Ünïcödé")));
+
+        source = new InMemoryDAO();
+        source.createOrUpdateAll(launches);
+        MappedSnapshot.write(source, file);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(DIR.toFile());
+    }
+
+    @Test
+    public void shouldReadBackEveryValueWritten() {
+        DAO mapped = new MappedSnapshotDAO(file);
+
+        for (Class<? extends Entity> clazz : Arrays.asList(LaunchServiceProvider.class, Rocket.class, Launch.class)) {
+            assertEquals(ids(source.loadAll(clazz)), ids(mapped.loadAll(clazz)));
+            assertEquals(new ArrayList<>(source.loadAll(clazz)), new ArrayList<>(mapped.loadAll(clazz)));
+        }
+
+        LaunchServiceProvider ula = mapped.load(LaunchServiceProvider.class, lsps.get(0).getId());
+        assertEquals("Centennial, Colorado", ula.getHeadquarters());
+        assertEquals(2006, ula.getYearFounded());
+        assertEquals(Collections.singleton(rockets.get(0)), ula.getRockets());
+        assertNull(ula.getWikilink());
+        assertEquals("https://en.wikipedia.org/wiki/Arianespace",
+                mapped.load(LaunchServiceProvider.class, lsps.get(2).getId()).getWikilink());
+
+        Rocket atlas = mapped.load(Rocket.class, rockets.get(0).getId());
+        assertEquals("18850", atlas.getMassToLEO());
+        assertNull(atlas.getMassToGTO());
+        assertEquals(2002, atlas.getFirstYearFlight());
+        assertEquals(ula, atlas.getManufacturer());
+        assertEquals(new HashSet<>(launches.subList(0, 2)), atlas.getLaunches());
+        assertSame(atlas, atlas.getLaunches().iterator().next().getLaunchVehicle());
+
+        Launch first = mapped.load(Launch.class, launches.get(0).getId());
+        assertEquals(Arrays.asList("WGS-8", "Ünïcödé"), new ArrayList<>(first.getPayload()));
+        assertEquals("Communications", first.getFunction());
+        assertEquals(LocalDate.of(2016, 1, 10), first.getLaunchDate());
+        assertEquals(SUCCESSFUL, first.getLaunchOutcome());
+        Launch second = mapped.load(Launch.class, launches.get(1).getId());
+        assertEquals(new BigDecimal("153000000.50"), second.getPrice());
+        assertNull(second.getFunction());
+        assertTrue(second.getPayload().isEmpty());
+    }
+
+    @Test
+    public void shouldServeTheMinerLikeTheStoreItWasWrittenFrom() {
+        RocketMiner expected = new RocketMiner(source);
+        RocketMiner miner = new RocketMiner(new MappedSnapshotDAO(file));
+
+        assertEquals(ids(expected.mostRecentLaunches(3)), ids(miner.mostRecentLaunches(3)));
+        assertEquals(ids(expected.mostExpensiveLaunches(4)), ids(miner.mostExpensiveLaunches(4)));
+        assertEquals(ids(expected.mostLaunchedRockets(1)), ids(miner.mostLaunchedRockets(1)));
+        assertEquals(expected.dominantCountry("LEO"), miner.dominantCountry("LEO"));
+        assertEquals(expected.highestRevenueLaunchServiceProviders(3, 2017),
+                miner.highestRevenueLaunchServiceProviders(3, 2017));
+    }
+
+    @Test
+    public void shouldLookUpAndQueryWithoutAStore() {
+        DAO mapped = new MappedSnapshotDAO(file);
+
+        assertEquals(lsps.get(1).getId(), mapped.getLSPByName("Roscosmos").getId());
+        assertNull(mapped.getLSPByName("SpaceX"));
+        assertNull(mapped.load(Launch.class, Long.MAX_VALUE));
+        assertNull(mapped.load(Rocket.class, launches.get(0).getId()));
+        assertEquals(Arrays.asList(rockets.get(3), rockets.get(0)), mapped.loadAll(Rocket.class,
+                Arrays.asList(rockets.get(3).getId(), Long.MAX_VALUE, rockets.get(0).getId())));
+        assertEquals(7, mapped.count(Launch.class, Collections.emptyMap()));
+        assertEquals(3, mapped.count(Launch.class, Collections.singletonMap("orbit", "GTO")));
+        assertTrue(mapped.exists(Rocket.class, Collections.singletonMap("name", "Vega")));
+        assertEquals(Arrays.asList("Ariane 5", "Atlas V"), mapped.loadPage(Rocket.class,
+                PageRequest.first("name", 2)).getItems().stream().map(Rocket::getName).collect(Collectors.toList()));
+
+        assertNull(mapped.getUserByEmail("someone@example.com"));
+        assertTrue(mapped.loadAll(User.class).isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> mapped.createOrUpdate(new User()));
+        assertThrows(UnsupportedOperationException.class, () -> mapped.delete(launches.get(0)));
+    }
+
+    @Test
+    public void shouldAnswerDateQueriesFromTheDateOrderedRows() {
+        DAO mapped = new MappedSnapshotDAO(file);
+
+        for (int k = 0; k <= launches.size() + 1; k++) {
+            assertEquals(ids(source.latestLaunches(k)), ids(mapped.latestLaunches(k)));
+        }
+        LocalDate from = LocalDate.of(2017, 1, 1);
+        LocalDate to = LocalDate.of(2018, 6, 15);
+        assertEquals(ids(source.findLaunchesBetween(from, to)), ids(mapped.findLaunchesBetween(from, to)));
+        assertEquals(Arrays.asList(LocalDate.of(2017, 2, 11), LocalDate.of(2017, 5, 14)),
+                mapped.findLaunchesBetween(from, LocalDate.of(2017, 12, 31)).stream()
+                        .map(Launch::getLaunchDate).collect(Collectors.toList()));
+        assertTrue(mapped.findLaunchesBetween(to, from).isEmpty());
+    }
+
+    @Test
+    public void shouldStreamInIdOrder() {
+        try (Stream<Launch> streamed = new MappedSnapshotDAO(file).stream(Launch.class)) {
+            assertEquals(ids(source.loadAll(Launch.class)), ids(streamed.collect(Collectors.toList())));
+        }
+    }
+
+    @Test
+    public void shouldReplaceTheFileAtomically() throws IOException {
+        MappedSnapshot old = MappedSnapshot.open(file);
+        source.createOrUpdate(new LaunchServiceProvider("SpaceX", 2002, "USA"));
+        MappedSnapshot.write(source, file);
+
+        assertEquals(3, old.size(LaunchServiceProvider.class));
+        assertEquals(4, MappedSnapshot.open(file).size(LaunchServiceProvider.class));
+        assertEquals(Collections.singletonList(file), list(DIR));
+    }
+
+    @Test
+    public void shouldKeepTheOldFileWhenAWriteFails() throws IOException {
+        byte[] written = Files.readAllBytes(file);
+        DAO failing = mock(DAO.class);
+        when(failing.stream(LaunchServiceProvider.class)).thenThrow(new IllegalStateException("store went away"));
+
+        assertThrows(IllegalStateException.class, () -> MappedSnapshot.write(failing, file));
+        assertArrayEquals(written, Files.readAllBytes(file));
+        assertEquals(Collections.singletonList(file), list(DIR));
+    }
+
+    @Test
+    public void shouldRejectFilesThatAreNotSnapshots() throws IOException {
+        Path other = DIR.resolve("other");
+        Files.write(other, "not a snapshot at all".getBytes());
+        assertThrows(IllegalArgumentException.class, () -> MappedSnapshot.open(other));
+
+        byte[] truncated = Arrays.copyOf(Files.readAllBytes(file), (int) Files.size(file) - 1);
+        Files.write(other, truncated);
+        assertThrows(IllegalArgumentException.class, () -> MappedSnapshot.open(other));
+    }
+
+    private static List<Path> list(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+
+    private static List<Long> ids(Collection<? extends Entity> entities) {
+        return entities.stream().map(Entity::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,16 @@
+package rockets.dataaccess.memory;
+
+import rockets.dataaccess.DAO;
+import rockets.dataaccess.DAOContractTest;
+
+public class InMemoryDAOContractTest extends DAOContractTest {
+    @Override
+    protected DAO createDAO() {
+        return new InMemoryDAO();
+    }
+
+    @Override
+    protected void clear() {
+        dao.close();
+    }
+}
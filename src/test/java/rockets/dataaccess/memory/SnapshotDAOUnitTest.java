@@ -0,0 +1,219 @@
+package rockets.dataaccess.memory;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rockets.dataaccess.DAO;
+import rockets.dataaccess.EntityGraph;
+import rockets.dataaccess.PageRequest;
+import rockets.model.Entity;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+import rockets.model.User;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class SnapshotDAOUnitTest {
+    private DAO store;
+    private SnapshotDAO snapshotDao;
+    private LaunchServiceProvider spacex;
+    private Rocket rocket;
+    private Launch launch;
+
+    @BeforeEach
+    public void setUp() {
+        store = spy(new InMemoryDAO());
+        spacex = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        rocket = new Rocket("F9", "USA", spacex);
+        launch = new Launch(LocalDate.of(2018, 2, 6), rocket, "KSC", "LEO", Launch.LaunchOutcome.SUCCESSFUL);
+        launch.setLaunchServiceProvider(spacex);
+        rocket.getLaunches().add(launch);
+        spacex.getRockets().add(rocket);
+        store.createOrUpdate(launch);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (null != snapshotDao) {
+            snapshotDao.close();
+        }
+    }
+
+    @Test
+    public void shouldServeReadsWithoutTouchingTheStore() {
+        snapshotDao = new SnapshotDAO(store, 1, TimeUnit.HOURS);
+        reset(store);
+
+        assertEquals(rocket, snapshotDao.load(Rocket.class, rocket.getId()));
+        assertEquals(1, snapshotDao.loadAll(Launch.class).size());
+        assertEquals(spacex, snapshotDao.getLSPByName("SpaceX"));
+        assertTrue(snapshotDao.exists(Rocket.class, ImmutableMap.of("name", "F9")));
+        assertEquals(1, snapshotDao.loadPage(Rocket.class, PageRequest.first("name", 10)).getItems().size());
+
+        verifyZeroInteractions(store);
+    }
+
+    @Test
+    public void shouldHandOutDetachedCopiesOneLevelDeep() {
+        snapshotDao = new SnapshotDAO(store, 1, TimeUnit.HOURS);
+
+        Launch loaded = snapshotDao.load(Launch.class, launch.getId());
+        LaunchServiceProvider lsp = snapshotDao.load(LaunchServiceProvider.class, spacex.getId());
+
+        assertEquals(launch, loaded);
+        assertSame(loaded.getLaunchServiceProvider(), loaded.getLaunchVehicle().getManufacturer());
+        assertEquals(rocket, lsp.getRockets().iterator().next());
+        assertTrue(lsp.getRockets().iterator().next().getLaunches().isEmpty());
+        assertNotSame(lsp, snapshotDao.load(LaunchServiceProvider.class, spacex.getId()));
+
+        loaded.setOrbit("GTO");
+        lsp.getRockets().clear();
+        assertEquals("LEO", snapshotDao.load(Launch.class, launch.getId()).getOrbit());
+        assertEquals(1, snapshotDao.load(LaunchServiceProvider.class, spacex.getId()).getRockets().size());
+    }
+
+    @Test
+    public void shouldApplyWritesWithoutReadingEverythingAgain() {
+        snapshotDao = new SnapshotDAO(store, 0, TimeUnit.MILLISECONDS);
+        reset(store);
+
+        Launch loaded = snapshotDao.load(Launch.class, launch.getId());
+        loaded.setOrbit("GTO");
+        snapshotDao.createOrUpdate(loaded);
+        snapshotDao.deleteWhere(Rocket.class, ImmutableMap.of("name", "F9"), true);
+
+        verify(store, never()).stream(any());
+        assertNull(snapshotDao.load(Launch.class, launch.getId()));
+        assertTrue(snapshotDao.load(LaunchServiceProvider.class, spacex.getId()).getRockets().isEmpty());
+    }
+
+    @Test
+    public void shouldNotSaveTheRestOfTheSnapshotWithANewRocket() {
+        snapshotDao = new SnapshotDAO(store, 0, TimeUnit.MILLISECONDS);
+        List<Integer> saved = new ArrayList<>();
+        doAnswer(invocation -> {
+            saved.add(EntityGraph.collect(Collections.singletonList((Entity) invocation.getArguments()[0])).size());
+            return invocation.callRealMethod();
+        }).when(store).createOrUpdate(any(Rocket.class));
+
+        snapshotDao.createOrUpdate(new Rocket("FH", "USA", snapshotDao.getLSPByName("SpaceX")));
+
+        // the new rocket, its manufacturer and the manufacturer's rockets, but none of their launches
+        assertEquals(Collections.singletonList(3), saved);
+        assertEquals(2, snapshotDao.getLSPByName("SpaceX").getRockets().size());
+        assertEquals(1, snapshotDao.load(Rocket.class, rocket.getId()).getLaunches().size());
+    }
+
+    @Test
+    public void shouldSeeWritesImmediatelyWithoutStaleness() {
+        snapshotDao = new SnapshotDAO(store, 0, TimeUnit.MILLISECONDS);
+
+        Rocket heavy = snapshotDao.createOrUpdate(new Rocket("FH", "USA", spacex));
+
+        assertFalse(snapshotDao.isStale());
+        assertEquals("FH", snapshotDao.load(Rocket.class, heavy.getId()).getName());
+        snapshotDao.delete(heavy);
+        assertNull(snapshotDao.load(Rocket.class, heavy.getId()));
+    }
+
+    @Test
+    public void shouldServeTheOldSnapshotUntilRefreshed() {
+        snapshotDao = new SnapshotDAO(store, 1, TimeUnit.HOURS);
+
+        Rocket heavy = snapshotDao.createOrUpdate(new Rocket("FH", "USA", spacex));
+
+        assertTrue(snapshotDao.isStale());
+        assertNull(snapshotDao.load(Rocket.class, heavy.getId()));
+        snapshotDao.refresh();
+        assertFalse(snapshotDao.isStale());
+        assertEquals("FH", snapshotDao.load(Rocket.class, heavy.getId()).getName());
+    }
+
+    @Test
+    public void shouldServeTheOldSnapshotWithoutWaitingWhileARefreshIsApplied() throws Exception {
+        snapshotDao = new SnapshotDAO(store, 1, TimeUnit.HOURS);
+        SlowRocket renamed = new SlowRocket();
+        renamed.setId(rocket.getId());
+        renamed.setName("Falcon 9");
+        renamed.setCountry("USA");
+        renamed.setManufacturer(spacex);
+        doReturn(Collections.singletonList(renamed)).when(store).loadAll(eq(Rocket.class), anyCollection());
+        snapshotDao.createOrUpdate(rocket);
+
+        ExecutorService refresher = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> refresh = refresher.submit(snapshotDao::refresh);
+            assertTrue(SlowRocket.keying.await(5, TimeUnit.SECONDS));
+
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                assertEquals("F9", snapshotDao.load(Rocket.class, rocket.getId()).getName());
+                assertEquals(rocket, snapshotDao.load(Launch.class, launch.getId()).getLaunchVehicle());
+            });
+            SlowRocket.keyed.countDown();
+            refresh.get(5, TimeUnit.SECONDS);
+        } finally {
+            SlowRocket.keyed.countDown();
+            refresher.shutdownNow();
+        }
+        assertEquals("Falcon 9", snapshotDao.load(Rocket.class, rocket.getId()).getName());
+        assertEquals("Falcon 9", snapshotDao.load(Launch.class, launch.getId()).getLaunchVehicle().getName());
+    }
+
+    @Test
+    public void shouldRefreshAStaleSnapshotInTheBackground() throws Exception {
+        snapshotDao = new SnapshotDAO(store, 50, TimeUnit.MILLISECONDS);
+
+        Rocket heavy = snapshotDao.createOrUpdate(new Rocket("FH", "USA", spacex));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (null == snapshotDao.load(Rocket.class, heavy.getId()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNotNull(snapshotDao.load(Rocket.class, heavy.getId()));
+    }
+
+    @Test
+    public void shouldReadUsersFromTheStore() {
+        snapshotDao = new SnapshotDAO(store, 1, TimeUnit.HOURS);
+        User user = new User("Jane", "Doe", "Abc12345678", "jane@example.com");
+
+        snapshotDao.createOrUpdate(user);
+
+        assertEquals(user, snapshotDao.getUserByEmail("jane@example.com"));
+        assertEquals(user, snapshotDao.load(User.class, user.getId()));
+    }
+
+    // a rocket whose natural key waits for the test, which holds up applying it to a snapshot
+    private static class SlowRocket extends Rocket {
+        static final CountDownLatch keying = new CountDownLatch(1);
+        static final CountDownLatch keyed = new CountDownLatch(1);
+
+        @Override
+        public String getNaturalKey() {
+            keying.countDown();
+            try {
+                keyed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.getNaturalKey();
+        }
+    }
+}
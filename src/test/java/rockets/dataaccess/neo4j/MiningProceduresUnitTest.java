@@ -0,0 +1,168 @@
+package rockets.dataaccess.neo4j;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.ogm.drivers.embedded.driver.EmbeddedDriver;
+import org.neo4j.ogm.session.SessionFactory;
+import org.neo4j.test.TestGraphDatabaseFactory;
+import rockets.mining.AggregatingRocketMiner;
+import rockets.mining.ProcedureRocketMiner;
+import rockets.mining.RocketMiner;
+import rockets.model.Entity;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+import rockets.model.User;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static rockets.model.Launch.LaunchOutcome.FAILED;
+import static rockets.model.Launch.LaunchOutcome.SUCCESSFUL;
+
+// The procedures rank like the aggregating miner, so its results are the expected ones
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class MiningProceduresUnitTest {
+    private GraphDatabaseService db;
+    private SessionFactory sessionFactory;
+    private Neo4jDAO dao;
+    private AggregatingRocketMiner miner;
+
+    @BeforeAll
+    public void setUp() {
+        db = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        MiningProcedures.register(db);
+        sessionFactory = new SessionFactory(new EmbeddedDriver(db), User.class.getPackage().getName());
+        dao = new Neo4jDAO(sessionFactory);
+        miner = new AggregatingRocketMiner(dao);
+
+        List<LaunchServiceProvider> lsps = Arrays.asList(
+                new LaunchServiceProvider("ULA", 1990, "USA"),
+                new LaunchServiceProvider("Roscosmos", 1992, "Russia"),
+                new LaunchServiceProvider("ESA", 1975, "Europe"));
+        List<Rocket> rockets = Arrays.asList(
+                new Rocket("Atlas V", "USA", lsps.get(0)),
+                new Rocket("Soyuz", "Russia", lsps.get(1)),
+                new Rocket("Ariane 5", "Europe", lsps.get(2)));
+        int[] rocketIndex = {0, 0, 0, 1, 1, 2, 2};
+        LocalDate[] dates = {LocalDate.of(2017, 1, 10), LocalDate.of(2018, 3, 5), LocalDate.of(2018, 7, 7),
+                LocalDate.of(2017, 5, 5), LocalDate.of(2018, 4, 4), LocalDate.of(2017, 8, 8),
+                LocalDate.of(2018, 10, 10)};
+        String[] orbits = {"LEO", "LEO", "GTO", "LEO", "GTO", "GTO", "LEO"};
+        Launch.LaunchOutcome[] outcomes = {SUCCESSFUL, SUCCESSFUL, FAILED, SUCCESSFUL, SUCCESSFUL, FAILED, SUCCESSFUL};
+        long[] prices = {1000, 9000, 12000, 20000, 7000, 4000, 11000};
+        List<Launch> launches = IntStream.range(0, rocketIndex.length).mapToObj(i -> {
+            Rocket rocket = rockets.get(rocketIndex[i]);
+            Launch launch = new Launch(dates[i], rocket, "site", orbits[i], outcomes[i]);
+            launch.setLaunchServiceProvider(rocket.getManufacturer());
+            launch.setPrice(BigDecimal.valueOf(prices[i]));
+            rocket.getLaunches().add(launch);
+            rocket.getManufacturer().getRockets().add(rocket);
+            return launch;
+        }).collect(Collectors.toList());
+        dao.createOrUpdateAll(launches);
+    }
+
+    @AfterAll
+    public void tearDown() {
+        sessionFactory.close();
+        db.shutdown();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 2, 3})
+    public void shouldRankRocketsByLaunches(int k) {
+        assertEquals(ids(miner.mostLaunchedRockets(k)), call("CALL rockets.topLaunched($k)", k));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3})
+    public void shouldRankProvidersByReliability(int k) {
+        assertEquals(ids(miner.mostReliableLaunchServiceProviders(k)), call("CALL rockets.reliability($k)", k));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {2017, 2018, 2019})
+    public void shouldRankProvidersByRevenue(int year) {
+        assertEquals(ids(miner.highestRevenueLaunchServiceProviders(3, year)),
+                call("CALL rockets.revenue(" + year + ", $k)", 3));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4, 10})
+    public void shouldRankLaunchesByDateAndPrice(int k) {
+        assertEquals(ids(miner.mostRecentLaunches(k)), call("CALL rockets.recentLaunches($k)", k));
+        assertEquals(ids(miner.mostExpensiveLaunches(k)), call("CALL rockets.expensiveLaunches($k)", k));
+    }
+
+    @Test
+    public void shouldFindTheDominantCountry() {
+        assertEquals(miner.dominantCountry("LEO"), function("LEO"));
+        assertEquals("USA", miner.dominantCountry("LEO"));
+        assertNull(function("GEO"));
+    }
+
+    @Test
+    public void shouldStreamTheRankedValues() {
+        Long mostLaunched = ids(miner.mostLaunchedRockets(1)).get(0);
+        try (Transaction tx = db.beginTx();
+             Result result = db.execute("CALL rockets.topLaunched(1) YIELD id, value RETURN id, value")) {
+            Map<String, Object> row = result.next();
+            assertEquals(mostLaunched, row.get("id"));
+            assertEquals(3L, row.get("value"));
+            assertFalse(result.hasNext());
+            tx.success();
+        }
+    }
+
+    @Test
+    public void shouldAnswerTheMinerQueriesThroughTheProcedures() {
+        RocketMiner procedures = new ProcedureRocketMiner(dao, dao);
+
+        assertEquals(ids(miner.mostLaunchedRockets(2)), ids(procedures.mostLaunchedRockets(2)));
+        assertEquals(ids(miner.mostReliableLaunchServiceProviders(3)),
+                ids(procedures.mostReliableLaunchServiceProviders(3)));
+        assertEquals(ids(miner.highestRevenueLaunchServiceProviders(3, 2018)),
+                ids(procedures.highestRevenueLaunchServiceProviders(3, 2018)));
+        assertEquals(miner.mostRecentLaunches(4), procedures.mostRecentLaunches(4));
+        assertEquals(miner.mostExpensiveLaunches(4), procedures.mostExpensiveLaunches(4));
+        assertEquals("USA", procedures.dominantCountry("LEO"));
+        assertNull(procedures.dominantCountry("GEO"));
+    }
+
+    private List<Long> call(String procedure, int k) {
+        List<Long> ids = new ArrayList<>();
+        try (Transaction tx = db.beginTx();
+             Result result = db.execute(procedure + " YIELD id RETURN id", ImmutableMap.of("k", k))) {
+            result.forEachRemaining(row -> ids.add((Long) row.get("id")));
+            tx.success();
+        }
+        return ids;
+    }
+
+    private Object function(String orbit) {
+        try (Transaction tx = db.beginTx();
+             Result result = db.execute("RETURN rockets.dominantCountry($orbit) AS country",
+                     ImmutableMap.of("orbit", orbit))) {
+            Object country = result.next().get("country");
+            tx.success();
+            return country;
+        }
+    }
+
+    private static List<Long> ids(List<? extends Entity> entities) {
+        return entities.stream().map(Entity::getId).collect(Collectors.toList());
+    }
+}
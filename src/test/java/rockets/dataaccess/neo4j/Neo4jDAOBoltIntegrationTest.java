@@ -0,0 +1,121 @@
+package rockets.dataaccess.neo4j;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.kernel.configuration.BoltConnector;
+import org.neo4j.kernel.configuration.ConnectorPortRegister;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.test.TestGraphDatabaseFactory;
+import rockets.dataaccess.DAO;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The neo4j-harness server needs an older Jetty than Spark's, so the Bolt server here is an
+// in-memory database with its Bolt connector enabled on a free port.
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class Neo4jDAOBoltIntegrationTest {
+    private static final int POOL_SIZE = 2;
+
+    private GraphDatabaseService server;
+    private String boltUri;
+    private Neo4jDAO dao;
+
+    @BeforeAll
+    public void startServer() {
+        BoltConnector bolt = new BoltConnector("bolt");
+        server = new TestGraphDatabaseFactory().newImpermanentDatabaseBuilder()
+                .setConfig(bolt.type, "BOLT")
+                .setConfig(bolt.enabled, "true")
+                .setConfig(bolt.listen_address, "localhost:0")
+                .newGraphDatabase();
+        ConnectorPortRegister ports = ((GraphDatabaseAPI) server).getDependencyResolver()
+                .resolveDependency(ConnectorPortRegister.class);
+        boltUri = "bolt://" + ports.getLocalAddress("bolt");
+        dao = new Neo4jDAO(boltUri, null, null, POOL_SIZE, 10_000, 60_000);
+    }
+
+    @AfterAll
+    public void stopServer() {
+        dao.close();
+        server.shutdown();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        server.execute("MATCH (n) DETACH DELETE n");
+    }
+
+    @Test
+    public void shouldBuildSchemaOverBolt() {
+        SchemaReport report = dao.getSchemaReport();
+        assertTrue(report.getFailed().isEmpty(), report.getFailed().toString());
+        assertFalse(report.getCreated().isEmpty() && report.getExisting().isEmpty());
+    }
+
+    @Test
+    public void shouldStoreEntitiesOnTheRemoteServer() {
+        LaunchServiceProvider spacex = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        Rocket rocket = new Rocket("F9", "USA", spacex);
+        Launch launch = new Launch();
+        launch.setLaunchDate(LocalDate.of(2018, 2, 6));
+        launch.setLaunchVehicle(rocket);
+        launch.setLaunchServiceProvider(spacex);
+        launch.setOrbit("LEO");
+        launch.setPrice(BigDecimal.valueOf(90));
+
+        dao.createOrUpdate(launch);
+
+        assertNotNull(launch.getId());
+        Launch loaded = dao.load(Launch.class, launch.getId());
+        assertEquals(launch.getLaunchDate(), loaded.getLaunchDate());
+        assertEquals(0, launch.getPrice().compareTo(loaded.getPrice()));
+        assertEquals("F9", loaded.getLaunchVehicle().getName());
+        assertEquals(spacex, dao.getLSPByName("SpaceX"));
+        assertEquals(1, ((Number) server.execute("MATCH (n:Rocket) RETURN count(n) AS c")
+                .next().get("c")).intValue());
+    }
+
+    @Test
+    public void shouldServeMoreConcurrentCallersThanPooledConnections() throws Exception {
+        int callers = POOL_SIZE * 4;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Rocket>> futures = IntStream.range(0, callers)
+                    .mapToObj(i -> executor.submit(() -> dao.createOrUpdate(
+                            new Rocket("rocket_" + i, "USA", new LaunchServiceProvider("lsp_" + i, 2000, "USA")))))
+                    .collect(Collectors.toList());
+            for (Future<Rocket> future : futures) {
+                assertNotNull(future.get(30, TimeUnit.SECONDS).getId());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(callers, dao.count(Rocket.class, Collections.emptyMap()));
+    }
+
+    @Test
+    public void shouldRejectAnEmptyPool() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> new Neo4jDAO(boltUri, null, null, 0, 1000, 1000));
+        assertEquals("pool size must be positive", e.getMessage());
+    }
+}
@@ -0,0 +1,45 @@
+package rockets.dataaccess.neo4j;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.neo4j.ogm.config.Configuration;
+import org.neo4j.ogm.drivers.embedded.driver.EmbeddedDriver;
+import org.neo4j.ogm.session.SessionFactory;
+import rockets.dataaccess.DAO;
+import rockets.dataaccess.DAOContractTest;
+import rockets.model.User;
+
+import java.io.File;
+
+public class Neo4jDAOContractTest extends DAOContractTest {
+    private static final String TEST_DB = "target/test-data/contract-db";
+
+    private static SessionFactory sessionFactory;
+    private static Neo4jDAO neo4jDao;
+
+    @BeforeAll
+    public static void initializeNeo4j() {
+        Configuration configuration = new Configuration.Builder()
+                .uri(new File(TEST_DB).toURI().toString())
+                .build();
+        EmbeddedDriver driver = new EmbeddedDriver();
+        driver.configure(configuration);
+        sessionFactory = new SessionFactory(driver, User.class.getPackage().getName());
+        neo4jDao = new Neo4jDAO(sessionFactory);
+    }
+
+    @AfterAll
+    public static void closeNeo4j() {
+        sessionFactory.close();
+    }
+
+    @Override
+    protected DAO createDAO() {
+        return neo4jDao;
+    }
+
+    @Override
+    protected void clear() {
+        sessionFactory.openSession().purgeDatabase();
+    }
+}
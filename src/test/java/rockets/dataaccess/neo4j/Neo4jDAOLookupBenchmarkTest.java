@@ -0,0 +1,92 @@
+package rockets.dataaccess.neo4j;
+
+import org.junit.jupiter.api.*;
+import org.neo4j.ogm.config.Configuration;
+import org.neo4j.ogm.drivers.embedded.driver.EmbeddedDriver;
+import org.neo4j.ogm.session.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.User;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures lookups by email and by name while the number of nodes grows. With the schema indexes
+ * in place, the average latency should stay roughly flat rather than grow with the node count.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class Neo4jDAOLookupBenchmarkTest {
+    private static final String BENCHMARK_DB = "target/test-data/benchmark-db";
+    private static final int[] NODE_COUNTS = {1_000, 8_000, 32_000};
+    private static final int LOOKUPS = 1_000;
+
+    private Logger logger = LoggerFactory.getLogger(Neo4jDAOLookupBenchmarkTest.class);
+    private SessionFactory sessionFactory;
+    private Neo4jDAO dao;
+
+    @BeforeAll
+    public void initializeNeo4j() {
+        Configuration configuration = new Configuration.Builder()
+                .uri(new File(BENCHMARK_DB).toURI().toString())
+                .build();
+        EmbeddedDriver driver = new EmbeddedDriver();
+        driver.configure(configuration);
+        sessionFactory = new SessionFactory(driver, User.class.getPackage().getName());
+        sessionFactory.openSession().purgeDatabase();
+        dao = new Neo4jDAO(sessionFactory);
+    }
+
+    @Test
+    public void lookupLatencyShouldStayFlatAsNodeCountGrows() {
+        List<Double> latencies = new ArrayList<>();
+        int stored = 0;
+        for (int count : NODE_COUNTS) {
+            List<Object> entities = new ArrayList<>();
+            for (int i = stored; i < count; i++) {
+                entities.add(new User("first", "last", "Abc12345678", "user" + i + "@example.com"));
+                entities.add(new LaunchServiceProvider("lsp_" + i, 2000, "USA"));
+            }
+            dao.createOrUpdateAll((List) entities);
+            stored = count;
+
+            double micros = averageLookupMicros(count);
+            latencies.add(micros);
+            logger.info("{} users and {} providers: {} us per lookup", count, count, String.format("%.1f", micros));
+        }
+
+        double smallest = latencies.get(0);
+        double largest = latencies.get(latencies.size() - 1);
+        assertTrue(largest < smallest * 3, "lookup latency grew from " + smallest + " to " + largest + " us");
+    }
+
+    private double averageLookupMicros(int count) {
+        Random random = new Random(count);
+        // warm up the query plans and page cache
+        for (int i = 0; i < LOOKUPS / 10; i++) {
+            dao.getUserByEmail("user" + random.nextInt(count) + "@example.com");
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            int n = random.nextInt(count);
+            assertNotNull(dao.getUserByEmail("user" + n + "@example.com"));
+            assertNotNull(dao.getLSPByName("lsp_" + n));
+        }
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) / (2.0 * LOOKUPS);
+    }
+
+    @AfterAll
+    public void closeNeo4j() {
+        sessionFactory.openSession().purgeDatabase();
+        sessionFactory.close();
+    }
+}
@@ -1,12 +1,20 @@
 package rockets.dataaccess.neo4j;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.junit.jupiter.api.*;
 import org.neo4j.ogm.config.Configuration;
 import org.neo4j.ogm.drivers.embedded.driver.EmbeddedDriver;
 import org.neo4j.ogm.session.Session;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
 import org.neo4j.ogm.session.SessionFactory;
 import rockets.dataaccess.DAO;
+import rockets.dataaccess.EntityView;
+import rockets.dataaccess.Page;
+import rockets.dataaccess.PageRequest;
+import rockets.dataaccess.event.ChangeEvent;
 import rockets.model.Launch;
 import rockets.model.LaunchServiceProvider;
 import rockets.model.Rocket;
@@ -14,8 +22,19 @@ import rockets.model.User;
 
 import java.io.File;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -24,6 +43,7 @@ public class Neo4jDAOUnitTest {
     private static final String TEST_DB = "target/test-data/test-db";
 
     private static DAO dao;
+    private static EmbeddedDriver driver;
     private static Session session;
     private static SessionFactory sessionFactory;
 
@@ -33,7 +53,7 @@ public class Neo4jDAOUnitTest {
 
     @BeforeAll
     public void initializeNeo4j() {
-        EmbeddedDriver driver = createEmbeddedDriver(TEST_DB);
+        driver = createEmbeddedDriver(TEST_DB);
 
         sessionFactory = new SessionFactory(driver, User.class.getPackage().getName());
         session = sessionFactory.openSession();
@@ -45,6 +65,7 @@ public class Neo4jDAOUnitTest {
         esa = new LaunchServiceProvider("ESA", 1970, "Europe");
         spacex = new LaunchServiceProvider("SpaceX", 2002, "USA");
         rocket = new Rocket("F9", "USA", spacex);
+        dao.openSession();
     }
 
     private static EmbeddedDriver createEmbeddedDriver(String fileDir) {
@@ -62,6 +83,50 @@ public class Neo4jDAOUnitTest {
         assertNotNull(dao);
     }
 
+    @Test
+    public void shouldBootstrapLookupIndexesOnlyOnce() {
+        SchemaReport report = ((Neo4jDAO) dao).getSchemaReport();
+        List<String> indexes = Lists.newArrayList(report.getCreated());
+        indexes.addAll(report.getExisting());
+        assertTrue(report.getFailed().isEmpty(), report.toString());
+        assertTrue(indexes.contains("CREATE CONSTRAINT ON (n:User) ASSERT n.`email` IS UNIQUE"));
+        assertTrue(indexes.contains("CREATE CONSTRAINT ON (n:Launch) ASSERT n.`naturalKey` IS UNIQUE"));
+        assertTrue(indexes.contains("CREATE INDEX ON :LaunchServiceProvider(`name`)"));
+        assertTrue(indexes.contains("CREATE INDEX ON :Rocket(`name`, `country`)"));
+        assertTrue(indexes.contains("CREATE INDEX ON :Launch(`launchDate`, `launchSite`, `orbit`)"));
+
+        SchemaReport again = new Neo4jDAO(sessionFactory).getSchemaReport();
+        assertTrue(again.getCreated().isEmpty());
+        assertEquals(indexes.size(), again.getExisting().size());
+    }
+
+    @Test
+    public void shouldMigrateLaunchDatesStoredAsStringsToEpochDays() {
+        session.query("CREATE (:Launch {naturalKey: 'legacy', launchDate: '2017-05-05', orbit: 'LEO'})",
+                Collections.emptyMap());
+
+        Neo4jDAO migrated = new Neo4jDAO(sessionFactory);
+
+        List<Launch> launches = migrated.findLaunchesBetween(LocalDate.of(2017, 1, 1), LocalDate.of(2017, 12, 31));
+        assertEquals(1, launches.size());
+        assertEquals(LocalDate.of(2017, 5, 5), launches.get(0).getLaunchDate());
+    }
+
+    @Test
+    public void shouldStartAnEmbeddedDatabaseWithTheGivenSettings() {
+        Neo4jDAO tuned = new Neo4jDAO("target/test-data/tuned-db",
+                ImmutableMap.of("dbms.memory.pagecache.size", "8m", "dbms.tx_log.rotation.size", "1M"));
+        try {
+            tuned.createOrUpdate(new LaunchServiceProvider("ESA", 1970, "Europe"));
+            assertNotNull(tuned.getLSPByName("ESA"));
+        } finally {
+            tuned.close();
+        }
+
+        assertThrows(RuntimeException.class, () -> new Neo4jDAO("target/test-data/tuned-db",
+                ImmutableMap.of("dbms.memory.pagecache.size", "lots")));
+    }
+
     @Test
     public void shouldCreateARocketSuccessfully() {
         rocket.setWikilink("https://en.wikipedia.org/wiki/Falcon_9");
@@ -194,8 +259,382 @@ public class Neo4jDAOUnitTest {
         assertEquals(1, dao.loadAll(Rocket.class).size());
     }
 
+    @Test
+    public void shouldSaveAnLSPWithAllItsRocketsAndLaunchesOnce() {
+        for (int i = 0; i < 5; i++) {
+            Rocket r = new Rocket("rocket_" + i, "USA", spacex);
+            spacex.getRockets().add(r);
+            for (int day = 1; day <= 40; day++) {
+                Launch launch = new Launch(LocalDate.of(2018, 1, 1).plusDays(day), r, "KSC", "LEO",
+                        Launch.LaunchOutcome.SUCCESSFUL);
+                // the rocket and its manufacturer are reached again through every launch
+                launch.setLaunchServiceProvider(spacex);
+                r.getLaunches().add(launch);
+            }
+        }
+
+        dao.createOrUpdate(spacex);
+
+        assertEquals(1, dao.count(LaunchServiceProvider.class, Collections.emptyMap()));
+        assertEquals(5, dao.count(Rocket.class, Collections.emptyMap()));
+        assertEquals(200, dao.count(Launch.class, Collections.emptyMap()));
+        Set<Long> launchIds = spacex.getRockets().stream().flatMap(r -> r.getLaunches().stream())
+                .map(Launch::getId).collect(Collectors.toSet());
+        assertEquals(200, launchIds.size());
+        assertEquals(200, ((Number) session.query("MATCH (:Rocket)-[p:PROVIDES]->(:Launch) RETURN count(p) AS c",
+                Collections.emptyMap()).queryResults().iterator().next().get("c")).intValue());
+    }
+
+    @Test
+    public void shouldReportSavingOneEntityInOneTransactionWhateverTheBatchSize() {
+        ((Neo4jDAO) dao).setBatchSize(2);
+        for (int i = 0; i < 3; i++) {
+            spacex.getRockets().add(new Rocket("rocket_" + i, "USA", spacex));
+        }
+        AtomicInteger commits = new AtomicInteger();
+        TransactionEventHandler<Void> counter = new TransactionEventHandler.Adapter<Void>() {
+            @Override
+            public void afterCommit(TransactionData data, Void state) {
+                if (data.createdNodes().iterator().hasNext()) {
+                    commits.incrementAndGet();
+                }
+            }
+        };
+        driver.getGraphDatabaseService().registerTransactionEventHandler(counter);
+        List<ChangeEvent> events = new ArrayList<>();
+        try {
+            dao.createOrUpdate(spacex, events::add);
+        } finally {
+            driver.getGraphDatabaseService().unregisterTransactionEventHandler(counter);
+        }
+
+        assertEquals(1, commits.get());
+        assertEquals(1 + 3, events.size());
+        assertTrue(events.stream().allMatch(event -> ChangeEvent.Type.CREATED == event.getType()));
+    }
+
+    @Test
+    public void shouldDeleteWhereInChunksOfTheBatchSize() {
+        ((Neo4jDAO) dao).setBatchSize(2);
+        for (int i = 0; i < 7; i++) {
+            dao.createOrUpdate(new Rocket("rocket_" + i, "USA", spacex));
+        }
+
+        assertEquals(7 + 1, dao.deleteWhere(LaunchServiceProvider.class, ImmutableMap.of("name", "SpaceX"), true));
+
+        assertEquals(0, dao.count(Rocket.class, Collections.emptyMap()));
+        assertEquals(0, dao.count(LaunchServiceProvider.class, Collections.emptyMap()));
+    }
+
+    @Test
+    public void shouldCreateOrUpdateAllInBatchesWithoutDuplicates() {
+        ((Neo4jDAO) dao).setBatchSize(2);
+        List<Rocket> rockets = Lists.newArrayList(
+                new Rocket("Ariane4", "France", esa),
+                new Rocket("Ariane5", "France", esa),
+                new Rocket("F9", "USA", spacex),
+                new Rocket("BFR", "USA", spacex)
+        );
+        for (Rocket r : rockets) {
+            Launch launch = new Launch(LocalDate.of(2018, 2, 6), r, "KSC", "LEO", Launch.LaunchOutcome.SUCCESSFUL);
+            r.getLaunches().add(launch);
+        }
+
+        dao.createOrUpdateAll(rockets);
+        rockets.forEach(r -> assertNotNull(r.getId()));
+        assertEquals(4, dao.loadAll(Rocket.class).size());
+        assertEquals(2, dao.loadAll(LaunchServiceProvider.class).size());
+        assertEquals(4, dao.loadAll(Launch.class).size());
+
+        LaunchServiceProvider esaCopy = new LaunchServiceProvider("ESA", 1970, "Europe");
+        List<Rocket> copies = Lists.newArrayList(
+                new Rocket("Ariane4", "France", esaCopy),
+                new Rocket("Ariane6", "France", esaCopy),
+                new Rocket("Ariane6", "France", new LaunchServiceProvider("ESA", 1970, "Europe"))
+        );
+        dao.createOrUpdateAll(copies);
+        assertEquals(rockets.get(0).getId(), copies.get(0).getId());
+        assertEquals(copies.get(1).getId(), copies.get(2).getId());
+        assertEquals(5, dao.loadAll(Rocket.class).size());
+        assertEquals(2, dao.loadAll(LaunchServiceProvider.class).size());
+    }
+
+    @Test
+    public void shouldServeConcurrentRequestsWithThreadBoundSessions() throws Exception {
+        int threads = 8;
+        int rocketsPerThread = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = Lists.newArrayList();
+        for (int t = 0; t < threads; t++) {
+            String lspName = "LSP_" + t;
+            futures.add(executor.submit(() -> {
+                LaunchServiceProvider lsp = new LaunchServiceProvider(lspName, 2000, "USA");
+                for (int i = 0; i < rocketsPerThread; i++) {
+                    dao.openSession();
+                    try {
+                        Rocket r = dao.createOrUpdate(new Rocket(lspName + "_rocket_" + i, "USA", lsp));
+                        assertEquals(r, dao.load(Rocket.class, r.getId()));
+                        assertNotNull(dao.getLSPByName(lspName));
+                        assertFalse(dao.loadAll(Rocket.class).isEmpty());
+                    } finally {
+                        dao.closeSession();
+                    }
+                }
+                return null;
+            }));
+        }
+        executor.shutdown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+
+        assertEquals(threads * rocketsPerThread, dao.loadAll(Rocket.class).size());
+        assertEquals(threads, dao.loadAll(LaunchServiceProvider.class).size());
+    }
+
+    @Test
+    public void shouldMergeLaunchesThatAreEqualOnTheirNaturalKey() {
+        LocalDate date = LocalDate.of(2018, 2, 6);
+        Launch launch = new Launch(date, rocket, "LC-39A", "GTO", Launch.LaunchOutcome.SUCCESSFUL);
+        launch.setLaunchServiceProvider(spacex);
+        dao.createOrUpdate(launch);
+
+        Launch sameLaunch = new Launch(date, new Rocket("F9", "USA", spacex), "SLC-40", "GTO",
+                Launch.LaunchOutcome.SUCCESSFUL);
+        sameLaunch.setLaunchServiceProvider(spacex);
+        dao.createOrUpdate(sameLaunch);
+
+        assertEquals(launch.getId(), sameLaunch.getId());
+        Collection<Launch> launches = dao.loadAll(Launch.class);
+        assertEquals(1, launches.size());
+        assertEquals("SLC-40", launches.iterator().next().getLaunchSite());
+        assertEquals(1, dao.loadAll(Rocket.class).size());
+        assertEquals(1, dao.loadAll(LaunchServiceProvider.class).size());
+    }
+
+    @Test
+    public void shouldNotKeepIdsAssignedInAFailedTransaction() {
+        User jane = new User("Jane", "Doe", "Abc12345678", "jane@example.com");
+        User john = new User("John", "Doe", "Abc12345678", "john@example.com");
+        dao.createOrUpdateAll(Lists.newArrayList(jane, john));
+        // taking another user's email violates the unique natural key
+        john.setEmail("jane@example.com");
+        User fresh = new User("Joan", "Doe", "Abc12345678", "joan@example.com");
+
+        assertThrows(RuntimeException.class, () -> dao.createOrUpdateAll(Lists.newArrayList(fresh, john)));
+        assertNull(fresh.getId());
+        assertNull(dao.getUserByEmail("joan@example.com"));
+
+        john.setEmail("john@example.com");
+        dao.createOrUpdate(fresh);
+        assertNotNull(fresh.getId());
+        assertEquals(fresh.getId(), dao.getUserByEmail("joan@example.com").getId());
+        assertEquals(john.getId(), dao.getUserByEmail("john@example.com").getId());
+    }
+
+    @Test
+    public void shouldNotInsertTheSameEntityTwiceFromConcurrentWriters() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Rocket>> futures = Lists.newArrayList();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> dao.createOrUpdate(
+                    new Rocket("Falcon Heavy", "USA", new LaunchServiceProvider("SpaceX", 2002, "USA")))));
+        }
+        executor.shutdown();
+        Set<Long> ids = Sets.newHashSet();
+        for (Future<Rocket> future : futures) {
+            ids.add(future.get(2, TimeUnit.MINUTES).getId());
+        }
+
+        assertEquals(1, ids.size());
+        assertEquals(1, dao.loadAll(Rocket.class).size());
+        assertEquals(1, dao.loadAll(LaunchServiceProvider.class).size());
+    }
+
+    @Test
+    public void shouldPageThroughRocketsForwardsAndBackwards() {
+        List<String> names = Lists.newArrayList("A", "B", "C", "D", "E");
+        for (String name : Lists.reverse(names)) {
+            dao.createOrUpdate(new Rocket(name, "USA", spacex));
+        }
+
+        Page<Rocket> first = dao.loadPage(Rocket.class, PageRequest.first("name", 2));
+        assertEquals(Lists.newArrayList("A", "B"), rocketNames(first));
+        assertFalse(first.hasPrevious());
+
+        Page<Rocket> second = dao.loadPage(Rocket.class, new PageRequest("name", 2, first.getNextCursor()));
+        assertEquals(Lists.newArrayList("C", "D"), rocketNames(second));
+
+        Page<Rocket> last = dao.loadPage(Rocket.class, new PageRequest("name", 2, second.getNextCursor()));
+        assertEquals(Lists.newArrayList("E"), rocketNames(last));
+        assertFalse(last.hasNext());
+
+        Page<Rocket> back = dao.loadPage(Rocket.class, new PageRequest("name", 2, last.getPreviousCursor()));
+        assertEquals(Lists.newArrayList("C", "D"), rocketNames(back));
+        back = dao.loadPage(Rocket.class, new PageRequest("name", 2, back.getPreviousCursor()));
+        assertEquals(Lists.newArrayList("A", "B"), rocketNames(back));
+        assertFalse(back.hasPrevious());
+        assertTrue(back.hasNext());
+    }
+
+    @Test
+    public void shouldRejectPagingOnUnknownOrAssociationProperties() {
+        assertThrows(IllegalArgumentException.class,
+                () -> dao.loadPage(Rocket.class, PageRequest.first("name) DETACH DELETE n //", 2)));
+        assertThrows(IllegalArgumentException.class,
+                () -> dao.loadPage(Rocket.class, PageRequest.first("manufacturer", 2)));
+    }
+
+    @Test
+    public void shouldReturnTheLatestLaunchesNewestFirstWithTiesByAscendingId() {
+        LocalDate today = LocalDate.now();
+        List<Launch> launches = saveLaunches(today.minusDays(100), today.minusDays(10), today.minusDays(10),
+                today.minusDays(300), today.minusDays(5));
+
+        List<Launch> latest = dao.latestLaunches(4);
+
+        List<Launch> expected = launches.stream()
+                .sorted(Comparator.comparing(Launch::getLaunchDate).reversed().thenComparing(Launch::getId))
+                .limit(4).collect(Collectors.toList());
+        assertEquals(expected.stream().map(Launch::getId).collect(Collectors.toList()),
+                latest.stream().map(Launch::getId).collect(Collectors.toList()));
+        assertEquals(Collections.emptyList(), dao.latestLaunches(0));
+    }
+
+    @Test
+    public void shouldWidenTheWindowUntilItHoldsEnoughLaunches() {
+        LocalDate today = LocalDate.now();
+        // one launch inside the first year-long window, the others years and decades before it
+        List<Launch> launches = saveLaunches(today.minusDays(30), today.minusYears(3), today.minusYears(12),
+                LocalDate.of(1957, 10, 4));
+
+        assertEquals(dates(launches.subList(0, 1)), dates(dao.latestLaunches(1)));
+        assertEquals(dates(launches.subList(0, 3)), dates(dao.latestLaunches(3)));
+        assertEquals(dates(launches), dates(dao.latestLaunches(10)));
+    }
+
+    @Test
+    public void shouldLeaveLaunchesWithoutADateOutOfTheLatest() {
+        LocalDate today = LocalDate.now();
+        List<Launch> launches = saveLaunches(today.minusDays(30), today.minusYears(2));
+        session.query("CREATE (:Launch {orbit: 'LEO'})", Collections.emptyMap());
+
+        assertEquals(dates(launches), dates(dao.latestLaunches(3)));
+        assertEquals(3, dao.count(Launch.class, Collections.emptyMap()));
+    }
+
+    // saves a launch for each date, each of a rocket of its own so that none merge
+    private List<Launch> saveLaunches(LocalDate... dates) {
+        List<Launch> launches = Lists.newArrayList();
+        for (int i = 0; i < dates.length; i++) {
+            Rocket r = new Rocket("rocket_" + i, "USA", spacex);
+            Launch launch = new Launch(dates[i], r, "KSC", "LEO", Launch.LaunchOutcome.SUCCESSFUL);
+            launch.setLaunchServiceProvider(spacex);
+            r.getLaunches().add(launch);
+            launches.add(launch);
+        }
+        dao.createOrUpdateAll(launches);
+        return launches;
+    }
+
+    private static List<LocalDate> dates(List<Launch> launches) {
+        return launches.stream().map(Launch::getLaunchDate).collect(Collectors.toList());
+    }
+
+    @Test
+    public void shouldLoadEntitiesByIdsInTheCallersOrder() {
+        Rocket a = dao.createOrUpdate(new Rocket("A", "USA", spacex));
+        Rocket b = dao.createOrUpdate(new Rocket("B", "USA", spacex));
+        Rocket c = dao.createOrUpdate(new Rocket("C", "USA", spacex));
+
+        List<Rocket> loaded = dao.loadAll(Rocket.class,
+                Lists.newArrayList(c.getId(), spacex.getId(), a.getId(), b.getId()));
+
+        assertEquals(Lists.newArrayList(c, a, b), loaded);
+        assertEquals(spacex, loaded.get(0).getManufacturer());
+        assertTrue(dao.loadAll(Rocket.class, Lists.newArrayList()).isEmpty());
+    }
+
+    @Test
+    public void shouldStreamAllEntitiesInBatchesOfTheFetchSize() {
+        List<Rocket> rockets = Lists.newArrayList();
+        for (int i = 0; i < 5; i++) {
+            rockets.add(dao.createOrUpdate(new Rocket("rocket_" + i, "USA", spacex)));
+        }
+
+        Neo4jDAO neo4jDAO = (Neo4jDAO) dao;
+        int fetchSize = neo4jDAO.getFetchSize();
+        neo4jDAO.setFetchSize(2);
+        try (Stream<Rocket> stream = dao.stream(Rocket.class)) {
+            List<Rocket> streamed = stream.collect(Collectors.toList());
+            rockets.sort(Comparator.comparing(Rocket::getId));
+            assertEquals(rockets, streamed);
+            assertTrue(streamed.stream().allMatch(r -> spacex.equals(r.getManufacturer())));
+        } finally {
+            neo4jDAO.setFetchSize(fetchSize);
+        }
+        assertThrows(IllegalArgumentException.class, () -> neo4jDAO.setFetchSize(0));
+        try (Stream<Launch> stream = dao.stream(Launch.class)) {
+            assertEquals(0, stream.count());
+        }
+    }
+
+    @Test
+    public void shouldCountAndCheckExistenceWithoutLoading() {
+        dao.createOrUpdate(new Rocket("F9", "USA", spacex));
+        dao.createOrUpdate(new Rocket("FH", "USA", spacex));
+        dao.createOrUpdate(new Rocket("Ariane5", "France", esa));
+
+        assertEquals(3, dao.count(Rocket.class, Collections.emptyMap()));
+        assertEquals(2, dao.count(Rocket.class, ImmutableMap.of("country", "USA")));
+        assertEquals(1, dao.count(Rocket.class, ImmutableMap.of("country", "USA", "name", "FH")));
+        assertEquals(2, dao.count(LaunchServiceProvider.class, Collections.emptyMap()));
+        assertEquals(1, dao.count(LaunchServiceProvider.class, ImmutableMap.of("yearFounded", 1970)));
+        assertEquals(0, dao.count(Launch.class, Collections.emptyMap()));
+
+        assertTrue(dao.exists(LaunchServiceProvider.class, ImmutableMap.of("name", "SpaceX")));
+        assertFalse(dao.exists(LaunchServiceProvider.class, ImmutableMap.of("name", "ULA")));
+        assertTrue(dao.exists(Rocket.class, Collections.singletonMap("massToLEO", null)));
+        assertThrows(IllegalArgumentException.class,
+                () -> dao.count(Rocket.class, ImmutableMap.of("manufacturer", spacex)));
+    }
+
+    @Test
+    public void shouldPageThroughProjectedViewsOfRockets() {
+        for (String name : Lists.newArrayList("C", "A", "B")) {
+            dao.createOrUpdate(new Rocket(name, "USA", spacex));
+        }
+
+        Page<EntityView> first = dao.loadPageView(Rocket.class, PageRequest.first("name", 2), "name");
+        assertEquals(Lists.newArrayList("A", "B"), viewNames(first));
+        assertNotNull(first.getItems().get(0).getId());
+        assertThrows(IllegalArgumentException.class, () -> first.getItems().get(0).get("country"));
+
+        Page<EntityView> second = dao.loadPageView(Rocket.class,
+                new PageRequest("name", 2, first.getNextCursor()), "name");
+        assertEquals(Lists.newArrayList("C"), viewNames(second));
+        assertFalse(second.hasNext());
+
+        Page<EntityView> back = dao.loadPageView(Rocket.class,
+                new PageRequest("name", 2, second.getPreviousCursor()), "name");
+        assertEquals(Lists.newArrayList("A", "B"), viewNames(back));
+        assertEquals(Rocket.class, back.getItems().get(1).getType());
+    }
+
+    private static List<Object> viewNames(Page<EntityView> page) {
+        return page.getItems().stream().map(view -> view.get("name")).collect(Collectors.toList());
+    }
+
+    private static List<String> rocketNames(Page<Rocket> page) {
+        return page.getItems().stream().map(Rocket::getName).collect(Collectors.toList());
+    }
+
     @AfterEach
     public void tearDown() {
+        // tests that change the batch size must not leak it into the others
+        ((Neo4jDAO) dao).setBatchSize(500);
+        dao.closeSession();
         session.purgeDatabase();
     }
 
@@ -0,0 +1,160 @@
+package rockets.export;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import rockets.dataaccess.DAO;
+import rockets.dataaccess.memory.InMemoryDAO;
+import rockets.model.Entity;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+public class ExporterUnitTest {
+    private DAO dao;
+    private Exporter exporter;
+    private LaunchServiceProvider lsp;
+    private Rocket rocket;
+    private Launch launch;
+
+    @BeforeEach
+    public void setUp() {
+        dao = spy(new InMemoryDAO());
+        exporter = new Exporter(dao);
+
+        lsp = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        rocket = new Rocket("Falcon 9", "USA", lsp);
+        launch = new Launch(LocalDate.of(2018, 2, 6), rocket, "LC-39A", "HEO", Launch.LaunchOutcome.SUCCESSFUL);
+        launch.setLaunchServiceProvider(lsp);
+        launch.setPrice(new BigDecimal("90000000.50"));
+        launch.setPayload(new LinkedHashSet<>(Arrays.asList("Tesla Roadster", "Starman, the \"driver\"")));
+        rocket.getLaunches().add(launch);
+        lsp.getRockets().add(rocket);
+        dao.createOrUpdate(launch);
+    }
+
+    @Test
+    public void shouldWriteOneJsonObjectPerLine() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExportReport report = exporter.export(Exporter.classes(null), ExportFormat.NDJSON, false, out);
+
+        List<JsonNode> records = new ArrayList<>();
+        ObjectMapper mapper = new ObjectMapper().enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+        for (String line : lines(new ByteArrayInputStream(out.toByteArray()))) {
+            records.add(mapper.readTree(line));
+        }
+        assertEquals(Arrays.asList("LaunchServiceProvider", "Rocket", "Launch"),
+                records.stream().map(record -> record.get("type").asText()).collect(Collectors.toList()));
+
+        JsonNode launchRecord = records.get(2);
+        assertEquals(launch.getId().longValue(), launchRecord.get("id").asLong());
+        assertEquals("2018-02-06", launchRecord.get("launchDate").asText());
+        assertEquals(rocket.getId().longValue(), launchRecord.get("launchVehicle").asLong());
+        assertEquals(lsp.getId().longValue(), launchRecord.get("launchServiceProvider").asLong());
+        assertEquals(0, new BigDecimal("90000000.50").compareTo(launchRecord.get("price").decimalValue()));
+        assertEquals("Starman, the \"driver\"", launchRecord.get("payload").get(1).asText());
+        assertTrue(launchRecord.get("function").isNull());
+        assertEquals(2002, records.get(0).get("yearFounded").asInt());
+
+        assertEquals(3, report.getRecordCount());
+        assertEquals(out.size(), report.getBytes());
+    }
+
+    @Test
+    public void shouldWriteAHeaderAndOneRowPerEntityAsCsv() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.export(Exporter.classes("launches"), ExportFormat.CSV, false, out);
+
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(out.toByteArray()), StandardCharsets.UTF_8)) {
+            List<CSVRecord> rows = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader).getRecords();
+            assertEquals(1, rows.size());
+            CSVRecord row = rows.get(0);
+            assertEquals(launch.getId().toString(), row.get("id"));
+            assertEquals(rocket.getId().toString(), row.get("launchVehicle"));
+            assertEquals("SUCCESSFUL", row.get("launchOutcome"));
+            assertEquals("Tesla Roadster;Starman, the \"driver\"", row.get("payload"));
+            assertEquals("", row.get("function"));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ExportFormat.class)
+    public void shouldWriteACompleteGzipStream(ExportFormat format) throws IOException {
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        exporter.export(Exporter.classes("rockets"), format, false, plain);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ExportReport report = exporter.export(Exporter.classes("rockets"), format, true, compressed);
+
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+            assertEquals(lines(new ByteArrayInputStream(plain.toByteArray())), lines(in));
+        }
+        assertEquals(compressed.size(), report.getBytes());
+    }
+
+    @Test
+    public void shouldStreamEntitiesInsteadOfLoadingThemAll() throws IOException {
+        ExportReport report = exporter.export(Exporter.classes(null), ExportFormat.NDJSON, false,
+                new ByteArrayOutputStream());
+
+        verify(dao).stream(LaunchServiceProvider.class);
+        verify(dao).stream(Rocket.class);
+        verify(dao).stream(Launch.class);
+        verify(dao, never()).loadAll(any(Class.class));
+        verify(dao, never()).loadAll(any(Class.class), anyCollection());
+
+        Map<Class<? extends Entity>, Long> records = new LinkedHashMap<>();
+        records.put(LaunchServiceProvider.class, 1L);
+        records.put(Rocket.class, 1L);
+        records.put(Launch.class, 1L);
+        assertEquals(records, report.getRecords());
+        assertTrue(report.toString().startsWith("exported 3 records (LaunchServiceProvider 1, Rocket 1, Launch 1)"));
+    }
+
+    @Test
+    public void shouldRejectSeveralClassesInOneCsvExport() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThrows(IllegalArgumentException.class,
+                () -> exporter.export(Exporter.classes(null), ExportFormat.CSV, false, out));
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    public void shouldRejectUnknownTypes() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> Exporter.classes("users"));
+        assertEquals("Unknown export type: users", exception.getMessage());
+    }
+
+    private static List<String> lines(InputStream in) throws IOException {
+        List<String> lines = new ArrayList<>();
+        Scanner scanner = new Scanner(in, StandardCharsets.UTF_8.name()).useDelimiter("\r?\n");
+        while (scanner.hasNext()) {
+            lines.add(scanner.next());
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,141 @@
+package rockets.mining;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.neo4j.ogm.config.Configuration;
+import org.neo4j.ogm.drivers.embedded.driver.EmbeddedDriver;
+import org.neo4j.ogm.session.SessionFactory;
+import rockets.dataaccess.neo4j.Neo4jDAO;
+import rockets.model.Entity;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+import rockets.model.User;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static rockets.model.Launch.LaunchOutcome.FAILED;
+import static rockets.model.Launch.LaunchOutcome.SUCCESSFUL;
+
+/**
+ * Runs both miners against the same embedded database, whose launches are chosen so that the
+ * rankings have no ties other than the providers without failures.
+ */
+public class AggregatingRocketMinerUnitTest {
+    private static final String TEST_DB = "target/test-data/miner-db";
+
+    private static SessionFactory sessionFactory;
+    private static RocketMiner expected;
+    private static AggregatingRocketMiner miner;
+
+    @BeforeAll
+    public static void setUp() {
+        Configuration configuration = new Configuration.Builder()
+                .uri(new File(TEST_DB).toURI().toString())
+                .build();
+        EmbeddedDriver driver = new EmbeddedDriver();
+        driver.configure(configuration);
+        sessionFactory = new SessionFactory(driver, User.class.getPackage().getName());
+        sessionFactory.openSession().purgeDatabase();
+        Neo4jDAO dao = new Neo4jDAO(sessionFactory);
+        expected = new RocketMiner(dao);
+        miner = new AggregatingRocketMiner(dao);
+
+        List<LaunchServiceProvider> lsps = Arrays.asList(
+                new LaunchServiceProvider("ULA", 1990, "USA"),
+                new LaunchServiceProvider("Roscosmos", 1992, "Russia"),
+                new LaunchServiceProvider("ESA", 1975, "Europe"));
+        List<Rocket> rockets = Arrays.asList(
+                new Rocket("Atlas V", "USA", lsps.get(0)),
+                new Rocket("Soyuz", "Russia", lsps.get(1)),
+                new Rocket("Ariane 5", "Europe", lsps.get(2)),
+                new Rocket("Delta IV", "USA", lsps.get(0)));
+
+        // 4, 3, 2 and 1 launches per rocket; only ESA ever fails
+        int[] rocketIndex = {0, 0, 0, 0, 1, 1, 1, 2, 2, 3};
+        LocalDate[] dates = {LocalDate.of(2017, 1, 10), LocalDate.of(2017, 3, 5), LocalDate.of(2018, 2, 1),
+                LocalDate.of(2018, 7, 7), LocalDate.of(2017, 5, 5), LocalDate.of(2018, 4, 4),
+                LocalDate.of(2018, 9, 9), LocalDate.of(2017, 8, 8), LocalDate.of(2018, 10, 10),
+                LocalDate.of(2018, 12, 12)};
+        String[] orbits = {"LEO", "LEO", "GTO", "LEO", "LEO", "LEO", "GTO", "LEO", "LEO", "GTO"};
+        Launch.LaunchOutcome[] outcomes = {SUCCESSFUL, SUCCESSFUL, SUCCESSFUL, SUCCESSFUL, SUCCESSFUL,
+                SUCCESSFUL, SUCCESSFUL, FAILED, SUCCESSFUL, SUCCESSFUL};
+        long[] prices = {1000, 9000, 12000, 3000, 20000, 7000, 15000, 4000, 11000, 5000};
+
+        List<Launch> launches = IntStream.range(0, 10).mapToObj(i -> {
+            Rocket rocket = rockets.get(rocketIndex[i]);
+            Launch launch = new Launch(dates[i], rocket, "site", orbits[i], outcomes[i]);
+            launch.setLaunchServiceProvider(rocket.getManufacturer());
+            launch.setPrice(BigDecimal.valueOf(prices[i]));
+            rocket.getLaunches().add(launch);
+            rocket.getManufacturer().getRockets().add(rocket);
+            return launch;
+        }).collect(Collectors.toList());
+        dao.createOrUpdateAll(launches);
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        sessionFactory.openSession().purgeDatabase();
+        sessionFactory.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 4})
+    public void shouldFindTheSameMostLaunchedRockets(int k) {
+        assertEquals(ids(expected.mostLaunchedRockets(k)), ids(miner.mostLaunchedRockets(k)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 3, 10})
+    public void shouldFindTheSameMostRecentLaunches(int k) {
+        assertEquals(ids(expected.mostRecentLaunches(k)), ids(miner.mostRecentLaunches(k)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 3, 10})
+    public void shouldFindTheSameMostExpensiveLaunches(int k) {
+        assertEquals(ids(expected.mostExpensiveLaunches(k)), ids(miner.mostExpensiveLaunches(k)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {2017, 2018})
+    public void shouldFindTheSameHighestRevenueLaunchServiceProviders(int year) {
+        assertEquals(ids(expected.highestRevenueLaunchServiceProviders(3, year)),
+                ids(miner.highestRevenueLaunchServiceProviders(3, year)));
+    }
+
+    @Test
+    public void shouldFindTheSameDominantCountry() {
+        assertEquals(expected.dominantCountry("LEO"), miner.dominantCountry("LEO"));
+        assertEquals(expected.dominantCountry("GTO"), miner.dominantCountry("GTO"));
+        // an orbit without successful launches has no dominant country
+        assertNull(expected.dominantCountry("GEO"));
+        assertNull(miner.dominantCountry("GEO"));
+    }
+
+    @Test
+    public void shouldRankTheSameMostReliableLaunchServiceProvidersUpToTies() {
+        List<Long> expectedIds = ids(expected.mostReliableLaunchServiceProviders(3));
+        List<Long> minedIds = ids(miner.mostReliableLaunchServiceProviders(3));
+
+        // ULA and Roscosmos never failed, so only their order is left to hash order
+        assertEquals(new HashSet<>(expectedIds.subList(0, 2)), new HashSet<>(minedIds.subList(0, 2)));
+        assertEquals(expectedIds.get(2), minedIds.get(2));
+    }
+
+    // the miners load the entities through different queries, hydrated to different depths
+    private static List<Long> ids(List<? extends Entity> entities) {
+        return entities.stream().map(Entity::getId).collect(Collectors.toList());
+    }
+}
@@ -7,6 +7,7 @@ import org.junit.jupiter.params.provider.ValueSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rockets.dataaccess.DAO;
+import rockets.dataaccess.memory.InMemoryDAO;
 import rockets.dataaccess.neo4j.Neo4jDAO;
 import rockets.model.Launch;
 import rockets.model.LaunchServiceProvider;
@@ -19,6 +20,7 @@ import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 import static rockets.model.Launch.LaunchOutcome.FAILED;
 import static rockets.model.Launch.LaunchOutcome.SUCCESSFUL;
@@ -80,6 +82,7 @@ public class RocketMinerUnitTest {
         launches = IntStream.range(0, 10).mapToObj(i -> {
             logger.info("create " + i + " launch in month: " + months[i]);
             Launch l = new Launch();
+            l.setId((long) i);
             l.setLaunchDate(LocalDate.of(2017, months[i], 1));
             l.setLaunchVehicle(rockets.get(rocketIndex[i]));
             l.setLaunchSite("VAFB");
@@ -98,7 +101,7 @@ public class RocketMinerUnitTest {
     @ParameterizedTest
     @ValueSource(ints = {1, 2, 3})
     public void shouldReturnTopMostLaunchedRockets(int k) {
-        when(dao.loadAll(Launch.class)).thenReturn(launches);
+        when(dao.stream(Launch.class)).thenAnswer(invocation -> launches.stream());
 
         Collection<Launch> newLaunches = launches;
         Collection<Rocket> rockets = new ArrayList<>();
@@ -134,7 +137,7 @@ public class RocketMinerUnitTest {
     @ParameterizedTest
     @ValueSource(ints = {1, 2, 3})
     public void shouldReturnTopMostReliableLaunchServiceProviders(int k) {
-        when(dao.loadAll(Launch.class)).thenReturn(launches);
+        when(dao.stream(Launch.class)).thenAnswer(invocation -> launches.stream());
         Collection<Launch> newLaunches = launches;
         Collection<LaunchServiceProvider> success = new ArrayList<>();
         Collection<LaunchServiceProvider> failed = new ArrayList<>();
@@ -190,7 +193,7 @@ public class RocketMinerUnitTest {
     @ParameterizedTest
     @ValueSource(strings = {"LEO"})
     public void shouldReturnTopDominantCountries(String orbit) {
-        when(dao.loadAll(Launch.class)).thenReturn(launches);
+        when(dao.stream(Launch.class)).thenAnswer(invocation -> launches.stream());
         Collection<Launch> newLaunches = launches;
         Collection<Rocket> roc = new ArrayList<>();
         for (Launch l : newLaunches) {
@@ -221,7 +224,7 @@ public class RocketMinerUnitTest {
     @ParameterizedTest
     @ValueSource(ints = {1, 2, 3})
     public void shouldReturnHighestRevenueLaunchServiceProvidersWithFixedYear(int k) {
-        when(dao.loadAll(Launch.class)).thenReturn(launches);
+        stubLaunchesBetween();
 
         int year = 2017;
         Collection<Launch> newLaunches = launches;
@@ -256,7 +259,7 @@ public class RocketMinerUnitTest {
     @ParameterizedTest
     @ValueSource(ints = {2017})
     public void shouldReturnHighestRevenueLaunchServiceProvidersWithFixedK(int year) {
-        when(dao.loadAll(Launch.class)).thenReturn(launches);
+        stubLaunchesBetween();
 
         int k = 3;
         Collection<Launch> newLaunches = launches;
@@ -291,22 +294,49 @@ public class RocketMinerUnitTest {
     @ParameterizedTest
     @ValueSource(ints = {1, 2, 3})
     public void shouldReturnTopMostRecentLaunches(int k) {
-        when(dao.loadAll(Launch.class)).thenReturn(launches);
         List<Launch> sortedLaunches = new ArrayList<>(launches);
         sortedLaunches.sort((a, b) -> -a.getLaunchDate().compareTo(b.getLaunchDate()));
+        when(dao.latestLaunches(k)).thenReturn(new ArrayList<>(sortedLaunches.subList(0, k)));
         List<Launch> loadedLaunches = miner.mostRecentLaunches(k);
         assertEquals(k, loadedLaunches.size());
         assertEquals(sortedLaunches.subList(0, k), loadedLaunches);
+        verify(dao, never()).stream(Launch.class);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 3, 10, 11})
+    public void shouldReturnMostRecentLaunchesFromAStore(int k) {
+        InMemoryDAO store = new InMemoryDAO();
+        store.createOrUpdateAll(launches);
+        List<LocalDate> dates = launches.stream().map(Launch::getLaunchDate)
+                .sorted(Comparator.reverseOrder()).limit(k).collect(Collectors.toList());
+
+        List<Launch> loadedLaunches = new RocketMiner(store).mostRecentLaunches(k);
+
+        assertEquals(dates, loadedLaunches.stream().map(Launch::getLaunchDate).collect(Collectors.toList()));
+        assertTrue(launches.containsAll(loadedLaunches));
     }
 
     @ParameterizedTest
     @ValueSource(ints = {1, 2, 3})
     public void shouldReturnTopMostExpensiveLaunches(int k) {
-        when(dao.loadAll(Launch.class)).thenReturn(launches);
+        when(dao.stream(Launch.class)).thenAnswer(invocation -> launches.stream());
         List<Launch> sortedLaunches = new ArrayList<>(launches);
         sortedLaunches.sort((a, b) -> -a.getPrice().compareTo(b.getPrice()));
         List<Launch> loadedLaunches = miner.mostExpensiveLaunches(k);
         assertEquals(k, loadedLaunches.size());
         assertEquals(sortedLaunches.subList(0, k), loadedLaunches);
     }
-}
\ No newline at end of file
+
+    // answers range queries like the DAOs do, in date order
+    private void stubLaunchesBetween() {
+        when(dao.findLaunchesBetween(any(LocalDate.class), any(LocalDate.class))).thenAnswer(invocation -> {
+            LocalDate from = (LocalDate) invocation.getArguments()[0];
+            LocalDate to = (LocalDate) invocation.getArguments()[1];
+            return launches.stream()
+                    .filter(l -> !l.getLaunchDate().isBefore(from) && !l.getLaunchDate().isAfter(to))
+                    .sorted(Comparator.comparing(Launch::getLaunchDate))
+                    .collect(Collectors.toList());
+        });
+    }
+}
@@ -43,6 +43,28 @@ public class RocketUnitTest {
 //        assertThrows(NullPointerException.class, () -> new Rocket(name, country, null));
 //    }
 
+    @Test
+    public void shouldHaveSameNaturalKeyExactlyWhenEqual() {
+        LaunchServiceProvider spacex = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        Rocket bfr = new Rocket("BFR", "USA", spacex);
+        Rocket sameBfr = new Rocket("BFR", "USA", new LaunchServiceProvider("SpaceX", 2002, "USA"));
+        Rocket otherBfr = new Rocket("BFR", "USA", new LaunchServiceProvider("SpaceX", 2003, "USA"));
+
+        assertEquals(bfr, sameBfr);
+        assertEquals(bfr.getNaturalKey(), sameBfr.getNaturalKey());
+        assertNotEquals(bfr, otherBfr);
+        assertNotEquals(bfr.getNaturalKey(), otherBfr.getNaturalKey());
+    }
+
+    @Test
+    public void shouldEscapeSeparatorsInNaturalKey() {
+        LaunchServiceProvider spacex = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        Rocket rocket = new Rocket("A|B", "C", spacex);
+        Rocket other = new Rocket("A", "B|C", spacex);
+
+        assertNotEquals(rocket.getNaturalKey(), other.getNaturalKey());
+    }
+
     @DisplayName("should throw exception when given null name to constructor")
     @Test
     public void shouldThrowExceptionWhenNoNameGiven() {
@@ -9,6 +9,7 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import rockets.dataaccess.DAO;
+import rockets.dataaccess.PageRequest;
 import rockets.dataaccess.neo4j.Neo4jDAO;
 import rockets.model.Launch;
 import rockets.model.LaunchServiceProvider;
@@ -300,6 +301,49 @@ public class AppSystemTest {
 //        JWebUnit.assertTextNotPresent("Welcome back: John Doe!");
 //    }
 
+    @Test
+    public void shouldPageThroughRocketListing() {
+        List<Rocket> listed = IntStream.range(0, PageRequest.DEFAULT_SIZE + 1)
+                .mapToObj(i -> new Rocket(String.format("paged_%02d", i), "USA", lsps.get(0)))
+                .collect(Collectors.toList());
+        dao.createOrUpdateAll(listed);
+
+        JWebUnit.beginAt("/rockets");
+        JWebUnit.assertTextPresent("Rocket Listing Page");
+        JWebUnit.assertLinkNotPresentWithExactText("Previous");
+        JWebUnit.clickLinkWithExactText("Next");
+        JWebUnit.assertLinkPresentWithExactText("Previous");
+        JWebUnit.assertLinkPresentWithExactText("paged_20");
+        JWebUnit.clickLinkWithExactText("Previous");
+        JWebUnit.assertLinkPresentWithExactText("paged_00");
+    }
+
+    @Test
+    public void shouldShowLaunchCountsOfRocketsOnLSPPage() {
+        LaunchServiceProvider arianespace = new LaunchServiceProvider("Arianespace", 1980, "France");
+        Rocket ariane5 = new Rocket("Ariane 5", "France", arianespace);
+        Rocket vega = new Rocket("Vega", "France", arianespace);
+        for (int month = 1; month <= 3; month++) {
+            ariane5.getLaunches().add(new Launch(LocalDate.of(2018, month, 1), ariane5, "Kourou", "GTO",
+                    Launch.LaunchOutcome.SUCCESSFUL));
+        }
+        arianespace.getRockets().add(ariane5);
+        arianespace.getRockets().add(vega);
+        dao.createOrUpdate(arianespace);
+
+        JWebUnit.beginAt("/lsp/" + arianespace.getId());
+        JWebUnit.assertTextPresent("Ariane 5: 3 launches");
+        JWebUnit.assertTextPresent("Vega: 0 launches");
+    }
+
+    @Test
+    public void shouldShowEntityTotalsInBasePage() {
+        long lsps = dao.count(LaunchServiceProvider.class, Collections.emptyMap());
+        JWebUnit.beginAt("/");
+        JWebUnit.assertElementPresent("stats");
+        JWebUnit.assertTextPresent(lsps + " launch service providers");
+    }
+
     @Test
     public void shouldHaveWelcomeInBasePage() {
         String path = "/";
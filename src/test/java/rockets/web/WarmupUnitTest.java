@@ -0,0 +1,78 @@
+package rockets.web;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import rockets.dataaccess.DAO;
+import rockets.dataaccess.PageRequest;
+import rockets.dataaccess.memory.InMemoryDAO;
+import rockets.model.Launch;
+import rockets.model.LaunchServiceProvider;
+import rockets.model.Rocket;
+import rockets.model.User;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class WarmupUnitTest {
+    @Test
+    public void shouldReadEveryStoreAndRunTheRoutesAndMiningQueries() {
+        DAO dao = spy(new InMemoryDAO());
+        // the spy cannot call the interface's default methods
+        doNothing().when(dao).openSession();
+        doNothing().when(dao).closeSession();
+        LaunchServiceProvider spacex = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        Rocket rocket = new Rocket("F9", "USA", spacex);
+        Launch launch = new Launch(LocalDate.of(2018, 2, 6), rocket, "KSC", "LEO", Launch.LaunchOutcome.SUCCESSFUL);
+        launch.setLaunchServiceProvider(spacex);
+        launch.setPrice(BigDecimal.valueOf(90000000));
+        dao.createOrUpdate(launch);
+
+        assertTrue(Warmup.run(dao, 1000) >= 0);
+
+        verify(dao).openSession();
+        verify(dao).closeSession();
+        verify(dao).loadPage(eq(User.class), any(PageRequest.class));
+        verify(dao).loadPage(eq(LaunchServiceProvider.class), any(PageRequest.class));
+        verify(dao).loadPage(eq(Rocket.class), any(PageRequest.class));
+        verify(dao).loadPage(eq(Launch.class), any(PageRequest.class));
+        verify(dao).load(Rocket.class, rocket.getId());
+        verify(dao).getLSPByName("");
+    }
+
+    @Test
+    public void shouldReadNoMoreThanTheSampleOfEachStore() {
+        DAO dao = spy(new InMemoryDAO());
+        doNothing().when(dao).openSession();
+        doNothing().when(dao).closeSession();
+        LaunchServiceProvider spacex = new LaunchServiceProvider("SpaceX", 2002, "USA");
+        for (int i = 0; i < 250; i++) {
+            dao.createOrUpdate(new Rocket("Rocket " + i, "USA", spacex));
+        }
+
+        Warmup.run(dao, 150);
+
+        ArgumentCaptor<PageRequest> requests = ArgumentCaptor.forClass(PageRequest.class);
+        verify(dao, times(2)).loadPage(eq(Rocket.class), requests.capture());
+        assertEquals(PageRequest.MAX_SIZE, requests.getAllValues().get(0).getSize());
+        assertEquals(150 - PageRequest.MAX_SIZE, requests.getAllValues().get(1).getSize());
+        verify(dao, never()).stream(Rocket.class);
+    }
+
+    @Test
+    public void shouldNotFailWhenTheStoreFails() {
+        DAO dao = mock(DAO.class);
+        when(dao.loadPage(any(Class.class), any(PageRequest.class))).thenThrow(new IllegalStateException("unavailable"));
+        when(dao.count(any(Class.class), any(Map.class))).thenThrow(new IllegalStateException("unavailable"));
+
+        assertTrue(Warmup.run(dao, 1000) >= 0);
+
+        verify(dao).closeSession();
+    }
+}